@@ -21,14 +21,36 @@ public class ClusterPainter<C,P> {
 		
 	}
 	
+	// a sizer for clusters that lie in a euclidean space
+	public interface Locator<C> extends Sizer<C> {
+		
+		// the coordinates of the cluster, or null if it cannot be located
+		// distances between clusters must match those between coordinates
+		double[] coordinates(C c);
+		
+	}
+	
 	private final Sizer<C> sizer;
 	private final List<P> paints;
+	private final int neighbours;
 	
 	public ClusterPainter(Sizer<C> sizer, List<P> paints) {
+		this(sizer, paints, 0);
+	}
+	
+	// only the given number of nearest neighbours are considered when choosing
+	// the paint for a cluster, zero indicates that all clusters are considered
+	public ClusterPainter(Sizer<C> sizer, List<P> paints, int neighbours) {
 		if (sizer == null) throw new IllegalArgumentException("null sizer");
 		if (paints == null) throw new IllegalArgumentException("null paints");
+		if (neighbours < 0) throw new IllegalArgumentException("negative neighbours");
 		this.sizer = sizer;
 		this.paints = new ArrayList<P>(paints);
+		this.neighbours = neighbours;
+	}
+	
+	public int getNeighbours() {
+		return neighbours;
 	}
 
 	public Map<C, P> paint(Collection<? extends C> cs) {
@@ -38,6 +60,8 @@ public class ClusterPainter<C,P> {
 		// sort clusters by radius - biggest first
 		Arrays.sort(clusters, new ClusterComparator());
 		
+		if (neighbours > 0) return paintNearest(clusters);
+		
 		// build table of radii
 		double[] radii = new double[length];
 		for (int i = 0; i < length; i++) {
@@ -102,6 +126,100 @@ public class ClusterPainter<C,P> {
 		return map;
 	}
 	
+	private Map<C, P> paintNearest(C[] clusters) {
+		int length = clusters.length;
+		int count = paints.size();
+		Map<C, P> map = new HashMap<C, P>();
+		if (length == 0 || count == 0) return map;
+		int k = Math.min(neighbours, length - 1);
+		
+		// build table of radii
+		double[] radii = new double[length];
+		for (int i = 0; i < length; i++) {
+			radii[i] = sizer.radius(clusters[i]);
+		}
+		
+		// find nearest neighbours - shortest first
+		int[] nearest = new int[length * k];
+		if (k > 0) {
+			Neighbours ns = new Neighbours(k);
+			double[] coords = coordinates(clusters);
+			if (coords == null) {
+				for (int i = 0; i < length; i++) {
+					C c1 = clusters[i];
+					ns.clear();
+					for (int j = 0; j < length; j++) {
+						if (j == i) continue;
+						ns.offer(gap(sizer.distance(c1, clusters[j]), radii, i, j), j);
+					}
+					ns.drain(nearest, i * k);
+				}
+			} else {
+				Index index = new Index(coords, radii);
+				for (int i = 0; i < length; i++) {
+					ns.clear();
+					index.search(i, ns);
+					ns.drain(nearest, i * k);
+				}
+			}
+		}
+		
+		//paint clusters
+		int[] painted = new int[length];
+		BitSet used = new BitSet(count);
+		for (int i = 0; i < length; i++) {
+			used.clear();
+			int usedCount = 0;
+			int paint = -1;
+			for (int j = i * k; j < (i + 1) * k; j++) {
+				int n = nearest[j];
+				// only clusters before this one have been painted
+				if (n > i) continue;
+				int p = painted[n];
+				if (used.get(p)) continue;
+				used.set(p);
+				if (++usedCount == count) {
+					paint = p;
+					break;
+				}
+			}
+			if (paint == -1) paint = used.nextClearBit(0);
+			painted[i] = paint;
+			map.put(clusters[i], paints.get(paint));
+		}
+		
+		// return result
+		return map;
+	}
+	
+	// returns null if any cluster cannot be located
+	private double[] coordinates(C[] clusters) {
+		if (!(sizer instanceof Locator)) return null;
+		// a sizer cannot also be a locator of another type, since Locator<C> extends Sizer<C>
+		@SuppressWarnings("unchecked")
+		Locator<C> locator = (Locator<C>) sizer;
+		int length = clusters.length;
+		double[] coords = null;
+		int dimensions = 0;
+		for (int i = 0; i < length; i++) {
+			double[] cs = locator.coordinates(clusters[i]);
+			if (cs == null) return null;
+			if (coords == null) {
+				dimensions = cs.length;
+				coords = new double[length * dimensions];
+			} else if (cs.length != dimensions) {
+				throw new IllegalArgumentException("inconsistent dimensions");
+			}
+			System.arraycopy(cs, 0, coords, i * dimensions, dimensions);
+		}
+		return coords;
+	}
+	
+	// radii are subtracted in a fixed order so that gaps are symmetric
+	private static double gap(double distance, double[] radii, int i, int j) {
+		return i > j ? distance - radii[i] - radii[j] : distance - radii[j] - radii[i];
+	}
+	
 	private class ClusterComparator implements Comparator<C> {
 		
 		public int compare(C c1, C c2) {
@@ -109,7 +227,7 @@ public class ClusterPainter<C,P> {
 			long p1 = sizer.points(c1); 
 			long p2 = sizer.points(c2);
 			if (p1 == p2) return 0;
-			return p1 < p2 ? 1 : 0;
+			return p1 < p2 ? 1 : -1;
 		}
 		
 	}
@@ -147,4 +265,191 @@ public class ClusterPainter<C,P> {
 		
 	}
 	
+	// retains the nearest clusters offered, ties favour lower indices
+	private static class Neighbours {
+		
+		final int capacity;
+		// a max heap of the nearest clusters found so far
+		final double[] gaps;
+		final int[] indices;
+		int size = 0;
+		
+		Neighbours(int capacity) {
+			this.capacity = capacity;
+			gaps = new double[capacity];
+			indices = new int[capacity];
+		}
+		
+		void clear() {
+			size = 0;
+		}
+		
+		// whether a cluster at the supplied gap might be retained
+		// assumes a non-zero capacity
+		boolean admits(double gap) {
+			return size < capacity || gap <= gaps[0];
+		}
+		
+		void offer(double gap, int index) {
+			if (size < capacity) {
+				// sift up
+				int k = size++;
+				while (k > 0) {
+					int parent = (k - 1) >> 1;
+					if (!after(gap, index, gaps[parent], indices[parent])) break;
+					gaps[k] = gaps[parent];
+					indices[k] = indices[parent];
+					k = parent;
+				}
+				gaps[k] = gap;
+				indices[k] = index;
+			} else if (after(gaps[0], indices[0], gap, index)) {
+				siftDown(0, size, gap, index);
+			}
+		}
+		
+		// writes the retained indices in ascending order, emptying the heap
+		void drain(int[] out, int offset) {
+			while (size > 0) {
+				int last = --size;
+				out[offset + last] = indices[0];
+				if (last > 0) siftDown(0, last, gaps[last], indices[last]);
+			}
+		}
+		
+		private void siftDown(int k, int size, double gap, int index) {
+			while (true) {
+				int child = 2 * k + 1;
+				if (child >= size) break;
+				if (child + 1 < size && after(gaps[child + 1], indices[child + 1], gaps[child], indices[child])) child++;
+				if (!after(gaps[child], indices[child], gap, index)) break;
+				gaps[k] = gaps[child];
+				indices[k] = indices[child];
+				k = child;
+			}
+			gaps[k] = gap;
+			indices[k] = index;
+		}
+		
+		private static boolean after(double g1, int i1, double g2, int i2) {
+			return g1 == g2 ? i1 > i2 : g1 > g2;
+		}
+		
+	}
+	
+	// a kd-tree over cluster coordinates, stored implicitly in an array
+	private static class Index {
+		
+		final double[] coords;
+		final double[] radii;
+		final int dimensions;
+		// cluster indices, each range is split at its midpoint
+		final int[] order;
+		// the axis on which each range is split
+		final int[] axes;
+		// the greatest radius within each range
+		final double[] reaches;
+		
+		Index(double[] coords, double[] radii) {
+			this.coords = coords;
+			this.radii = radii;
+			int length = radii.length;
+			dimensions = length == 0 ? 0 : coords.length / length;
+			order = new int[length];
+			for (int i = 0; i < length; i++) order[i] = i;
+			axes = new int[length];
+			reaches = new double[length];
+			build(0, length);
+		}
+		
+		void search(int i, Neighbours ns) {
+			search(0, order.length, i, ns);
+		}
+		
+		private double build(int lo, int hi) {
+			if (lo >= hi) return Double.NEGATIVE_INFINITY;
+			// split on the axis of greatest spread
+			int axis = 0;
+			double spread = -1.0;
+			for (int d = 0; d < dimensions; d++) {
+				double min = Double.POSITIVE_INFINITY;
+				double max = Double.NEGATIVE_INFINITY;
+				for (int i = lo; i < hi; i++) {
+					double c = coords[order[i] * dimensions + d];
+					if (c < min) min = c;
+					if (c > max) max = c;
+				}
+				if (max - min > spread) {
+					spread = max - min;
+					axis = d;
+				}
+			}
+			int mid = (lo + hi) >>> 1;
+			select(lo, hi - 1, mid, axis);
+			axes[mid] = axis;
+			double reach = Math.max(radii[order[mid]], Math.max(build(lo, mid), build(mid + 1, hi)));
+			reaches[mid] = reach;
+			return reach;
+		}
+		
+		// partially orders the range so that the element at k is in place
+		private void select(int lo, int hi, int k, int axis) {
+			while (lo < hi) {
+				double pivot = coords[order[(lo + hi) >>> 1] * dimensions + axis];
+				int i = lo;
+				int j = hi;
+				while (i <= j) {
+					while (coords[order[i] * dimensions + axis] < pivot) i++;
+					while (coords[order[j] * dimensions + axis] > pivot) j--;
+					if (i <= j) {
+						int t = order[i];
+						order[i] = order[j];
+						order[j] = t;
+						i++;
+						j--;
+					}
+				}
+				if (k <= j) {
+					hi = j;
+				} else if (k >= i) {
+					lo = i;
+				} else {
+					return;
+				}
+			}
+		}
+		
+		private void search(int lo, int hi, int i, Neighbours ns) {
+			if (lo >= hi) return;
+			int mid = (lo + hi) >>> 1;
+			int node = order[mid];
+			int axis = axes[mid];
+			double diff = coords[i * dimensions + axis] - coords[node * dimensions + axis];
+			if (node != i) ns.offer(gap(distance(i, node), radii, i, node), node);
+			// search the nearer range first
+			int nearLo, nearHi, farLo, farHi;
+			if (diff < 0.0) {
+				nearLo = lo; nearHi = mid; farLo = mid + 1; farHi = hi;
+			} else {
+				nearLo = mid + 1; nearHi = hi; farLo = lo; farHi = mid;
+			}
+			search(nearLo, nearHi, i, ns);
+			if (farLo < farHi && ns.admits(Math.abs(diff) - radii[i] - reaches[(farLo + farHi) >>> 1])) {
+				search(farLo, farHi, i, ns);
+			}
+		}
+		
+		private double distance(int i, int j) {
+			int a = i * dimensions;
+			int b = j * dimensions;
+			double sum = 0.0;
+			for (int d = 0; d < dimensions; d++) {
+				double diff = coords[a + d] - coords[b + d];
+				sum += diff * diff;
+			}
+			return Math.sqrt(sum);
+		}
+		
+	}
+	
 }
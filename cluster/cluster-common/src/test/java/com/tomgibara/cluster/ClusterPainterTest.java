@@ -0,0 +1,113 @@
+/*
+ * Copyright 2007 Tom Gibara
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.tomgibara.cluster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class ClusterPainterTest extends TestCase {
+
+	private static final List<Integer> PAINTS = Arrays.asList(0, 1, 2, 3, 4);
+
+	private static class Circle {
+
+		final double[] centre;
+		final double radius;
+		final long points;
+
+		Circle(double[] centre, double radius, long points) {
+			this.centre = centre;
+			this.radius = radius;
+			this.points = points;
+		}
+
+	}
+
+	private static class CircleSizer implements ClusterPainter.Sizer<Circle> {
+
+		@Override
+		public double distance(Circle c1, Circle c2) {
+			double sum = 0.0;
+			for (int i = 0; i < c1.centre.length; i++) {
+				double d = c1.centre[i] - c2.centre[i];
+				sum += d * d;
+			}
+			return Math.sqrt(sum);
+		}
+
+		@Override
+		public double radius(Circle c) {
+			return c.radius;
+		}
+
+		@Override
+		public long points(Circle c) {
+			return c.points;
+		}
+
+	}
+
+	private static class CircleLocator extends CircleSizer implements ClusterPainter.Locator<Circle> {
+
+		@Override
+		public double[] coordinates(Circle c) {
+			return c.centre;
+		}
+
+	}
+
+	private static List<Circle> circles(Random random, int count) {
+		List<Circle> circles = new ArrayList<Circle>(count);
+		for (int i = 0; i < count; i++) {
+			double[] centre = { random.nextDouble() * 100.0, random.nextDouble() * 100.0 };
+			circles.add(new Circle(centre, random.nextDouble() * 2.0, random.nextInt(1000)));
+		}
+		return circles;
+	}
+
+	public void testNeighbours() {
+		Random random = new Random(0L);
+		for (int count = 0; count <= 300; count = count * 2 + 1) {
+			List<Circle> circles = circles(random, count);
+			Map<Circle, Integer> all = new ClusterPainter<Circle, Integer>(new CircleSizer(), PAINTS).paint(circles);
+			assertEquals(count, all.size());
+			// considering every neighbour matches the original painting
+			int n = Math.max(1, count - 1);
+			assertEquals(all, new ClusterPainter<Circle, Integer>(new CircleSizer(), PAINTS, n).paint(circles));
+			assertEquals(all, new ClusterPainter<Circle, Integer>(new CircleLocator(), PAINTS, n).paint(circles));
+			// the index finds the same neighbours as an exhaustive search
+			for (int k = 1; k <= 8; k *= 2) {
+				Map<Circle, Integer> expected = new ClusterPainter<Circle, Integer>(new CircleSizer(), PAINTS, k).paint(circles);
+				Map<Circle, Integer> actual = new ClusterPainter<Circle, Integer>(new CircleLocator(), PAINTS, k).paint(circles);
+				assertEquals(count, actual.size());
+				assertEquals(expected, actual);
+			}
+		}
+	}
+
+	public void testLarge() {
+		List<Circle> circles = circles(new Random(0L), 100000);
+		Map<Circle, Integer> map = new ClusterPainter<Circle, Integer>(new CircleLocator(), PAINTS, 8).paint(circles);
+		assertEquals(circles.size(), map.size());
+	}
+
+}
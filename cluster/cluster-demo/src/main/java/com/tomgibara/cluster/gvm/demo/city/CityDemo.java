@@ -37,6 +37,7 @@ import java.util.Date;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Timer;
@@ -65,6 +66,9 @@ public class CityDemo {
     private static final GvmVectorSpace space = new GvmVectorSpace(2);
 
 	private static final int CITY_NAME_MAX = 20;
+
+	// the number of clusterings retained for reuse as the slider is moved
+	private static final int LEVEL_CACHE_SIZE = 64;
     
     private static final Map<String, Color> CONTINENT_COLORS = new HashMap<String, Color>();
     
@@ -84,7 +88,7 @@ public class CityDemo {
     		Color.MAGENTA
     		});
     
-    private static final ClusterPainter<GvmResult<?>, Color> painter = new ClusterPainter<GvmResult<?>, Color>(new GvmSizer(), CLUSTER_COLORS);
+    private static final ClusterPainter<GvmResult<?>, Color> painter = new ClusterPainter<GvmResult<?>, Color>(new GvmSizer(), CLUSTER_COLORS, 16);
     
     public static void insert(final Container c, final List<City> cities, Dimension d, boolean allowSave) {
         c.setLayout(new BorderLayout());
@@ -114,7 +118,7 @@ public class CityDemo {
 
         List<GvmResult<City>> results = clusterCities(cities, slider.getValue());
         List<Pin> pins = pinsFromResults(results);
-        map.addAllPins(pins);
+        map.setPins(new PinIndex(pins));
         map.repaint();
         map.setTitle(String.format("%,3d largest cities...", cities.size()));
         
@@ -122,8 +126,16 @@ public class CityDemo {
         final AtomicInteger desiredValue = new AtomicInteger( slider.getValue() );
         final AtomicBoolean currentDisplay = new AtomicBoolean(true);
         final AtomicBoolean desiredDisplay = new AtomicBoolean(true);
+        final Map<Integer, Level> levels = Collections.synchronizedMap(new LinkedHashMap<Integer, Level>(16, 0.75f, true) {
+			private static final long serialVersionUID = 5390457260514226853L;
+
+			@Override
+        	protected boolean removeEldestEntry(Map.Entry<Integer, Level> eldest) {
+        		return size() > LEVEL_CACHE_SIZE;
+        	}
+        });
 
-        new UpdateMap(map, cities, currentDisplay, desiredDisplay, currentValue, desiredValue).run();
+        new UpdateMap(map, cities, levels, currentDisplay, desiredDisplay, currentValue, desiredValue).run();
         
         final Timer timer = new Timer(true);
         
@@ -132,7 +144,7 @@ public class CityDemo {
         	public void stateChanged(ChangeEvent e) {
         		JCheckBox checbox = (JCheckBox) e.getSource();
         		desiredDisplay.set(!checbox.isSelected());
-                UpdateMap update = new UpdateMap(map, cities, currentDisplay, desiredDisplay, currentValue, desiredValue);
+                UpdateMap update = new UpdateMap(map, cities, levels, currentDisplay, desiredDisplay, currentValue, desiredValue);
                 timer.schedule(update, new Date());
         	}
         });
@@ -148,7 +160,7 @@ public class CityDemo {
 				Graphics2D g = img.createGraphics();
 				g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 				g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-				map.paintComponent(g);
+				map.paintImage(g);
 				g.dispose();
 				for (int n = 0; n < 100; n++) {
 					String pathname = "city-capture-" + n + ".png";
@@ -171,7 +183,7 @@ public class CityDemo {
             public void stateChanged(ChangeEvent e) {
         		JSlider slider = (JSlider) e.getSource();
             	desiredValue.set(slider.getValue());
-                UpdateMap update = new UpdateMap(map, cities, currentDisplay, desiredDisplay, currentValue, desiredValue);
+                UpdateMap update = new UpdateMap(map, cities, levels, currentDisplay, desiredDisplay, currentValue, desiredValue);
                 timer.schedule(update, new Date());
             } 
         });
@@ -321,18 +333,33 @@ public class CityDemo {
         }
     }
     
+    // the pins for a number of clusters, computed once and retained
+    private static class Level {
+
+    	final PinIndex pins;
+    	final String caption;
+
+    	Level(PinIndex pins, String caption) {
+    		this.pins = pins;
+    		this.caption = caption;
+    	}
+
+    }
+
     private static class UpdateMap extends TimerTask {
 
     	private WorldMap map;
         private List<City> cities;
+        private Map<Integer, Level> levels;
 		private AtomicBoolean currentDisplay;
 		private AtomicBoolean desiredDisplay;
 		private AtomicInteger desiredValue;
 		private AtomicInteger currentValue;
 
-		public UpdateMap(WorldMap map, List<City> cities, AtomicBoolean currentDisplay, AtomicBoolean desiredDisplay, AtomicInteger currentValue, AtomicInteger desiredValue) {
+		public UpdateMap(WorldMap map, List<City> cities, Map<Integer, Level> levels, AtomicBoolean currentDisplay, AtomicBoolean desiredDisplay, AtomicInteger currentValue, AtomicInteger desiredValue) {
         	this.map = map;
         	this.cities = cities;
+        	this.levels = levels;
         	this.currentDisplay = currentDisplay;
         	this.desiredDisplay = desiredDisplay;
         	this.desiredValue = desiredValue;
@@ -353,26 +380,37 @@ public class CityDemo {
         };
 
 		private void doCityUpdate(int count) {
-	    	long start = System.currentTimeMillis();
-	        List<GvmResult<List<City>>> results = clusterCities2(cities, count);
-	        long finish = System.currentTimeMillis();
-	        List<Pin> pins = pinsFromResults2(results);
-	        map.clearPins();
-	        map.addAllPins(pins);
-	        map.setCaption(String.format("...into %d clusters (%,3d ms)", results.size(), finish - start));
-	        map.repaint();
+			// city levels are distinguished by a negative count
+			Level level = levels.get(-count);
+			if (level == null) {
+		    	long start = System.currentTimeMillis();
+		        List<GvmResult<List<City>>> results = clusterCities2(cities, count);
+		        long finish = System.currentTimeMillis();
+		        List<Pin> pins = pinsFromResults2(results);
+		        level = new Level(new PinIndex(pins), String.format("...into %d clusters (%,3d ms)", results.size(), finish - start));
+		        levels.put(-count, level);
+			}
+	        showLevel(level);
 		}
 
 		private void doClusterUpdate(int count) {
-	    	long start = System.currentTimeMillis();
-	        List<GvmResult<City>> results = clusterCities(cities, count);
-	        long finish = System.currentTimeMillis();
-	        List<Pin> pins = pinsFromResults(results);
-	        map.clearPins();
-	        map.addAllPins(pins);
-	        map.setCaption(String.format("...into %d clusters (%,3d ms)", results.size(), finish - start));
-	        map.repaint();
+			Level level = levels.get(count);
+			if (level == null) {
+		    	long start = System.currentTimeMillis();
+		        List<GvmResult<City>> results = clusterCities(cities, count);
+		        long finish = System.currentTimeMillis();
+		        List<Pin> pins = pinsFromResults(results);
+		        level = new Level(new PinIndex(pins), String.format("...into %d clusters (%,3d ms)", results.size(), finish - start));
+		        levels.put(count, level);
+			}
+	        showLevel(level);
         }
+
+		private void showLevel(Level level) {
+	        map.setPins(level.pins);
+	        map.setCaption(level.caption);
+	        map.repaint();
+		}
         
     }
 
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2007 Tom Gibara
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.tomgibara.cluster.gvm.demo.city;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An immutable quadtree over a collection of pins that makes it cheap to
+ * find the pins which may be drawn within a region of the map. Regions are
+ * expressed in the same normalized coordinates as the pins themselves.
+ * 
+ * @author Tom Gibara
+ */
+
+class PinIndex {
+
+	// statics
+	
+	private static final int MAX_DEPTH = 12;
+	
+	private static final int NODE_CAPACITY = 8;
+	
+	private static final AtomicLong nextId = new AtomicLong();
+	
+	// fields
+	
+	// identifies the pins drawn, so that rendered tiles can be reused
+	private final long id;
+	// in drawing order
+	private final Pin[] pins;
+	// the extent of each pin, its child and their labels: minX, minY, maxX, maxY
+	private final float[] bounds;
+	private final Node root;
+	
+	// constructors
+	
+	PinIndex(Collection<Pin> pins) {
+		id = nextId.getAndIncrement();
+		this.pins = pins.toArray(new Pin[pins.size()]);
+		Arrays.sort(this.pins, new PinComparator());
+		int length = this.pins.length;
+		bounds = new float[length * 4];
+		root = new Node(0f, 0f, 1f, 1f);
+		for (int i = 0; i < length; i++) {
+			int b = i * 4;
+			bounds[b    ] = Float.POSITIVE_INFINITY;
+			bounds[b + 1] = Float.POSITIVE_INFINITY;
+			bounds[b + 2] = Float.NEGATIVE_INFINITY;
+			bounds[b + 3] = Float.NEGATIVE_INFINITY;
+			for (Pin pin = this.pins[i]; pin != null; pin = pin.getChild()) {
+				if (pin.isVisible()) include(b, pin);
+			}
+			if (bounds[b] <= bounds[b + 2]) root.insert(i, 0);
+		}
+	}
+	
+	// accessors
+	
+	long getId() {
+		return id;
+	}
+	
+	int size() {
+		return pins.length;
+	}
+	
+	// methods
+	
+	/**
+	 * The pins which may be drawn within a region, in the order in which they
+	 * should be drawn.
+	 */
+	
+	List<Pin> query(float minX, float minY, float maxX, float maxY) {
+		int[] found = new int[16];
+		int count = root.query(minX, minY, maxX, maxY, found, 0);
+		if (count > found.length) {
+			// results were truncated, repeat with sufficient room
+			found = new int[count];
+			root.query(minX, minY, maxX, maxY, found, 0);
+		}
+		Arrays.sort(found, 0, count);
+		List<Pin> list = new ArrayList<Pin>(count);
+		for (int i = 0; i < count; i++) {
+			list.add(pins[found[i]]);
+		}
+		return list;
+	}
+	
+	// private utility methods
+	
+	// the map is twice as wide as it is high, so radii are doubled vertically
+	private void include(int b, Pin pin) {
+		float rx = (float) WorldMap.radius(pin) / WorldMap.PIN_SCALE;
+		// labels are centred on the pin and scale with it
+		String label = pin.getLabel();
+		float hx = label == null ? rx : Math.max(rx, rx * label.length() * 0.5f);
+		float x = pin.getX();
+		float y = pin.getY();
+		bounds[b    ] = Math.min(bounds[b    ], x - hx);
+		bounds[b + 1] = Math.min(bounds[b + 1], y - 2f * rx);
+		bounds[b + 2] = Math.max(bounds[b + 2], x + hx);
+		bounds[b + 3] = Math.max(bounds[b + 3], y + 2f * rx);
+	}
+	
+	private boolean intersects(int i, float minX, float minY, float maxX, float maxY) {
+		int b = i * 4;
+		return bounds[b] <= maxX && bounds[b + 2] >= minX && bounds[b + 1] <= maxY && bounds[b + 3] >= minY;
+	}
+	
+	// inner classes
+	
+	private class Node {
+		
+		final float minX;
+		final float minY;
+		final float maxX;
+		final float maxY;
+		// pins that do not fit within a single quadrant
+		int[] items = new int[NODE_CAPACITY];
+		int count = 0;
+		Node[] children = null;
+		
+		Node(float minX, float minY, float maxX, float maxY) {
+			this.minX = minX;
+			this.minY = minY;
+			this.maxX = maxX;
+			this.maxY = maxY;
+		}
+		
+		void insert(int i, int depth) {
+			if (children == null && count == NODE_CAPACITY && depth < MAX_DEPTH) {
+				// split, redistributing the existing pins
+				float midX = (minX + maxX) * 0.5f;
+				float midY = (minY + maxY) * 0.5f;
+				children = new Node[] {
+						new Node(minX, minY, midX, midY),
+						new Node(midX, minY, maxX, midY),
+						new Node(minX, midY, midX, maxY),
+						new Node(midX, midY, maxX, maxY),
+				};
+				int[] previous = items;
+				int previousCount = count;
+				items = new int[NODE_CAPACITY];
+				count = 0;
+				for (int j = 0; j < previousCount; j++) {
+					place(previous[j], depth);
+				}
+			}
+			place(i, depth);
+		}
+		
+		int query(float minX, float minY, float maxX, float maxY, int[] found, int total) {
+			for (int j = 0; j < count; j++) {
+				int i = items[j];
+				if (!intersects(i, minX, minY, maxX, maxY)) continue;
+				if (total < found.length) found[total] = i;
+				total++;
+			}
+			if (children != null) {
+				for (Node child : children) {
+					if (child.minX > maxX || child.maxX < minX || child.minY > maxY || child.maxY < minY) continue;
+					total = child.query(minX, minY, maxX, maxY, found, total);
+				}
+			}
+			return total;
+		}
+		
+		private void place(int i, int depth) {
+			if (children != null) {
+				int b = i * 4;
+				for (Node child : children) {
+					if (bounds[b] >= child.minX && bounds[b + 2] <= child.maxX && bounds[b + 1] >= child.minY && bounds[b + 3] <= child.maxY) {
+						child.insert(i, depth + 1);
+						return;
+					}
+				}
+			}
+			if (count == items.length) items = Arrays.copyOf(items, count * 2);
+			items[count++] = i;
+		}
+		
+	}
+	
+}
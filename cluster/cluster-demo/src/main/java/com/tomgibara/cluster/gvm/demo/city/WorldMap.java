@@ -32,8 +32,15 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Collection;
-import java.util.TreeSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import javax.imageio.ImageIO;
 import javax.swing.JComponent;
@@ -44,7 +51,14 @@ class WorldMap extends JComponent {
 	
 	private static final Color DEFAULT_PIN_COLOR = Color.GRAY;
     private static final int DEFAULT_PIN_RADIUS = 10;
-    private static final int PIN_SCALE = 800;
+    static final int PIN_SCALE = 800;
+    private static final Color SEA_COLOR = new Color(20, 10, 90);
+    
+    private static final int TILE_SIZE = 256;
+    // the number of rendered tiles that are retained for reuse
+    private static final int TILE_CACHE_SIZE = 128;
+    // the pixels by which pin bevels and outlines may exceed their radii
+    private static final int TILE_MARGIN = 4;
     
     private static final BufferedImage image;
     
@@ -63,12 +77,36 @@ class WorldMap extends JComponent {
     private static final String fontName = "Lucida Sans"; //Font.SANS_SERIF
     private static final Font font = new Font(fontName, 1, Font.PLAIN);
     
-    private TreeSet<Pin> pins;
+    static int radius(Pin pin) {
+        return pin.getRadius() < 1 ? DEFAULT_PIN_RADIUS : pin.getRadius();
+    }
+    
+    private volatile PinIndex pins;
     private String title;
     private String caption;
     
+    // rendered tiles, least recently used first
+    private final Map<Tile, BufferedImage> tiles = new LinkedHashMap<Tile, BufferedImage>(16, 0.75f, true) {
+		private static final long serialVersionUID = -2470950398218447946L;
+
+		@Override
+    	protected boolean removeEldestEntry(Map.Entry<Tile, BufferedImage> eldest) {
+    		return size() > TILE_CACHE_SIZE;
+    	}
+    };
+    // tiles that have been submitted for rendering, guarded by tiles
+    private final Set<Tile> pending = new HashSet<Tile>();
+    private final ExecutorService renderer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+    	@Override
+    	public Thread newThread(Runnable r) {
+    		Thread thread = new Thread(r, "world-map-renderer");
+    		thread.setDaemon(true);
+    		return thread;
+    	}
+    });
+    
     WorldMap() {
-        pins = new TreeSet<Pin>(new PinComparator());
+        pins = new PinIndex(Collections.<Pin>emptyList());
     }
     
     @Override
@@ -77,8 +115,17 @@ class WorldMap extends JComponent {
         Graphics2D g = (Graphics2D) graphics;
         g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
         g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        paintMap(g, false);
+    }
+
+    // paints the map without waiting for tiles to be rendered in the background
+    void paintImage(Graphics2D g) {
+    	paintMap(g, true);
+    }
+    
+    private void paintMap(Graphics2D g, boolean wait) {
         Dimension d = getSize();
-        g.setColor(new Color(20, 10, 90));
+        g.setColor(SEA_COLOR);
         g.fillRect(0, 0, d.width, d.height);
         int dx = 0;
         int dy = 0;
@@ -94,20 +141,97 @@ class WorldMap extends JComponent {
         	dh = dw / 2;
         }
         g.translate(dx, dy);
-        if (image != null) g.drawImage(image, 0, 0, dw, dh, null);
-        synchronized (pins) {
-            for (Pin pin : pins) {
-                drawPin(g, d, pin);
-            }
-            for (Pin pin : pins) {
-                drawLabel(g, d, pin);
-            }
+        PinIndex index = pins;
+        int cols = (dw + TILE_SIZE - 1) / TILE_SIZE;
+        int rows = (dh + TILE_SIZE - 1) / TILE_SIZE;
+        BufferedImage[] imgs = new BufferedImage[cols * rows];
+        boolean complete = true;
+        for (int row = 0; row < rows; row++) {
+        	for (int col = 0; col < cols; col++) {
+        		Tile tile = new Tile(index.getId(), dw, col, row);
+        		BufferedImage img;
+        		synchronized (tiles) {
+        			img = tiles.get(tile);
+        		}
+        		if (img == null) {
+        			if (wait) {
+        				img = renderTile(index, tile, dh);
+        				synchronized (tiles) {
+        					tiles.put(tile, img);
+        				}
+        			} else {
+        				schedule(index, tile, dh);
+        				complete = false;
+        			}
+        		}
+        		imgs[row * cols + col] = img;
+        	}
+        }
+        // the pins are only drawn once their tiles have been rendered
+        if (!complete && image != null) g.drawImage(image, 0, 0, dw, dh, null);
+        for (int i = 0; i < imgs.length; i++) {
+        	if (imgs[i] != null) g.drawImage(imgs[i], (i % cols) * TILE_SIZE, (i / cols) * TILE_SIZE, null);
         }
         g.translate(-dx, -dy);
         drawString(g, title, true);
         drawString(g, caption, false);
     }
 
+    private void schedule(final PinIndex index, final Tile tile, final int dh) {
+    	synchronized (tiles) {
+    		if (!pending.add(tile)) return;
+    	}
+    	renderer.execute(new Runnable() {
+    		@Override
+    		public void run() {
+    			BufferedImage img = null;
+    			try {
+    				// tiles for pins that have since been replaced are not needed
+    				if (pins == index) img = renderTile(index, tile, dh);
+    			} finally {
+    				synchronized (tiles) {
+    					pending.remove(tile);
+    					if (img != null) tiles.put(tile, img);
+    				}
+    			}
+    			if (img != null) repaint();
+    		}
+    	});
+    }
+    
+    private BufferedImage renderTile(PinIndex index, Tile tile, int dh) {
+    	int dw = tile.width;
+    	int x = tile.col * TILE_SIZE;
+    	int y = tile.row * TILE_SIZE;
+    	int w = Math.min(TILE_SIZE, dw - x);
+    	int h = Math.min(TILE_SIZE, dh - y);
+    	BufferedImage img = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+    	Graphics2D g = img.createGraphics();
+    	try {
+    		g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+    		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    		g.setColor(SEA_COLOR);
+    		g.fillRect(0, 0, w, h);
+    		g.translate(-x, -y);
+    		if (image != null) {
+    			g.clipRect(x, y, w, h);
+    			g.drawImage(image, 0, 0, dw, dh, null);
+    		}
+    		float m = TILE_MARGIN;
+    		List<Pin> list = index.query((x - m) / dw, (y - m) / dh, (x + w + m) / dw, (y + h + m) / dh);
+    		Dimension d = new Dimension(dw, dh);
+    		for (Pin pin : list) {
+    			drawPin(g, d, pin);
+    		}
+    		for (Pin pin : list) {
+    			drawLabel(g, d, pin);
+    		}
+    	} finally {
+    		g.dispose();
+    	}
+    	return img;
+    }
+    
     private Color mix(Color c1, Color c2) {
         return new Color((c1.getRed()+c2.getRed())/2, (c1.getGreen()+c2.getGreen())/2, (c1.getBlue()+c2.getBlue())/2);
     }
@@ -117,8 +241,7 @@ class WorldMap extends JComponent {
     	
 		int x = (int) (pin.getX() * d.width);
 		int y = (int) (pin.getY() * d.height);
-        int radius = pin.getRadius() < 1 ? DEFAULT_PIN_RADIUS : pin.getRadius();
-        radius = radius * d.width / PIN_SCALE;
+        int radius = radius(pin) * d.width / PIN_SCALE;
         Color color = pin.getColor() == null ? DEFAULT_PIN_COLOR : pin.getColor();
         int b = Math.min(radius/2, 2);
         Pin child = pin.getChild();
@@ -126,8 +249,7 @@ class WorldMap extends JComponent {
         if (child != null) {
         	int cx = (int) (child.getX() * d.width);
         	int cy = (int) (child.getY() * d.height);
-        	int cr = child.getRadius() < 1 ? DEFAULT_PIN_RADIUS : child.getRadius();
-            cr = cr * d.width / PIN_SCALE;
+        	int cr = radius(child) * d.width / PIN_SCALE;
             int w = Math.min(cr, radius);
             if (w < 0) w = 1;
 
@@ -156,8 +278,7 @@ class WorldMap extends JComponent {
     	if (!pin.isVisible()) return;
     	
     	if (pin.getLabel() != null) {
-	        int radius = pin.getRadius() < 1 ? DEFAULT_PIN_RADIUS : pin.getRadius();
-	        radius = radius * d.width / PIN_SCALE;
+	        int radius = radius(pin) * d.width / PIN_SCALE;
 	        Color color = pin.getColor() == null ? DEFAULT_PIN_COLOR : pin.getColor();
 	
 	        Color labelColor = Color.WHITE;
@@ -191,28 +312,14 @@ class WorldMap extends JComponent {
         this.title = title;
     }
     
-    boolean addPin(Pin pin) {
-        synchronized (pins) {
-            boolean ret = pins.add(pin);
-            return ret;
-        }
-    }
-    
-    boolean addAllPins(Collection<Pin> pins) {
-        synchronized (pins) {
-            boolean ret = this.pins.addAll(pins);
-            return ret;
-        }
+    // the pins must not be modified after they are indexed
+    void setPins(PinIndex pins) {
+    	if (pins == null) throw new IllegalArgumentException("null pins");
+    	this.pins = pins;
     }
     
-    boolean clearPins() {
-        synchronized (pins) {
-            boolean ret = pins.size() > 0;
-            if (ret) {
-                pins.clear();
-            }
-            return ret;
-        }
+    PinIndex getPins() {
+    	return pins;
     }
 
     private void drawString(Graphics2D g, String str, boolean tr) {
@@ -244,4 +351,34 @@ class WorldMap extends JComponent {
         
     }
     
+    // identifies a rendered region of the map
+    private static final class Tile {
+    	
+    	final long id;
+    	final int width;
+    	final int col;
+    	final int row;
+    	
+    	Tile(long id, int width, int col, int row) {
+    		this.id = id;
+    		this.width = width;
+    		this.col = col;
+    		this.row = row;
+    	}
+    	
+    	@Override
+    	public int hashCode() {
+    		return (((int) (id ^ (id >>> 32)) * 31 + width) * 31 + col) * 31 + row;
+    	}
+    	
+    	@Override
+    	public boolean equals(Object obj) {
+    		if (obj == this) return true;
+    		if (!(obj instanceof Tile)) return false;
+    		Tile that = (Tile) obj;
+    		return this.id == that.id && this.width == that.width && this.col == that.col && this.row == that.row;
+    	}
+    	
+    }
+    
 }
\ No newline at end of file
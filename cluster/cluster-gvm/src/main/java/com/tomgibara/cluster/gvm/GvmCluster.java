@@ -33,16 +33,16 @@ public class GvmCluster<S extends GvmSpace, K> {
 	final GvmClusters<S, K> clusters;
 	
 	/**
-	 * The pairings of this cluster with all other clusters.
+	 * Whether this cluster is in the process of being removed.
 	 */
 	
-	final GvmClusterPair<S,K>[] pairs;
-
+	boolean removed;
+	
 	/**
-	 * Whether this cluster is in the process of being removed.
+	 * The index of this cluster within the set of clusters.
 	 */
 	
-	boolean removed;
+	int index;
 	
 	/**
 	 * The number of points in this cluster.
@@ -82,7 +82,6 @@ public class GvmCluster<S extends GvmSpace, K> {
 	
 	// constructors
 	
-	@SuppressWarnings("unchecked")
 	GvmCluster(GvmClusters<S,K> clusters) {
 		this.clusters = clusters;
 		removed = false;
@@ -90,18 +89,18 @@ public class GvmCluster<S extends GvmSpace, K> {
 		m0 = 0.0;
 		m1 = clusters.space.newOrigin();
 		m2 = clusters.space.newOrigin();
-		pairs = new GvmClusterPair[clusters.capacity];
 		update();
 	}
 	
 	// public accessors
 	
 	/**
-	 * The total mass of the cluster.
+	 * The total mass of the cluster, including any decay that has been
+	 * applied.
 	 */
 
 	public double getMass() {
-		return m0;
+		return m0 / clusters.inflation;
 	}
 	
 	/**
@@ -113,11 +112,12 @@ public class GvmCluster<S extends GvmSpace, K> {
 	}
 	
 	/**
-	 * The computed variance of the cluster
+	 * The computed variance of the cluster, including any decay that has been
+	 * applied.
 	 */
 
 	public double getVariance() {
-		return var;
+		return var / clusters.inflation;
 	}
 	
 	/**
@@ -201,6 +201,7 @@ public class GvmCluster<S extends GvmSpace, K> {
 	void set(GvmCluster<S,K> cluster) {
 		if (cluster == this) throw new IllegalArgumentException("cannot set cluster to itself");
 		
+		count = cluster.count;
 		m0 = cluster.m0;
 		clusters.space.setTo(m1, cluster.m1);
 		clusters.space.setTo(m2, cluster.m2);
@@ -229,6 +230,19 @@ public class GvmCluster<S extends GvmSpace, K> {
 		}
 	}
 	
+	/**
+	 * Scales the mass of this cluster, and with it the moments and variance.
+	 * 
+	 * @param s the scale factor
+	 */
+	
+	void scale(double s) {
+		m0 *= s;
+		clusters.space.scale(m1, s);
+		clusters.space.scale(m2, s);
+		var *= s;
+	}
+	
 	/**
 	 * Computes this clusters variance if it were to have a new point added to it.
 	 * 
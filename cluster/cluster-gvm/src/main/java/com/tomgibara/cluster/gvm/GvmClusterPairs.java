@@ -19,137 +19,376 @@ package com.tomgibara.cluster.gvm;
 import java.util.Arrays;
 
 /**
- * Maintains a heap of cluster pairs.
+ * Maintains a heap of cluster pairs. A pair of the clusters at indices i and j
+ * (where i &lt; j) is identified by the triangular index j(j-1)/2 + i, the
+ * values of the pairs and the structure of the heap are held in primitive
+ * arrays indexed by these pair indices.
+ * 
+ * Since the number of pairs grows quadratically with the number of clusters,
+ * the storage of the values is left to subclasses: {@link Doubles} retains
+ * values exactly, while {@link Floats} rounds them to single precision to
+ * reduce the memory occupied by each pair from 16 bytes to 12.
  * 
  * @author Tom Gibara
- *
- * @param <K> the key type
  */
 
-class GvmClusterPairs<S extends GvmSpace, K> {
+abstract class GvmClusterPairs {
 
-	private GvmClusterPair<S,K>[] pairs;
+	// statics
+	
+	/**
+	 * The index of the pair formed from two distinct clusters.
+	 * 
+	 * @param i the index of a cluster
+	 * @param j the index of another cluster
+	 * @return the pair index
+	 */
+	
+	static int pair(int i, int j) {
+		return i < j ? j * (j - 1) / 2 + i : i * (i - 1) / 2 + j;
+	}
+	
+	/**
+	 * The greater of the cluster indices that form a pair.
+	 * 
+	 * @param pair a pair index
+	 * @return the index of the second cluster in the pair
+	 */
+	
+	static int second(int pair) {
+		int j = (int) ((1.0 + Math.sqrt(1.0 + 8.0 * pair)) / 2.0);
+		// correct for any rounding
+		while (j * (j - 1) / 2 > pair) j--;
+		while ((j + 1) * j / 2 <= pair) j++;
+		return j;
+	}
+
+	/**
+	 * The lesser of the cluster indices that form a pair.
+	 * 
+	 * @param pair a pair index
+	 * @return the index of the first cluster in the pair
+	 */
+	
+	static int first(int pair) {
+		int j = second(pair);
+		return pair - j * (j - 1) / 2;
+	}
+	
+	// fields
+	
+	/**
+	 * The pair indices arranged as a heap.
+	 */
+	
+	private final int[] heap;
+	
+	/**
+	 * The position of each pair within the heap, or -1.
+	 */
+	
+	private final int[] positions;
+	
+	/**
+	 * The number of pairs in the heap.
+	 */
+	
 	private int size;
 
-	@SuppressWarnings("unchecked")
-	GvmClusterPairs(int initialCapacity) {
-		pairs = new GvmClusterPair[initialCapacity];
+	GvmClusterPairs(int capacity) {
+		int pairs = capacity * (capacity - 1) / 2;
+		heap = new int[pairs];
+		positions = new int[pairs];
+		Arrays.fill(positions, -1);
 		size = 0;
 	}
 
-	GvmClusterPairs(GvmClusterPairs<S,K> that) {
-		pairs = Arrays.copyOf(that.pairs, that.size);
-		size = pairs.length;
+	/**
+	 * Adds a pair to the heap.
+	 * 
+	 * @param pair
+	 *            a pair index, not already in the heap
+	 * @param value
+	 *            the value of the pair
+	 */
+	
+	void add(int pair, double value) {
+		put(pair, value);
+		heapifyUp(size++, pair);
 	}
 
-    public boolean add(GvmClusterPair<S,K> e) {
-        if (e == null) throw new IllegalArgumentException("null pair");
-        int i = size;
-        if (i >= pairs.length) grow(i + 1);
-        size = i + 1;
-        if (i == 0) {
-            pairs[0] = e;
-            e.index = 0;
-        } else {
-            heapifyUp(i, e);
-        }
-        return true;
-    }
+	/**
+	 * The pair of least value.
+	 * 
+	 * @return a pair index, or -1 if the heap is empty
+	 */
+	
+	int peek() {
+		return size == 0 ? -1 : heap[0];
+	}
+	
+	/**
+	 * The value of a pair.
+	 * 
+	 * @param pair
+	 *            a pair index
+	 * @return the value most recently assigned to the pair, as rounded by
+	 *         {@link #round(double)}
+	 */
 
-    public GvmClusterPair<S,K> peek() {
-    	return size == 0 ? null : pairs[0];
-    }
+	double value(int pair) {
+		return get(pair);
+	}
 
-    public boolean remove(GvmClusterPair<S,K> pair) {
-		int i = indexOf(pair);
+	/**
+	 * Removes a pair from the heap.
+	 * 
+	 * @param pair
+	 *            a pair index
+	 * @return true if the pair was in the heap
+	 */
+	
+	boolean remove(int pair) {
+		int i = positions[pair];
 		if (i == -1) return false;
-	    removeAt(i);
-	    return true;
-    }
-
-    public void reprioritize(GvmClusterPair<S,K> pair) {
-    	int i = indexOf(pair);
-    	if (i == -1) throw new IllegalArgumentException("no such pair");
-    	pair.update();
-        GvmClusterPair<S,K> parent = i == 0 ? null : pairs[ (i - 1) >>> 1 ];
-        if (parent != null && parent.value > pair.value) {
-        	heapifyUp(i, pair);
-        } else {
-        	heapifyDown(i, pair);
-        }
-    }
-
-    public int size() {
-        return size;
-    }
-
-    public void clear() {
-        for (int i = 0; i < size; i++) {
-        	GvmClusterPair<S,K> e = pairs[i];
-        	e.index = -1;
-            pairs[i] = e;
-        }
-        size = 0;
-    }
-
-    private void grow(int minCapacity) {
-        if (minCapacity < 0) throw new IllegalStateException("can't grow, maximum number of elements exceeded");
-        int oldCapacity = pairs.length;
-        int newCapacity = ((oldCapacity < 64)? ((oldCapacity + 1) * 2): ((oldCapacity / 2) * 3));
-        if (newCapacity < 0) newCapacity = Integer.MAX_VALUE;
-        if (newCapacity < minCapacity) newCapacity = minCapacity;
-        pairs = Arrays.copyOf(pairs, newCapacity);
-    }
-
-    private int indexOf(GvmClusterPair<S,K> pair) {
-    	return pair == null ? -1 : pair.index;
-    }
-
-    private GvmClusterPair<S,K> removeAt(int i) {
-        int s = --size;
-        if (s == i) { // removing last element
-        	pairs[i].index = -1;
-            pairs[i] = null;
-        } else {
-            GvmClusterPair<S,K> moved = pairs[s];
-            pairs[s] = null;
-            moved.index = -1;
-            heapifyDown(i, moved);
-            if (pairs[i] == moved) {
-                heapifyUp(i, moved);
-                if (pairs[i] != moved) return moved;
-            }
-        }
-        return null;
-    }
-
-    private void heapifyUp(int k, GvmClusterPair<S,K> pair) {
-        while (k > 0) {
-            int parent = (k - 1) >>> 1;
-            GvmClusterPair<S,K> e = pairs[parent];
-            if (pair.value >= e.value) break;
-            pairs[k] = e;
-            e.index = k;
-            k = parent;
-        }
-        pairs[k] = pair;
-        pair.index = k;
-    }
-
-    private void heapifyDown(int k, GvmClusterPair<S,K> pair) {
-        int half = size >>> 1;
-        while (k < half) {
-            int child = (k << 1) + 1;
-            GvmClusterPair<S,K> c = pairs[child];
-            int right = child + 1;
-            if (right < size && c.value > pairs[right].value) c = pairs[child = right];
-            if (pair.value <= c.value) break;
-            pairs[k] = c;
-            c.index = k;
-            k = child;
-        }
-        pairs[k] = pair;
-        pair.index = k;
-    }
+		positions[pair] = -1;
+		int s = --size;
+		if (s != i) {
+			int moved = heap[s];
+			heapifyDown(i, moved);
+			if (heap[i] == moved) heapifyUp(i, moved);
+		}
+		return true;
+	}
+
+	/**
+	 * Changes the value of a pair in the heap.
+	 * 
+	 * @param pair
+	 *            a pair index
+	 * @param value
+	 *            the new value of the pair
+	 */
+	
+	void reprioritize(int pair, double value) {
+		int i = positions[pair];
+		if (i == -1) throw new IllegalArgumentException("no such pair");
+		put(pair, value);
+		if (i > 0 && get(heap[(i - 1) >>> 1]) > get(pair)) {
+			heapifyUp(i, pair);
+		} else {
+			heapifyDown(i, pair);
+		}
+	}
 
+	/**
+	 * Scales the values of every pair; a positive scale does not change the
+	 * order of the heap.
+	 * 
+	 * @param s
+	 *            a positive scale factor
+	 */
+	
+	void scale(double s) {
+		for (int i = 0; i < size; i++) {
+			int pair = heap[i];
+			put(pair, get(pair) * s);
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	void clear() {
+		for (int i = 0; i < size; i++) {
+			positions[heap[i]] = -1;
+		}
+		size = 0;
+	}
+	
+	/**
+	 * Renumbers the pairs after clusters have been moved to lower indices,
+	 * preserving their relative order. The heap is rebuilt to contain every
+	 * pair of the retained clusters.
+	 * 
+	 * @param map
+	 *            the new index of each cluster, or -1 if it was removed
+	 * @param bound
+	 *            the number of cluster indices in the map
+	 * @param count
+	 *            the number of retained clusters
+	 */
+	
+	void compact(int[] map, int bound, int count) {
+		// new pair indices never exceed old ones, so values may be moved in place
+		for (int j = 1; j < bound; j++) {
+			int nj = map[j];
+			if (nj < 0) continue;
+			for (int i = 0; i < j; i++) {
+				int ni = map[i];
+				if (ni < 0) continue;
+				put(pair(ni, nj), get(pair(i, j)));
+			}
+		}
+		heapify(count);
+	}
+	
+	/**
+	 * Assigns a value to a pair without modifying the heap.
+	 * 
+	 * @param pair
+	 *            a pair index
+	 * @param value
+	 *            the value of the pair
+	 * @see #heapify(int)
+	 */
+	
+	void set(int pair, double value) {
+		put(pair, value);
+	}
+	
+	/**
+	 * Replaces the contents of the heap with every pair of the specified
+	 * number of clusters, using their assigned values. This operates in time
+	 * proportional to the number of pairs.
+	 * 
+	 * @param count
+	 *            the number of clusters
+	 */
+	
+	void heapify(int count) {
+		clear();
+		size = count * (count - 1) / 2;
+		for (int i = 0; i < size; i++) {
+			heap[i] = i;
+			positions[i] = i;
+		}
+		for (int i = (size >>> 1) - 1; i >= 0; i--) {
+			heapifyDown(i, heap[i]);
+		}
+	}
+
+	/**
+	 * Rounds a value as it would be when assigned to a pair.
+	 * 
+	 * @param value
+	 *            a pair value
+	 * @return the value that would be stored
+	 */
+	
+	abstract double round(double value);
+	
+	// methods for subclasses
+	
+	abstract double get(int pair);
+	
+	abstract void put(int pair, double value);
+	
+	// private utility methods
+	
+	private void heapifyUp(int k, int pair) {
+		double value = get(pair);
+		while (k > 0) {
+			int parent = (k - 1) >>> 1;
+			int e = heap[parent];
+			if (value >= get(e)) break;
+			heap[k] = e;
+			positions[e] = k;
+			k = parent;
+		}
+		heap[k] = pair;
+		positions[pair] = k;
+	}
+
+	private void heapifyDown(int k, int pair) {
+		double value = get(pair);
+		int half = size >>> 1;
+		while (k < half) {
+			int child = (k << 1) + 1;
+			int c = heap[child];
+			int right = child + 1;
+			if (right < size && get(c) > get(heap[right])) c = heap[child = right];
+			if (value <= get(c)) break;
+			heap[k] = c;
+			positions[c] = k;
+			k = child;
+		}
+		heap[k] = pair;
+		positions[pair] = k;
+	}
+
+	// inner classes
+	
+	/**
+	 * Pairs with values stored in double precision.
+	 */
+	
+	static final class Doubles extends GvmClusterPairs {
+		
+		/**
+		 * The amount the global variance would increase if each pair was merged.
+		 */
+		
+		private final double[] values;
+		
+		Doubles(int capacity) {
+			super(capacity);
+			values = new double[capacity * (capacity - 1) / 2];
+		}
+		
+		@Override
+		double round(double value) {
+			return value;
+		}
+		
+		@Override
+		double get(int pair) {
+			return values[pair];
+		}
+		
+		@Override
+		void put(int pair, double value) {
+			values[pair] = value;
+		}
+		
+	}
+	
+	/**
+	 * Pairs with values stored in single precision. Pairs whose values differ
+	 * by less than single precision may be ordered arbitrarily, and values
+	 * beyond its range become infinite.
+	 */
+	
+	static final class Floats extends GvmClusterPairs {
+		
+		/**
+		 * The amount the global variance would increase if each pair was
+		 * merged, rounded to single precision.
+		 */
+		
+		private final float[] values;
+		
+		Floats(int capacity) {
+			super(capacity);
+			values = new float[capacity * (capacity - 1) / 2];
+		}
+		
+		@Override
+		double round(double value) {
+			return (float) value;
+		}
+		
+		@Override
+		double get(int pair) {
+			return values[pair];
+		}
+		
+		@Override
+		void put(int pair, double value) {
+			values[pair] = (float) value;
+		}
+		
+	}
+	
 }
@@ -20,6 +20,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import com.tomgibara.cluster.gvm.space.GvmVectorSpace;
+import com.tomgibara.crinch.bits.BitReader;
+import com.tomgibara.crinch.bits.BitWriter;
+import com.tomgibara.crinch.coding.CodedReader;
+import com.tomgibara.crinch.coding.CodedWriter;
+
 /**
  * Maintains a collection of clusters which are adjusted as new elements are
  * added. The keyer assigned to this object should not be modified while there
@@ -47,6 +53,40 @@ public class GvmClusters<S extends GvmSpace, K> {
 		return var >= 0.0 ? var : 0.0;
 	}
 	
+	/**
+	 * The accumulated decay beyond which the stored moments are rescaled.
+	 */
+	
+	private static final double RESCALE_THRESHOLD = 1e64;
+	
+	/**
+	 * The accumulated decay beyond which the stored moments are rescaled when
+	 * pair values are held in single precision; this leaves inflated values
+	 * about 1e22 before they exceed its range.
+	 */
+	
+	private static final double SINGLE_RESCALE_THRESHOLD = 1e16;
+	
+	/**
+	 * The fraction of the greatest cluster mass below which a decayed
+	 * cluster is considered massless.
+	 */
+	
+	private static final double NEGLIGIBLE_MASS = 1e-12;
+	
+	/**
+	 * The growth in the accumulated decay after which clusters are checked
+	 * for negligible masses.
+	 */
+	
+	private static final double PURGE_GROWTH = 16.0;
+	
+	/**
+	 * Identifies the format of checkpoints.
+	 */
+	
+	private static final int CHECKPOINT_VERSION = 1;
+	
 	// fields
 	
 	/**
@@ -77,13 +117,91 @@ public class GvmClusters<S extends GvmSpace, K> {
 	 * All possible cluster pairs.
 	 */
 	
-	private final GvmClusterPairs<S,K> pairs;
+	private final GvmClusterPairs pairs;
+	
+	/**
+	 * The accumulated decay beyond which the stored moments are rescaled.
+	 */
+	
+	private final double rescaleThreshold;
+	
+	/**
+	 * Flat copies of the cluster moments, used to accelerate additions in
+	 * vector spaces, null for other spaces.
+	 */
+	
+	private final GvmVectorStore store;
+	
+	/**
+	 * The cost of adding the current point to each cluster, null if there is
+	 * no store.
+	 */
+	
+	private final double[] costs;
+	
+	/**
+	 * During a batch of additions, the cluster whose pairs have not been
+	 * reprioritized in the heap, or -1 if the heap is up-to-date.
+	 */
+	
+	private int stale = -1;
+	
+	/**
+	 * The current values of the pairs formed with the stale cluster.
+	 */
+	
+	private final double[] row;
+	
+	/**
+	 * The least value in the row.
+	 */
+	
+	private double rowMin;
+	
+	/**
+	 * The cluster paired with the stale cluster at the least value.
+	 */
+	
+	private int rowPartner;
 	
 	/**
 	 * The number of points that have been added.
 	 */
 	
 	private int additions = 0;
+	
+	/**
+	 * The factor by which masses are scaled after every decay interval.
+	 */
+	
+	private double decayFactor = 1.0;
+	
+	/**
+	 * The number of additions between decays, zero if there is no automatic
+	 * decay.
+	 */
+	
+	private int decayInterval = 0;
+	
+	/**
+	 * The number of additions since the last automatic decay.
+	 */
+	
+	private int sinceDecay = 0;
+	
+	/**
+	 * The reciprocal of the decay applied since the moments were last scaled.
+	 * Rather than decaying every cluster, new masses are inflated by this
+	 * amount; stored moments must be divided by it to obtain their true value.
+	 */
+	
+	double inflation = 1.0;
+	
+	/**
+	 * The inflation at which clusters were last checked for negligible masses.
+	 */
+	
+	private double purged = 1.0;
 
 	/**
 	 * The current number of clusters.
@@ -97,14 +215,33 @@ public class GvmClusters<S extends GvmSpace, K> {
 	
 	private int bound = 0;
 	
-	@SuppressWarnings("unchecked")
 	public GvmClusters(S space, int capacity) {
+		this(space, capacity, false);
+	}
+	
+	@SuppressWarnings("unchecked")
+	GvmClusters(S space, int capacity, boolean singlePrecision) {
 		if (space == null) throw new IllegalArgumentException("null space");
 		if (capacity < 0) throw new IllegalArgumentException("negative capacity");
 		this.space = space;
 		this.capacity = capacity;
 		this.clusters = new GvmCluster[capacity];
-		pairs = new GvmClusterPairs<S,K>(capacity * (capacity-1) / 2);
+		if (singlePrecision) {
+			pairs = new GvmClusterPairs.Floats(capacity);
+			rescaleThreshold = SINGLE_RESCALE_THRESHOLD;
+		} else {
+			pairs = new GvmClusterPairs.Doubles(capacity);
+			rescaleThreshold = RESCALE_THRESHOLD;
+		}
+		// subclasses may redefine the variance
+		if (space.getClass() == GvmVectorSpace.class) {
+			store = new GvmVectorStore(capacity, ((GvmVectorSpace) space).getDimensions());
+			costs = new double[capacity];
+		} else {
+			store = null;
+			costs = null;
+		}
+		row = new double[capacity];
 	}
 	
 	// accessors
@@ -148,6 +285,48 @@ public class GvmClusters<S extends GvmSpace, K> {
 		return space;
 	}
 	
+	/**
+	 * Configures the automatic decay of clusters. After every interval of
+	 * additions, the mass and moments of every cluster are scaled by the
+	 * supplied factor so that older points contribute progressively less to
+	 * the clustering. A factor of one, or an interval of zero, disables
+	 * automatic decay.
+	 * 
+	 * @param factor
+	 *            the factor by which masses are scaled, in the range (0,1]
+	 * @param interval
+	 *            the number of additions between decays, not negative
+	 * @see #decay(double)
+	 */
+	
+	public void setDecay(double factor, int interval) {
+		checkDecayFactor(factor);
+		if (interval < 0) throw new IllegalArgumentException("negative interval");
+		decayFactor = factor;
+		decayInterval = factor == 1.0 ? 0 : interval;
+		sinceDecay = 0;
+	}
+	
+	/**
+	 * The factor applied by automatic decay.
+	 * 
+	 * @return the decay factor, one if decay is disabled
+	 */
+	
+	public double getDecayFactor() {
+		return decayInterval == 0 ? 1.0 : decayFactor;
+	}
+	
+	/**
+	 * The number of additions between automatic decays.
+	 * 
+	 * @return the decay interval, zero if decay is disabled
+	 */
+	
+	public int getDecayInterval() {
+		return decayInterval;
+	}
+	
 	// public methods
 	
 	/**
@@ -157,11 +336,42 @@ public class GvmClusters<S extends GvmSpace, K> {
 	public void clear() {
 		Arrays.fill(clusters, 0, bound, null);
 		pairs.clear();
+		if (store != null) store.clear();
 		additions = 0;
+		sinceDecay = 0;
+		inflation = 1.0;
+		purged = 1.0;
 		count = 0;
 		bound = 0;
 	}
 
+	/**
+	 * Scales the mass and moments of every cluster by the supplied factor.
+	 * This may be used to decay clusters in proportion to elapsed time, for
+	 * example by supplying <code>Math.pow(f, t)</code> where f is the decay
+	 * per unit time and t is the time elapsed since the last call.
+	 * 
+	 * The decay is applied lazily: no cluster is modified by this method
+	 * except when the accumulated decay becomes so great that the stored
+	 * moments need to be rescaled. Clusters whose mass has become negligible
+	 * are discarded as the decay accumulates so that their capacity can be
+	 * used for new points.
+	 * 
+	 * @param factor
+	 *            the factor by which masses are scaled, in the range (0,1]
+	 */
+	
+	public void decay(double factor) {
+		checkDecayFactor(factor);
+		inflation /= factor;
+		if (inflation > rescaleThreshold) {
+			rescale();
+		} else if (inflation > purged * PURGE_GROWTH) {
+			refresh();
+			purge(false);
+		}
+	}
+
 	/**
 	 * Adds a point to be clustered.
 	 * 
@@ -174,55 +384,169 @@ public class GvmClusters<S extends GvmSpace, K> {
 	 */
 
 	public void add(double m, Object pt, K key) {
-		if (m == 0.0) return; //nothing to do
+		add(m, pt, key, false);
+	}
+
+	/**
+	 * Adds a batch of points to be clustered. The resulting clusters are the
+	 * same as those obtained by adding each point in turn, but less work is
+	 * needed to maintain the cluster pairs when consecutive points are added
+	 * to the same cluster, as is common for spatially coherent data.
+	 * 
+	 * This method may only be used with vector spaces.
+	 * 
+	 * @param ms
+	 *            the masses of the points
+	 * @param coords
+	 *            the coordinates of the points, each point occupying as many
+	 *            consecutive elements as the space has dimensions
+	 * @param keys
+	 *            keys assigned to the points, null if no point has a key
+	 * @param offset
+	 *            the index of the first point to add
+	 * @param length
+	 *            the number of points to add
+	 */
+	
+	public void addAll(double[] ms, double[] coords, K[] keys, int offset, int length) {
+		if (!(space instanceof GvmVectorSpace)) throw new UnsupportedOperationException("not a vector space");
+		if (ms == null) throw new IllegalArgumentException("null ms");
+		if (coords == null) throw new IllegalArgumentException("null coords");
+		if (offset < 0) throw new IllegalArgumentException("negative offset");
+		if (length < 0) throw new IllegalArgumentException("negative length");
+		if (offset + length > ms.length) throw new IllegalArgumentException("length exceeds ms");
+		int dimensions = ((GvmVectorSpace) space).getDimensions();
+		if ((long) (offset + length) * dimensions > coords.length) throw new IllegalArgumentException("length exceeds coords");
+		if (keys != null && offset + length > keys.length) throw new IllegalArgumentException("length exceeds keys");
+		//clusters copy the coordinates, so a single point can be reused
+		double[] pt = new double[dimensions];
+		try {
+			for (int i = offset; i < offset + length; i++) {
+				System.arraycopy(coords, i * dimensions, pt, 0, dimensions);
+				add(ms[i], pt, keys == null ? null : keys[i], true);
+			}
+		} finally {
+			refresh();
+		}
+	}
+
+	/**
+	 * Adds a batch of points to be clustered.
+	 * 
+	 * @param ms
+	 *            the masses of the points
+	 * @param coords
+	 *            the coordinates of the points, each point occupying as many
+	 *            consecutive elements as the space has dimensions
+	 * @param keys
+	 *            keys assigned to the points, null if no point has a key
+	 * @see #addAll(double[], double[], Object[], int, int)
+	 */
+	
+	public void addAll(double[] ms, double[] coords, K[] keys) {
+		if (ms == null) throw new IllegalArgumentException("null ms");
+		addAll(ms, coords, keys, 0, ms.length);
+	}
+
+	/**
+	 * Adds a cluster that has already been aggregated, possibly by a different
+	 * instance of this class. The cluster is treated as a single element
+	 * which may be combined with an existing cluster, in which case the keys
+	 * of the two clusters are combined using
+	 * {@link GvmKeyer#mergeKeys(GvmCluster, GvmCluster)}. Neither the supplied
+	 * cluster nor its key is modified: the key is first copied with
+	 * {@link GvmKeyer#copyKey(Object)}. Any automatic decay advances by the
+	 * number of points in the cluster.
+	 * 
+	 * @param cluster
+	 *            a cluster over points of this object's space, not null
+	 */
+	
+	public void add(GvmCluster<S,K> cluster) {
+		if (cluster == null) throw new IllegalArgumentException("null cluster");
+		if (cluster.clusters == this) throw new IllegalArgumentException("cluster already present");
+		if (cluster.m0 == 0.0) return; //nothing to do
+		//keyers only ever see a detached copy, so the supplied cluster cannot be modified
+		GvmCluster<S,K> copy = new GvmCluster<S,K>(this);
+		copy.set(cluster);
+		double ratio = inflation / cluster.clusters.inflation;
+		//bring the cluster into line with the decay of these clusters
+		if (ratio != 1.0) copy.scale(ratio);
+		copy.key = cluster.key == null ? null : keyer.copyKey(cluster.key);
+		cluster = copy;
 		if (count < capacity) { //shortcut
-			//TODO should prefer add if var comes to zero
-			GvmCluster<S,K> cluster = new GvmCluster<S,K>(this);
-			clusters[additions] = cluster;
-			cluster.set(m, pt);
+			GvmCluster<S,K> c = new GvmCluster<S,K>(this);
+			clusters[count] = c;
+			c.index = count;
+			c.set(cluster);
+			store(c);
 			addPairs();
-			cluster.key = keyer.addKey(cluster, key);
+			c.key = keyer.addKey(c, cluster.key);
 			count++;
 			bound = count;
 		} else {
 			//identify cheapest merge
-			GvmClusterPair<S,K> mergePair = pairs.peek();
-			double mergeT = mergePair == null ? Double.MAX_VALUE : mergePair.value;
-			//find cheapest addition
+			int mergePair = pairs.peek();
+			double mergeT = mergePair == -1 ? Double.MAX_VALUE : pairs.value(mergePair);
+			//find cheapest combination
 			GvmCluster<S,K> additionC = null;
 			double additionT = Double.MAX_VALUE;
-			for (int i = 0; i < clusters.length; i++) {
-				GvmCluster<S,K> cluster = clusters[i];
-				double t = cluster.test(m, pt);
-				if (t < additionT) {
-					additionC = cluster;
-					additionT = t;
+			if (store == null) {
+				for (int i = 0; i < count; i++) {
+					GvmCluster<S,K> c = clusters[i];
+					double t = c.test(cluster) - c.var - cluster.var;
+					if (t < additionT) {
+						additionC = c;
+						additionT = t;
+					}
+				}
+			} else {
+				store.test(count, cluster, costs);
+				for (int i = 0; i < count; i++) {
+					double t = costs[i];
+					if (t < additionT) {
+						additionC = clusters[i];
+						additionT = t;
+					}
 				}
 			}
 			if (additionT <= mergeT) {
-				//chose addition
-				additionC.add(m, pt);
+				//chose combination
+				additionC.key = additionC.m0 < cluster.m0 ?
+						keyer.mergeKeys(cluster, additionC) :
+						keyer.mergeKeys(additionC, cluster);
+				additionC.add(cluster);
+				store(additionC);
 				updatePairs(additionC);
-				additionC.key = keyer.addKey(additionC, key);
 			} else {
 				//choose merge
-				GvmCluster<S,K> c1 = mergePair.c1;
-				GvmCluster<S,K> c2 = mergePair.c2;
-				if (c1.m0 < c2.m0) {
-					c1 = c2;
-					c2 = mergePair.c1;
-				}
-				c1.key = keyer.mergeKeys(c1, c2);
-				c1.add(c2);
-				updatePairs(c1);
-				c2.set(m, pt);
+				GvmCluster<S,K> c2 = merge(mergePair);
+				c2.set(cluster);
+				store(c2);
 				updatePairs(c2);
-				//TODO should this pass through a method on keyer?
 				c2.key = null;
-				c2.key = keyer.addKey(c2, key);
+				c2.key = keyer.addKey(c2, cluster.key);
 			}
 		}
-		additions++;
+		additions += cluster.count;
+		advance(cluster.count);
+	}
+
+	/**
+	 * Adds all of the clusters of another object, as per
+	 * {@link #add(GvmCluster)}. This can be used to combine the results of
+	 * clustering disjoint sets of points independently.
+	 * 
+	 * @param clusters
+	 *            clusters over points of the same space, not null
+	 */
+	
+	public void addAll(GvmClusters<S,K> clusters) {
+		if (clusters == null) throw new IllegalArgumentException("null clusters");
+		if (clusters == this) throw new IllegalArgumentException("cannot add clusters to themselves");
+		for (int i = 0; i < clusters.count; i++) {
+			add(clusters.clusters[i]);
+		}
 	}
 
 	/**
@@ -261,12 +585,13 @@ public class GvmClusters<S extends GvmSpace, K> {
 					}
 				}
 			} else {
-				GvmClusterPair<S,K> mergePair = pairs.peek();
-				GvmCluster<S,K> c1 = mergePair.c1;
-				GvmCluster<S,K> c2 = mergePair.c2;
+				int mergePair = pairs.peek();
+				GvmCluster<S,K> c1 = clusters[GvmClusterPairs.first(mergePair)];
+				GvmCluster<S,K> c2 = clusters[GvmClusterPairs.second(mergePair)];
 				if (c1.m0 < c2.m0) {
+					GvmCluster<S,K> c = c1;
 					c1 = c2;
-					c2 = mergePair.c1;
+					c2 = c;
 				}
 				if (maxVar >= 0.0) {
 					double diff = c1.test(c2) - c1.var - c2.var;
@@ -275,21 +600,305 @@ public class GvmClusters<S extends GvmSpace, K> {
 				}
 				c1.key = keyer.mergeKeys(c1, c2);
 				c1.add(c2);
+				store(c1);
 				updatePairs(c1);
 				removePairs(c2);
 				c2.removed = true;
 			}
 			count--;
 		}
-		//iterate over clusters and remove dead clusters
+		compact();
+	}
+	
+	/**
+	 * Obtains the clusters for the points added. This method may be called
+	 * at any time, including between calls to add().
+	 * 
+	 * @return the result of clustering the points thus far added
+	 */
+	
+	public List<GvmResult<K>> results() {
+		ArrayList<GvmResult<K>> list = new ArrayList<GvmResult<K>>(count);
+		for (int i = 0; i < count; i++) {
+			GvmCluster<S,K> cluster = clusters[i];
+			//TODO exclude massless clusters?
+			list.add(new GvmResult<K>(cluster, 1.0 / inflation));
+		}
+		return list;
+	}
+	
+	/**
+	 * Writes the complete state of the clusters so that clustering can be
+	 * resumed by a call to {@link #restore(CodedReader, GvmKeyCodec)}, possibly
+	 * on a different instance. The keyer is not recorded and the space must
+	 * support writing points. Cluster pairs are not written since they can be
+	 * recomputed from the clusters.
+	 * 
+	 * @param writer
+	 *            the writer to which the clusters are written
+	 * @param codec
+	 *            encodes the non-null keys of clusters, may be null if there
+	 *            are no keys
+	 */
+	
+	public void checkpoint(CodedWriter writer, GvmKeyCodec<K> codec) {
+		if (writer == null) throw new IllegalArgumentException("null writer");
+		BitWriter bits = writer.getWriter();
+		writer.writePositiveInt(CHECKPOINT_VERSION);
+		writer.writePositiveInt(count);
+		writer.writePositiveInt(additions);
+		writer.writeDouble(decayFactor);
+		writer.writePositiveInt(decayInterval);
+		writer.writePositiveInt(sinceDecay);
+		writer.writeDouble(inflation);
+		for (int i = 0; i < count; i++) {
+			GvmCluster<S,K> cluster = clusters[i];
+			writer.writePositiveInt(cluster.count);
+			writer.writeDouble(cluster.m0);
+			writer.writeDouble(cluster.var);
+			space.write(writer, cluster.m1);
+			space.write(writer, cluster.m2);
+			K key = cluster.key;
+			bits.writeBoolean(key != null);
+			if (key != null) {
+				if (codec == null) throw new IllegalArgumentException("null codec");
+				codec.encodeKey(writer, key);
+			}
+		}
+	}
+	
+	/**
+	 * Replaces the state of these clusters with that recorded by
+	 * {@link #checkpoint(CodedWriter, GvmKeyCodec)}. The keyer is retained.
+	 * The pairs of clusters are recomputed and arranged into a heap in time
+	 * proportional to their number.
+	 * This object is only modified once the entire checkpoint has been read,
+	 * so that it remains unchanged if the checkpoint cannot be decoded.
+	 * 
+	 * @param reader
+	 *            the reader from which the clusters are read
+	 * @param codec
+	 *            decodes the non-null keys of clusters, may be null if there
+	 *            are no keys
+	 * @throws IllegalArgumentException
+	 *             if the checkpoint has more clusters than the capacity of
+	 *             this object, or records invalid decay parameters
+	 */
+	
+	public void restore(CodedReader reader, GvmKeyCodec<K> codec) {
+		if (reader == null) throw new IllegalArgumentException("null reader");
+		BitReader bits = reader.getReader();
+		int version = reader.readPositiveInt();
+		if (version != CHECKPOINT_VERSION) throw new IllegalArgumentException("unsupported checkpoint version: " + version);
+		int newCount = reader.readPositiveInt();
+		if (newCount > capacity) throw new IllegalArgumentException("checkpoint exceeds capacity");
+		int newAdditions = reader.readPositiveInt();
+		double newDecayFactor = reader.readDouble();
+		checkDecayFactor(newDecayFactor);
+		int newDecayInterval = reader.readPositiveInt();
+		int newSinceDecay = reader.readPositiveInt();
+		double newInflation = reader.readDouble();
+		if (!(newInflation >= 1.0)) throw new IllegalArgumentException("invalid inflation");
+		//clusters are decoded before any state is replaced
+		List<GvmCluster<S,K>> decoded = new ArrayList<GvmCluster<S,K>>(newCount);
+		for (int i = 0; i < newCount; i++) {
+			GvmCluster<S,K> cluster = new GvmCluster<S,K>(this);
+			cluster.index = i;
+			cluster.count = reader.readPositiveInt();
+			cluster.m0 = reader.readDouble();
+			cluster.var = reader.readDouble();
+			space.read(reader, cluster.m1);
+			space.read(reader, cluster.m2);
+			if (bits.readBoolean()) {
+				if (codec == null) throw new IllegalArgumentException("null codec");
+				cluster.key = codec.decodeKey(reader);
+			}
+			decoded.add(cluster);
+		}
+		clear();
+		additions = newAdditions;
+		decayFactor = newDecayFactor;
+		decayInterval = newDecayInterval;
+		sinceDecay = newSinceDecay;
+		inflation = newInflation;
+		purged = newInflation;
+		for (int i = 0; i < newCount; i++) {
+			GvmCluster<S,K> cluster = decoded.get(i);
+			clusters[i] = cluster;
+			store(cluster);
+		}
+		//recompute the pair values and heapify them
+		for (int j = 1; j < newCount; j++) {
+			GvmCluster<S,K> cj = clusters[j];
+			if (store != null) store.test(j, cj, costs);
+			for (int i = 0; i < j; i++) {
+				pairs.set(GvmClusterPairs.pair(i, j), store == null ? value(clusters[i], cj) : costs[i]);
+			}
+		}
+		pairs.heapify(newCount);
+		count = newCount;
+		bound = newCount;
+		//the checkpoint may have been written with a higher threshold
+		if (inflation > rescaleThreshold) rescale();
+	}
+	
+	// private utility methods
+	
+	private static void checkDecayFactor(double factor) {
+		if (!(factor > 0.0 && factor <= 1.0)) throw new IllegalArgumentException("invalid decay factor");
+	}
+	
+	//adds a point, deferring pair updates for the cluster it joins if batched
+	private void add(double m, Object pt, K key, boolean batched) {
+		if (m == 0.0) return; //nothing to do
+		m *= inflation;
+		if (count < capacity) { //shortcut
+			//TODO should prefer add if var comes to zero
+			refresh();
+			GvmCluster<S,K> cluster = new GvmCluster<S,K>(this);
+			clusters[count] = cluster;
+			cluster.index = count;
+			cluster.set(m, pt);
+			store(cluster);
+			addPairs();
+			cluster.key = keyer.addKey(cluster, key);
+			count++;
+			bound = count;
+		} else {
+			//identify cheapest merge
+			int mergePair = pairs.peek();
+			//the heap can only be trusted if its least pair is current
+			if (stale != -1 && mergePair != -1 && (GvmClusterPairs.first(mergePair) == stale || GvmClusterPairs.second(mergePair) == stale)) {
+				refresh();
+				mergePair = pairs.peek();
+			}
+			double mergeT = mergePair == -1 ? Double.MAX_VALUE : pairs.value(mergePair);
+			if (stale != -1 && rowMin < mergeT) {
+				mergeT = rowMin;
+				mergePair = GvmClusterPairs.pair(stale, rowPartner);
+			}
+			//find cheapest addition
+			GvmCluster<S,K> additionC = null;
+			double additionT = Double.MAX_VALUE;
+			if (store == null) {
+				for (int i = 0; i < clusters.length; i++) {
+					GvmCluster<S,K> cluster = clusters[i];
+					double t = cluster.test(m, pt);
+					if (t < additionT) {
+						additionC = cluster;
+						additionT = t;
+					}
+				}
+			} else if (store.isPrunable() && m > 0.0) {
+				//only clusters that can beat the merge are considered
+				int i = store.nearest(count, m, (double[]) pt, mergeT);
+				if (i >= 0) {
+					additionC = clusters[i];
+					additionT = mergeT;
+				}
+			} else {
+				store.test(count, m, (double[]) pt, costs);
+				for (int i = 0; i < count; i++) {
+					double t = costs[i];
+					if (t < additionT) {
+						additionC = clusters[i];
+						additionT = t;
+					}
+				}
+			}
+			if (additionC != null && additionT <= mergeT) {
+				//chose addition
+				additionC.add(m, pt);
+				store(additionC);
+				if (batched) {
+					deferPairs(additionC);
+				} else {
+					updatePairs(additionC);
+				}
+				additionC.key = keyer.addKey(additionC, key);
+			} else {
+				//choose merge
+				refresh();
+				GvmCluster<S,K> c2 = merge(mergePair);
+				c2.set(m, pt);
+				store(c2);
+				updatePairs(c2);
+				//TODO should this pass through a method on keyer?
+				c2.key = null;
+				c2.key = keyer.addKey(c2, key);
+			}
+		}
+		additions++;
+		advance(1);
+	}
+	
+	//applies any automatic decay that is due after the specified number of points have been added
+	private void advance(int points) {
+		if (decayInterval == 0) return;
+		sinceDecay += points;
+		while (sinceDecay >= decayInterval) {
+			sinceDecay -= decayInterval;
+			decay(decayFactor);
+		}
+	}
+
+	//applies the accumulated decay to every cluster and discards massless clusters
+	private void rescale() {
+		refresh();
+		double scale = 1.0 / inflation;
+		inflation = 1.0;
+		for (int i = 0; i < bound; i++) {
+			clusters[i].scale(scale);
+		}
+		//variance increases are proportional to mass, so the heap order is unchanged
+		pairs.scale(scale);
+		purge(true);
+	}
+
+	//discards clusters with negligible masses, restoring the store if they were rescaled
+	private void purge(boolean rescaled) {
+		purged = inflation;
+		double maxMass = 0.0;
+		for (int i = 0; i < bound; i++) {
+			GvmCluster<S,K> cluster = clusters[i];
+			if (cluster.m0 > maxMass) maxMass = cluster.m0;
+		}
+		int previous = count;
+		for (int i = 0; i < bound; i++) {
+			GvmCluster<S,K> cluster = clusters[i];
+			if (cluster.removed || cluster.m0 >= maxMass * NEGLIGIBLE_MASS) continue;
+			removePairs(cluster);
+			cluster.removed = true;
+			count--;
+		}
+		if (store != null && (rescaled || count != previous)) {
+			//masses may fall below those previously stored, or the least may have been removed
+			store.clear();
+			for (int i = 0; i < bound; i++) {
+				GvmCluster<S,K> cluster = clusters[i];
+				if (!cluster.removed) store(cluster);
+			}
+		}
+		if (count != bound) compact();
+	}
+
+	//iterates over clusters and removes dead clusters
+	private void compact() {
+		int[] map = new int[bound];
 		{
 			int j = 0;
 			for (int i = 0; i < bound;) {
 				boolean lose = clusters[i].removed;
 				if (lose) {
+					map[i] = -1;
 					i++;
 				} else {
-					if (i != j) clusters[j] = clusters[i];
+					map[i] = j;
+					if (i != j) {
+						clusters[j] = clusters[i];
+						clusters[j].index = j;
+						if (store != null) store.move(i, j);
+					}
 					i++;
 					j++;
 				}
@@ -298,94 +907,110 @@ public class GvmClusters<S extends GvmSpace, K> {
 				clusters[j] = null;
 			}
 		}
-		//iterate over cluster pairs and remove dead pairs
-		for (int i = 0; i < count; i++) {
-			GvmCluster<S,K> cluster = clusters[i];
-			GvmClusterPair<S,K>[] pairs = cluster.pairs;
-			int k = 0;
-			for (int j = 0; j < bound-1;) {
-				GvmClusterPair<S,K> pair = pairs[j];
-				boolean lose = pair.c1.removed || pair.c2.removed;
-				if (lose) {
-					j++;
-				} else {
-					if (j != k) pairs[k] = pairs[j];
-					k++;
-					j++;
-				}
-			}
-			for (; k < bound; k++) {
-				pairs[k] = null;
-			}
-		}
+		//renumber the pairs of the remaining clusters
+		if (count != bound) pairs.compact(map, bound, count);
 		bound = count;
 	}
 	
-	/**
-	 * Obtains the clusters for the points added. This method may be called
-	 * at any time, including between calls to add().
-	 * 
-	 * @return the result of clustering the points thus far added
-	 */
-	
-	public List<GvmResult<K>> results() {
-		ArrayList<GvmResult<K>> list = new ArrayList<GvmResult<K>>(count);
-		for (int i = 0; i < count; i++) {
-			GvmCluster<S,K> cluster = clusters[i];
-			//TODO exclude massless clusters?
-			list.add(new GvmResult<K>(cluster));
+	//merges the pair into its more massive cluster and returns the other
+	private GvmCluster<S,K> merge(int pair) {
+		GvmCluster<S,K> c1 = clusters[GvmClusterPairs.first(pair)];
+		GvmCluster<S,K> c2 = clusters[GvmClusterPairs.second(pair)];
+		if (c1.m0 < c2.m0) {
+			GvmCluster<S,K> c = c1;
+			c1 = c2;
+			c2 = c;
 		}
-		return list;
+		c1.key = keyer.mergeKeys(c1, c2);
+		c1.add(c2);
+		store(c1);
+		updatePairs(c1);
+		return c2;
 	}
 	
-	// private utility methods
+	//records the changed moments of a cluster
+	private void store(GvmCluster<S,K> cluster) {
+		if (store != null) store.set(cluster.index, cluster);
+	}
+	
+	//the amount the global variance would increase if the clusters were merged
+	private double value(GvmCluster<S,K> c1, GvmCluster<S,K> c2) {
+		return c1.test(c2) - c1.var - c2.var;
+	}
 	
 	//assumes that count not yet incremented
 	//assumes last cluster is the one to add pairs for
-	//assumes pairs are contiguous
+	//assumes clusters are contiguous
 	private void addPairs() {
 		GvmCluster<S,K> cj = clusters[count];
-		int c = count - 1; //index at which new pairs registered for existing clusters
+		if (store != null) store.test(count, cj, costs);
 		for (int i = 0; i < count; i++) {
-			GvmCluster<S,K> ci = clusters[i];
-			GvmClusterPair<S,K> pair = new GvmClusterPair<S,K>(ci, cj);
-			ci.pairs[c] = pair;
-			cj.pairs[i] = pair;
-			pairs.add(pair);
+			double value = store == null ? value(clusters[i], cj) : costs[i];
+			pairs.add(GvmClusterPairs.pair(i, count), value);
 		}
-		
 	}
 	
-	//does not assume pairs are contiguous
+	//does not assume clusters are contiguous
 	private void updatePairs(GvmCluster<S,K> cluster) {
-		GvmClusterPair<S,K>[] pairs = cluster.pairs;
+		int index = cluster.index;
+		if (store != null) store.test(bound, cluster, costs);
 		//accelerated path
-		if (count == bound) {
-			int limit = count - 1;
-			for (int i = 0; i < limit; i++) {
-				this.pairs.reprioritize(pairs[i]);
-			}
-		} else {
-			int limit = bound - 1;
-			for (int i = 0; i < limit; i++) {
-				GvmClusterPair<S,K> pair = pairs[i];
-				if (pair.c1.removed || pair.c2.removed) continue;
-				this.pairs.reprioritize(pair);
+		boolean contiguous = count == bound;
+		for (int i = 0; i < bound; i++) {
+			if (i == index) continue;
+			GvmCluster<S,K> c = clusters[i];
+			if (!contiguous && c.removed) continue;
+			double value = store == null ? value(c, cluster) : costs[i];
+			pairs.reprioritize(GvmClusterPairs.pair(i, index), value);
+		}
+	}
+
+	//records the values of the cluster's pairs without updating the heap
+	//the values of any previously stale cluster are first applied to the heap
+	private void deferPairs(GvmCluster<S,K> cluster) {
+		int index = cluster.index;
+		if (stale != index) refresh();
+		if (store != null) store.test(bound, cluster, row);
+		boolean contiguous = count == bound;
+		double min = Double.MAX_VALUE;
+		int partner = -1;
+		for (int i = 0; i < bound; i++) {
+			if (i == index) continue;
+			if (!contiguous && clusters[i].removed) continue;
+			//values are rounded as they would be in the heap
+			double value = pairs.round(store == null ? value(clusters[i], cluster) : row[i]);
+			row[i] = value;
+			if (value < min) {
+				min = value;
+				partner = i;
 			}
 		}
+		stale = index;
+		rowMin = min;
+		rowPartner = partner;
 	}
 
-	//does not assume pairs are contiguous
-	//leaves pairs in cluster pair lists
-	//these are tidied when everything is made contiguous again
+	//applies the values recorded for the stale cluster, if any, to the heap
+	private void refresh() {
+		if (stale == -1) return;
+		int index = stale;
+		stale = -1;
+		boolean contiguous = count == bound;
+		for (int i = 0; i < bound; i++) {
+			if (i == index) continue;
+			if (!contiguous && clusters[i].removed) continue;
+			pairs.reprioritize(GvmClusterPairs.pair(i, index), row[i]);
+		}
+	}
+
+	//does not assume clusters are contiguous
+	//pairs are renumbered when everything is made contiguous again
 	private void removePairs(GvmCluster<S,K> cluster) {
-		GvmClusterPair<S,K>[] pairs = cluster.pairs;
-		for (int i = 0; i < bound-1; i++) {
-			GvmClusterPair<S,K> pair = pairs[i];
-			if (pair.c1.removed || pair.c2.removed) continue;
-			this.pairs.remove(pair);
+		int index = cluster.index;
+		for (int i = 0; i < bound; i++) {
+			if (i == index) continue;
+			pairs.remove(GvmClusterPairs.pair(i, index));
 		}
-		
 	}
 	
 }
@@ -41,6 +41,11 @@ public class GvmDefaultKeyer<K> implements GvmKeyer<K> {
 		return k == null ? key : k;
 	}
 	
+	@Override
+	public K copyKey(K key) {
+		return key;
+	}
+	
 	
 	
 }
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2007 Tom Gibara
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.tomgibara.cluster.gvm;
+
+/**
+ * Clusters that hold the merge costs of their cluster pairs in single
+ * precision. The number of pairs grows quadratically with the capacity, so
+ * this reduces the memory required for large capacities by about a quarter:
+ * each pair occupies 12 bytes rather than 16, since its heap bookkeeping
+ * remains two ints. Cluster moments, and the points of the space, remain in
+ * double precision; no float or integer specializations of
+ * {@link GvmCluster} or {@link GvmSpace} are provided.
+ * 
+ * The costs are only approximated: candidate merges whose costs differ by
+ * less than single precision may be made in a different order to those of
+ * {@link GvmClusters}, and costs should remain well within the range of a
+ * float. Where either matters, {@link GvmClusters} should be used instead.
+ * 
+ * @author Tom Gibara
+ * 
+ * @param <K>
+ *            the key type
+ */
+
+public class GvmFloatClusters<S extends GvmSpace, K> extends GvmClusters<S, K> {
+
+	public GvmFloatClusters(S space, int capacity) {
+		super(space, capacity, true);
+	}
+	
+}
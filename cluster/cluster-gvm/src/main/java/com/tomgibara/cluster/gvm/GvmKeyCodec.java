@@ -0,0 +1,56 @@
+/*
+ * Copyright 2007 Tom Gibara
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.tomgibara.cluster.gvm;
+
+import com.tomgibara.crinch.coding.CodedReader;
+import com.tomgibara.crinch.coding.CodedWriter;
+
+/**
+ * Encodes and decodes the keys of clusters so that the state of a
+ * {@link GvmClusters} can be checkpointed and restored. Null keys are handled
+ * by the caller and are never passed to a codec.
+ * 
+ * @author Tom Gibara
+ * 
+ * @param <K>
+ *            the key type
+ */
+
+public interface GvmKeyCodec<K> {
+
+	/**
+	 * Writes a key.
+	 * 
+	 * @param writer
+	 *            the writer to which the key should be written
+	 * @param key
+	 *            a key, not null
+	 */
+	
+	void encodeKey(CodedWriter writer, K key);
+	
+	/**
+	 * Reads a key previously written by {@link #encodeKey(CodedWriter, Object)}.
+	 * 
+	 * @param reader
+	 *            the reader from which the key should be read
+	 * @return the key, not null
+	 */
+	
+	K decodeKey(CodedReader reader);
+	
+}
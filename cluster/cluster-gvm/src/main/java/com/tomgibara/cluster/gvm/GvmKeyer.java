@@ -55,4 +55,15 @@ public interface GvmKeyer<K> {
 	 */
 	K addKey(GvmCluster<?,K> cluster, K key);
 
+	/**
+	 * Called when a cluster from another set of clusters is being added. Keys
+	 * that this keyer may subsequently modify should be copied so that the
+	 * cluster from which the key was taken is unaffected.
+	 * 
+	 * @param key
+	 *            the key of the cluster being added, not null
+	 * @return a key that may be assigned to a cluster of this set, may be null
+	 */
+	K copyKey(K key);
+
 }
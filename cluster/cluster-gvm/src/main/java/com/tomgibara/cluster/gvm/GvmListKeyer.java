@@ -16,6 +16,7 @@
  */
 package com.tomgibara.cluster.gvm;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -36,4 +37,9 @@ public class GvmListKeyer<K> extends GvmSimpleKeyer<List<K>> {
 		return list1;
 	}
 	
+	@Override
+	public List<K> copyKey(List<K> key) {
+		return new ArrayList<K>(key);
+	}
+	
 }
@@ -36,4 +36,9 @@ public class GvmNullKeyer<K> implements GvmKeyer<K> {
 		return null;
 	}
 	
+	@Override
+	public K copyKey(K key) {
+		return null;
+	}
+	
 }
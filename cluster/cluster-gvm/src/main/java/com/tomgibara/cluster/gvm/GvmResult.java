@@ -78,15 +78,15 @@ public class GvmResult<K> {
 	public GvmResult() {
 	}
 	
-	GvmResult(GvmCluster<?,K> cluster) {
+	GvmResult(GvmCluster<?,K> cluster, double scale) {
 		count = cluster.count;
-		mass = cluster.m0;
-		variance = cluster.var / mass;
+		mass = cluster.m0 * scale;
+		variance = cluster.var / cluster.m0;
 		stdDeviation = -1.0;
 		key = cluster.key;
 		space = cluster.clusters.space;
 		point = space.newCopy(cluster.m1);
-		space.scale(point, 1.0 / mass);
+		space.scale(point, 1.0 / cluster.m0);
 	}
 
 	/**
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2012 Tom Gibara
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.tomgibara.cluster.gvm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Clusters points concurrently by dividing them between a number of shards,
+ * each of which is clustered independently by its own {@link GvmClusters}.
+ * The clusters of every shard are then added, in shard order, to a final
+ * {@link GvmClusters} which is returned to the caller for reduction.
+ * 
+ * The keyer assigned to this object is shared by all shards and must
+ * therefore be safe for concurrent use; all keyers supplied with this package
+ * are stateless. The results obtained may differ from clustering all of the
+ * points with a single {@link GvmClusters}.
+ * 
+ * @author Tom Gibara
+ * 
+ * @param <K>
+ *            the key type
+ */
+
+public class GvmShardedClusters<S extends GvmSpace, K> {
+
+	/**
+	 * Supplies the points to a shard. Each shard is fed by a single thread,
+	 * but different shards are fed concurrently.
+	 * 
+	 * @param <S>
+	 *            the space type
+	 * @param <K>
+	 *            the key type
+	 */
+	
+	public interface Feeder<S extends GvmSpace, K> {
+
+		/**
+		 * Adds the points assigned to a shard.
+		 * 
+		 * @param shard
+		 *            the index of the shard
+		 * @param shardCount
+		 *            the total number of shards
+		 * @param clusters
+		 *            the clusters to which the shard's points should be added
+		 */
+		
+		void feed(int shard, int shardCount, GvmClusters<S,K> clusters);
+		
+	}
+	
+	// fields
+	
+	/**
+	 * Defines the points that will be clusters
+	 */
+	
+	private final S space;
+	
+	/**
+	 * The greatest number of clusters that will be recorded by each shard and
+	 * by the combined clusters.
+	 */
+	
+	private final int capacity;
+	
+	/**
+	 * The number of shards into which the points will be divided.
+	 */
+	
+	private final int shardCount;
+	
+	/**
+	 * The keyer used to apply keys to clusters.
+	 */
+	
+	private GvmKeyer<K> keyer = new GvmDefaultKeyer<K>();
+	
+	public GvmShardedClusters(S space, int capacity, int shardCount) {
+		if (space == null) throw new IllegalArgumentException("null space");
+		if (capacity < 0) throw new IllegalArgumentException("negative capacity");
+		if (shardCount < 1) throw new IllegalArgumentException("non-positive shardCount");
+		this.space = space;
+		this.capacity = capacity;
+		this.shardCount = shardCount;
+	}
+	
+	// accessors
+
+	/**
+	 * The keyer used to assign keys to clusters.
+	 */
+	
+	public GvmKeyer<K> getKeyer() {
+		return keyer;
+	}
+	
+	/**
+	 * The keyer to be used; it must be safe for concurrent use.
+	 * 
+	 * @param keyer a keyer, not null
+	 */
+	
+	public void setKeyer(GvmKeyer<K> keyer) {
+		if (keyer == null) throw new IllegalArgumentException();
+		this.keyer = keyer;
+	}
+	
+	/**
+	 * The greatest number of clusters that may be recorded.
+	 * 
+	 * @return the capacity
+	 */
+	
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * The number of shards across which points are clustered.
+	 * 
+	 * @return the number of shards
+	 */
+	
+	public int getShardCount() {
+		return shardCount;
+	}
+	
+	/**
+	 * The space in which clustering will be performed
+	 * 
+	 * @return the space containing the points to be clustered
+	 */
+	
+	public S getSpace() {
+		return space;
+	}
+	
+	// public methods
+
+	/**
+	 * Clusters the points supplied by the feeder using one thread per shard.
+	 * 
+	 * @param feeder
+	 *            supplies the points of each shard
+	 * @return clusters combining those of every shard
+	 */
+	
+	public GvmClusters<S,K> cluster(Feeder<S,K> feeder) {
+		ExecutorService executor = Executors.newFixedThreadPool(shardCount);
+		try {
+			return cluster(feeder, executor);
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	/**
+	 * Clusters the points supplied by the feeder using the supplied executor
+	 * to cluster the shards. The executor is not shutdown by this method.
+	 * 
+	 * @param feeder
+	 *            supplies the points of each shard
+	 * @param executor
+	 *            executes the clustering of each shard
+	 * @return clusters combining those of every shard
+	 */
+	
+	public GvmClusters<S,K> cluster(final Feeder<S,K> feeder, ExecutorService executor) {
+		if (feeder == null) throw new IllegalArgumentException("null feeder");
+		if (executor == null) throw new IllegalArgumentException("null executor");
+		final GvmKeyer<K> keyer = this.keyer;
+		List<Callable<GvmClusters<S,K>>> callables = new ArrayList<Callable<GvmClusters<S,K>>>(shardCount);
+		for (int i = 0; i < shardCount; i++) {
+			final int shard = i;
+			callables.add(new Callable<GvmClusters<S,K>>() {
+				@Override
+				public GvmClusters<S,K> call() {
+					GvmClusters<S,K> clusters = new GvmClusters<S,K>(space, capacity);
+					clusters.setKeyer(keyer);
+					feeder.feed(shard, shardCount, clusters);
+					return clusters;
+				}
+			});
+		}
+		GvmClusters<S,K> combined = new GvmClusters<S,K>(space, capacity);
+		combined.setKeyer(keyer);
+		try {
+			for (Future<GvmClusters<S,K>> future : executor.invokeAll(callables)) {
+				combined.addAll(future.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while clustering shards", e);
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new IllegalStateException(cause);
+		}
+		return combined;
+	}
+	
+}
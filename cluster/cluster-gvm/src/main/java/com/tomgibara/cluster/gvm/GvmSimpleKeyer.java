@@ -45,6 +45,17 @@ public abstract class GvmSimpleKeyer<K> implements GvmKeyer<K> {
 		return combineKeys(k1, k2);
 	}
 	
+	/**
+	 * Returns the supplied key, which is appropriate for keys that are never
+	 * modified; keyers that modify keys when combining them should override
+	 * this method to return a copy.
+	 */
+	
+	@Override
+	public K copyKey(K key) {
+		return key;
+	}
+	
 	/**
 	 * Combines two keys. Combining two keys may totally discard information
 	 * from one, both or none of the supplied keys.
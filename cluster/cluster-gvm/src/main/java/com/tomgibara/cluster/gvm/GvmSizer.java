@@ -1,8 +1,9 @@
 package com.tomgibara.cluster.gvm;
 
 import com.tomgibara.cluster.ClusterPainter;
+import com.tomgibara.cluster.gvm.space.GvmVectorSpace;
 
-public class GvmSizer implements ClusterPainter.Sizer<GvmResult<?>> {
+public class GvmSizer implements ClusterPainter.Locator<GvmResult<?>> {
 
 	@Override
 	public double distance(GvmResult<?> r1, GvmResult<?> r2) {
@@ -19,4 +20,10 @@ public class GvmSizer implements ClusterPainter.Sizer<GvmResult<?>> {
 		return r.getCount();
 	}
 
+	@Override
+	public double[] coordinates(GvmResult<?> r) {
+		// subclasses may redefine the distance
+		return r.getSpace().getClass() == GvmVectorSpace.class ? (double[]) r.getPoint() : null;
+	}
+
 }
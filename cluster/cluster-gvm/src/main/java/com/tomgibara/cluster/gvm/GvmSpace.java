@@ -1,5 +1,8 @@
 package com.tomgibara.cluster.gvm;
 
+import com.tomgibara.crinch.coding.CodedReader;
+import com.tomgibara.crinch.coding.CodedWriter;
+
 public abstract class GvmSpace {
 
 	//TODO use within cluster
@@ -103,6 +106,17 @@ public abstract class GvmSpace {
 	
 	public abstract void square(Object pt);
 
+	//must be overridden to support checkpointing of clusters
+	public void write(CodedWriter writer, Object pt) {
+		throw new UnsupportedOperationException();
+	}
+	
+	//must be overridden to support restoring of clusters
+	// pt - a point into which the coordinates are read
+	public void read(CodedReader reader, Object pt) {
+		throw new UnsupportedOperationException();
+	}
+	
 	public String toString(Object pt) {
 		return pt == null ? "null" : pt.toString();
 	}
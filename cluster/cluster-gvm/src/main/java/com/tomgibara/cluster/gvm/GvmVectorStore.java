@@ -0,0 +1,466 @@
+/*
+ * Copyright 2012 Tom Gibara
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.tomgibara.cluster.gvm;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Mirrors the moments of clusters over a
+ * {@link com.tomgibara.cluster.gvm.space.GvmVectorSpace} in flat arrays so that the cost of adding a point to every cluster can be computed
+ * in a single pass without allocation or dispatch through the space. The
+ * moments of a cluster are stored at the same index as the cluster.
+ * 
+ * The clusters are also ordered by the coordinate of their centroids along a
+ * single axis. For positive masses, the increase in variance caused by adding
+ * a point to a cluster is the squared distance between the point and the
+ * centroid, weighted by the product of their masses over their sum. This is
+ * bounded below by the weighted squared distance along the axis, so the
+ * cheapest addition can be found by visiting clusters outwards from the point
+ * until the bound exceeds the best cost found.
+ * 
+ * @author Tom Gibara
+ */
+
+final class GvmVectorStore {
+
+	/**
+	 * The relative tolerance applied to lower bounds so that rounding in the
+	 * evaluation of costs does not cause candidates to be wrongly excluded.
+	 */
+	
+	private static final double SLACK = 1e-6;
+
+	/**
+	 * The number of coordinates in each point.
+	 */
+	
+	private final int dimensions;
+	
+	/**
+	 * The total mass of each cluster.
+	 */
+	
+	private final double[] m0s;
+	
+	/**
+	 * The mass-weighted coordinate sums of each cluster, laid end to end.
+	 */
+	
+	private final double[] m1s;
+	
+	/**
+	 * The total of the mass-weighted coordinate-square sums of each cluster;
+	 * the individual coordinates are not needed to evaluate additions.
+	 */
+	
+	private final double[] m2s;
+	
+	/**
+	 * The variance of each cluster.
+	 */
+	
+	private final double[] vars;
+	
+	/**
+	 * The indices of the clusters ordered by the coordinates of their
+	 * centroids along the axis.
+	 */
+	
+	private final int[] order;
+	
+	/**
+	 * The position of each cluster in the order.
+	 */
+	
+	private final int[] positions;
+	
+	/**
+	 * The centroid coordinate of the cluster at each position in the order.
+	 */
+	
+	private final double[] keys;
+	
+	/**
+	 * The axis along which the clusters are ordered.
+	 */
+	
+	private int axis = 0;
+	
+	/**
+	 * The number of clusters in the order.
+	 */
+	
+	private int size = 0;
+	
+	/**
+	 * Whether the order is being maintained, it is reestablished when
+	 * required after clusters have been moved.
+	 */
+	
+	private boolean ordered = true;
+	
+	/**
+	 * Whether only positive masses have been stored since the store was
+	 * cleared; the lower bound doesn't hold otherwise.
+	 */
+	
+	private boolean prunable = true;
+	
+	/**
+	 * The least mass that has been stored since the store was cleared, this
+	 * bounds the mass of every cluster from below.
+	 */
+	
+	private double minMass = Double.POSITIVE_INFINITY;
+	
+	GvmVectorStore(int capacity, int dimensions) {
+		this.dimensions = dimensions;
+		m0s = new double[capacity];
+		m1s = new double[capacity * dimensions];
+		m2s = new double[capacity];
+		vars = new double[capacity];
+		order = new int[capacity];
+		positions = new int[capacity];
+		keys = new double[capacity];
+	}
+	
+	/**
+	 * Whether {@link #nearest(int, double, double[], double)} may be used;
+	 * true unless a cluster with a non-positive mass has been stored.
+	 * 
+	 * @return true if the cheapest addition can be found by pruning
+	 */
+	
+	boolean isPrunable() {
+		return prunable;
+	}
+	
+	/**
+	 * Discards the ordering of all clusters.
+	 */
+	
+	void clear() {
+		size = 0;
+		ordered = true;
+		prunable = true;
+		minMass = Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Records the current moments of a cluster.
+	 * 
+	 * @param index
+	 *            the index of the cluster
+	 * @param cluster
+	 *            the cluster
+	 */
+	
+	void set(int index, GvmCluster<?, ?> cluster) {
+		final int d = dimensions;
+		final double[] m1 = (double[]) cluster.m1;
+		final double[] m2 = (double[]) cluster.m2;
+		System.arraycopy(m1, 0, m1s, index * d, d);
+		double sum = 0.0;
+		for (int i = 0; i < d; i++) {
+			sum += m2[i];
+		}
+		final double m0 = cluster.m0;
+		m0s[index] = m0;
+		m2s[index] = sum;
+		vars[index] = cluster.var;
+		if (!prunable) return;
+		if (m0 <= 0.0) {
+			prunable = false;
+			return;
+		}
+		if (m0 < minMass) minMass = m0;
+		if (!ordered) return;
+		if (index == size) {
+			order[size] = index;
+			positions[index] = size;
+			size++;
+		} else if (index > size) {
+			ordered = false;
+			return;
+		}
+		reposition(index);
+	}
+	
+	/**
+	 * Moves the moments of a cluster to a new index.
+	 * 
+	 * @param from
+	 *            the current index of the cluster
+	 * @param to
+	 *            the new index of the cluster
+	 */
+	
+	void move(int from, int to) {
+		final int d = dimensions;
+		System.arraycopy(m1s, from * d, m1s, to * d, d);
+		m0s[to] = m0s[from];
+		m2s[to] = m2s[from];
+		vars[to] = vars[from];
+		ordered = false;
+	}
+
+	/**
+	 * Computes the increase in variance that would result from adding a point
+	 * to each cluster; equivalent to calling
+	 * {@link GvmCluster#test(double, Object)} on every cluster.
+	 * 
+	 * @param count
+	 *            the number of clusters to test, starting from zero
+	 * @param m
+	 *            the mass of the point
+	 * @param pt
+	 *            the coordinates of the point
+	 * @param costs
+	 *            an array into which the costs are written
+	 */
+	
+	void test(int count, double m, double[] pt, double[] costs) {
+		final int d = dimensions;
+		final double[] m0s = this.m0s;
+		final double[] m1s = this.m1s;
+		final double[] m2s = this.m2s;
+		final double[] vars = this.vars;
+		// the contribution of the point to the square sum is common to all clusters
+		double ptSqr = 0.0;
+		for (int i = 0; i < d; i++) {
+			final double c = pt[i];
+			ptSqr += c * c;
+		}
+		ptSqr *= m;
+		for (int k = 0, o = 0; k < count; k++, o += d) {
+			final double m0 = m0s[k] + m;
+			if (m0 == 0.0 && m == 0.0) {
+				costs[k] = 0.0;
+				continue;
+			}
+			double sum = 0.0;
+			for (int i = 0; i < d; i++) {
+				final double c = m1s[o + i] + m * pt[i];
+				sum += c * c;
+			}
+			costs[k] = m2s[k] + ptSqr - sum / m0 - vars[k];
+		}
+	}
+
+	/**
+	 * Identifies the cluster to which a point can be added with the least
+	 * increase in variance, provided that it does not exceed a limit. Exact
+	 * ties are resolved in favour of the lowest index, as when minimizing the
+	 * costs computed by {@link #test(int, double, double[], double[])}. The
+	 * result is not guaranteed to be identical to that exhaustive search:
+	 * clusters are pruned using lower bounds that are relaxed by a relative
+	 * tolerance of {@value #SLACK}, and the costs themselves are subject to
+	 * rounding, so a cluster whose computed cost differs from the least by
+	 * less than the rounding error may be chosen in its place, or skipped.
+	 * May only be called if the store is prunable.
+	 * 
+	 * @param count
+	 *            the number of clusters stored
+	 * @param m
+	 *            the mass of the point, positive
+	 * @param pt
+	 *            the coordinates of the point
+	 * @param limit
+	 *            the greatest cost that is acceptable
+	 * @return the index of the cheapest cluster, or -1 if every cluster
+	 *         exceeds the limit
+	 */
+	
+	int nearest(int count, double m, double[] pt, double limit) {
+		if (!ordered || size != count) reorder(count);
+		final int d = dimensions;
+		final double[] keys = this.keys;
+		final double x = pt[axis];
+		double ptSqr = 0.0;
+		for (int i = 0; i < d; i++) {
+			final double c = pt[i];
+			ptSqr += c * c;
+		}
+		ptSqr *= m;
+		// the least weight any cluster can apply to a squared distance
+		final double weight = m * minMass / (m + minMass) * (1.0 - SLACK);
+		// locate the first position at or beyond the point
+		int hi;
+		{
+			int lo = 0;
+			hi = size;
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (keys[mid] < x) lo = mid + 1; else hi = mid;
+			}
+		}
+		int lo = hi - 1;
+		double best = limit;
+		int bestIndex = -1;
+		while (lo >= 0 || hi < size) {
+			// visit the nearer of the two candidates
+			final double dLo = lo >= 0 ? x - keys[lo] : Double.POSITIVE_INFINITY;
+			final double dHi = hi < size ? keys[hi] - x : Double.POSITIVE_INFINITY;
+			final double dx;
+			final int k;
+			if (dLo <= dHi) {
+				dx = dLo;
+				k = order[lo--];
+			} else {
+				dx = dHi;
+				k = order[hi++];
+			}
+			final double dxSqr = dx * dx;
+			// no remaining cluster can be cheaper
+			if (weight * dxSqr > best) break;
+			final double mk = m0s[k];
+			if (m * mk / (m + mk) * (1.0 - SLACK) * dxSqr > best) continue;
+			final double t = cost(k, m, pt, ptSqr);
+			if (t < best || t == best && (bestIndex == -1 || k < bestIndex)) {
+				best = t;
+				bestIndex = k;
+			}
+		}
+		return bestIndex;
+	}
+
+	/**
+	 * Computes the increase in variance that would result from merging a
+	 * cluster with each stored cluster; consistent with the values of
+	 * the values of {@link GvmClusterPairs}.
+	 * 
+	 * @param count
+	 *            the number of clusters to test, starting from zero
+	 * @param cluster
+	 *            the cluster to be merged
+	 * @param costs
+	 *            an array into which the costs are written
+	 */
+	
+	void test(int count, GvmCluster<?, ?> cluster, double[] costs) {
+		final int d = dimensions;
+		final double[] m0s = this.m0s;
+		final double[] m1s = this.m1s;
+		final double[] m2s = this.m2s;
+		final double[] vars = this.vars;
+		final double m = cluster.m0;
+		final double[] m1 = (double[]) cluster.m1;
+		final double[] m2 = (double[]) cluster.m2;
+		double m2Sum = 0.0;
+		for (int i = 0; i < d; i++) {
+			m2Sum += m2[i];
+		}
+		final double var = cluster.var;
+		for (int k = 0, o = 0; k < count; k++, o += d) {
+			final double m0 = m0s[k] + m;
+			if (m0 == 0.0 && m == 0.0) {
+				costs[k] = -var - vars[k];
+				continue;
+			}
+			double sum = 0.0;
+			for (int i = 0; i < d; i++) {
+				final double c = m1s[o + i] + m1[i];
+				sum += c * c;
+			}
+			costs[k] = m2s[k] + m2Sum - sum / m0 - vars[k] - var;
+		}
+	}
+	
+	// private utility methods
+	
+	// the cost of adding a point to a single cluster, as per test
+	private double cost(int k, double m, double[] pt, double ptSqr) {
+		final int d = dimensions;
+		final int o = k * d;
+		double sum = 0.0;
+		for (int i = 0; i < d; i++) {
+			final double c = m1s[o + i] + m * pt[i];
+			sum += c * c;
+		}
+		return m2s[k] + ptSqr - sum / (m0s[k] + m) - vars[k];
+	}
+	
+	// the centroid coordinate of a cluster along the axis
+	private double key(int k) {
+		return m1s[k * dimensions + axis] / m0s[k];
+	}
+	
+	// restores the order of a single cluster whose centroid has moved
+	private void reposition(int k) {
+		final double key = key(k);
+		int p = positions[k];
+		while (p > 0 && keys[p - 1] > key) {
+			final int j = order[p - 1];
+			order[p] = j;
+			keys[p] = keys[p - 1];
+			positions[j] = p;
+			p--;
+		}
+		while (p < size - 1 && keys[p + 1] < key) {
+			final int j = order[p + 1];
+			order[p] = j;
+			keys[p] = keys[p + 1];
+			positions[j] = p;
+			p++;
+		}
+		order[p] = k;
+		keys[p] = key;
+		positions[k] = p;
+	}
+	
+	// orders all clusters along the axis of greatest centroid spread
+	private void reorder(int count) {
+		final int d = dimensions;
+		double bestSpread = -1.0;
+		for (int a = 0; a < d; a++) {
+			double sum = 0.0;
+			double sumSqr = 0.0;
+			for (int k = 0; k < count; k++) {
+				final double c = m1s[k * d + a] / m0s[k];
+				sum += c;
+				sumSqr += c * c;
+			}
+			final double spread = sumSqr - sum * sum / count;
+			if (spread > bestSpread) {
+				bestSpread = spread;
+				axis = a;
+			}
+		}
+		final double[] centroids = new double[count];
+		Integer[] indices = new Integer[count];
+		for (int k = 0; k < count; k++) {
+			centroids[k] = key(k);
+			indices[k] = k;
+		}
+		Arrays.sort(indices, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer a, Integer b) {
+				return Double.compare(centroids[a], centroids[b]);
+			}
+		});
+		for (int p = 0; p < count; p++) {
+			final int k = indices[p];
+			order[p] = k;
+			keys[p] = centroids[k];
+			positions[k] = p;
+		}
+		size = count;
+		ordered = true;
+	}
+	
+}
@@ -6,6 +6,8 @@ import java.util.List;
 import com.tomgibara.cluster.ClusterPainter;
 import com.tomgibara.cluster.gvm.GvmResult;
 import com.tomgibara.cluster.gvm.GvmSpace;
+import com.tomgibara.crinch.coding.CodedReader;
+import com.tomgibara.crinch.coding.CodedWriter;
 
 public class GvmVectorSpace extends GvmSpace {
 
@@ -228,6 +230,24 @@ public class GvmVectorSpace extends GvmSpace {
 		return sum;
 	}
 	
+	// serialization
+	
+	@Override
+	public void write(CodedWriter writer, Object pt) {
+		double[] coords = coords(pt);
+		for (int i = 0; i < dimensions; i++) {
+			writer.writeDouble(coords[i]);
+		}
+	}
+	
+	@Override
+	public void read(CodedReader reader, Object pt) {
+		double[] coords = coords(pt);
+		for (int i = 0; i < dimensions; i++) {
+			coords[i] = reader.readDouble();
+		}
+	}
+	
 	@Override
 	public String toString(Object pt) {
 		return Arrays.toString(coords(pt));
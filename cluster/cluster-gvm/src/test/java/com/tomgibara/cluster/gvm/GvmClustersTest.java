@@ -0,0 +1,541 @@
+/*
+ * Copyright 2012 Tom Gibara
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.tomgibara.cluster.gvm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.tomgibara.cluster.gvm.space.GvmVectorSpace;
+import com.tomgibara.crinch.bits.ByteArrayBitReader;
+import com.tomgibara.crinch.bits.ByteArrayBitWriter;
+import com.tomgibara.crinch.coding.CodedReader;
+import com.tomgibara.crinch.coding.CodedWriter;
+import com.tomgibara.crinch.coding.EliasOmegaCoding;
+
+public class GvmClustersTest extends TestCase {
+
+	// covers clustering with and without the vector store
+	private enum GvmSpaceFactory {
+		PLAIN {
+			GvmVectorSpace newSpace() { return new GvmVectorSpace(2); }
+		},
+		EXTENDED {
+			GvmVectorSpace newSpace() { return new GvmVectorSpace(2) {}; }
+		};
+		abstract GvmVectorSpace newSpace();
+	}
+
+	private static double[][] points(Random random, int count, int dimensions, int blobs) {
+		double[][] centres = new double[blobs][dimensions];
+		for (double[] centre : centres) {
+			for (int i = 0; i < dimensions; i++) centre[i] = random.nextDouble() * 100.0;
+		}
+		double[][] pts = new double[count][dimensions];
+		for (double[] pt : pts) {
+			double[] centre = centres[random.nextInt(blobs)];
+			for (int i = 0; i < dimensions; i++) pt[i] = centre[i] + random.nextGaussian();
+		}
+		return pts;
+	}
+
+	private static List<GvmResult<Integer>> cluster(GvmVectorSpace space, double[][] pts, double[] ms, int capacity, boolean reduce) {
+		GvmClusters<GvmVectorSpace, Integer> clusters = new GvmClusters<GvmVectorSpace, Integer>(space, capacity);
+		for (int i = 0; i < pts.length; i++) {
+			clusters.add(ms == null ? 1.0 : ms[i], pts[i], i);
+			if (reduce && i % 100 == 99) clusters.reduce(Double.MAX_VALUE, capacity / 2);
+		}
+		clusters.reduce(Double.MAX_VALUE, 5);
+		return clusters.results();
+	}
+
+	private static List<GvmResult<Integer>> sortedByMass(List<GvmResult<Integer>> results) {
+		List<GvmResult<Integer>> sorted = new ArrayList<GvmResult<Integer>>(results);
+		Collections.sort(sorted, new Comparator<GvmResult<Integer>>() {
+			@Override
+			public int compare(GvmResult<Integer> r1, GvmResult<Integer> r2) {
+				return Double.compare(r1.getMass(), r2.getMass());
+			}
+		});
+		return sorted;
+	}
+
+	private static void checkSharded(GvmSpaceFactory factory, double[][] pts, int shardCount) {
+		final GvmVectorSpace space = factory.newSpace();
+		final double[][] points = pts;
+		GvmShardedClusters<GvmVectorSpace, List<Integer>> sharded = new GvmShardedClusters<GvmVectorSpace, List<Integer>>(space, 20, shardCount);
+		sharded.setKeyer(new GvmListKeyer<Integer>());
+		GvmClusters<GvmVectorSpace, List<Integer>> clusters = sharded.cluster(new GvmShardedClusters.Feeder<GvmVectorSpace, List<Integer>>() {
+			@Override
+			public void feed(int shard, int shardCount, GvmClusters<GvmVectorSpace, List<Integer>> clusters) {
+				for (int i = shard; i < points.length; i += shardCount) {
+					clusters.add(1.0, points[i], new ArrayList<Integer>(Collections.singletonList(i)));
+				}
+			}
+		});
+		clusters.reduce(Double.MAX_VALUE, 5);
+		List<GvmResult<List<Integer>>> results = clusters.results();
+		assertEquals(5, results.size());
+		// every point must be accounted for exactly once
+		Set<Integer> keys = new HashSet<Integer>();
+		int count = 0;
+		double mass = 0.0;
+		for (GvmResult<List<Integer>> result : results) {
+			count += result.getCount();
+			mass += result.getMass();
+			keys.addAll(result.getKey());
+			assertEquals(result.getCount(), result.getKey().size());
+			// each cluster should be tight around one of the blobs
+			assertTrue(result.getVariance() < 10.0);
+		}
+		assertEquals(pts.length, count);
+		assertEquals((double) pts.length, mass);
+		assertEquals(pts.length, keys.size());
+	}
+
+	public void testSharded() {
+		Random random = new Random(1L);
+		double[][] pts = points(random, 4000, 2, 5);
+		for (GvmSpaceFactory factory : GvmSpaceFactory.values()) {
+			for (int shardCount = 1; shardCount <= 4; shardCount++) {
+				checkSharded(factory, pts, shardCount);
+			}
+		}
+	}
+
+	public void testAddClusterUnmodified() {
+		Random random = new Random(0L);
+		double[][] pts = points(random, 400, 2, 4);
+		GvmVectorSpace space = new GvmVectorSpace(2);
+		GvmClusters<GvmVectorSpace, List<Integer>> source = new GvmClusters<GvmVectorSpace, List<Integer>>(space, 10);
+		GvmClusters<GvmVectorSpace, List<Integer>> target = new GvmClusters<GvmVectorSpace, List<Integer>>(space, 4);
+		source.setKeyer(new GvmListKeyer<Integer>());
+		target.setKeyer(new GvmListKeyer<Integer>());
+		for (int i = 0; i < pts.length; i++) {
+			GvmClusters<GvmVectorSpace, List<Integer>> clusters = i % 2 == 0 ? source : target;
+			clusters.add(1.0, pts[i], new ArrayList<Integer>(Collections.singletonList(i)));
+		}
+		// decay the target so that the source clusters are rescaled and outweigh its own
+		target.decay(0.1);
+		List<GvmResult<List<Integer>>> before = source.results();
+		List<List<Integer>> keys = new ArrayList<List<Integer>>();
+		for (GvmResult<List<Integer>> result : before) keys.add(new ArrayList<Integer>(result.getKey()));
+
+		target.addAll(source);
+		List<GvmResult<List<Integer>>> after = source.results();
+		assertEquals(before.size(), after.size());
+		for (int i = 0; i < after.size(); i++) {
+			GvmResult<List<Integer>> result = after.get(i);
+			assertEquals(before.get(i).getMass(), result.getMass());
+			assertEquals(before.get(i).getCount(), result.getCount());
+			assertEquals(keys.get(i), result.getKey());
+		}
+		// every point is accounted for in the target
+		Set<Integer> all = new HashSet<Integer>();
+		int count = 0;
+		for (GvmResult<List<Integer>> result : target.results()) {
+			all.addAll(result.getKey());
+			count += result.getKey().size();
+		}
+		assertEquals(pts.length, count);
+		assertEquals(pts.length, all.size());
+	}
+
+	public void testPairs() {
+		for (int j = 1; j < 200; j++) {
+			for (int i = 0; i < j; i++) {
+				int pair = GvmClusterPairs.pair(i, j);
+				assertEquals(pair, GvmClusterPairs.pair(j, i));
+				assertEquals(i, GvmClusterPairs.first(pair));
+				assertEquals(j, GvmClusterPairs.second(pair));
+			}
+		}
+		Random random = new Random(0L);
+		for (GvmClusterPairs pairs : new GvmClusterPairs[] { new GvmClusterPairs.Doubles(40), new GvmClusterPairs.Floats(40) }) {
+			double[] values = new double[40 * 39 / 2];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = pairs.round(random.nextDouble());
+				pairs.add(i, values[i]);
+			}
+			for (int n = 0; n < 1000; n++) {
+				int pair = random.nextInt(values.length);
+				if (values[pair] == Double.MAX_VALUE) continue;
+				if (random.nextBoolean()) {
+					values[pair] = pairs.round(random.nextDouble());
+					pairs.reprioritize(pair, values[pair]);
+					assertEquals(values[pair], pairs.value(pair));
+				} else {
+					values[pair] = Double.MAX_VALUE;
+					assertTrue(pairs.remove(pair));
+					assertFalse(pairs.remove(pair));
+				}
+				int least = pairs.peek();
+				for (double value : values) {
+					assertTrue(value >= values[least]);
+				}
+			}
+		}
+		// only single precision loses the order of close values
+		GvmClusterPairs doubles = new GvmClusterPairs.Doubles(3);
+		doubles.add(0, 1.0 + 1e-12);
+		doubles.add(1, 1.0);
+		assertEquals(1, doubles.peek());
+		assertEquals(1.0 + 1e-12, doubles.value(0));
+		GvmClusterPairs floats = new GvmClusterPairs.Floats(3);
+		floats.add(0, 1.0 + 1e-12);
+		assertEquals(1.0, floats.value(0));
+	}
+
+	public void testFloatClusters() {
+		Random random = new Random(0L);
+		double[][] pts = points(random, 2000, 2, 4);
+		for (GvmSpaceFactory factory : GvmSpaceFactory.values()) {
+			GvmVectorSpace space = factory.newSpace();
+			GvmClusters<GvmVectorSpace, Integer> doubles = new GvmClusters<GvmVectorSpace, Integer>(space, 20);
+			GvmClusters<GvmVectorSpace, Integer> floats = new GvmFloatClusters<GvmVectorSpace, Integer>(space, 20);
+			for (int i = 0; i < pts.length; i++) {
+				doubles.add(1.0, pts[i], i);
+				floats.add(1.0, pts[i], i);
+			}
+			doubles.reduce(Double.MAX_VALUE, 4);
+			floats.reduce(Double.MAX_VALUE, 4);
+			// well separated blobs are found regardless of precision
+			List<GvmResult<Integer>> expected = sortedByMass(doubles.results());
+			List<GvmResult<Integer>> actual = sortedByMass(floats.results());
+			assertEquals(4, expected.size());
+			assertEquals(4, actual.size());
+			for (int i = 0; i < 4; i++) {
+				assertEquals(expected.get(i).getCount(), actual.get(i).getCount());
+				double[] e = (double[]) expected.get(i).getPoint();
+				double[] a = (double[]) actual.get(i).getPoint();
+				assertEquals(e[0], a[0], 1e-6);
+				assertEquals(e[1], a[1], 1e-6);
+			}
+		}
+	}
+	public void testDecay() {
+		Random random = new Random(0L);
+		for (GvmSpaceFactory factory : GvmSpaceFactory.values()) {
+			GvmClusters<GvmVectorSpace, Integer> clusters = new GvmClusters<GvmVectorSpace, Integer>(factory.newSpace(), 10);
+			clusters.setDecay(0.9, 1);
+			assertEquals(0.9, clusters.getDecayFactor());
+			assertEquals(1, clusters.getDecayInterval());
+			// points move from one location to another
+			for (int i = 0; i < 4000; i++) {
+				double offset = i < 1000 ? 0.0 : 100.0;
+				double[] pt = { offset + random.nextGaussian(), offset + random.nextGaussian() };
+				clusters.add(1.0, pt, i);
+			}
+			List<GvmResult<Integer>> results = clusters.results();
+			double mass = 0.0;
+			for (GvmResult<Integer> result : results) {
+				mass += result.getMass();
+				double[] pt = (double[]) result.getPoint();
+				assertEquals(100.0, pt[0], 10.0);
+				assertEquals(100.0, pt[1], 10.0);
+			}
+			// decay is applied after every addition
+			assertEquals(0.9 * (1.0 - Math.pow(0.9, 4000)) / 0.1, mass, 1e-6);
+			clusters.decay(0.5);
+			double decayed = 0.0;
+			for (GvmResult<Integer> result : clusters.results()) {
+				decayed += result.getMass();
+			}
+			assertEquals(mass * 0.5, decayed, 1e-6);
+		}
+	}
+
+	public void testDeflatedAccessors() {
+		final List<GvmCluster<?,Integer>> added = new ArrayList<GvmCluster<?,Integer>>();
+		GvmClusters<GvmVectorSpace, Integer> clusters = new GvmClusters<GvmVectorSpace, Integer>(new GvmVectorSpace(1), 2);
+		clusters.setKeyer(new GvmDefaultKeyer<Integer>() {
+			@Override
+			public Integer addKey(GvmCluster<?, Integer> cluster, Integer key) {
+				added.add(cluster);
+				return super.addKey(cluster, key);
+			}
+		});
+		clusters.add(1.0, new double[] { 0.0 }, 0);
+		clusters.add(1.0, new double[] { 100.0 }, 1);
+		clusters.add(1.0, new double[] { 2.0 }, 2);
+		clusters.decay(0.5);
+		List<GvmResult<Integer>> results = clusters.results();
+		assertEquals(2, results.size());
+		for (GvmCluster<?,Integer> cluster : added) {
+			GvmResult<Integer> result = null;
+			for (GvmResult<Integer> r : results) {
+				if (r.getKey().equals(cluster.getKey())) result = r;
+			}
+			assertEquals(result.getMass(), cluster.getMass(), 1e-12);
+			assertEquals(result.getVariance(), cluster.getVariance(), 1e-12);
+		}
+		assertEquals(1.0, added.get(0).getMass(), 1e-12);
+	}
+
+	public void testAddClusterDecays() {
+		GvmVectorSpace space = new GvmVectorSpace(1);
+		GvmClusters<GvmVectorSpace, Integer> source = new GvmClusters<GvmVectorSpace, Integer>(space, 1);
+		for (int i = 0; i < 20; i++) {
+			source.add(1.0, new double[] { 1000.0 }, i);
+		}
+		GvmClusters<GvmVectorSpace, Integer> target = new GvmClusters<GvmVectorSpace, Integer>(space, 2);
+		target.setDecay(0.5, 10);
+		target.add(1.0, new double[] { 0.0 }, -1);
+		target.addAll(source);
+		// the twenty points added with the cluster are due two decays
+		for (GvmResult<Integer> result : target.results()) {
+			assertEquals(result.getKey() == -1 ? 0.25 : 5.0, result.getMass(), 1e-12);
+		}
+		// and the remaining point counts towards the next
+		for (int i = 0; i < 9; i++) {
+			target.add(1.0, new double[] { 0.0 }, -1);
+		}
+		for (GvmResult<Integer> result : target.results()) {
+			assertEquals(result.getKey() == -1 ? 4.625 : 2.5, result.getMass(), 1e-12);
+		}
+	}
+
+	public void testNegligibleRecycled() {
+		GvmClusters<GvmVectorSpace, Integer> clusters = new GvmClusters<GvmVectorSpace, Integer>(new GvmVectorSpace(1), 3);
+		clusters.add(0.5, new double[] { 0.0 }, 0);
+		clusters.add(0.5, new double[] { 100.0 }, 1);
+		for (int i = 0; i < 4; i++) {
+			clusters.decay(1e-3);
+		}
+		clusters.add(1.0, new double[] { 50.0 }, 2);
+		// the first clusters become negligible well before the moments need rescaling
+		clusters.decay(1e-2);
+		clusters.add(1.0, new double[] { 20.0 }, 3);
+		clusters.add(1.0, new double[] { 80.0 }, 4);
+		List<GvmResult<Integer>> results = clusters.results();
+		assertEquals(3, results.size());
+		Set<Integer> keys = new HashSet<Integer>();
+		for (GvmResult<Integer> result : results) {
+			assertEquals(1, result.getCount());
+			keys.add(result.getKey());
+		}
+		assertEquals(new HashSet<Integer>(Arrays.asList(2, 3, 4)), keys);
+	}
+
+	public void testCheckpoint() {
+		GvmKeyCodec<Integer> codec = new GvmKeyCodec<Integer>() {
+			@Override
+			public void encodeKey(CodedWriter writer, Integer key) {
+				writer.writeInt(key);
+			}
+			@Override
+			public Integer decodeKey(CodedReader reader) {
+				return reader.readInt();
+			}
+		};
+		Random random = new Random(0L);
+		double[][] pts = points(random, 3000, 3, 6);
+		for (GvmSpaceFactory factory : GvmSpaceFactory.values()) {
+			GvmVectorSpace space = factory.newSpace();
+			GvmClusters<GvmVectorSpace, Integer> original = new GvmClusters<GvmVectorSpace, Integer>(space, 30);
+			original.setDecay(0.999, 10);
+			for (int i = 0; i < 1000; i++) {
+				original.add(1.0, pts[i], i % 3 == 0 ? null : i);
+			}
+			ByteArrayBitWriter writer = new ByteArrayBitWriter(new byte[30 * 3 * 2 * 16 + 1024]);
+			original.checkpoint(new CodedWriter(writer, EliasOmegaCoding.extended), codec);
+			writer.flush();
+			GvmClusters<GvmVectorSpace, Integer> restored = new GvmClusters<GvmVectorSpace, Integer>(space, 30);
+			restored.restore(new CodedReader(new ByteArrayBitReader(writer.getBytes()), EliasOmegaCoding.extended), codec);
+			assertEquals(original.getDecayFactor(), restored.getDecayFactor());
+			assertEquals(original.getDecayInterval(), restored.getDecayInterval());
+			// both should continue identically
+			for (int i = 1000; i < pts.length; i++) {
+				original.add(1.0, pts[i], i);
+				restored.add(1.0, pts[i], i);
+			}
+			original.reduce(Double.MAX_VALUE, 6);
+			restored.reduce(Double.MAX_VALUE, 6);
+			List<GvmResult<Integer>> expected = original.results();
+			List<GvmResult<Integer>> actual = restored.results();
+			assertEquals(expected.size(), actual.size());
+			for (int i = 0; i < expected.size(); i++) {
+				GvmResult<Integer> e = expected.get(i);
+				GvmResult<Integer> a = actual.get(i);
+				assertEquals(e.getCount(), a.getCount());
+				assertEquals(e.getMass(), a.getMass());
+				assertEquals(e.getVariance(), a.getVariance());
+				assertEquals(e.getKey(), a.getKey());
+			}
+		}
+	}
+
+	public void testRestoreFailure() {
+		GvmKeyCodec<Integer> codec = new GvmKeyCodec<Integer>() {
+			@Override
+			public void encodeKey(CodedWriter writer, Integer key) {
+				writer.writeInt(key);
+			}
+			@Override
+			public Integer decodeKey(CodedReader reader) {
+				return reader.readInt();
+			}
+		};
+		Random random = new Random(0L);
+		double[][] pts = points(random, 200, 2, 4);
+		GvmVectorSpace space = new GvmVectorSpace(2);
+		GvmClusters<GvmVectorSpace, Integer> original = new GvmClusters<GvmVectorSpace, Integer>(space, 10);
+		original.setDecay(0.9, 3);
+		for (int i = 0; i < 100; i++) {
+			original.add(1.0, pts[i], i);
+		}
+		ByteArrayBitWriter writer = new ByteArrayBitWriter(new byte[10 * 2 * 2 * 16 + 1024]);
+		original.checkpoint(new CodedWriter(writer, EliasOmegaCoding.extended), codec);
+		writer.flush();
+
+		GvmClusters<GvmVectorSpace, Integer> clusters = new GvmClusters<GvmVectorSpace, Integer>(space, 10);
+		clusters.setDecay(0.5, 7);
+		for (int i = 100; i < pts.length; i++) {
+			clusters.add(1.0, pts[i], i);
+		}
+		List<GvmResult<Integer>> expected = clusters.results();
+		// the keys cannot be decoded without a codec
+		try {
+			clusters.restore(new CodedReader(new ByteArrayBitReader(writer.getBytes()), EliasOmegaCoding.extended), null);
+			fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+		assertEquals(0.5, clusters.getDecayFactor());
+		assertEquals(7, clusters.getDecayInterval());
+		List<GvmResult<Integer>> actual = clusters.results();
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			GvmResult<Integer> e = expected.get(i);
+			GvmResult<Integer> a = actual.get(i);
+			assertEquals(e.getCount(), a.getCount());
+			assertEquals(e.getMass(), a.getMass());
+			assertEquals(e.getKey(), a.getKey());
+		}
+	}
+
+	public void testBatch() {
+		Random random = new Random(0L);
+		double[][] pts = points(random, 3000, 2, 8);
+		// spatially coherent points favour repeated additions to the same cluster
+		double[][] sorted = pts.clone();
+		Arrays.sort(sorted, new Comparator<double[]>() {
+			@Override
+			public int compare(double[] a, double[] b) {
+				return Double.compare(a[0], b[0]);
+			}
+		});
+		double[] ms = new double[pts.length];
+		Integer[] keys = new Integer[pts.length];
+		for (int i = 0; i < ms.length; i++) {
+			ms[i] = 0.5 + random.nextDouble();
+			keys[i] = i;
+		}
+		for (GvmSpaceFactory factory : GvmSpaceFactory.values()) {
+			for (double[][] points : new double[][][] {pts, sorted}) {
+				for (int interval = 0; interval <= 500; interval += 500) {
+					GvmClusters<GvmVectorSpace, Integer> expected = new GvmClusters<GvmVectorSpace, Integer>(factory.newSpace(), 40);
+					GvmClusters<GvmVectorSpace, Integer> actual = new GvmClusters<GvmVectorSpace, Integer>(factory.newSpace(), 40);
+					if (interval > 0) {
+						expected.setDecay(0.5, interval);
+						actual.setDecay(0.5, interval);
+					}
+					double[] coords = new double[points.length * 2];
+					for (int i = 0; i < points.length; i++) {
+						expected.add(ms[i], points[i], keys[i]);
+						System.arraycopy(points[i], 0, coords, i * 2, 2);
+					}
+					actual.addAll(ms, coords, keys, 0, 1000);
+					actual.addAll(ms, coords, keys, 1000, points.length - 1000);
+					List<GvmResult<Integer>> e = expected.results();
+					List<GvmResult<Integer>> a = actual.results();
+					assertEquals(e.size(), a.size());
+					for (int i = 0; i < e.size(); i++) {
+						assertEquals(e.get(i).getCount(), a.get(i).getCount());
+						assertEquals(e.get(i).getMass(), a.get(i).getMass());
+						assertEquals(e.get(i).getVariance(), a.get(i).getVariance());
+						assertEquals(e.get(i).getKey(), a.get(i).getKey());
+					}
+				}
+			}
+		}
+		try {
+			new GvmClusters<GvmVectorSpace, Integer>(new GvmVectorSpace(2), 10).addAll(new double[2], new double[3], null);
+			fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+	}
+
+	public void testVectorStoreTies() {
+		GvmClusters<GvmVectorSpace, Integer> clusters = new GvmClusters<GvmVectorSpace, Integer>(new GvmVectorSpace(2), 6);
+		// four clusters are equally cheap for a point at the origin
+		double[][] centres = { {3.0, 0.0}, {0.0, 1.0}, {-1.0, 0.0}, {1.0, 0.0}, {0.0, -1.0}, {-3.0, 0.0} };
+		GvmVectorStore store = new GvmVectorStore(centres.length, 2);
+		for (int i = 0; i < centres.length; i++) {
+			GvmCluster<GvmVectorSpace, Integer> cluster = new GvmCluster<GvmVectorSpace, Integer>(clusters);
+			cluster.set(1.0, centres[i]);
+			store.set(i, cluster);
+		}
+		double[] pt = {0.0, 0.0};
+		double[] costs = new double[centres.length];
+		store.test(centres.length, 1.0, pt, costs);
+		int expected = 0;
+		for (int i = 1; i < costs.length; i++) {
+			if (costs[i] < costs[expected]) expected = i;
+		}
+		assertEquals(1, expected);
+		assertEquals(costs[1], costs[2]);
+		// the exhaustive search and the pruned search agree on exact ties
+		assertEquals(expected, store.nearest(centres.length, 1.0, pt, Double.MAX_VALUE));
+		// a limit equal to the least cost is acceptable, one below it is not
+		assertEquals(expected, store.nearest(centres.length, 1.0, pt, costs[expected]));
+		assertEquals(-1, store.nearest(centres.length, 1.0, pt, Math.nextAfter(costs[expected], 0.0)));
+	}
+
+	public void testVectorStore() {
+		Random random = new Random(0L);
+		for (int dimensions = 1; dimensions <= 16; dimensions *= 4) {
+			double[][] pts = points(random, 2000, dimensions, 5);
+			double[] ms = new double[pts.length];
+			for (int i = 0; i < ms.length; i++) ms[i] = 0.5 + random.nextDouble() * 2.0;
+			for (int variant = 0; variant < 4; variant++) {
+				boolean reduce = (variant & 1) != 0;
+				double[] masses = (variant & 2) != 0 ? ms : null;
+				// the store is only used by the unextended space
+				List<GvmResult<Integer>> expected = cluster(new GvmVectorSpace(dimensions) {}, pts, masses, 50, reduce);
+				List<GvmResult<Integer>> actual = cluster(new GvmVectorSpace(dimensions), pts, masses, 50, reduce);
+				assertEquals(expected.size(), actual.size());
+				for (int i = 0; i < expected.size(); i++) {
+					GvmResult<Integer> e = expected.get(i);
+					GvmResult<Integer> a = actual.get(i);
+					assertEquals(e.getCount(), a.getCount());
+					assertEquals(e.getMass(), a.getMass());
+					assertEquals(e.getVariance(), a.getVariance(), 1e-6 * Math.max(1.0, e.getVariance()));
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012 Tom Gibara
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.tomgibara.cluster.gvm.perf;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import com.tomgibara.cluster.gvm.GvmClusters;
+import com.tomgibara.cluster.gvm.GvmFloatClusters;
+import com.tomgibara.cluster.gvm.space.GvmVectorSpace;
+
+/**
+ * Compares the time and memory taken to cluster points with
+ * {@link GvmClusters} against those of {@link GvmFloatClusters}. This is a
+ * harness rather than a test; run its main method, optionally passing the
+ * number of repetitions. It is not a JMH benchmark because the build has no
+ * JMH dependency or benchmark module to run one, so it warms up and takes
+ * medians itself.
+ */
+
+public class GvmClustersPerf {
+
+	private static final int SIZE = 20000;
+	private static final int DIMENSIONS = 16;
+	private static final int CAPACITY = 1000;
+	
+	public static void main(String[] args) {
+		int reps = args.length == 0 ? 11 : Integer.parseInt(args[0]);
+		double[][] pts = points();
+		// the first round warms up the code
+		for (int round = 0; round < 2; round++) {
+			long doubleMedian = medianTime("Double", false, pts, reps);
+			long floatMedian = medianTime("Float", true, pts, reps);
+			System.out.println("Speedup: " + (double) doubleMedian / floatMedian);
+		}
+		long doubleBytes = retainedBytes(false);
+		long floatBytes = retainedBytes(true);
+		System.out.println("Retained: " + doubleBytes + " bytes for double, " + floatBytes + " bytes for float");
+	}
+	
+	private static double[][] points() {
+		Random r = new Random(0L);
+		double[][] centres = new double[50][DIMENSIONS];
+		for (double[] centre : centres) {
+			for (int i = 0; i < DIMENSIONS; i++) centre[i] = r.nextDouble() * 1000.0;
+		}
+		double[][] pts = new double[SIZE][DIMENSIONS];
+		for (double[] pt : pts) {
+			double[] centre = centres[r.nextInt(centres.length)];
+			for (int i = 0; i < DIMENSIONS; i++) pt[i] = centre[i] + r.nextGaussian() * 10.0;
+		}
+		return pts;
+	}
+	
+	private static GvmClusters<GvmVectorSpace, Void> newClusters(boolean singlePrecision) {
+		GvmVectorSpace space = new GvmVectorSpace(DIMENSIONS);
+		return singlePrecision ?
+				new GvmFloatClusters<GvmVectorSpace, Void>(space, CAPACITY) :
+				new GvmClusters<GvmVectorSpace, Void>(space, CAPACITY);
+	}
+	
+	private static long medianTime(String title, boolean singlePrecision, double[][] pts, int reps) {
+		long[] times = new long[reps];
+		System.out.println(title);
+		int count = 0;
+		for (int i = 0; i < reps; i++) {
+			System.gc();
+			long startTime = System.currentTimeMillis();
+			GvmClusters<GvmVectorSpace, Void> clusters = newClusters(singlePrecision);
+			for (double[] pt : pts) {
+				clusters.add(1.0, pt, null);
+			}
+			clusters.reduce(Double.MAX_VALUE, 50);
+			count = clusters.results().size();
+			long finishTime = System.currentTimeMillis();
+			times[i] = finishTime - startTime;
+		}
+		Arrays.sort(times);
+		long median = times[reps / 2];
+		System.out.println("Median time: " + median + "ms for " + count + " clusters");
+		return median;
+	}
+	
+	private static long retainedBytes(boolean singlePrecision) {
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		long before = runtime.totalMemory() - runtime.freeMemory();
+		GvmClusters<GvmVectorSpace, Void> clusters = newClusters(singlePrecision);
+		System.gc();
+		long after = runtime.totalMemory() - runtime.freeMemory();
+		// keeps the clusters reachable until they have been measured
+		if (clusters.getCapacity() != CAPACITY) throw new IllegalStateException();
+		return after - before;
+	}
+	
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2012 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.crinch.bits;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+// accumulates a checksum for every fixed size block of a sequence of bytes
+final class BlockChecksummer {
+
+	private final int blockSize;
+	private final CRC32 crc = new CRC32();
+	private int[] checksums = new int[16];
+	private int blockCount = 0;
+	private int blockFill = 0;
+	private long length = 0L;
+
+	BlockChecksummer(int blockSize) {
+		if (blockSize < 1) throw new IllegalArgumentException("non-positive blockSize");
+		this.blockSize = blockSize;
+	}
+
+	void update(int b) {
+		crc.update(b);
+		length++;
+		if (++blockFill == blockSize) endBlock();
+	}
+
+	void update(byte[] b, int off, int len) {
+		length += len;
+		while (len > 0) {
+			int count = Math.min(len, blockSize - blockFill);
+			crc.update(b, off, count);
+			off += count;
+			len -= count;
+			blockFill += count;
+			if (blockFill == blockSize) endBlock();
+		}
+	}
+
+	// completes the final block and writes the footer
+	void writeFooter(OutputStream out) throws IOException {
+		if (blockFill > 0) endBlock();
+		BlockChecksums.writeFooter(out, checksums, blockCount, blockSize, length);
+	}
+
+	private void endBlock() {
+		if (blockCount == checksums.length) {
+			int[] tmp = new int[blockCount * 2];
+			System.arraycopy(checksums, 0, tmp, 0, blockCount);
+			checksums = tmp;
+		}
+		checksums[blockCount++] = (int) crc.getValue();
+		crc.reset();
+		blockFill = 0;
+	}
+
+}
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2012 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.crinch.bits;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * The block checksums recorded at the end of a file by a
+ * {@link ChecksummedOutputStream}. Blocks are verified on demand and each
+ * block is verified at most once, so verification can be performed lazily as
+ * data is read. Instances of this class are safe for concurrent use.
+ * 
+ * @author Tom Gibara
+ * 
+ */
+
+public final class BlockChecksums {
+
+	// statics
+	
+	private static final int MAGIC = 0x43524342;
+	// block size, block count, data length, magic
+	private static final int TRAILER_SIZE = 4 + 4 + 8 + 4;
+	
+	static void writeFooter(OutputStream out, int[] checksums, int blockCount, int blockSize, long length) throws IOException {
+		DataOutputStream dout = new DataOutputStream(out);
+		for (int i = 0; i < blockCount; i++) {
+			dout.writeInt(checksums[i]);
+		}
+		dout.writeInt(blockSize);
+		dout.writeInt(blockCount);
+		dout.writeLong(length);
+		dout.writeInt(MAGIC);
+		dout.flush();
+	}
+	
+	/**
+	 * Reads the checksums from the end of a file. The data in the file is not
+	 * verified.
+	 * 
+	 * @param file
+	 *            a file written via a {@link ChecksummedOutputStream}
+	 * @return the checksums for the file
+	 * @throws ChecksumException
+	 *             if the file does not end with valid checksums
+	 * @throws BitStreamException
+	 *             if the file could not be read
+	 */
+	
+	public static BlockChecksums read(File file) throws ChecksumException, BitStreamException {
+		if (file == null) throw new IllegalArgumentException("null file");
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(file, "r");
+			long fileLength = raf.length();
+			if (fileLength < TRAILER_SIZE) throw new ChecksumException(file, -1, "file too short to contain checksums: " + file);
+			raf.seek(fileLength - TRAILER_SIZE);
+			int blockSize = raf.readInt();
+			int blockCount = raf.readInt();
+			long length = raf.readLong();
+			int magic = raf.readInt();
+			if (magic != MAGIC) throw new ChecksumException(file, -1, "file does not end with checksums: " + file);
+			if (
+					blockSize < 1 ||
+					length < 0L ||
+					blockCount != (length + blockSize - 1) / blockSize ||
+					fileLength != length + 4L * blockCount + TRAILER_SIZE
+				) throw new ChecksumException(file, -1, "invalid checksums in file: " + file);
+			int[] checksums = new int[blockCount];
+			raf.seek(length);
+			for (int i = 0; i < blockCount; i++) {
+				checksums[i] = raf.readInt();
+			}
+			return new BlockChecksums(file, blockSize, length, checksums);
+		} catch (IOException e) {
+			throw new BitStreamException(e);
+		} finally {
+			if (raf != null) {
+				try {
+					raf.close();
+				} catch (IOException e) {
+					System.err.println("Failed to close file! " + file);
+				}
+			}
+		}
+	}
+	
+	// fields
+	
+	private final File file;
+	private final int blockSize;
+	private final long length;
+	private final int[] checksums;
+	private final boolean[] verified;
+	
+	// constructors
+	
+	private BlockChecksums(File file, int blockSize, long length, int[] checksums) {
+		this.file = file;
+		this.blockSize = blockSize;
+		this.length = length;
+		this.checksums = checksums;
+		verified = new boolean[checksums.length];
+	}
+	
+	// accessors
+	
+	/**
+	 * The file from which the checksums were read.
+	 * 
+	 * @return the file, never null
+	 */
+	
+	public File getFile() {
+		return file;
+	}
+	
+	/**
+	 * The number of bytes covered by each checksum.
+	 * 
+	 * @return the block size, always positive
+	 */
+	
+	public int getBlockSize() {
+		return blockSize;
+	}
+	
+	/**
+	 * The number of data bytes in the file; this excludes the checksums.
+	 * 
+	 * @return the length of the data
+	 */
+	
+	public long getDataLength() {
+		return length;
+	}
+	
+	/**
+	 * The number of checksummed blocks.
+	 * 
+	 * @return the block count
+	 */
+	
+	public int getBlockCount() {
+		return checksums.length;
+	}
+	
+	// methods
+	
+	/**
+	 * Verifies every block of data in the file that overlaps the specified
+	 * range and which has not already been verified. Bytes outside of the data
+	 * are ignored.
+	 * 
+	 * @param from
+	 *            the index of the first byte to verify
+	 * @param to
+	 *            the index following the last byte to verify
+	 * @throws ChecksumException
+	 *             if any block fails verification
+	 * @throws BitStreamException
+	 *             if the file could not be read
+	 */
+	
+	public void verify(long from, long to) throws ChecksumException, BitStreamException {
+		from = Math.max(0L, from);
+		to = Math.min(to, length);
+		if (to <= from) return;
+		int first = (int) (from / blockSize);
+		int last = (int) ((to - 1) / blockSize);
+		if (isVerified(first, last)) return;
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(file, "r");
+			byte[] buffer = new byte[blockSize];
+			for (int block = first; block <= last; block++) {
+				if (isVerified(block, block)) continue;
+				long position = (long) block * blockSize;
+				int size = (int) Math.min(blockSize, length - position);
+				raf.seek(position);
+				raf.readFully(buffer, 0, size);
+				verify(block, buffer, 0, size);
+			}
+		} catch (IOException e) {
+			throw new BitStreamException(e);
+		} finally {
+			if (raf != null) {
+				try {
+					raf.close();
+				} catch (IOException e) {
+					System.err.println("Failed to close file! " + file);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Verifies every block of data in the file which lies wholly within the
+	 * remaining bytes of a buffer and which has not already been verified.
+	 * This allows data to be verified from the bytes that have been read for
+	 * other purposes without reading them from the file a second time. The
+	 * position of the buffer is unchanged.
+	 * 
+	 * @param position
+	 *            the index in the file of the first remaining byte in the
+	 *            buffer
+	 * @param bytes
+	 *            a buffer containing bytes read from the file
+	 * @return true if every block that overlaps the buffer has been verified,
+	 *         false if some could not be because they extend beyond it
+	 * @throws ChecksumException
+	 *             if any block fails verification
+	 */
+	
+	public boolean verify(long position, ByteBuffer bytes) throws ChecksumException {
+		if (position < 0L) throw new IllegalArgumentException("negative position");
+		if (bytes == null) throw new IllegalArgumentException("null bytes");
+		long end = position + bytes.remaining();
+		long to = Math.min(end, length);
+		if (to <= position) return true;
+		int first = (int) (position / blockSize);
+		int last = (int) ((to - 1) / blockSize);
+		boolean complete = true;
+		byte[] copy = null;
+		for (int block = first; block <= last; block++) {
+			if (isVerified(block, block)) continue;
+			long start = (long) block * blockSize;
+			int size = (int) Math.min(blockSize, length - start);
+			if (start < position || start + size > end) {
+				complete = false;
+				continue;
+			}
+			int offset = bytes.position() + (int) (start - position);
+			if (bytes.hasArray()) {
+				verify(block, bytes.array(), bytes.arrayOffset() + offset, size);
+			} else {
+				if (copy == null) copy = new byte[blockSize];
+				ByteBuffer dup = bytes.duplicate();
+				dup.position(offset);
+				dup.get(copy, 0, size);
+				verify(block, copy, 0, size);
+			}
+		}
+		return complete;
+	}
+
+	/**
+	 * Verifies all of the data in the file.
+	 * 
+	 * @throws ChecksumException
+	 *             if any block fails verification
+	 * @throws BitStreamException
+	 *             if the file could not be read
+	 */
+	
+	public void verifyAll() throws ChecksumException, BitStreamException {
+		verify(0L, length);
+	}
+	
+	/**
+	 * Verifies all of the data in the file using a copy of its contents. The
+	 * array may include the checksums which follow the data.
+	 * 
+	 * @param bytes
+	 *            the contents of the file
+	 * @throws ChecksumException
+	 *             if any block fails verification
+	 */
+	
+	public void verifyAll(byte[] bytes) throws ChecksumException {
+		if (bytes == null) throw new IllegalArgumentException("null bytes");
+		if (bytes.length < length) throw new ChecksumException(file, -1, "file truncated: " + file);
+		for (int block = 0; block < checksums.length; block++) {
+			if (isVerified(block, block)) continue;
+			long position = (long) block * blockSize;
+			verify(block, bytes, (int) position, (int) Math.min(blockSize, length - position));
+		}
+	}
+	
+	// private utility methods
+	
+	private synchronized boolean isVerified(int first, int last) {
+		for (int i = first; i <= last; i++) {
+			if (!verified[i]) return false;
+		}
+		return true;
+	}
+	
+	void verify(int block, byte[] bytes, int offset, int size) throws ChecksumException {
+		CRC32 crc = new CRC32();
+		crc.update(bytes, offset, size);
+		if ((int) crc.getValue() != checksums[block]) {
+			long position = (long) block * blockSize;
+			throw new ChecksumException(file, block, "checksum mismatch in block " + block + " (bytes " + position + " to " + (position + size) + ") of file: " + file);
+		}
+		synchronized (this) {
+			verified[block] = true;
+		}
+	}
+	
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2012 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.crinch.bits;
+
+import java.io.File;
+
+/**
+ * This exception is raised when data read from a file does not match the
+ * checksums that were recorded when it was written.
+ * 
+ * @author Tom Gibara
+ * 
+ */
+
+public class ChecksumException extends BitStreamException {
+
+	private static final long serialVersionUID = -3324468915062253473L;
+
+	private final File file;
+	private final int block;
+
+	public ChecksumException(File file, int block, String message) {
+		super(message);
+		this.file = file;
+		this.block = block;
+	}
+
+	/**
+	 * The file that failed verification.
+	 * 
+	 * @return the file, may be null
+	 */
+	
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * The index of the block that failed verification.
+	 * 
+	 * @return the block index, or -1 if the checksums themselves are invalid
+	 */
+	
+	public int getBlock() {
+		return block;
+	}
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2012 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.crinch.bits;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream that verifies the data of a file written via a
+ * {@link ChecksummedOutputStream} as it is read. Each block of data is read in
+ * its entirety and verified before any of its bytes are returned, so the data
+ * is read only once. Blocks that are skipped over entirely are not verified.
+ * Bytes following the data (the checksums themselves) are returned unverified.
+ * 
+ * @author Tom Gibara
+ * 
+ */
+
+public class ChecksummedInputStream extends FilterInputStream {
+
+	private final BlockChecksums checksums;
+	private final long length;
+	private final byte[] block;
+	// the number of bytes read from the underlying stream
+	private long position = 0L;
+	// the index of the next byte returned from the block, and the number of bytes in it
+	private int offset = 0;
+	private int limit = 0;
+	
+	/**
+	 * Creates a stream that verifies data read from the start of a file.
+	 * 
+	 * @param in
+	 *            a stream over the file from which the checksums were read
+	 * @param checksums
+	 *            the checksums for the file
+	 */
+	
+	public ChecksummedInputStream(InputStream in, BlockChecksums checksums) {
+		super(in);
+		if (in == null) throw new IllegalArgumentException("null in");
+		if (checksums == null) throw new IllegalArgumentException("null checksums");
+		this.checksums = checksums;
+		length = checksums.getDataLength();
+		block = new byte[checksums.getBlockSize()];
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (offset == limit) {
+			if (position >= length) {
+				int b = in.read();
+				if (b >= 0) position++;
+				return b;
+			}
+			fill();
+		}
+		return block[offset++] & 0xff;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) return 0;
+		if (offset == limit) {
+			if (position >= length) return passThrough(in.read(b, off, len));
+			fill();
+		}
+		int n = Math.min(len, limit - offset);
+		System.arraycopy(block, offset, b, off, n);
+		offset += n;
+		return n;
+	}
+	
+	@Override
+	public long skip(long n) throws IOException {
+		if (n <= 0L) return 0L;
+		long skipped = Math.min(n, limit - offset);
+		offset += skipped;
+		n -= skipped;
+		if (n == 0L) return skipped;
+		if (position >= length) return skipped + passThrough(in.skip(n));
+		// whole blocks that are never read need not be verified
+		long whole = Math.min(n, length - position) / block.length * block.length;
+		for (long remaining = whole; remaining > 0L; ) {
+			long s = in.skip(remaining);
+			if (s <= 0L) throw new ChecksumException(checksums.getFile(), -1, "file truncated: " + checksums.getFile());
+			remaining -= s;
+			position += s;
+		}
+		skipped += whole;
+		n -= whole;
+		if (n == 0L) return skipped;
+		if (position >= length) return skipped + passThrough(in.skip(n));
+		fill();
+		offset = (int) Math.min(n, limit);
+		return skipped + offset;
+	}
+	
+	@Override
+	public int available() throws IOException {
+		return limit - offset;
+	}
+	
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+	
+	@Override
+	public synchronized void mark(int readlimit) {
+	}
+	
+	@Override
+	public synchronized void reset() throws IOException {
+		throw new IOException("mark not supported");
+	}
+	
+	// reads and verifies the block that starts at the current position
+	private void fill() throws IOException {
+		int size = (int) Math.min(block.length, length - position);
+		int count = 0;
+		while (count < size) {
+			int n = in.read(block, count, size - count);
+			if (n < 0) throw new ChecksumException(checksums.getFile(), -1, "file truncated: " + checksums.getFile());
+			count += n;
+		}
+		checksums.verify((int) (position / block.length), block, 0, size);
+		position += size;
+		offset = 0;
+		limit = size;
+	}
+
+	private int passThrough(int n) {
+		if (n > 0) position += n;
+		return n;
+	}
+
+	private long passThrough(long n) {
+		if (n > 0L) position += n;
+		return n;
+	}
+	
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2012 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.crinch.bits;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An output stream that records a checksum for every fixed size block of the
+ * bytes written to it. The checksums are written after the data when the
+ * stream is closed (or explicitly finished) so that byte offsets into the data
+ * are unaffected. The checksums can be subsequently used to verify the data
+ * via {@link BlockChecksums}.
+ * 
+ * @author Tom Gibara
+ * 
+ */
+
+public class ChecksummedOutputStream extends FilterOutputStream {
+
+	/**
+	 * The default number of bytes covered by each checksum.
+	 */
+	
+	public static final int DEFAULT_BLOCK_SIZE = 8192;
+	
+	private final BlockChecksummer checksummer;
+	private boolean finished = false;
+	
+	/**
+	 * Creates a stream using the default block size.
+	 * 
+	 * @param out
+	 *            the stream to which data and checksums are written
+	 */
+	
+	public ChecksummedOutputStream(OutputStream out) {
+		this(out, DEFAULT_BLOCK_SIZE);
+	}
+	
+	/**
+	 * Creates a stream with a specified block size.
+	 * 
+	 * @param out
+	 *            the stream to which data and checksums are written
+	 * @param blockSize
+	 *            the number of bytes covered by each checksum
+	 */
+	
+	public ChecksummedOutputStream(OutputStream out, int blockSize) {
+		super(out);
+		if (out == null) throw new IllegalArgumentException("null out");
+		checksummer = new BlockChecksummer(blockSize);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		checkNotFinished();
+		out.write(b);
+		checksummer.update(b);
+	}
+	
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		checkNotFinished();
+		out.write(b, off, len);
+		checksummer.update(b, off, len);
+	}
+	
+	/**
+	 * Writes the checksums to the underlying stream, after which no further
+	 * data may be written. Calling this method multiple times has no effect.
+	 * 
+	 * @throws IOException
+	 *             if the checksums could not be written
+	 */
+	
+	public void finish() throws IOException {
+		if (finished) return;
+		finished = true;
+		checksummer.writeFooter(out);
+		out.flush();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		try {
+			finish();
+		} finally {
+			out.close();
+		}
+	}
+	
+	private void checkNotFinished() throws IOException {
+		if (finished) throw new IOException("checksums already written");
+	}
+	
+}
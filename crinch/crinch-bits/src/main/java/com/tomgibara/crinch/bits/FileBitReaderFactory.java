@@ -21,7 +21,10 @@ import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
 
 /**
  * Provides a convenient way of opening and closing {@link BitReader}s over a
@@ -67,13 +70,24 @@ public class FileBitReaderFactory {
 		 * read position backwards through the file.
 		 */
 		
-		STREAM
+		STREAM,
+		
+		/**
+		 * The file is memory mapped and readers over the mapped bytes are
+		 * created. This provides fast random access without copying the file
+		 * into the heap. Files larger than 2GB cannot be mapped.
+		 */
+		
+		MAPPED
 	}
 
 	private final Mode mode;
 	private final File file;
 	private final int bufferSize;
+	private final boolean verifying;
 	private byte[] bytes = null;
+	private MappedByteBuffer mapped = null;
+	private BlockChecksums checksums = null;
 
 	/**
 	 * Constructs a new {@link FileBitReaderFactory} using the default buffer
@@ -93,7 +107,8 @@ public class FileBitReaderFactory {
 	
 	/**
 	 * Constructs a new {@link FileBitReaderFactory} using the specified buffer
-	 * size. When the mode is {@link Mode#MEMORY}, the bufferSize is ignored.
+	 * size. When the mode is {@link Mode#MEMORY} or {@link Mode#MAPPED}, the
+	 * bufferSize is ignored.
 	 * 
 	 * @param file
 	 *            the file from which bits are to be read
@@ -107,12 +122,39 @@ public class FileBitReaderFactory {
 	 */
 
 	public FileBitReaderFactory(File file, Mode mode, int bufferSize) throws IllegalArgumentException {
+		this(file, mode, bufferSize, false);
+	}
+
+	/**
+	 * Constructs a new {@link FileBitReaderFactory} using the specified buffer
+	 * size, which optionally verifies the file against the checksums recorded
+	 * by a {@link ChecksummedOutputStream}. In {@link Mode#CHANNEL} and
+	 * {@link Mode#STREAM} modes, verification is performed lazily as data is
+	 * buffered; in the other modes the entire file is verified from its in-memory
+	 * or mapped contents when the first reader is opened. In no mode is the
+	 * data read from the file more than once for verification.
+	 * 
+	 * @param file
+	 *            the file from which bits are to be read
+	 * @param mode
+	 *            the method by which bits are obtained from the file
+	 * @param bufferSize
+	 *            the size of the buffer
+	 * @param verifying
+	 *            whether the data should be verified against checksums
+	 * @throws IllegalArgumentException
+	 *             if file is null, the mode is null, or the bufferSize is not
+	 *             positive
+	 */
+
+	public FileBitReaderFactory(File file, Mode mode, int bufferSize, boolean verifying) throws IllegalArgumentException {
 		if (file == null) throw new IllegalArgumentException("null file");
 		if (mode == null) throw new IllegalArgumentException("null mode");
 		if (bufferSize < 1) throw new IllegalArgumentException("non-positive bufferSize");
 		this.file = file;
 		this.mode = mode;
 		this.bufferSize = bufferSize;
+		this.verifying = verifying;
 	}
 
 	/**
@@ -137,7 +179,7 @@ public class FileBitReaderFactory {
 
 	/**
 	 * The size of the buffer used to read bytes from the file. The buffer size
-	 * is irrelevant when the mode is {@link Mode#MEMORY}.
+	 * is irrelevant when the mode is {@link Mode#MEMORY} or {@link Mode#MAPPED}.
 	 * 
 	 * @return the buffer size, always positive
 	 */
@@ -146,6 +188,16 @@ public class FileBitReaderFactory {
 		return bufferSize;
 	}
 	
+	/**
+	 * Whether data read from the file is verified against checksums.
+	 * 
+	 * @return true if the data is verified, false otherwise
+	 */
+	
+	public boolean isVerifying() {
+		return verifying;
+	}
+	
 	/**
 	 * Opens a reader over the bits of the file. The characteristics of the
 	 * returned reader are determined by the {@link Mode} in which the factory
@@ -159,14 +211,43 @@ public class FileBitReaderFactory {
 	 * @throws BitStreamException
 	 *             if the reader could not be opened, typically because the file
 	 *             could not be read
+	 * @throws ChecksumException
+	 *             if the factory is verifying and the file has no valid
+	 *             checksums, or if the file was verified on opening and some
+	 *             data did not match its checksum
 	 */
 	
 	public BitReader openReader() throws BitStreamException {
 		try {
 			switch(mode) {
-			case MEMORY : return new ByteArrayBitReader(getBytes());
-			case STREAM : return new InputStreamBitReader(new BufferedInputStream(new FileInputStream(file), bufferSize));
-			case CHANNEL: return new FileChannelBitReader(new RandomAccessFile(file, "r").getChannel(), bufferSize, true);
+			case MEMORY :
+			{
+				byte[] bytes = getBytes();
+				if (verifying) getChecksums().verifyAll(bytes);
+				return new ByteArrayBitReader(bytes);
+			}
+			case STREAM :
+			{
+				// obtain the checksums first so that the stream isn't leaked if they're invalid
+				BlockChecksums blockChecksums = verifying ? getChecksums() : null;
+				InputStream in = new FileInputStream(file);
+				if (blockChecksums != null) in = new ChecksummedInputStream(in, blockChecksums);
+				return new InputStreamBitReader(new BufferedInputStream(in, bufferSize));
+			}
+			case CHANNEL:
+			{
+				FileChannelBitReader reader = new FileChannelBitReader(new RandomAccessFile(file, "r").getChannel(), bufferSize, true);
+				if (verifying) reader.checksums = getChecksums();
+				return reader;
+			}
+			case MAPPED:
+			{
+				MappedByteBuffer mapped = getMapped();
+				if (verifying && !getChecksums().verify(0L, mapped.duplicate())) {
+					throw new ChecksumException(file, -1, "file truncated: " + file);
+				}
+				return new MappedBitReader(mapped.duplicate());
+			}
 			default: throw new IllegalStateException("Unexpected mode: " + mode);
 			}
 		} catch (IOException e) {
@@ -204,6 +285,30 @@ public class FileBitReaderFactory {
 		
 	}
 
+	private BlockChecksums getChecksums() {
+		synchronized (this) {
+			if (checksums == null) checksums = BlockChecksums.read(file);
+			return checksums;
+		}
+	}
+
+	private MappedByteBuffer getMapped() throws IOException {
+		synchronized (this) {
+			if (mapped == null) {
+				RandomAccessFile raf = new RandomAccessFile(file, "r");
+				try {
+					long size = raf.length();
+					if (size > Integer.MAX_VALUE) throw new BitStreamException("file too large to map: " + file);
+					// the mapping remains valid after the channel is closed
+					mapped = raf.getChannel().map(MapMode.READ_ONLY, 0L, size);
+				} finally {
+					raf.close();
+				}
+			}
+			return mapped;
+		}
+	}
+
 	private byte[] getBytes() throws IOException {
 		synchronized (this) {
 			if (bytes == null) {
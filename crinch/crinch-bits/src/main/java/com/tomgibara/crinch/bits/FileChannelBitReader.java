@@ -33,6 +33,8 @@ public class FileChannelBitReader extends ByteBasedBitReader {
 	private final FileChannel channel;
 	private final ByteBuffer buffer;
 	private long bufferPosition;
+	// if non-null, used to verify data as it is buffered
+	BlockChecksums checksums = null;
 	
 	/**
 	 * Constructs a new BitReader over the specified FileChannel. Using a direct
@@ -60,13 +62,30 @@ public class FileChannelBitReader extends ByteBasedBitReader {
 	protected int readByte() throws BitStreamException {
 		if (buffer.hasRemaining()) return buffer.get() & 0xff;
 		buffer.limit(buffer.capacity()).position(0);
+		int offset = 0;
 		try {
 			bufferPosition = channel.position();
+			if (checksums != null) {
+				// align the buffer with whole blocks so that they can be verified from it
+				int blockSize = checksums.getBlockSize();
+				int capacity = buffer.capacity() / blockSize * blockSize;
+				if (capacity > 0) {
+					offset = (int) (bufferPosition % blockSize);
+					bufferPosition -= offset;
+					channel.position(bufferPosition);
+					buffer.limit(capacity);
+				}
+			}
 			channel.read(buffer);
 		} catch (IOException e) {
 			throw new BitStreamException(e);
 		}
 		buffer.flip();
+		if (checksums != null && !checksums.verify(bufferPosition, buffer)) {
+			// only blocks that don't fit in the buffer need to be read again
+			checksums.verify(bufferPosition, bufferPosition + buffer.limit());
+		}
+		buffer.position(Math.min(offset, buffer.limit()));
 		return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
 	}
 	
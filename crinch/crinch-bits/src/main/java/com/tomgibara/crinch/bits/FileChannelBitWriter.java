@@ -0,0 +1,257 @@
+/*
+ * Copyright 2012 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.crinch.bits;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * A {@link BitWriter} that writes its bits to a <code>FileChannel</code>
+ * through a byte buffer. Using a large buffer reduces the number of writes
+ * made to the channel.
+ * </p>
+ * 
+ * <p>
+ * An asynchronous writer uses two buffers: bits are written into one buffer
+ * while the other is written to the channel by a background thread. The
+ * writer may also record block checksums in the same format as a
+ * {@link ChecksummedOutputStream}, so that the file can subsequently be
+ * verified using {@link BlockChecksums}; checksums are computed as buffers
+ * are written so, in asynchronous mode, they are also computed in the
+ * background.
+ * </p>
+ * 
+ * <p>
+ * Buffered bytes are only guaranteed to have been written to the channel
+ * after {@link #finish()} has been called. The channel is not closed by the
+ * writer. Finishing an asynchronous writer also stops its background thread;
+ * should a writer be abandoned without being finished, its thread stops once
+ * it has been idle for a second.
+ * </p>
+ * 
+ * @author Tom Gibara
+ */
+
+public class FileChannelBitWriter extends ByteBasedBitWriter {
+
+	// statics
+	
+	// how long the background thread of an unfinished writer may remain idle
+	private static final long KEEP_ALIVE_MILLIS = 1000L;
+	
+	private static final ThreadFactory sThreadFactory = new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "FileChannelBitWriter");
+			thread.setDaemon(true);
+			return thread;
+		}
+	};
+	
+	// fields
+	
+	private final FileChannel channel;
+	// null if checksums are not being recorded
+	private final BlockChecksummer checksummer;
+	// null if writes are synchronous
+	private final ExecutorService executor;
+	// the buffer into which bytes are written
+	private ByteBuffer buffer;
+	// the buffer that may be being written asynchronously
+	private ByteBuffer spare;
+	// the asynchronous write of the spare buffer, if any
+	private Future<Void> pending = null;
+	private boolean finished = false;
+	
+	// constructors
+	
+	/**
+	 * Constructs a synchronous writer which does not record checksums.
+	 * 
+	 * @param channel
+	 *            the file channel to which bits are to be written
+	 * @param bufferSize
+	 *            the size, in bytes, of the buffer used to store file data
+	 */
+	
+	public FileChannelBitWriter(FileChannel channel, int bufferSize) {
+		this(channel, bufferSize, false, false);
+	}
+	
+	/**
+	 * Constructs a new BitWriter over the specified FileChannel.
+	 * 
+	 * @param channel
+	 *            the file channel to which bits are to be written
+	 * @param bufferSize
+	 *            the size, in bytes, of each buffer used to store file data
+	 * @param asynchronous
+	 *            whether full buffers should be written to the channel by a
+	 *            background thread
+	 * @param checksummed
+	 *            whether block checksums should be written after the data
+	 */
+	
+	public FileChannelBitWriter(FileChannel channel, int bufferSize, boolean asynchronous, boolean checksummed) {
+		if (channel == null) throw new IllegalArgumentException("null channel");
+		if (bufferSize < 1) throw new IllegalArgumentException("non-positive buffer size");
+		this.channel = channel;
+		checksummer = checksummed ? new BlockChecksummer(ChecksummedOutputStream.DEFAULT_BLOCK_SIZE) : null;
+		executor = asynchronous ? newExecutor() : null;
+		// checksums are computed from arrays, so direct buffers cannot be used
+		buffer = allocate(bufferSize, !checksummed);
+		spare = asynchronous ? allocate(bufferSize, !checksummed) : null;
+	}
+	
+	// accessors
+	
+	/**
+	 * The file channel underlying this BitWriter
+	 * 
+	 * @return a FileChannel, never null
+	 */
+	
+	public FileChannel getChannel() {
+		return channel;
+	}
+	
+	// methods
+	
+	/**
+	 * Writes all buffered bytes to the channel, followed by the checksums if
+	 * they are being recorded. No further bits may be written after this
+	 * method has been called; calling it again has no effect. Any partially
+	 * written byte should first be padded with {@link #flush()}.
+	 * 
+	 * @throws BitStreamException
+	 *             if the bytes could not be written to the channel
+	 */
+	
+	public void finish() throws BitStreamException {
+		if (finished) return;
+		try {
+			if (buffer.position() > 0) drain();
+			await();
+			if (checksummer != null) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				checksummer.writeFooter(out);
+				writeFully(ByteBuffer.wrap(out.toByteArray()));
+			}
+		} catch (IOException e) {
+			throw new BitStreamException(e);
+		} finally {
+			finished = true;
+			if (executor != null) executor.shutdown();
+		}
+	}
+
+	// byte based methods
+	
+	@Override
+	protected void writeByte(int value) throws BitStreamException {
+		buffer.put((byte) value);
+		if (!buffer.hasRemaining()) drain();
+	}
+	
+	@Override
+	protected void fillBytes(int value, long count) throws BitStreamException {
+		final byte b = (byte) value;
+		while (count > 0) {
+			int n = (int) Math.min(count, buffer.remaining());
+			for (int i = 0; i < n; i++) buffer.put(b);
+			count -= n;
+			if (!buffer.hasRemaining()) drain();
+		}
+	}
+	
+	// private utility methods
+	
+	private static ExecutorService newExecutor() {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), sThreadFactory);
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+	
+	private static ByteBuffer allocate(int size, boolean direct) {
+		return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+	}
+	
+	private void drain() throws BitStreamException {
+		if (finished) throw new IllegalStateException("writer finished");
+		buffer.flip();
+		if (executor == null) {
+			write(buffer);
+			buffer.clear();
+			return;
+		}
+		await();
+		final ByteBuffer full = buffer;
+		pending = executor.submit(new Callable<Void>() {
+			@Override
+			public Void call() {
+				write(full);
+				return null;
+			}
+		});
+		buffer = spare;
+		spare = full;
+		buffer.clear();
+	}
+	
+	// waits for any asynchronous write to complete
+	private void await() throws BitStreamException {
+		if (pending == null) return;
+		try {
+			pending.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new BitStreamException("interrupted while writing", e);
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new BitStreamException(cause);
+		} finally {
+			pending = null;
+		}
+	}
+	
+	private void write(ByteBuffer buffer) throws BitStreamException {
+		if (checksummer != null) checksummer.update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+		try {
+			writeFully(buffer);
+		} catch (IOException e) {
+			throw new BitStreamException(e);
+		}
+	}
+	
+	private void writeFully(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) channel.write(buffer);
+	}
+	
+}
@@ -16,71 +16,46 @@
  */
 package com.tomgibara.crinch.bits;
 
-import java.nio.MappedByteBuffer;
+import java.nio.ByteBuffer;
 
-//TODO implement this properly
-class MappedBitReader extends AbstractBitReader {
+/**
+ * A {@link BitReader} that sources bits from a byte buffer, typically a
+ * memory mapped file. Reading from a mapped file avoids copying the file's
+ * data into the heap while still supporting fast random access.
+ * 
+ * @author Tom Gibara
+ */
+
+class MappedBitReader extends ByteBasedBitReader {
+
+	private final ByteBuffer buffer;
+
+	// constructors
 
-    private final MappedByteBuffer buffer;
-    private long size;
-    private long offset;
-    
-    private boolean currentSet = false;
-    private byte current;
+	// the reader operates over a duplicate of the buffer from its position to its limit
+	MappedBitReader(ByteBuffer buffer) {
+		this.buffer = buffer.slice();
+	}
 
-    // constructors
-    
-    //TODO should offer constructor without position?
-    public MappedBitReader(MappedByteBuffer buffer, long size, long position) {
-        this.buffer = buffer;
-        setSize(size);
-        buffer.position();
-        //TODO should check for position > size?
-        setPosition(position);
-    }
+	// byte based methods
 
-    public void setSize(long size) {
-    	if ((size+7)/8 > buffer.limit()) throw new IllegalArgumentException();
-		if (size < getPosition()) setPosition(size);
-		this.size = size;
+	@Override
+	protected int readByte() throws BitStreamException {
+		return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
 	}
-    
-    long getSize() {
-    	return size;
-    }
-    
-    @Override
-    public long getPosition() {
-    	if (currentSet) {
-        	return (buffer.position()-1) * 8L + offset;
-    	} else {
-    		return buffer.position() * 8L + offset;
-    	}
-    }
-    
-    @Override
-    public long setPosition(long position) {
-        if (position < 0) throw new IllegalArgumentException();
-        if (position > size) position = size;
-        buffer.position((int) (position/8));
-        offset = position % 8;
-        updateCurrent();
-        return position;
-    }
-    
+
 	@Override
-	public int read(int count) {
-		if (count == 0) return 0;
-		throw new UnsupportedOperationException();
+	protected long seekByte(long index) throws BitStreamException {
+		final int position = (int) Math.min(index, buffer.limit());
+		buffer.position(position);
+		return position;
 	}
 
-	private void updateCurrent() {
-		if (buffer.hasRemaining()) {
-			current = buffer.get();
-			currentSet = true;
-		} else {
-			currentSet = false;
-		}
+	@Override
+	protected long skipBytes(long count) throws BitStreamException {
+		final int skipped = (int) Math.min(count, buffer.remaining());
+		buffer.position(buffer.position() + skipped);
+		return skipped;
 	}
-	
+
 }
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2012 Tom Gibara
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.tomgibara.crinch.bits;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.tomgibara.crinch.bits.FileBitReaderFactory.Mode;
+
+public class BlockChecksumsTest extends TestCase {
+
+	private static File writeFile(byte[] bytes, int blockSize) throws IOException {
+		File file = File.createTempFile("crinch-bits-test", "-" + bytes.length + ".bits");
+		file.deleteOnExit();
+		ChecksummedOutputStream out = new ChecksummedOutputStream(new FileOutputStream(file), blockSize);
+		try {
+			// mix single byte and array writes
+			int split = bytes.length / 3;
+			for (int i = 0; i < split; i++) out.write(bytes[i]);
+			out.write(bytes, split, bytes.length - split);
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private static void corrupt(File file, long position) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.seek(position);
+			int b = raf.read();
+			raf.seek(position);
+			raf.write(b ^ 1);
+		} finally {
+			raf.close();
+		}
+	}
+
+	public void testVerify() throws IOException {
+		Random random = new Random(0L);
+		for (int length : new int[] {0, 1, 100, 4096, 10000}) {
+			byte[] bytes = new byte[length];
+			random.nextBytes(bytes);
+			File file = writeFile(bytes, 1024);
+			BlockChecksums checksums = BlockChecksums.read(file);
+			assertEquals(length, checksums.getDataLength());
+			assertEquals((length + 1023) / 1024, checksums.getBlockCount());
+			checksums.verifyAll();
+			if (length < 2) continue;
+			corrupt(file, length / 2);
+			checksums = BlockChecksums.read(file);
+			checksums.verify(0L, (length / 2) / 1024 * 1024);
+			try {
+				checksums.verifyAll();
+				fail();
+			} catch (ChecksumException e) {
+				assertEquals(file, e.getFile());
+				assertEquals((length / 2) / 1024, e.getBlock());
+			}
+		}
+	}
+
+	public void testVerifyBuffer() throws IOException {
+		byte[] bytes = new byte[5000];
+		new Random(0L).nextBytes(bytes);
+		File file = writeFile(bytes, 1024);
+		for (boolean direct : new boolean[] {false, true}) {
+			BlockChecksums checksums = BlockChecksums.read(file);
+			ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(bytes.length) : ByteBuffer.allocate(bytes.length);
+			buffer.put(bytes).flip();
+			// blocks extending beyond the buffer cannot be verified from it
+			buffer.position(1000).limit(3100);
+			assertFalse(checksums.verify(1000L, buffer));
+			assertEquals(1000, buffer.position());
+			buffer.position(0).limit(bytes.length);
+			assertTrue(checksums.verify(0L, buffer));
+
+			bytes[2500] ^= 1;
+			buffer.put(2500, bytes[2500]);
+			checksums = BlockChecksums.read(file);
+			try {
+				checksums.verify(0L, buffer);
+				fail();
+			} catch (ChecksumException e) {
+				assertEquals(2, e.getBlock());
+			}
+			bytes[2500] ^= 1;
+		}
+	}
+
+	public void testInputStream() throws IOException {
+		byte[] bytes = new byte[10000];
+		new Random(0L).nextBytes(bytes);
+		File file = writeFile(bytes, 1024);
+		InputStream in = new ChecksummedInputStream(new FileInputStream(file), BlockChecksums.read(file));
+		try {
+			// mix single byte reads, array reads and skips across block boundaries
+			assertEquals(bytes[0] & 0xff, in.read());
+			byte[] buffer = new byte[2000];
+			int count = 1;
+			while (count < 3000) {
+				int n = in.read(buffer, 0, Math.min(buffer.length, 3000 - count));
+				for (int i = 0; i < n; i++) assertEquals(bytes[count + i], buffer[i]);
+				count += n;
+			}
+			assertEquals(4000, in.skip(4000));
+			count += 4000;
+			assertEquals(bytes[count++] & 0xff, in.read());
+			while (count < bytes.length) {
+				int n = in.read(buffer);
+				for (int i = 0; i < n; i++) assertEquals(bytes[count + i], buffer[i]);
+				count += n;
+			}
+			// the checksums follow the data
+			assertTrue(in.read() >= 0);
+		} finally {
+			in.close();
+		}
+
+		corrupt(file, 5000);
+		in = new ChecksummedInputStream(new FileInputStream(file), BlockChecksums.read(file));
+		try {
+			// blocks that are skipped entirely are not verified
+			assertEquals(6144, in.skip(6144));
+			assertEquals(bytes[6144] & 0xff, in.read());
+		} finally {
+			in.close();
+		}
+		in = new ChecksummedInputStream(new FileInputStream(file), BlockChecksums.read(file));
+		try {
+			in.skip(4500);
+			fail();
+		} catch (ChecksumException e) {
+			assertEquals(4, e.getBlock());
+		} finally {
+			in.close();
+		}
+	}
+
+	public void testMissing() throws IOException {
+		File file = File.createTempFile("crinch-bits-test", ".bits");
+		file.deleteOnExit();
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			out.write(new byte[100]);
+		} finally {
+			out.close();
+		}
+		try {
+			BlockChecksums.read(file);
+			fail();
+		} catch (ChecksumException e) {
+			assertEquals(-1, e.getBlock());
+		}
+	}
+
+	public void testFactory() throws IOException {
+		byte[] bytes = new byte[20000];
+		new Random(0L).nextBytes(bytes);
+		File file = writeFile(bytes, 4096);
+		for (Mode mode : Mode.values()) {
+			FileBitReaderFactory factory = new FileBitReaderFactory(file, mode, 1000, true);
+			BitReader reader = factory.openReader();
+			try {
+				for (int i = 0; i < bytes.length; i++) {
+					assertEquals(bytes[i] & 0xff, reader.read(8));
+				}
+			} finally {
+				factory.closeReader(reader);
+			}
+		}
+		corrupt(file, 15000);
+		for (Mode mode : Mode.values()) {
+			FileBitReaderFactory factory = new FileBitReaderFactory(file, mode, 1000, true);
+			BitReader reader = null;
+			try {
+				reader = factory.openReader();
+				// the corrupted block is only detected when reached in channel and stream modes
+				if (mode == Mode.CHANNEL || mode == Mode.STREAM) assertEquals(bytes[0] & 0xff, reader.read(8));
+				reader.setPosition(15000 * 8L);
+				reader.read(8);
+				fail();
+			} catch (ChecksumException e) {
+				assertEquals(3, e.getBlock());
+			} finally {
+				if (reader != null) factory.closeReader(reader);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2012 Tom Gibara
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.tomgibara.crinch.bits;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import com.tomgibara.crinch.bits.FileBitReaderFactory.Mode;
+
+public class FileChannelBitWriterTest extends AbstractByteBasedBitWriterTest {
+
+	private static File tempFile() {
+		try {
+			File file = File.createTempFile("crinch-bits-test", ".bits");
+			file.deleteOnExit();
+			return file;
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	@Override
+	ByteBasedBitWriter newBitWriter(long size) {
+		// small buffers exercise the swapping of buffers
+		return new Writer(tempFile(), 7, true, false);
+	}
+
+	@Override
+	BitReader bitReaderFor(BitWriter writer) {
+		return new ByteArrayBitReader(getWrittenBytes(writer));
+	}
+
+	@Override
+	byte[] getWrittenBytes(BitWriter writer) {
+		Writer w = (Writer) writer;
+		w.close();
+		try {
+			RandomAccessFile raf = new RandomAccessFile(w.file, "r");
+			try {
+				byte[] bytes = new byte[(int) raf.length()];
+				raf.readFully(bytes);
+				return bytes;
+			} finally {
+				raf.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	public void testChecksummed() throws IOException {
+		Random random = new Random(0L);
+		for (boolean asynchronous : new boolean[] {false, true}) {
+			int[] values = new int[50000];
+			for (int i = 0; i < values.length; i++) values[i] = random.nextInt();
+			Writer writer = new Writer(tempFile(), 1000, asynchronous, true);
+			for (int i = 0; i < values.length; i++) writer.write(values[i], 1 + i % 32);
+			writer.writeBooleans(true, 10000);
+			writer.flush();
+			writer.close();
+			
+			BlockChecksums.read(writer.file).verifyAll();
+			for (Mode mode : new Mode[] {Mode.MAPPED, Mode.CHANNEL}) {
+				FileBitReaderFactory factory = new FileBitReaderFactory(writer.file, mode, 1000, true);
+				BitReader reader = factory.openReader();
+				try {
+					for (int i = 0; i < values.length; i++) {
+						int count = 1 + i % 32;
+						int mask = count == 32 ? -1 : (1 << count) - 1;
+						assertEquals(values[i] & mask, reader.read(count));
+					}
+					for (int i = 0; i < 10000; i++) assertTrue(reader.readBoolean());
+				} finally {
+					factory.closeReader(reader);
+				}
+			}
+		}
+	}
+	
+	public void testAbandonedThreadStops() throws InterruptedException {
+		Writer writer = new Writer(tempFile(), 7, true, false);
+		// fill several buffers so that the background thread is started
+		writer.writeBooleans(true, 1000);
+		assertTrue(writerThreadCount() > 0);
+		// the writer is not finished until its thread has stopped
+		long limit = System.currentTimeMillis() + 10000L;
+		while (writerThreadCount() > 0 && System.currentTimeMillis() < limit) Thread.sleep(50L);
+		assertEquals(0, writerThreadCount());
+		writer.close();
+	}
+	
+	private static int writerThreadCount() {
+		Thread[] threads = new Thread[Thread.activeCount() * 2 + 10];
+		int count = 0;
+		for (int i = Thread.enumerate(threads) - 1; i >= 0; i--) {
+			if (threads[i].getName().equals("FileChannelBitWriter")) count++;
+		}
+		return count;
+	}
+	
+	private static class Writer extends FileChannelBitWriter {
+		
+		final File file;
+		final FileOutputStream out;
+		
+		Writer(File file, int bufferSize, boolean asynchronous, boolean checksummed) {
+			this(file, open(file), bufferSize, asynchronous, checksummed);
+		}
+		
+		private Writer(File file, FileOutputStream out, int bufferSize, boolean asynchronous, boolean checksummed) {
+			super(out.getChannel(), bufferSize, asynchronous, checksummed);
+			this.file = file;
+			this.out = out;
+		}
+		
+		private static FileOutputStream open(File file) {
+			try {
+				return new FileOutputStream(file);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		
+		void close() {
+			finish();
+			try {
+				out.close();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		
+	}
+	
+}
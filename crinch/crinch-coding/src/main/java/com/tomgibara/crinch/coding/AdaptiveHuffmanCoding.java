@@ -0,0 +1,209 @@
+/*
+ * Copyright 2012 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.crinch.coding;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import com.tomgibara.crinch.bits.BitReader;
+import com.tomgibara.crinch.bits.BitStreamException;
+import com.tomgibara.crinch.bits.BitWriter;
+
+/**
+ * <p>
+ * A Huffman coding which adapts to the values it codes, so that no separate
+ * pass is needed to gather frequencies beforehand. The coding starts with
+ * every value assumed equally likely and is rebuilt from the accumulated
+ * value frequencies after every interval of coded values. The start of each
+ * new coding epoch is marked in the stream so that a decoder which has lost
+ * synchronization with its encoder is detected.
+ * </p>
+ *
+ * <p>
+ * Since the coding changes as values are coded, an instance of this class
+ * maintains the state of a single stream and may only be used to either
+ * encode or decode it, not both. Instances are not safe for concurrent use by
+ * multiple threads. The compression obtained is generally a little lower than
+ * that of a {@link HuffmanCoding} constructed from the final frequencies.
+ * </p>
+ *
+ * @author Tom Gibara
+ */
+
+public class AdaptiveHuffmanCoding implements Coding {
+
+	// statics
+
+	private static final int DEFAULT_INTERVAL = 4096;
+
+	// the number of low bits of the epoch that are written to the stream
+	private static final int EPOCH_BITS = 8;
+
+	// fields
+
+	private final int valueCount;
+	private final int interval;
+	private final long[] frequencies;
+
+	private HuffmanCoding coding;
+	private int epoch;
+	// values coded during the current epoch
+	private int coded;
+
+	// constructors
+
+	/**
+	 * Creates a coding for values in the range [0, valueCount) which is
+	 * rebuilt at a default interval.
+	 *
+	 * @param valueCount
+	 *            the number of distinct values that may be coded
+	 */
+
+	public AdaptiveHuffmanCoding(int valueCount) {
+		this(valueCount, DEFAULT_INTERVAL);
+	}
+
+	/**
+	 * Creates a coding for values in the range [0, valueCount).
+	 *
+	 * @param valueCount
+	 *            the number of distinct values that may be coded
+	 * @param interval
+	 *            the number of values coded between rebuilds of the coding
+	 */
+
+	public AdaptiveHuffmanCoding(int valueCount, int interval) {
+		if (valueCount < 1) throw new IllegalArgumentException("non-positive valueCount");
+		if (interval < 1) throw new IllegalArgumentException("non-positive interval");
+		this.valueCount = valueCount;
+		this.interval = interval;
+		frequencies = new long[valueCount];
+		reset();
+	}
+
+	// accessors
+
+	/**
+	 * The number of distinct values that may be coded.
+	 */
+
+	public int getValueCount() {
+		return valueCount;
+	}
+
+	/**
+	 * The number of values coded between rebuilds of the coding.
+	 */
+
+	public int getInterval() {
+		return interval;
+	}
+
+	/**
+	 * The number of times the coding has been rebuilt since the coding was
+	 * created or last reset.
+	 */
+
+	public int getEpoch() {
+		return epoch;
+	}
+
+	// methods
+
+	/**
+	 * Returns the coding to its initial state, in which all values are
+	 * considered equally likely. This may be used to code independent
+	 * sections of a stream, but must be applied at the same point during both
+	 * encoding and decoding.
+	 */
+
+	public void reset() {
+		Arrays.fill(frequencies, 1L);
+		coding = new HuffmanCoding(new HuffmanCoding.UnorderedFrequencies(frequencies));
+		epoch = 0;
+		coded = 0;
+	}
+
+	// coding methods
+
+	@Override
+	public int encodePositiveInt(BitWriter writer, int value) {
+		if (value < 0 || value >= valueCount) throw new IllegalArgumentException("value out of range: " + value);
+		int count = 0;
+		if (coded == interval) {
+			rebuild();
+			count += writer.write(epoch, EPOCH_BITS);
+		}
+		count += coding.encodePositiveInt(writer, value);
+		record(value);
+		return count;
+	}
+
+	@Override
+	public int encodePositiveLong(BitWriter writer, long value) {
+		if (value > Integer.MAX_VALUE) throw new IllegalArgumentException("value out of range: " + value);
+		return encodePositiveInt(writer, (int) value);
+	}
+
+	@Override
+	public int encodePositiveBigInt(BitWriter writer, BigInteger value) {
+		if (value.bitLength() > 31) throw new IllegalArgumentException("value out of range: " + value);
+		return encodePositiveInt(writer, value.intValue());
+	}
+
+	/**
+	 * @throws BitStreamException
+	 *             if the stream does not indicate the expected epoch
+	 */
+
+	@Override
+	public int decodePositiveInt(BitReader reader) {
+		if (coded == interval) {
+			rebuild();
+			final int marker = reader.read(EPOCH_BITS);
+			if (marker != (epoch & ((1 << EPOCH_BITS) - 1))) throw new BitStreamException("coding epoch " + epoch + " not matched by stream: " + marker);
+		}
+		final int value = coding.decodePositiveInt(reader);
+		record(value);
+		return value;
+	}
+
+	@Override
+	public long decodePositiveLong(BitReader reader) {
+		return decodePositiveInt(reader);
+	}
+
+	@Override
+	public BigInteger decodePositiveBigInt(BitReader reader) {
+		return BigInteger.valueOf(decodePositiveInt(reader));
+	}
+
+	// private utility methods
+
+	private void record(int value) {
+		frequencies[value]++;
+		coded++;
+	}
+
+	private void rebuild() {
+		coding = new HuffmanCoding(new HuffmanCoding.UnorderedFrequencies(frequencies));
+		epoch++;
+		coded = 0;
+	}
+
+}
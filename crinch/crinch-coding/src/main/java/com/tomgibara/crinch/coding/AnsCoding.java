@@ -0,0 +1,377 @@
+/*
+ * Copyright 2012 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.crinch.coding;
+
+import com.tomgibara.crinch.bits.BitReader;
+import com.tomgibara.crinch.bits.BitStreamException;
+import com.tomgibara.crinch.bits.BitWriter;
+import com.tomgibara.crinch.coding.HuffmanCoding.Correspondence;
+import com.tomgibara.crinch.coding.HuffmanCoding.Frequencies;
+import com.tomgibara.crinch.coding.HuffmanCoding.UnorderedFrequencies;
+
+/**
+ * <p>
+ * An implementation of asymmetric numeral system (ANS) coding. Unlike
+ * {@link HuffmanCoding}, which must assign a whole number of bits to each
+ * value, this coding approaches the entropy of the supplied frequencies even
+ * when they are highly skewed.
+ * </p>
+ *
+ * <p>
+ * Frequencies are normalized to sum to a power of two and decoding proceeds
+ * by looking up each value in a table of that size. Because the coding of a
+ * value depends on the values which follow it, values can only be coded in
+ * runs via the {@link BlockCoding} methods; each run carries the cost of
+ * flushing the coder's states, see {@link #getStateLength()}. Consecutive
+ * values are coded with alternating states so that successive decoding steps
+ * do not depend on each other.
+ * </p>
+ *
+ * <p>
+ * Note that only values with non-zero frequencies can be encoded/decoded.
+ * </p>
+ *
+ * @author Tom Gibara
+ * @see http://en.wikipedia.org/wiki/Asymmetric_numeral_systems
+ */
+
+public class AnsCoding implements BlockCoding {
+
+	// statics
+
+	private static final int DEFAULT_TABLE_BITS = 12;
+	private static final int MAX_TABLE_BITS = 20;
+	private static final int DEFAULT_WAYS = 2;
+	private static final int MAX_WAYS = 8;
+
+	private static Frequencies frequencies(CodingFrequencies frequencies) {
+		if (frequencies == null) throw new IllegalArgumentException("null frequencies");
+		final int min = frequencies.getMinimumValue();
+		for (int i = min; i < 0; i++) {
+			if (frequencies.getFrequency(i) != 0) throw new IllegalArgumentException("negative value");
+		}
+		long[] freqs = new long[Math.max(0, frequencies.getMaximumValue())];
+		for (int i = Math.max(0, min); i < freqs.length; i++) {
+			freqs[i] = frequencies.getFrequency(i);
+		}
+		return new UnorderedFrequencies(freqs);
+	}
+
+	private static int tableBits(Frequencies frequencies) {
+		if (frequencies == null) throw new IllegalArgumentException("null frequencies");
+		// ensure there is room to approximate the smaller frequencies
+		int bits = DEFAULT_TABLE_BITS;
+		while (bits < MAX_TABLE_BITS && (1 << bits) < 4 * frequencies.getCount()) bits++;
+		return bits;
+	}
+
+	private static int bitLength(int x) {
+		return 32 - Integer.numberOfLeadingZeros(x);
+	}
+
+	// fields
+
+	private final Correspondence correspondence;
+	private final int tableBits;
+	private final int tableSize;
+	private final int ways;
+	// normalized frequencies, indexed as per the correspondence
+	private final int[] freqs;
+	private final int[] cumuls;
+	// maps table slots to indices
+	private final int[] symbols;
+
+	// constructors
+
+	/**
+	 * Constructs a coding based on the frequencies supplied, with a table size
+	 * and number of interleaved states chosen by default.
+	 *
+	 * @param frequencies
+	 *            information about value frequencies
+	 */
+
+	public AnsCoding(Frequencies frequencies) {
+		this(frequencies, tableBits(frequencies), DEFAULT_WAYS);
+	}
+
+	/**
+	 * Constructs a coding based on the frequencies supplied, with a table size
+	 * and number of interleaved states chosen by default.
+	 *
+	 * @param frequencies
+	 *            information about the frequencies of non-negative values
+	 */
+
+	public AnsCoding(CodingFrequencies frequencies) {
+		this(frequencies(frequencies));
+	}
+
+	/**
+	 * Constructs a coding based on the frequencies supplied.
+	 *
+	 * @param frequencies
+	 *            information about value frequencies
+	 * @param tableBits
+	 *            the base 2 logarithm of the size of the decoding table, the
+	 *            table must be at least as large as the number of values
+	 * @param ways
+	 *            the number of states that are interleaved when coding
+	 */
+
+	public AnsCoding(Frequencies frequencies, int tableBits, int ways) {
+		if (frequencies == null) throw new IllegalArgumentException("null frequencies");
+		if (tableBits < 1) throw new IllegalArgumentException("non-positive tableBits");
+		if (tableBits > MAX_TABLE_BITS) throw new IllegalArgumentException("tableBits exceeds " + MAX_TABLE_BITS);
+		if (ways < 1) throw new IllegalArgumentException("non-positive ways");
+		if (ways > MAX_WAYS) throw new IllegalArgumentException("ways exceeds " + MAX_WAYS);
+		final int count = frequencies.getCount();
+		if (count == 0) throw new IllegalArgumentException("no frequencies");
+		final int size = 1 << tableBits;
+		if (count > size) throw new IllegalArgumentException("too many values for table size");
+
+		// normalize the frequencies
+		long total = 0L;
+		for (int i = 0; i < count; i++) {
+			final long freq = frequencies.getFrequency(i);
+			if (freq <= 0L) throw new IllegalArgumentException("non-positive frequency");
+			total += freq;
+		}
+		final int[] freqs = new int[count];
+		int sum = 0;
+		for (int i = 0; i < count; i++) {
+			final int freq = Math.max(1, (int) ((double) frequencies.getFrequency(i) * size / total));
+			freqs[i] = freq;
+			sum += freq;
+		}
+		// frequencies are descending, so adjust the largest first
+		if (sum < size) {
+			freqs[0] += size - sum;
+		} else while (sum > size) {
+			for (int i = 0; i < count && sum > size; i++) {
+				if (freqs[i] > 1) {
+					freqs[i]--;
+					sum--;
+				}
+			}
+		}
+
+		// populate the tables
+		final int[] cumuls = new int[count];
+		final int[] symbols = new int[size];
+		for (int i = 0, c = 0; i < count; i++) {
+			cumuls[i] = c;
+			final int freq = freqs[i];
+			for (int j = 0; j < freq; j++) {
+				symbols[c++] = i;
+			}
+		}
+
+		this.correspondence = frequencies.getCorrespondence();
+		this.tableBits = tableBits;
+		this.tableSize = size;
+		this.ways = ways;
+		this.freqs = freqs;
+		this.cumuls = cumuls;
+		this.symbols = symbols;
+	}
+
+	// accessors
+
+	/**
+	 * The base 2 logarithm of the size of the decoding table; this is also the
+	 * precision to which frequencies are approximated.
+	 *
+	 * @return the number of bits indexing the decoding table
+	 */
+
+	public int getTableBits() {
+		return tableBits;
+	}
+
+	/**
+	 * The number of states that are interleaved.
+	 *
+	 * @return the number of states
+	 */
+
+	public int getWays() {
+		return ways;
+	}
+
+	/**
+	 * The number of bits used to record the final states of the coder; this is
+	 * written once for every run of values that is encoded.
+	 *
+	 * @return the number of bits written in addition to the coded values
+	 */
+
+	public int getStateLength() {
+		return ways * tableBits;
+	}
+
+	/**
+	 * The length of buffer required to encode a run of values without
+	 * allocating working storage.
+	 *
+	 * @param length
+	 *            the number of values in the run
+	 * @return the minimum length of buffer that may be supplied to
+	 *         {@link #encodeInts(BitWriter, int[], int, int, long[])}
+	 */
+
+	public int getBufferLength(int length) {
+		if (length < 0) throw new IllegalArgumentException("negative length");
+		return length + ways;
+	}
+
+	// methods
+
+	/**
+	 * The number of bits that would be written to encode a value, averaged
+	 * over many occurrences; this excludes the state length.
+	 *
+	 * @param value
+	 *            a non-negative integer with a recorded frequency of at least
+	 *            one
+	 * @return the average bit length of a value's encoding
+	 */
+
+	public double getCodeLength(int value) {
+		return tableBits - Math.log(freqs[correspondence.getIndex(value)]) / Math.log(2.0);
+	}
+
+	/**
+	 * The number of bits that would be written to encode the number of values
+	 * indicated by the supplied frequencies, excluding the state length. This
+	 * may be useful for choosing between codings prior to encoding.
+	 *
+	 * @param frequencies
+	 *            a count of how many of each value to be encoded
+	 * @return the approximate total bit length of all value encodings
+	 */
+
+	public long getEncodedLength(Frequencies frequencies) {
+		int count = frequencies.getCount();
+		double length = 0.0;
+		for (int i = 0; i < count; i++) {
+			length += frequencies.getFrequency(i) * getCodeLength(frequencies.getCorrespondence().getValue(i));
+		}
+		return (long) Math.ceil(length);
+	}
+
+	// block coding methods
+
+	@Override
+	public int encodeInts(BitWriter writer, int[] values, int offset, int length) {
+		return encodeInts(writer, values, offset, length, null);
+	}
+
+	/**
+	 * Encodes a run of values using a supplied buffer as working storage, so
+	 * that repeatedly coding runs need not allocate. The buffer is not
+	 * retained, so a single instance of this class may be used concurrently
+	 * provided that each thread supplies its own buffer.
+	 *
+	 * @param writer
+	 *            the writer to which the encoded values are written
+	 * @param values
+	 *            an array containing the values to encode
+	 * @param offset
+	 *            the index of the first value to encode
+	 * @param length
+	 *            the number of values to encode
+	 * @param buffer
+	 *            an array of at least {@link #getBufferLength(int)} elements,
+	 *            or null to allocate one
+	 * @return the number of bits written
+	 * @throws BitStreamException
+	 *             if an exception occurs when writing
+	 */
+
+	public int encodeInts(BitWriter writer, int[] values, int offset, int length, long[] buffer) {
+		checkArgs(values, offset, length);
+		if (length == 0) return 0;
+		// the stack of renormalized bits occupies the front of the buffer, the states its end
+		final int bufferLength = getBufferLength(length);
+		if (buffer == null) {
+			buffer = new long[bufferLength];
+		} else if (buffer.length < bufferLength) {
+			throw new IllegalArgumentException("buffer too short");
+		}
+		for (int j = 0; j < ways; j++) buffer[length + j] = tableSize;
+		// each value renormalizes at most once, values are coded in reverse so the bits are stacked
+		int top = 0;
+		for (int i = length - 1; i >= 0; i--) {
+			final int index = correspondence.getIndex(values[offset + i]);
+			final int freq = freqs[index];
+			final int j = length + i % ways;
+			int x = (int) buffer[j];
+			// shift out just enough bits to leave x in [freq, 2 * freq)
+			int n = Math.max(0, tableBits - bitLength(freq));
+			if ((x >>> n) >= freq << 1) n++;
+			if (n > 0) {
+				buffer[top++] = ((long) (x & ((1 << n) - 1)) << 6) | n;
+				x >>>= n;
+			}
+			buffer[j] = tableSize + x - freq + cumuls[index];
+		}
+		int count = 0;
+		for (int j = 0; j < ways; j++) {
+			count += writer.write((int) buffer[length + j] - tableSize, tableBits);
+		}
+		while (top > 0) {
+			final long chunk = buffer[--top];
+			count += writer.write((int) (chunk >>> 6), (int) chunk & 63);
+		}
+		return count;
+	}
+
+	@Override
+	public int[] decodeInts(BitReader reader, int[] values, int offset, int length) {
+		checkArgs(values, offset, length);
+		if (length == 0) return values;
+		final int[] states = new int[ways];
+		for (int j = 0; j < ways; j++) {
+			states[j] = tableSize + reader.read(tableBits);
+		}
+		final int mask = tableSize - 1;
+		final int limit = tableBits + 1;
+		for (int i = 0, j = 0; i < length; i++) {
+			final int x = states[j];
+			final int slot = x & mask;
+			final int index = symbols[slot];
+			int y = freqs[index] + slot - cumuls[index];
+			final int n = limit - bitLength(y);
+			if (n > 0) y = (y << n) | reader.read(n);
+			states[j] = y;
+			values[offset + i] = correspondence.getValue(index);
+			if (++j == ways) j = 0;
+		}
+		return values;
+	}
+
+	// private utility methods
+
+	private static void checkArgs(int[] values, int offset, int length) {
+		if (values == null) throw new IllegalArgumentException("null values");
+		if (offset < 0) throw new IllegalArgumentException("negative offset");
+		if (length < 0) throw new IllegalArgumentException("negative length");
+		if (offset + length > values.length) throw new IllegalArgumentException("length exceeds values");
+	}
+
+}
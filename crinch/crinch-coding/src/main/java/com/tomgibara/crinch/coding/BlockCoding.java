@@ -0,0 +1,87 @@
+/*
+ * Copyright 2012 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.crinch.coding;
+
+import com.tomgibara.crinch.bits.BitReader;
+import com.tomgibara.crinch.bits.BitStreamException;
+import com.tomgibara.crinch.bits.BitWriter;
+
+/**
+ * <p>
+ * Encodes and decodes runs of integers in a single operation. In contrast to
+ * a {@link Coding}, which codes one value per call, implementations of this
+ * interface can lay out the bits of many values together so that they may be
+ * decoded with far fewer reads.
+ * </p>
+ *
+ * <p>
+ * Values are treated as unsigned 32 bit quantities, so negative values are
+ * preserved but are expensive to code; signed data should be interleaved first
+ * (as with {@link ExtendedCoding}). A run must be decoded with the same length
+ * with which it was encoded.
+ * </p>
+ *
+ * <p>
+ * This interface deliberately does not extend {@link Coding}: a coding must
+ * code any single int, long or BigInteger value on its own, whereas block
+ * codings only code runs of 32 bit values and must know the length of a run
+ * before decoding it. Where a single value must be coded, a run of length one
+ * may be used; implementations keep such runs economical.
+ * </p>
+ *
+ * @author Tom Gibara
+ */
+
+public interface BlockCoding {
+
+	/**
+	 * Encodes a run of values.
+	 *
+	 * @param writer
+	 *            the writer to which the encoded values are written
+	 * @param values
+	 *            an array containing the values to encode
+	 * @param offset
+	 *            the index of the first value to encode
+	 * @param length
+	 *            the number of values to encode
+	 * @return the number of bits written
+	 * @throws BitStreamException
+	 *             if an exception occurs when writing
+	 */
+
+	int encodeInts(BitWriter writer, int[] values, int offset, int length);
+
+	/**
+	 * Decodes a run of values.
+	 *
+	 * @param reader
+	 *            the reader from which the encoded values are read
+	 * @param values
+	 *            an array into which the decoded values are stored
+	 * @param offset
+	 *            the index at which the first value is stored
+	 * @param length
+	 *            the number of values to decode
+	 * @return the array of values
+	 * @throws BitStreamException
+	 *             if an exception occurs when reading
+	 */
+
+	int[] decodeInts(BitReader reader, int[] values, int offset, int length);
+
+}
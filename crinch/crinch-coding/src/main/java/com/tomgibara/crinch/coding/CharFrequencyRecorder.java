@@ -98,6 +98,26 @@ public class CharFrequencyRecorder {
 		}
 	}
 	
+	/**
+	 * Observes all of the characters observed by another recorder. This
+	 * allows recorders that have been populated independently, for example by
+	 * different threads, to be combined.
+	 * 
+	 * @param recorder
+	 *            the recorder whose frequencies are added to this recorder
+	 * @throws IllegalArgumentException
+	 *             if the recorder is null
+	 */
+	
+	public void record(CharFrequencyRecorder recorder) {
+		if (recorder == null) throw new IllegalArgumentException("null recorder");
+		long[] freqs = recorder.frequencies;
+		ensureLength(freqs.length - 1);
+		for (int i = 0; i < freqs.length; i++) {
+			frequencies[i] += freqs[i];
+		}
+	}
+	
 	/**
 	 * The frequencies of the observed characters. The frequency of a character
 	 * c is stored in the cth index. The length of the array may be less than
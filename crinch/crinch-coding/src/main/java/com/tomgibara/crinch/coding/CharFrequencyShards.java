@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.crinch.coding;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records character frequencies from multiple threads without contention.
+ * Each thread records into its own {@link CharFrequencyRecorder}, obtained
+ * from {@link #getRecorder()}, and the shards are combined on demand.
+ * 
+ * @author Tom Gibara
+ *
+ */
+
+public class CharFrequencyShards {
+
+	private final List<CharFrequencyRecorder> shards = new ArrayList<CharFrequencyRecorder>();
+	
+	private final ThreadLocal<CharFrequencyRecorder> local = new ThreadLocal<CharFrequencyRecorder>() {
+		@Override
+		protected CharFrequencyRecorder initialValue() {
+			CharFrequencyRecorder recorder = new CharFrequencyRecorder();
+			synchronized (shards) {
+				shards.add(recorder);
+			}
+			return recorder;
+		}
+	};
+	
+	/**
+	 * The recorder into which the calling thread should record characters.
+	 * The returned recorder must not be shared with other threads.
+	 * 
+	 * @return the calling thread's recorder
+	 */
+	
+	public CharFrequencyRecorder getRecorder() {
+		return local.get();
+	}
+	
+	/**
+	 * Combines the frequencies recorded by all threads. To obtain exact
+	 * frequencies, recording threads should have finished (for example, having
+	 * been joined) before this method is called.
+	 * 
+	 * @return a new recorder containing the total frequencies
+	 */
+	
+	public CharFrequencyRecorder merge() {
+		CharFrequencyRecorder merged = new CharFrequencyRecorder();
+		synchronized (shards) {
+			for (CharFrequencyRecorder shard : shards) {
+				merged.record(shard);
+			}
+		}
+		return merged;
+	}
+	
+}
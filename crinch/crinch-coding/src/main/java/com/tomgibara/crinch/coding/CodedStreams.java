@@ -28,8 +28,14 @@ import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.tomgibara.crinch.bits.BitReader;
 import com.tomgibara.crinch.bits.BitStreamException;
 import com.tomgibara.crinch.bits.BitWriter;
+import com.tomgibara.crinch.bits.BlockChecksums;
+import com.tomgibara.crinch.bits.ChecksummedInputStream;
+import com.tomgibara.crinch.bits.ChecksummedOutputStream;
+import com.tomgibara.crinch.bits.FileBitReaderFactory;
+import com.tomgibara.crinch.bits.FileChannelBitWriter;
 import com.tomgibara.crinch.bits.InputStreamBitReader;
 import com.tomgibara.crinch.bits.OutputStreamBitWriter;
 
@@ -343,7 +349,7 @@ public final class CodedStreams {
 	public static void writeToFile(WriteTask task, ExtendedCoding coding, File file) {
 		OutputStream out = null;
 		try {
-			out = new BufferedOutputStream(new FileOutputStream(file), 1024);
+			out = new BufferedOutputStream(new ChecksummedOutputStream(new FileOutputStream(file)), 1024);
 			BitWriter writer = new OutputStreamBitWriter(out);
 			CodedWriter coded = new CodedWriter(writer, coding);
 			task.writeTo(coded);
@@ -362,7 +368,9 @@ public final class CodedStreams {
 	}
 
 	/**
-	 * Reads data from a file using a specified coding.
+	 * Reads data from a file using a specified coding. The data is not
+	 * verified against its checksums, so files written without checksums can
+	 * be read.
 	 * 
 	 * @param task
 	 *            reads the data values
@@ -375,9 +383,32 @@ public final class CodedStreams {
 	 */
 	
 	public static void readFromFile(ReadTask task, ExtendedCoding coding, File file) {
+		readFromFile(task, coding, file, false);
+	}
+
+	/**
+	 * Reads data from a file using a specified coding, optionally verifying
+	 * the data against its checksums as it is read.
+	 * 
+	 * @param task
+	 *            reads the data values
+	 * @param coding
+	 *            performs the decoding of the values
+	 * @param file
+	 *            stores the values
+	 * @param verifying
+	 *            whether the data should be verified against its checksums
+	 * @throws BitStreamException
+	 *             if an I/O problem occurs, or if the file fails its checksums.
+	 */
+	
+	public static void readFromFile(ReadTask task, ExtendedCoding coding, File file, boolean verifying) {
 		InputStream in = null;
 		try {
-			in = new BufferedInputStream(new FileInputStream(file), 1024);
+			BlockChecksums checksums = verifying ? BlockChecksums.read(file) : null;
+			in = new FileInputStream(file);
+			if (checksums != null) in = new ChecksummedInputStream(in, checksums);
+			in = new BufferedInputStream(in, 1024);
 			InputStreamBitReader reader = new InputStreamBitReader(in);
 			CodedReader coded = new CodedReader(reader, coding);
 			task.readFrom(coded);
@@ -394,6 +425,85 @@ public final class CodedStreams {
 		}
 	}
 	
+	/**
+	 * Writes data to a file through a {@link FileChannelBitWriter}. Large
+	 * buffers and asynchronous writing may significantly improve the
+	 * performance of writing large files. As with
+	 * {@link #writeToFile(WriteTask, ExtendedCoding, File)}, block checksums
+	 * are written after the data.
+	 * 
+	 * @param task
+	 *            writes the data values
+	 * @param coding
+	 *            performs the encoding of the values
+	 * @param file
+	 *            stores the values
+	 * @param bufferSize
+	 *            the size in bytes of the buffer(s) used to write the file
+	 * @param asynchronous
+	 *            whether buffers are written to the file by a background thread
+	 *            while encoding continues into a second buffer
+	 * @throws BitStreamException
+	 *             if an I/O problem occurs.
+	 */
+	
+	public static void writeToFile(WriteTask task, ExtendedCoding coding, File file, int bufferSize, boolean asynchronous) {
+		FileOutputStream out = null;
+		try {
+			out = new FileOutputStream(file);
+			FileChannelBitWriter writer = new FileChannelBitWriter(out.getChannel(), bufferSize, asynchronous, true);
+			try {
+				CodedWriter coded = new CodedWriter(writer, coding);
+				task.writeTo(coded);
+				writer.flush();
+			} finally {
+				writer.finish();
+			}
+		} catch (IOException e) {
+			throw new BitStreamException(e);
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads data from a file using a reader obtained from a
+	 * {@link FileBitReaderFactory}. The {@link FileBitReaderFactory.Mode#MAPPED}
+	 * mode avoids copying the file's data through intermediate buffers. The
+	 * file's data is verified against its checksums without being read twice.
+	 * 
+	 * @param task
+	 *            reads the data values
+	 * @param coding
+	 *            performs the decoding of the values
+	 * @param file
+	 *            stores the values
+	 * @param mode
+	 *            the method by which bits are read from the file
+	 * @param bufferSize
+	 *            the size in bytes of the buffer used to read the file, where
+	 *            applicable to the mode
+	 * @throws BitStreamException
+	 *             if an I/O problem occurs, or if the file fails its checksums.
+	 */
+	
+	public static void readFromFile(ReadTask task, ExtendedCoding coding, File file, FileBitReaderFactory.Mode mode, int bufferSize) {
+		FileBitReaderFactory factory = new FileBitReaderFactory(file, mode, bufferSize, true);
+		BitReader reader = factory.openReader();
+		try {
+			CodedReader coded = new CodedReader(reader, coding);
+			task.readFrom(coded);
+		} finally {
+			factory.closeReader(reader);
+		}
+	}
+	
 	private CodedStreams() {
 	}
 	
@@ -0,0 +1,383 @@
+/*
+ * Copyright 2012 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.crinch.coding;
+
+import com.tomgibara.crinch.bits.BitReader;
+import com.tomgibara.crinch.bits.BitWriter;
+
+/**
+ * <p>
+ * An Elias-Fano coding of a non-decreasing sequence of non-negative longs.
+ * Each value is split into a fixed number of low bits, which are stored
+ * verbatim, and the remaining high bits, which are stored as unary coded gaps
+ * in a bit array. This requires at most 2 + log(u/n) bits per value, where
+ * <em>u</em> is the largest value and <em>n</em> is the number of values.
+ * </p>
+ *
+ * <p>
+ * Sampled select indexes over the high bits provide constant time access to
+ * the <em>i</em>th value via {@link #get(int)} and fast skipping via
+ * {@link #nextGEQ(long)}. The indexes are not serialized, they are rebuilt
+ * when a sequence is read.
+ * </p>
+ *
+ * @author Tom Gibara
+ * @see http://en.wikipedia.org/wiki/Elias-Fano_coding
+ */
+
+public final class EliasFanoSequence {
+
+	// statics
+
+	// one in every 2^SAMPLE_BITS ones (and zeros) has its position recorded
+	private static final int SAMPLE_BITS = 8;
+	private static final int SAMPLE_MASK = (1 << SAMPLE_BITS) - 1;
+
+	/**
+	 * Reads a sequence previously written with {@link #write(BitWriter)}.
+	 *
+	 * @param reader
+	 *            the reader from which the sequence is read
+	 * @return the sequence
+	 */
+
+	public static EliasFanoSequence read(BitReader reader) {
+		if (reader == null) throw new IllegalArgumentException("null reader");
+		final int size = reader.read(32);
+		final long last = size == 0 ? 0L : reader.readLong(64);
+		return read(reader, size, last);
+	}
+
+	// reads a sequence for which the size and last value are known
+	static EliasFanoSequence read(BitReader reader, int size, long last) {
+		final int lowerBits = lowerBits(size, last);
+		final long[] lower = new long[words((long) size * lowerBits)];
+		final long[] upper = new long[words(upperLength(size, last, lowerBits))];
+		readWords(reader, lower, (long) size * lowerBits);
+		readWords(reader, upper, upperLength(size, last, lowerBits));
+		return new EliasFanoSequence(size, last, lowerBits, lower, upper);
+	}
+
+	// the number of low bits stored verbatim for each value
+	private static int lowerBits(int size, long last) {
+		if (size == 0) return 0;
+		final long ratio = last / size;
+		return ratio == 0L ? 0 : 63 - Long.numberOfLeadingZeros(ratio);
+	}
+
+	private static long upperLength(int size, long last, int lowerBits) {
+		return size == 0 ? 0L : size + (last >>> lowerBits) + 1L;
+	}
+
+	private static int words(long bits) {
+		final long words = (bits + 63L) >> 6;
+		if (words > Integer.MAX_VALUE) throw new IllegalArgumentException("sequence too large");
+		return (int) words;
+	}
+
+	private static void readWords(BitReader reader, long[] words, long bits) {
+		for (int i = 0; bits > 0L; i++, bits -= 64L) {
+			final int count = (int) Math.min(64L, bits);
+			words[i] = reader.readLong(count);
+		}
+	}
+
+	private static long writeWords(BitWriter writer, long[] words, long bits) {
+		long count = 0L;
+		for (int i = 0; bits > 0L; i++, bits -= 64L) {
+			count += writer.write(words[i], (int) Math.min(64L, bits));
+		}
+		return count;
+	}
+
+	// the position of the rank-th one in the word
+	private static int select(long word, int rank) {
+		for (; rank > 0; rank--) word &= word - 1L;
+		return Long.numberOfTrailingZeros(word);
+	}
+
+	// fields
+
+	private final int size;
+	private final long last;
+	private final int lowerBits;
+	private final long lowerMask;
+	private final long[] lower;
+	private final long[] upper;
+	private final long upperLength;
+	// positions of every 2^SAMPLE_BITS-th one in the upper bits
+	private final long[] ones;
+	// positions of every 2^SAMPLE_BITS-th zero in the upper bits
+	private final long[] zeros;
+
+	// constructors
+
+	/**
+	 * Encodes the supplied values.
+	 *
+	 * @param values
+	 *            a non-decreasing sequence of non-negative values
+	 * @throws IllegalArgumentException
+	 *             if the values are null, negative or not non-decreasing
+	 */
+
+	public EliasFanoSequence(long[] values) {
+		this(values, 0, values == null ? 0 : values.length, 0L);
+	}
+
+	// encodes values[from, to) less the base
+	EliasFanoSequence(long[] values, int from, int to, long base) {
+		if (values == null) throw new IllegalArgumentException("null values");
+		final int size = to - from;
+		final long last = size == 0 ? 0L : values[to - 1] - base;
+		final int lowerBits = lowerBits(size, last);
+		final long lowerMask = (1L << lowerBits) - 1L;
+		final long[] lower = new long[words((long) size * lowerBits)];
+		final long[] upper = new long[words(upperLength(size, last, lowerBits))];
+		long previous = 0L;
+		for (int i = 0; i < size; i++) {
+			final long value = values[from + i] - base;
+			if (value < previous || value > last) throw new IllegalArgumentException(value < 0L ? "negative value" : "values not non-decreasing");
+			previous = value;
+			if (lowerBits != 0) {
+				final long position = (long) i * lowerBits;
+				final int index = (int) (position >> 6);
+				final int offset = (int) (position & 63);
+				final long bits = value & lowerMask;
+				lower[index] |= bits << offset;
+				if (offset + lowerBits > 64) lower[index + 1] |= bits >>> (64 - offset);
+			}
+			final long position = (value >>> lowerBits) + i;
+			upper[(int) (position >> 6)] |= 1L << position;
+		}
+		this.size = size;
+		this.last = last;
+		this.lowerBits = lowerBits;
+		this.lowerMask = lowerMask;
+		this.lower = lower;
+		this.upper = upper;
+		upperLength = upperLength(size, last, lowerBits);
+		ones = new long[(size >> SAMPLE_BITS) + 1];
+		zeros = new long[(int) ((upperLength - size) >> SAMPLE_BITS) + 1];
+		sample();
+	}
+
+	private EliasFanoSequence(int size, long last, int lowerBits, long[] lower, long[] upper) {
+		this.size = size;
+		this.last = last;
+		this.lowerBits = lowerBits;
+		this.lowerMask = (1L << lowerBits) - 1L;
+		this.lower = lower;
+		this.upper = upper;
+		upperLength = upperLength(size, last, lowerBits);
+		ones = new long[(size >> SAMPLE_BITS) + 1];
+		zeros = new long[(int) ((upperLength - size) >> SAMPLE_BITS) + 1];
+		sample();
+	}
+
+	// accessors
+
+	/**
+	 * The number of values in the sequence.
+	 */
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * The number of bits required to encode the sequence, excluding select
+	 * indexes.
+	 */
+
+	public long getBitLength() {
+		return (long) size * lowerBits + upperLength;
+	}
+
+	// methods
+
+	/**
+	 * The value at the specified index.
+	 *
+	 * @param index
+	 *            an index into the sequence
+	 * @return the value at the index
+	 * @throws IndexOutOfBoundsException
+	 *             if the index is negative or not less than the size
+	 */
+
+	public long get(int index) {
+		if (index < 0 || index >= size) throw new IndexOutOfBoundsException();
+		return ((select1(index) - index) << lowerBits) | lower(index);
+	}
+
+	/**
+	 * The index of the first value in the sequence that is greater than or
+	 * equal to the supplied value.
+	 *
+	 * @param value
+	 *            the value sought
+	 * @return the index of the first value not less than the supplied value,
+	 *         or the size of the sequence if there is no such value
+	 */
+
+	public int nextGEQ(long value) {
+		if (size == 0 || value > last) return size;
+		if (value <= 0L) return 0;
+		final long high = value >>> lowerBits;
+		// the position in the upper bits at which the bucket for high begins
+		long position = high == 0L ? 0L : select0(high - 1L) + 1L;
+		int index = (int) (position - high);
+		while (index < size) {
+			// advance to the next one
+			int word = (int) (position >> 6);
+			long bits = upper[word] & (-1L << position);
+			while (bits == 0L) bits = upper[++word];
+			position = ((long) word << 6) + Long.numberOfTrailingZeros(bits);
+			final long h = position - index;
+			if (h > high || ((h << lowerBits) | lower(index)) >= value) return index;
+			index++;
+			position++;
+		}
+		return size;
+	}
+
+	/**
+	 * Copies the values in the sequence into an array.
+	 *
+	 * @return the decoded values
+	 */
+
+	public long[] toArray() {
+		final long[] values = new long[size];
+		long position = 0L;
+		for (int i = 0; i < size; i++) {
+			int word = (int) (position >> 6);
+			long bits = upper[word] & (-1L << position);
+			while (bits == 0L) bits = upper[++word];
+			position = ((long) word << 6) + Long.numberOfTrailingZeros(bits);
+			values[i] = ((position - i) << lowerBits) | lower(i);
+			position++;
+		}
+		return values;
+	}
+
+	/**
+	 * Writes the sequence so that it may be recovered with
+	 * {@link #read(BitReader)}.
+	 *
+	 * @param writer
+	 *            the writer to which the sequence is written
+	 * @return the number of bits written
+	 */
+
+	public long write(BitWriter writer) {
+		if (writer == null) throw new IllegalArgumentException("null writer");
+		long count = writer.write(size, 32);
+		if (size != 0) count += writer.write(last, 64);
+		return count + writeData(writer);
+	}
+
+	// object methods
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder("[");
+		final long[] values = toArray();
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) sb.append(", ");
+			sb.append(values[i]);
+		}
+		return sb.append(']').toString();
+	}
+
+	// package scoped methods
+
+	long getLast() {
+		return last;
+	}
+
+	// writes the sequence without its size or last value
+	long writeData(BitWriter writer) {
+		return writeWords(writer, lower, (long) size * lowerBits) + writeWords(writer, upper, upperLength);
+	}
+
+	// private utility methods
+
+	private long lower(int index) {
+		if (lowerBits == 0) return 0L;
+		final long position = (long) index * lowerBits;
+		final int word = (int) (position >> 6);
+		final int offset = (int) (position & 63);
+		long bits = lower[word] >>> offset;
+		if (offset + lowerBits > 64) bits |= lower[word + 1] << (64 - offset);
+		return bits & lowerMask;
+	}
+
+	private void sample() {
+		int oneCount = 0;
+		long zeroCount = 0L;
+		for (int i = 0; i < upper.length; i++) {
+			final long word = upper[i];
+			final int wordOnes = Long.bitCount(word);
+			final int wordZeros = (int) Math.min(64L, upperLength - ((long) i << 6)) - wordOnes;
+			// record any sampled ones in this word
+			int next = (oneCount + SAMPLE_MASK) & ~SAMPLE_MASK;
+			while (next < oneCount + wordOnes) {
+				ones[next >> SAMPLE_BITS] = ((long) i << 6) + select(word, next - oneCount);
+				next += 1 << SAMPLE_BITS;
+			}
+			// record any sampled zeros in this word
+			long nextZero = (zeroCount + SAMPLE_MASK) & ~SAMPLE_MASK;
+			while (nextZero < zeroCount + wordZeros) {
+				zeros[(int) (nextZero >> SAMPLE_BITS)] = ((long) i << 6) + select(~word, (int) (nextZero - zeroCount));
+				nextZero += 1 << SAMPLE_BITS;
+			}
+			oneCount += wordOnes;
+			zeroCount += wordZeros;
+		}
+	}
+
+	// the position of the rank-th one in the upper bits
+	private long select1(int rank) {
+		final long sample = ones[rank >> SAMPLE_BITS];
+		int remaining = rank & SAMPLE_MASK;
+		int word = (int) (sample >> 6);
+		long bits = upper[word] & (-1L << sample);
+		while (true) {
+			final int count = Long.bitCount(bits);
+			if (remaining < count) return ((long) word << 6) + select(bits, remaining);
+			remaining -= count;
+			bits = upper[++word];
+		}
+	}
+
+	// the position of the rank-th zero in the upper bits
+	private long select0(long rank) {
+		final long sample = zeros[(int) (rank >> SAMPLE_BITS)];
+		int remaining = (int) (rank & SAMPLE_MASK);
+		int word = (int) (sample >> 6);
+		long bits = ~upper[word] & (-1L << sample);
+		while (true) {
+			final int count = Long.bitCount(bits);
+			if (remaining < count) return ((long) word << 6) + select(bits, remaining);
+			remaining -= count;
+			bits = ~upper[++word];
+		}
+	}
+
+}
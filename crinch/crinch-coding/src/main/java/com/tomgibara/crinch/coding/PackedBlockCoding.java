@@ -0,0 +1,200 @@
+/*
+ * Copyright 2012 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.crinch.coding;
+
+import com.tomgibara.crinch.bits.BitReader;
+import com.tomgibara.crinch.bits.BitWriter;
+
+/**
+ * <p>
+ * A {@link BlockCoding} that packs blocks of 128 values into a fixed number of
+ * bits per value, chosen separately for each block. Values that are too wide
+ * for the chosen size are recorded as exceptions, whose high bits are
+ * patched in after the block is unpacked (the PFor scheme). The packed bits
+ * of each block are read and written as whole 64 bit words.
+ * </p>
+ *
+ * <p>
+ * The header of a block records the number of exceptions in no more bits than
+ * the length of the block requires, so that short runs, down to single values,
+ * remain economical.
+ * </p>
+ *
+ * <p>
+ * The singleton instance of this class is available from
+ * {@link PackedBlockCoding#instance}.
+ * </p>
+ *
+ * @author Tom Gibara
+ */
+
+public final class PackedBlockCoding implements BlockCoding {
+
+	// statics
+
+	/**
+	 * The number of values in a full block.
+	 */
+
+	public static final int BLOCK_SIZE = 128;
+
+	private static final int POSITION_BITS = 7;
+
+	/**
+	 * The sole instance of this class.
+	 */
+
+	public static final PackedBlockCoding instance = new PackedBlockCoding();
+
+	// constructors
+
+	private PackedBlockCoding() { }
+
+	// block coding methods
+
+	@Override
+	public int encodeInts(BitWriter writer, int[] values, int offset, int length) {
+		checkArgs(values, offset, length);
+		// sized for the largest block, which is small for short runs
+		final long[] words = new long[(Math.min(length, BLOCK_SIZE) + 1) >> 1];
+		final int[] widths = new int[33];
+		int count = 0;
+		for (int from = offset, to = offset + length; from < to; from += BLOCK_SIZE) {
+			count += encodeBlock(writer, values, from, Math.min(BLOCK_SIZE, to - from), words, widths);
+		}
+		return count;
+	}
+
+	@Override
+	public int[] decodeInts(BitReader reader, int[] values, int offset, int length) {
+		checkArgs(values, offset, length);
+		final long[] words = new long[(Math.min(length, BLOCK_SIZE) + 1) >> 1];
+		for (int from = offset, to = offset + length; from < to; from += BLOCK_SIZE) {
+			decodeBlock(reader, values, from, Math.min(BLOCK_SIZE, to - from), words);
+		}
+		return values;
+	}
+
+	// private utility methods
+
+	private static void checkArgs(int[] values, int offset, int length) {
+		if (values == null) throw new IllegalArgumentException("null values");
+		if (offset < 0) throw new IllegalArgumentException("negative offset");
+		if (length < 0) throw new IllegalArgumentException("negative length");
+		if (offset + length > values.length) throw new IllegalArgumentException("length exceeds values");
+	}
+
+	private static int width(int value) {
+		return 32 - Integer.numberOfLeadingZeros(value);
+	}
+
+	// the number of bits used to record the exception count of a block
+	private static int countWidth(int length) {
+		return 32 - Integer.numberOfLeadingZeros(length);
+	}
+
+	private int encodeBlock(BitWriter writer, int[] values, int from, int length, long[] words, int[] widths) {
+		// choose the width that minimizes the size of the block
+		for (int i = 0; i < widths.length; i++) widths[i] = 0;
+		for (int i = 0; i < length; i++) widths[width(values[from + i])]++;
+		int maxWidth = 32;
+		while (maxWidth > 0 && widths[maxWidth] == 0) maxWidth--;
+		int exceptions = 0;
+		int bestWidth = maxWidth;
+		int bestExceptions = 0;
+		long bestSize = (long) length * maxWidth;
+		for (int width = maxWidth - 1; width >= 0; width--) {
+			exceptions += widths[width + 1];
+			final long size = (long) length * width + exceptions * (POSITION_BITS + maxWidth - width) + 6;
+			if (size < bestSize) {
+				bestSize = size;
+				bestWidth = width;
+				bestExceptions = exceptions;
+			}
+		}
+
+		// write the header
+		int count = 0;
+		count += writer.write(bestWidth, 6);
+		count += writer.write(bestExceptions, countWidth(length));
+		if (bestExceptions > 0) count += writer.write(maxWidth, 6);
+
+		// write the packed low bits
+		final int wordCount = (length * bestWidth + 63) >> 6;
+		for (int i = 0; i < wordCount; i++) words[i] = 0L;
+		if (bestWidth > 0) {
+			final long mask = bestWidth == 32 ? 0xffffffffL : (1L << bestWidth) - 1L;
+			for (int i = 0, position = 0; i < length; i++, position += bestWidth) {
+				final long bits = values[from + i] & mask;
+				final int index = position >> 6;
+				final int shift = position & 63;
+				words[index] |= bits << shift;
+				if (shift + bestWidth > 64) words[index + 1] |= bits >>> (64 - shift);
+			}
+		}
+		final int bitCount = length * bestWidth;
+		for (int i = 0; i < wordCount; i++) {
+			count += writer.write(words[i], Math.min(64, bitCount - (i << 6)));
+		}
+
+		// write the exceptions
+		if (bestExceptions > 0) {
+			final int highWidth = maxWidth - bestWidth;
+			for (int i = 0; i < length; i++) {
+				final int value = values[from + i];
+				if (width(value) > bestWidth) {
+					count += writer.write(i, POSITION_BITS);
+					count += writer.write(value >>> bestWidth, highWidth);
+				}
+			}
+		}
+		return count;
+	}
+
+	private void decodeBlock(BitReader reader, int[] values, int from, int length, long[] words) {
+		final int width = reader.read(6);
+		final int exceptions = reader.read(countWidth(length));
+		final int maxWidth = exceptions > 0 ? reader.read(6) : width;
+
+		// read and unpack the low bits
+		if (width == 0) {
+			for (int i = 0; i < length; i++) values[from + i] = 0;
+		} else {
+			final int bitCount = length * width;
+			final int wordCount = (bitCount + 63) >> 6;
+			for (int i = 0; i < wordCount; i++) {
+				words[i] = reader.readLong(Math.min(64, bitCount - (i << 6)));
+			}
+			final long mask = width == 32 ? 0xffffffffL : (1L << width) - 1L;
+			for (int i = 0, position = 0; i < length; i++, position += width) {
+				final int index = position >> 6;
+				final int shift = position & 63;
+				long bits = words[index] >>> shift;
+				if (shift + width > 64) bits |= words[index + 1] << (64 - shift);
+				values[from + i] = (int) (bits & mask);
+			}
+		}
+
+		// patch the exceptions
+		final int highWidth = maxWidth - width;
+		for (int i = 0; i < exceptions; i++) {
+			final int position = reader.read(POSITION_BITS);
+			values[from + position] |= reader.read(highWidth) << width;
+		}
+	}
+
+}
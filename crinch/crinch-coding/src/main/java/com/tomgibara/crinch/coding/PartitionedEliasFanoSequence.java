@@ -0,0 +1,463 @@
+/*
+ * Copyright 2012 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.crinch.coding;
+
+import com.tomgibara.crinch.bits.BitReader;
+import com.tomgibara.crinch.bits.BitWriter;
+
+/**
+ * <p>
+ * A partitioned Elias-Fano coding of a non-decreasing sequence of
+ * non-negative longs. The sequence is divided into fixed size partitions,
+ * each of which is coded relative to its first value using whichever of three
+ * representations is smallest: a run of consecutive values (which requires no
+ * storage), a bitmap, or an {@link EliasFanoSequence}. The last value of every
+ * partition is itself Elias-Fano coded so that partitions can be located
+ * quickly.
+ * </p>
+ *
+ * <p>
+ * This adapts to local clustering of values, which is typical of posting lists
+ * and record positions, and generally produces a smaller coding than a single
+ * {@link EliasFanoSequence}. Random access and {@link #nextGEQ(long)} remain
+ * efficient.
+ * </p>
+ *
+ * @author Tom Gibara
+ */
+
+public final class PartitionedEliasFanoSequence {
+
+	// statics
+
+	private static final int DEFAULT_PARTITION_SIZE = 128;
+
+	private static final int TYPE_RUN = 0;
+	private static final int TYPE_BITMAP = 1;
+	private static final int TYPE_ELIAS_FANO = 2;
+
+	private static final ExtendedCoding coding = EliasDeltaCoding.extended;
+
+	/**
+	 * Reads a sequence previously written with {@link #write(BitWriter)}.
+	 *
+	 * @param reader
+	 *            the reader from which the sequence is read
+	 * @return the sequence
+	 */
+
+	public static PartitionedEliasFanoSequence read(BitReader reader) {
+		if (reader == null) throw new IllegalArgumentException("null reader");
+		final int size = reader.read(32);
+		final int partitionSize = reader.read(32);
+		final int count = partitionCount(size, partitionSize);
+		final Partition[] partitions = new Partition[count];
+		final long[] lasts = new long[count];
+		long previous = 0L;
+		for (int p = 0; p < count; p++) {
+			final int partitionLength = Math.min(partitionSize, size - p * partitionSize);
+			final int type = reader.read(2);
+			final long base = previous + coding.decodePositiveLong(reader);
+			final long last = coding.decodePositiveLong(reader);
+			final Partition partition;
+			switch (type) {
+			case TYPE_RUN :
+				partition = new RunPartition(base, partitionLength);
+				break;
+			case TYPE_BITMAP :
+				final long[] bits = new long[(int) ((last + 64L) >> 6)];
+				for (int i = 0; i < bits.length; i++) {
+					bits[i] = reader.readLong((int) Math.min(64L, last + 1L - (i << 6)));
+				}
+				partition = new BitmapPartition(base, bits);
+				break;
+			case TYPE_ELIAS_FANO :
+				partition = new SequencePartition(base, EliasFanoSequence.read(reader, partitionLength, last));
+				break;
+			default :
+				throw new IllegalArgumentException("invalid partition type: " + type);
+			}
+			partitions[p] = partition;
+			lasts[p] = previous = base + last;
+		}
+		return new PartitionedEliasFanoSequence(size, partitionSize, partitions, new EliasFanoSequence(lasts));
+	}
+
+	private static int partitionCount(int size, int partitionSize) {
+		return (int) (((long) size + partitionSize - 1) / partitionSize);
+	}
+
+	// fields
+
+	private final int size;
+	private final int partitionSize;
+	private final Partition[] partitions;
+	// the last value of each partition
+	private final EliasFanoSequence lasts;
+
+	// constructors
+
+	/**
+	 * Encodes the supplied values using the default partition size.
+	 *
+	 * @param values
+	 *            a non-decreasing sequence of non-negative values
+	 * @throws IllegalArgumentException
+	 *             if the values are null, negative or not non-decreasing
+	 */
+
+	public PartitionedEliasFanoSequence(long[] values) {
+		this(values, DEFAULT_PARTITION_SIZE);
+	}
+
+	/**
+	 * Encodes the supplied values.
+	 *
+	 * @param values
+	 *            a non-decreasing sequence of non-negative values
+	 * @param partitionSize
+	 *            the number of values in each partition
+	 * @throws IllegalArgumentException
+	 *             if the values are null, negative or not non-decreasing, or
+	 *             if the partition size is not positive
+	 */
+
+	public PartitionedEliasFanoSequence(long[] values, int partitionSize) {
+		if (values == null) throw new IllegalArgumentException("null values");
+		if (partitionSize < 1) throw new IllegalArgumentException("non-positive partitionSize");
+		final int size = values.length;
+		final int count = partitionCount(size, partitionSize);
+		final Partition[] partitions = new Partition[count];
+		final long[] lasts = new long[count];
+		for (int p = 0; p < count; p++) {
+			final int from = p * partitionSize;
+			final int to = Math.min(size, from + partitionSize);
+			final long base = values[from];
+			if (base < 0L) throw new IllegalArgumentException("negative value");
+			if (p > 0 && base < lasts[p - 1]) throw new IllegalArgumentException("values not non-decreasing");
+			partitions[p] = partition(values, from, to, base);
+			lasts[p] = values[to - 1];
+		}
+		this.size = size;
+		this.partitionSize = partitionSize;
+		this.partitions = partitions;
+		this.lasts = new EliasFanoSequence(lasts);
+	}
+
+	private PartitionedEliasFanoSequence(int size, int partitionSize, Partition[] partitions, EliasFanoSequence lasts) {
+		this.size = size;
+		this.partitionSize = partitionSize;
+		this.partitions = partitions;
+		this.lasts = lasts;
+	}
+
+	// accessors
+
+	/**
+	 * The number of values in the sequence.
+	 */
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * The number of values in each partition, the final partition may contain
+	 * fewer.
+	 */
+
+	public int getPartitionSize() {
+		return partitionSize;
+	}
+
+	// methods
+
+	/**
+	 * The value at the specified index.
+	 *
+	 * @param index
+	 *            an index into the sequence
+	 * @return the value at the index
+	 * @throws IndexOutOfBoundsException
+	 *             if the index is negative or not less than the size
+	 */
+
+	public long get(int index) {
+		if (index < 0 || index >= size) throw new IndexOutOfBoundsException();
+		final Partition partition = partitions[index / partitionSize];
+		return partition.base + partition.get(index % partitionSize);
+	}
+
+	/**
+	 * The index of the first value in the sequence that is greater than or
+	 * equal to the supplied value.
+	 *
+	 * @param value
+	 *            the value sought
+	 * @return the index of the first value not less than the supplied value,
+	 *         or the size of the sequence if there is no such value
+	 */
+
+	public int nextGEQ(long value) {
+		final int p = lasts.nextGEQ(value);
+		if (p == partitions.length) return size;
+		final Partition partition = partitions[p];
+		final int index = value <= partition.base ? 0 : partition.nextGEQ(value - partition.base);
+		return p * partitionSize + index;
+	}
+
+	/**
+	 * Copies the values in the sequence into an array.
+	 *
+	 * @return the decoded values
+	 */
+
+	public long[] toArray() {
+		final long[] values = new long[size];
+		for (int i = 0; i < size; i++) {
+			values[i] = get(i);
+		}
+		return values;
+	}
+
+	/**
+	 * Writes the sequence so that it may be recovered with
+	 * {@link #read(BitReader)}.
+	 *
+	 * @param writer
+	 *            the writer to which the sequence is written
+	 * @return the number of bits written
+	 */
+
+	public long write(BitWriter writer) {
+		if (writer == null) throw new IllegalArgumentException("null writer");
+		long count = 0L;
+		count += writer.write(size, 32);
+		count += writer.write(partitionSize, 32);
+		long previous = 0L;
+		for (int p = 0; p < partitions.length; p++) {
+			final Partition partition = partitions[p];
+			count += writer.write(partition.type(), 2);
+			count += coding.encodePositiveLong(writer, partition.base - previous);
+			count += coding.encodePositiveLong(writer, partition.last());
+			count += partition.write(writer);
+			previous = partition.base + partition.last();
+		}
+		return count;
+	}
+
+	// object methods
+
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) sb.append(", ");
+			sb.append(get(i));
+		}
+		return sb.append(']').toString();
+	}
+
+	// private utility methods
+
+	// chooses the smallest representation for values[from, to)
+	private static Partition partition(long[] values, int from, int to, long base) {
+		final int length = to - from;
+		final long last = values[to - 1] - base;
+		boolean strict = true;
+		for (int i = from + 1; i < to; i++) {
+			if (values[i] <= values[i - 1]) {
+				strict = false;
+				break;
+			}
+		}
+		if (strict && last == length - 1) return new RunPartition(base, length);
+		final EliasFanoSequence sequence = new EliasFanoSequence(values, from, to, base);
+		if (strict && last < sequence.getBitLength()) {
+			final long[] bits = new long[(int) ((last + 64L) >> 6)];
+			for (int i = from; i < to; i++) {
+				final long bit = values[i] - base;
+				bits[(int) (bit >> 6)] |= 1L << bit;
+			}
+			return new BitmapPartition(base, bits);
+		}
+		return new SequencePartition(base, sequence);
+	}
+
+	// inner classes
+
+	private static abstract class Partition {
+
+		final long base;
+
+		Partition(long base) {
+			this.base = base;
+		}
+
+		abstract int type();
+
+		// the value at the index, less the base
+		abstract long get(int index);
+
+		// the index of the first value not less than the value, relative to the base
+		abstract int nextGEQ(long value);
+
+		// the last value, relative to the base
+		abstract long last();
+
+		abstract long write(BitWriter writer);
+
+	}
+
+	private static final class RunPartition extends Partition {
+
+		private final int length;
+
+		RunPartition(long base, int length) {
+			super(base);
+			this.length = length;
+		}
+
+		@Override
+		int type() {
+			return TYPE_RUN;
+		}
+
+		@Override
+		long get(int index) {
+			return index;
+		}
+
+		@Override
+		int nextGEQ(long value) {
+			return (int) value;
+		}
+
+		@Override
+		long last() {
+			return length - 1;
+		}
+
+		@Override
+		long write(BitWriter writer) {
+			return 0L;
+		}
+
+	}
+
+	private static final class BitmapPartition extends Partition {
+
+		private final long[] bits;
+		// the number of ones preceding each word
+		private final int[] ranks;
+		private final long last;
+
+		BitmapPartition(long base, long[] bits) {
+			super(base);
+			this.bits = bits;
+			ranks = new int[bits.length];
+			int rank = 0;
+			for (int i = 0; i < bits.length; i++) {
+				ranks[i] = rank;
+				rank += Long.bitCount(bits[i]);
+			}
+			final int index = bits.length - 1;
+			last = ((long) index << 6) + 63 - Long.numberOfLeadingZeros(bits[index]);
+		}
+
+		@Override
+		int type() {
+			return TYPE_BITMAP;
+		}
+
+		@Override
+		long get(int index) {
+			// locate the word containing the index-th one
+			int lo = 0;
+			int hi = ranks.length - 1;
+			while (lo < hi) {
+				final int mid = (lo + hi + 1) >>> 1;
+				if (ranks[mid] <= index) {
+					lo = mid;
+				} else {
+					hi = mid - 1;
+				}
+			}
+			long word = bits[lo];
+			for (int r = index - ranks[lo]; r > 0; r--) word &= word - 1L;
+			return ((long) lo << 6) + Long.numberOfTrailingZeros(word);
+		}
+
+		@Override
+		int nextGEQ(long value) {
+			final int index = (int) (value >> 6);
+			return ranks[index] + Long.bitCount(bits[index] & ((1L << value) - 1L));
+		}
+
+		@Override
+		long last() {
+			return last;
+		}
+
+		@Override
+		long write(BitWriter writer) {
+			long count = 0L;
+			for (int i = 0; i < bits.length; i++) {
+				count += writer.write(bits[i], (int) Math.min(64L, last + 1L - (i << 6)));
+			}
+			return count;
+		}
+
+	}
+
+	private static final class SequencePartition extends Partition {
+
+		private final EliasFanoSequence sequence;
+
+		SequencePartition(long base, EliasFanoSequence sequence) {
+			super(base);
+			this.sequence = sequence;
+		}
+
+		@Override
+		int type() {
+			return TYPE_ELIAS_FANO;
+		}
+
+		@Override
+		long get(int index) {
+			return sequence.get(index);
+		}
+
+		@Override
+		int nextGEQ(long value) {
+			return sequence.nextGEQ(value);
+		}
+
+		@Override
+		long last() {
+			return sequence.getLast();
+		}
+
+		@Override
+		long write(BitWriter writer) {
+			return sequence.writeData(writer);
+		}
+
+	}
+
+}
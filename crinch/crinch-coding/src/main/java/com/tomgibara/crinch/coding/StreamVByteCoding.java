@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.crinch.coding;
+
+import com.tomgibara.crinch.bits.BitReader;
+import com.tomgibara.crinch.bits.BitWriter;
+
+/**
+ * <p>
+ * A {@link BlockCoding} that stores each value in between one and four whole
+ * bytes. The byte lengths are recorded, two bits per value, in a control
+ * stream which precedes the data; this separation means that the length of
+ * every value is known before its data is read (the Stream VByte scheme).
+ * The lengths of a final group of fewer than four values occupy only the bits
+ * they need, so that short runs, down to single values, remain economical.
+ * </p>
+ *
+ * <p>
+ * The singleton instance of this class is available from
+ * {@link StreamVByteCoding#instance}.
+ * </p>
+ *
+ * @author Tom Gibara
+ */
+
+public final class StreamVByteCoding implements BlockCoding {
+
+	// statics
+
+	/**
+	 * The sole instance of this class.
+	 */
+
+	public static final StreamVByteCoding instance = new StreamVByteCoding();
+
+	// constructors
+
+	private StreamVByteCoding() { }
+
+	// block coding methods
+
+	@Override
+	public int encodeInts(BitWriter writer, int[] values, int offset, int length) {
+		checkArgs(values, offset, length);
+		int count = 0;
+		final int to = offset + length;
+		// write the control stream, four lengths to a byte
+		for (int i = offset; i < to; i += 4) {
+			final int n = Math.min(4, to - i);
+			int control = 0;
+			for (int j = 0; j < n; j++) {
+				control = (control << 2) | byteCount(values[i + j]) - 1;
+			}
+			count += writer.write(control, n << 1);
+		}
+		// write the data stream
+		for (int i = offset; i < to; i++) {
+			final int value = values[i];
+			count += writer.write(value, byteCount(value) << 3);
+		}
+		return count;
+	}
+
+	@Override
+	public int[] decodeInts(BitReader reader, int[] values, int offset, int length) {
+		checkArgs(values, offset, length);
+		final byte[] controls = new byte[(length + 3) >> 2];
+		for (int i = 0; i < controls.length; i++) {
+			// a final partial group is aligned as if it were complete
+			final int n = Math.min(4, length - (i << 2));
+			controls[i] = (byte) (reader.read(n << 1) << ((4 - n) << 1));
+		}
+		for (int i = 0; i < length; i++) {
+			final int control = (controls[i >> 2] >> ((3 - (i & 3)) << 1)) & 3;
+			values[offset + i] = reader.read((control + 1) << 3);
+		}
+		return values;
+	}
+
+	// private utility methods
+
+	private static void checkArgs(int[] values, int offset, int length) {
+		if (values == null) throw new IllegalArgumentException("null values");
+		if (offset < 0) throw new IllegalArgumentException("negative offset");
+		if (length < 0) throw new IllegalArgumentException("negative length");
+		if (offset + length > values.length) throw new IllegalArgumentException("length exceeds values");
+	}
+
+	private static int byteCount(int value) {
+		if ((value & 0xffffff00) == 0) return 1;
+		if ((value & 0xffff0000) == 0) return 2;
+		if ((value & 0xff000000) == 0) return 3;
+		return 4;
+	}
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2012 Tom Gibara
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.tomgibara.crinch.coding;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.tomgibara.crinch.bits.BitStreamException;
+import com.tomgibara.crinch.bits.ByteArrayBitReader;
+import com.tomgibara.crinch.bits.ByteArrayBitWriter;
+import com.tomgibara.crinch.coding.HuffmanCoding.UnorderedFrequencies;
+
+public class AdaptiveHuffmanCodingTest extends TestCase {
+
+	private void testRoundTrip(long[] freqs, int interval) {
+		Random r = new Random(0L);
+		int[] values = AnsCodingTest.values(r, freqs, 5000);
+		AdaptiveHuffmanCoding encoder = new AdaptiveHuffmanCoding(freqs.length, interval);
+		ByteArrayBitWriter writer = new ByteArrayBitWriter(new byte[values.length * 4 + 16]);
+		long count = 0L;
+		for (int value : values) count += encoder.encodePositiveInt(writer, value);
+		assertEquals(count, writer.getPosition());
+		assertEquals((values.length - 1) / interval, encoder.getEpoch());
+		writer.flush();
+
+		AdaptiveHuffmanCoding decoder = new AdaptiveHuffmanCoding(freqs.length, interval);
+		ByteArrayBitReader reader = new ByteArrayBitReader(writer.getBytes());
+		for (int value : values) assertEquals(value, decoder.decodePositiveInt(reader));
+		assertEquals(count, reader.getPosition());
+	}
+
+	public void testRoundTrip() {
+		testRoundTrip(new long[] {10, 15, 30, 16, 29}, 100);
+		testRoundTrip(new long[] {1, 2, 4, 8, 16, 0, 1000}, 1);
+		testRoundTrip(new long[] {1, 2, 4, 8, 16, 0, 1000}, 1000);
+		testRoundTrip(new long[] {10}, 10);
+	}
+
+	public void testCompression() {
+		long[] freqs = {1, 2, 4, 8, 16, 32, 64, 128, 256, 512};
+		int[] values = AnsCodingTest.values(new Random(0L), freqs, 100000);
+		AdaptiveHuffmanCoding adaptive = new AdaptiveHuffmanCoding(freqs.length, 1024);
+		ByteArrayBitWriter writer = new ByteArrayBitWriter(new byte[values.length * 4]);
+		for (int value : values) adaptive.encodePositiveInt(writer, value);
+		long optimal = new HuffmanCoding(new UnorderedFrequencies(freqs)).getEncodedLength(new UnorderedFrequencies(freqs)) * values.length / 1023;
+		// should be within a few percent of a coding built in advance
+		assertTrue(writer.getPosition() < optimal * 1.05);
+	}
+
+	public void testEpochMismatch() {
+		AdaptiveHuffmanCoding encoder = new AdaptiveHuffmanCoding(4, 10);
+		ByteArrayBitWriter writer = new ByteArrayBitWriter(new byte[100]);
+		for (int i = 0; i < 20; i++) encoder.encodePositiveInt(writer, i % 4);
+		writer.flush();
+		AdaptiveHuffmanCoding decoder = new AdaptiveHuffmanCoding(4, 5);
+		ByteArrayBitReader reader = new ByteArrayBitReader(writer.getBytes());
+		try {
+			for (int i = 0; i < 20; i++) decoder.decodePositiveInt(reader);
+			fail();
+		} catch (BitStreamException e) {
+			/* expected */
+		}
+	}
+
+	public void testRange() {
+		AdaptiveHuffmanCoding coding = new AdaptiveHuffmanCoding(4);
+		ByteArrayBitWriter writer = new ByteArrayBitWriter(new byte[10]);
+		try {
+			coding.encodePositiveInt(writer, 4);
+			fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+	}
+
+	public void testShards() throws InterruptedException {
+		final CharFrequencyShards shards = new CharFrequencyShards();
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			final char c = (char) ('a' + i);
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 1000; j++) shards.getRecorder().record(c);
+					shards.getRecorder().record("z");
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) thread.join();
+		long[] freqs = shards.merge().getFrequencies();
+		for (int i = 0; i < threads.length; i++) assertEquals(1000, freqs['a' + i]);
+		assertEquals(threads.length, freqs['z']);
+	}
+
+}
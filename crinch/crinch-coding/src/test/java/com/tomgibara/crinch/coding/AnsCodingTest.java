@@ -0,0 +1,120 @@
+/*
+ * Copyright 2012 Tom Gibara
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.tomgibara.crinch.coding;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.tomgibara.crinch.bits.ByteArrayBitReader;
+import com.tomgibara.crinch.bits.ByteArrayBitWriter;
+import com.tomgibara.crinch.coding.HuffmanCoding.UnorderedFrequencies;
+
+public class AnsCodingTest extends TestCase {
+
+	// generates values distributed according to the frequencies
+	static int[] values(Random r, long[] freqs, int length) {
+		long total = 0L;
+		for (long f : freqs) total += f;
+		int[] values = new int[length];
+		for (int i = 0; i < length; i++) {
+			long t = (long) (r.nextDouble() * total);
+			int v = 0;
+			while (t >= freqs[v]) t -= freqs[v++];
+			values[i] = v;
+		}
+		return values;
+	}
+
+	static int encode(AnsCoding coding, ByteArrayBitWriter writer, int[] values) {
+		int count = coding.encodeInts(writer, values, 0, values.length);
+		assertEquals(count, writer.getPosition());
+		writer.flush();
+		return count;
+	}
+
+	private void testRoundTrip(long[] freqs, int tableBits, int ways) {
+		Random r = new Random(0L);
+		AnsCoding coding = new AnsCoding(new UnorderedFrequencies(freqs), tableBits, ways);
+		for (int test = 0; test < 20; test++) {
+			int[] values = values(r, freqs, r.nextInt(2000));
+			ByteArrayBitWriter writer = new ByteArrayBitWriter(new byte[values.length * 4 + 16]);
+			encode(coding, writer, values);
+			int[] decoded = coding.decodeInts(new ByteArrayBitReader(writer.getBytes()), new int[values.length], 0, values.length);
+			assertTrue(Arrays.equals(values, decoded));
+		}
+	}
+
+	public void testRoundTrip() {
+		for (int ways = 1; ways <= 4; ways++) {
+			testRoundTrip(new long[] {10, 15, 30, 16, 29}, 12, ways);
+			testRoundTrip(new long[] {20, 20, 20, 20, 20}, 3, ways);
+			testRoundTrip(new long[] {1, 2, 4, 8, 16, 0, 1000}, 10, ways);
+			testRoundTrip(new long[] {1, 1}, 1, ways);
+			testRoundTrip(new long[] {10}, 12, ways);
+			testRoundTrip(new long[] {99, 1}, 12, ways);
+		}
+	}
+
+	public void testSuppliedBuffer() {
+		long[] freqs = {10, 15, 30, 16, 29};
+		AnsCoding coding = new AnsCoding(new UnorderedFrequencies(freqs), 12, 3);
+		Random r = new Random(0L);
+		// a single buffer is reused for runs of differing lengths and must not affect the coding
+		long[] buffer = new long[coding.getBufferLength(500)];
+		for (int test = 0; test < 20; test++) {
+			int[] values = values(r, freqs, r.nextInt(500));
+			ByteArrayBitWriter expected = new ByteArrayBitWriter(new byte[values.length * 4 + 16]);
+			int count = encode(coding, expected, values);
+			ByteArrayBitWriter writer = new ByteArrayBitWriter(new byte[values.length * 4 + 16]);
+			assertEquals(count, coding.encodeInts(writer, values, 0, values.length, buffer));
+			writer.flush();
+			assertTrue(Arrays.equals(expected.getBytes(), writer.getBytes()));
+		}
+		try {
+			coding.encodeInts(new ByteArrayBitWriter(new byte[64]), new int[] {1, 2}, 0, 2, new long[coding.getBufferLength(1)]);
+			fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+	}
+
+	public void testCodingFrequencies() {
+		int[] values = {3, 3, 3, 5, 7, 7, 3, 3, 3, 3};
+		AnsCoding coding = new AnsCoding(CodingFrequencies.fromValues(values));
+		ByteArrayBitWriter writer = new ByteArrayBitWriter(new byte[64]);
+		encode(coding, writer, values);
+		int[] decoded = coding.decodeInts(new ByteArrayBitReader(writer.getBytes()), new int[values.length], 0, values.length);
+		assertTrue(Arrays.equals(values, decoded));
+	}
+
+	public void testNearEntropy() {
+		// a 99:1 distribution has an entropy of about 0.08 bits, Huffman coding needs 1 bit
+		long[] freqs = {99, 1};
+		AnsCoding coding = new AnsCoding(new UnorderedFrequencies(freqs));
+		int[] values = values(new Random(0L), freqs, 100000);
+		ByteArrayBitWriter writer = new ByteArrayBitWriter(new byte[values.length]);
+		int count = encode(coding, writer, values);
+		assertTrue(count < values.length / 10);
+		int[] decoded = coding.decodeInts(new ByteArrayBitReader(writer.getBytes()), new int[values.length], 0, values.length);
+		assertTrue(Arrays.equals(values, decoded));
+		long estimate = coding.getEncodedLength(new UnorderedFrequencies(99000, 1000));
+		assertTrue(Math.abs(estimate - 8080) < 200);
+	}
+
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2012 Tom Gibara
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.tomgibara.crinch.coding;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.tomgibara.crinch.bits.ChecksumException;
+import com.tomgibara.crinch.bits.OutputStreamBitWriter;
+import com.tomgibara.crinch.coding.CodedStreams.ReadTask;
+import com.tomgibara.crinch.coding.CodedStreams.WriteTask;
+
+public class CodedStreamsTest extends TestCase {
+
+	private static final long[] VALUES = { 0L, 1L, -1L, Long.MAX_VALUE / 2, 1000L };
+
+	private static class Task implements WriteTask, ReadTask {
+
+		long[] values = new long[VALUES.length];
+
+		@Override
+		public void writeTo(CodedWriter writer) {
+			for (long value : values) writer.writeLong(value);
+		}
+
+		@Override
+		public void readFrom(CodedReader reader) {
+			for (int i = 0; i < values.length; i++) values[i] = reader.readLong();
+		}
+
+	}
+
+	// writes the values without checksums, as files were before they were introduced
+	private static File unchecksummedFile() throws IOException {
+		File file = File.createTempFile("crinch-coded", ".bin");
+		file.deleteOnExit();
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			OutputStreamBitWriter writer = new OutputStreamBitWriter(out);
+			CodedWriter coded = new CodedWriter(writer, EliasOmegaCoding.extended);
+			for (long value : VALUES) coded.writeLong(value);
+			writer.flush();
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	public void testVerifiedRoundTrip() throws IOException {
+		File file = File.createTempFile("crinch-coded", ".bin");
+		file.deleteOnExit();
+		Task task = new Task();
+		task.values = VALUES.clone();
+		CodedStreams.writeToFile(task, EliasOmegaCoding.extended, file);
+		task = new Task();
+		CodedStreams.readFromFile(task, EliasOmegaCoding.extended, file, true);
+		assertTrue(Arrays.equals(VALUES, task.values));
+	}
+
+	public void testUnverifiedByDefault() throws IOException {
+		File file = unchecksummedFile();
+		Task task = new Task();
+		CodedStreams.readFromFile(task, EliasOmegaCoding.extended, file);
+		assertTrue(Arrays.equals(VALUES, task.values));
+		try {
+			CodedStreams.readFromFile(new Task(), EliasOmegaCoding.extended, file, true);
+			fail();
+		} catch (ChecksumException e) {
+			/* expected */
+		}
+	}
+
+}
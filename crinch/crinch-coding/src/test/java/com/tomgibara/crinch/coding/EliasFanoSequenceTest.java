@@ -0,0 +1,117 @@
+/*
+ * Copyright 2012 Tom Gibara
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.tomgibara.crinch.coding;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.tomgibara.crinch.bits.ByteArrayBitReader;
+import com.tomgibara.crinch.bits.ByteArrayBitWriter;
+
+public class EliasFanoSequenceTest extends TestCase {
+
+	// generates sorted values with the given mean gap
+	static long[] values(Random r, int size, int gap) {
+		long[] values = new long[size];
+		long value = r.nextInt(gap + 1);
+		for (int i = 0; i < size; i++) {
+			values[i] = value;
+			value += r.nextInt(2 * gap + 1);
+		}
+		return values;
+	}
+
+	static int nextGEQ(long[] values, long value) {
+		for (int i = 0; i < values.length; i++) {
+			if (values[i] >= value) return i;
+		}
+		return values.length;
+	}
+
+	public void testEmpty() {
+		EliasFanoSequence seq = new EliasFanoSequence(new long[0]);
+		assertEquals(0, seq.size());
+		assertEquals(0, seq.nextGEQ(0L));
+		assertEquals(0, seq.toArray().length);
+	}
+
+	public void testRandom() {
+		Random r = new Random(0L);
+		for (int test = 0; test < 200; test++) {
+			int size = r.nextInt(2000);
+			int gap = r.nextInt(test % 10 == 0 ? 100000 : 100);
+			long[] values = values(r, size, gap);
+			EliasFanoSequence seq = new EliasFanoSequence(values);
+			assertEquals(size, seq.size());
+			assertTrue(Arrays.equals(values, seq.toArray()));
+			for (int i = 0; i < size; i++) {
+				assertEquals(values[i], seq.get(i));
+			}
+			for (int i = 0; i < 100; i++) {
+				long value = size == 0 ? i : r.nextInt((int) values[size - 1] + 2);
+				assertEquals(nextGEQ(values, value), seq.nextGEQ(value));
+			}
+		}
+	}
+
+	public void testLarge() {
+		long[] values = new long[] { 0L, 1L, 1L, Long.MAX_VALUE / 2, Long.MAX_VALUE - 1 };
+		EliasFanoSequence seq = new EliasFanoSequence(values);
+		assertTrue(Arrays.equals(values, seq.toArray()));
+		assertEquals(3, seq.nextGEQ(2L));
+		assertEquals(4, seq.nextGEQ(Long.MAX_VALUE / 2 + 1));
+	}
+
+	public void testReadWrite() {
+		Random r = new Random(1L);
+		for (int test = 0; test < 50; test++) {
+			long[] values = values(r, r.nextInt(1000), r.nextInt(1000));
+			EliasFanoSequence seq = new EliasFanoSequence(values);
+			ByteArrayBitWriter writer = new ByteArrayBitWriter(new byte[(int) (seq.getBitLength() / 8 + 32)]);
+			long count = seq.write(writer);
+			assertEquals(count, writer.getPosition());
+			writer.flush();
+			EliasFanoSequence copy = EliasFanoSequence.read(new ByteArrayBitReader(writer.getBytes()));
+			assertTrue(Arrays.equals(values, copy.toArray()));
+		}
+	}
+
+	public void testCompactness() {
+		long[] values = values(new Random(2L), 100000, 64);
+		EliasFanoSequence seq = new EliasFanoSequence(values);
+		// roughly 2 + log2(64)
+		assertTrue(seq.getBitLength() <= 8.1 * values.length);
+	}
+
+	public void testInvalid() {
+		try {
+			new EliasFanoSequence(new long[] {3L, 2L});
+			fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+		try {
+			new EliasFanoSequence(new long[] {-1L, 2L});
+			fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+	}
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2012 Tom Gibara
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.tomgibara.crinch.coding;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.tomgibara.crinch.bits.ByteArrayBitReader;
+import com.tomgibara.crinch.bits.ByteArrayBitWriter;
+
+public class PartitionedEliasFanoSequenceTest extends TestCase {
+
+	// sorted values with runs, dense clusters and sparse stretches
+	private static long[] clustered(Random r, int size) {
+		long[] values = new long[size];
+		long value = 0L;
+		for (int i = 0; i < size; i++) {
+			switch ((i / 200) % 3) {
+			case 0 : value += 1; break;
+			case 1 : value += r.nextInt(4); break;
+			default : value += r.nextInt(100000);
+			}
+			values[i] = value;
+		}
+		return values;
+	}
+
+	private static long write(PartitionedEliasFanoSequence seq, long[] values) {
+		ByteArrayBitWriter writer = new ByteArrayBitWriter(new byte[values.length * 16 + 64]);
+		long count = seq.write(writer);
+		writer.flush();
+		PartitionedEliasFanoSequence copy = PartitionedEliasFanoSequence.read(new ByteArrayBitReader(writer.getBytes()));
+		assertTrue(Arrays.equals(values, copy.toArray()));
+		return count;
+	}
+
+	public void testEmpty() {
+		PartitionedEliasFanoSequence seq = new PartitionedEliasFanoSequence(new long[0]);
+		assertEquals(0, seq.size());
+		assertEquals(0, seq.nextGEQ(5L));
+		write(seq, new long[0]);
+	}
+
+	public void testRandom() {
+		Random r = new Random(0L);
+		for (int test = 0; test < 100; test++) {
+			int size = r.nextInt(3000);
+			long[] values = test % 2 == 0 ? clustered(r, size) : EliasFanoSequenceTest.values(r, size, r.nextInt(50));
+			PartitionedEliasFanoSequence seq = new PartitionedEliasFanoSequence(values, 1 + r.nextInt(200));
+			assertEquals(size, seq.size());
+			for (int i = 0; i < size; i++) {
+				assertEquals(values[i], seq.get(i));
+			}
+			for (int i = 0; i < 100; i++) {
+				long value = size == 0 ? i : (long) (r.nextDouble() * (values[size - 1] + 2));
+				assertEquals(EliasFanoSequenceTest.nextGEQ(values, value), seq.nextGEQ(value));
+			}
+			write(seq, values);
+		}
+	}
+
+	public void testCompactness() {
+		long[] values = clustered(new Random(1L), 30000);
+		long partitioned = write(new PartitionedEliasFanoSequence(values), values);
+		ByteArrayBitWriter writer = new ByteArrayBitWriter(new byte[values.length * 16]);
+		long plain = new EliasFanoSequence(values).write(writer);
+		assertTrue(partitioned + " >= " + plain, partitioned < plain);
+	}
+
+}
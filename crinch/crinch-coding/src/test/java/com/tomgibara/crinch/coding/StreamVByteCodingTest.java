@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012 Tom Gibara
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.tomgibara.crinch.coding;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.tomgibara.crinch.bits.ByteArrayBitReader;
+import com.tomgibara.crinch.bits.ByteArrayBitWriter;
+
+public class StreamVByteCodingTest extends TestCase {
+
+	// mostly small values with occasional large exceptions
+	static int[] values(Random r, int size, int bits) {
+		int[] values = new int[size];
+		for (int i = 0; i < size; i++) {
+			values[i] = r.nextInt(20) == 0 ? r.nextInt() : r.nextInt(1 << bits);
+		}
+		return values;
+	}
+
+	static int[] roundTrip(BlockCoding coding, int[] values, int offset, int length) {
+		ByteArrayBitWriter writer = new ByteArrayBitWriter(new byte[values.length * 5 + 64]);
+		int count = coding.encodeInts(writer, values, offset, length);
+		assertEquals(count, writer.getPosition());
+		writer.flush();
+		int[] decoded = new int[length + 2];
+		coding.decodeInts(new ByteArrayBitReader(writer.getBytes()), decoded, 1, length);
+		assertEquals(0, decoded[0]);
+		assertEquals(0, decoded[length + 1]);
+		return Arrays.copyOfRange(decoded, 1, length + 1);
+	}
+
+	public void testRandom() {
+		Random r = new Random(0L);
+		for (int test = 0; test < 200; test++) {
+			int size = r.nextInt(1000);
+			int[] values = values(r, size, r.nextInt(31));
+			int offset = size == 0 ? 0 : r.nextInt(size);
+			int length = size - offset == 0 ? 0 : r.nextInt(size - offset);
+			int[] expected = Arrays.copyOfRange(values, offset, offset + length);
+			assertTrue(Arrays.equals(expected, roundTrip(StreamVByteCoding.instance, values, offset, length)));
+		}
+	}
+
+	public void testExtremes() {
+		int[] values = { 0, -1, Integer.MIN_VALUE, Integer.MAX_VALUE, 1, 255, 256, 65535, 65536, 0xffffff, 0x1000000 };
+		assertTrue(Arrays.equals(values, roundTrip(StreamVByteCoding.instance, values, 0, values.length)));
+		int[] zeros = new int[300];
+		assertTrue(Arrays.equals(zeros, roundTrip(StreamVByteCoding.instance, zeros, 0, zeros.length)));
+	}
+
+	public void testCompact() {
+		int[] values = new int[400];
+		for (int i = 0; i < values.length; i++) values[i] = i % 200;
+		ByteArrayBitWriter writer = new ByteArrayBitWriter(new byte[values.length * 5]);
+		int count = StreamVByteCoding.instance.encodeInts(writer, values, 0, values.length);
+		assertEquals(values.length * 10, count);
+	}
+
+	public void testPartialGroups() {
+		// a final partial group records two bits of length per value
+		int[] values = { 5, 300, 70000 };
+		for (int length = 1; length <= values.length; length++) {
+			ByteArrayBitWriter writer = new ByteArrayBitWriter(new byte[16]);
+			int count = StreamVByteCoding.instance.encodeInts(writer, values, 0, length);
+			int bytes = 0;
+			for (int i = 0; i < length; i++) bytes += i + 1;
+			assertEquals(length * 2 + bytes * 8, count);
+			assertTrue(Arrays.equals(Arrays.copyOf(values, length), roundTrip(StreamVByteCoding.instance, values, 0, length)));
+		}
+	}
+
+}
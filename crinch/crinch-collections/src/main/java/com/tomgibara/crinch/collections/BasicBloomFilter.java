@@ -105,7 +105,7 @@ public class BasicBloomFilter<E> extends AbstractBloomFilter<E> implements Clone
 		this.multiHash = multiHash;
 		this.hashCount = hashCount;
 		hashes = new int[hashCount];
-		this.bits = bits == null ? new BitVector(multiHash.getRange().getSize().intValue()) : bits.alignedCopy(true);
+		this.bits = bits == null ? new BitVector(multiHash.getRange().getIntSize()) : bits.alignedCopy(true);
 		publicBits = this.bits.immutableView();
 	}
 	
@@ -55,7 +55,7 @@ public class BasicCompactApproximator<K,V> implements CompactApproximator<K, V>,
 		this.hashCount = hashCount;
 		hashes = new int[hashCount];
 		//TODO nasty - should use Array.newInstance() ?
-		values = (V[]) new Object[ multiHash.getRange().getSize().intValue() ];
+		values = (V[]) new Object[ multiHash.getRange().getIntSize() ];
 		clear();
 		valueList = createValueList(values);
 	}
@@ -154,6 +154,26 @@ public class BasicCompactApproximator<K,V> implements CompactApproximator<K, V>,
 		return true;
 	}
 	
+	@Override
+	public boolean putAll(CompactApproximator<K, V> that) {
+		checkCompatibility(that);
+		final List<V> thatValues = (List<V>) that.getValueList();
+		final int size = values.length;
+		boolean mutated = false;
+		if (thatValues instanceof RandomAccess) {
+			for (int i = 0; i < size; i++) {
+				if (join(i, thatValues.get(i))) mutated = true;
+			}
+		} else {
+			final Iterator<V> it = thatValues.iterator();
+			for (int i = 0; i < size; i++) {
+				if (join(i, it.next())) mutated = true;
+			}
+		}
+		if (mutated) modCount.count++;
+		return mutated;
+	}
+	
 	@Override
 	public CompactApproximator<K,V> boundedAbove(V upperBound) {
 		final Lattice<V> subLattice = accessLattice.boundedAbove(upperBound);
@@ -242,6 +262,14 @@ public class BasicCompactApproximator<K,V> implements CompactApproximator<K, V>,
 			new ValueList<V>(values, storeLattice, accessLattice.getTop());
 	}
 	
+	private boolean join(int index, V value) {
+		final V v = values[index];
+		final V j = storeLattice.join(value, v);
+		if (storeLattice.equalInLattice(j, v)) return false;
+		values[index] = j;
+		return true;
+	}
+	
 	private void checkCompatibility(CompactApproximator<K, V> that) {
 		if (this.hashCount != that.getHashCount()) throw new IllegalArgumentException("Incompatible compact approximator, hashCount was " + that.getHashCount() +", expected " + hashCount);
 		if (!this.multiHash.equals(that.getMultiHash())) throw new IllegalArgumentException("Incompatible compact approximator, multiHashes were not equal.");
@@ -0,0 +1,349 @@
+/*
+ * Copyright 2012 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.crinch.collections;
+
+import java.math.BigInteger;
+
+import com.tomgibara.crinch.bits.BitVector;
+import com.tomgibara.crinch.hashing.AbstractMultiHash;
+import com.tomgibara.crinch.hashing.Hash;
+import com.tomgibara.crinch.hashing.HashRange;
+import com.tomgibara.crinch.hashing.MultiHash;
+
+/**
+ * <p>
+ * A {@link BloomFilter} implementation that confines all of the bits for an
+ * element to a single block of {@link #BLOCK_SIZE} bits. A block matches the
+ * size of a typical cache line so that, for filters too large to be cached,
+ * adding or testing an element costs a single cache miss instead of one per
+ * hash. The price is a slightly higher false positive probability than a
+ * {@link BasicBloomFilter} of the same capacity and hash count.
+ * </p>
+ *
+ * <p>
+ * All of the bit positions for an element are derived from a single 64 bit
+ * hash value supplied by a {@link Hash}; the hash is spread before use so
+ * hashes with a narrower range (such as 32 bit hashes) are acceptable. The
+ * {@link MultiHash} reported by {@link #getMultiHash()} reproduces the bit
+ * positions set by the filter.
+ * </p>
+ *
+ * @author Tom Gibara
+ *
+ * @param <E>
+ *            the type of element contained in the filter
+ */
+
+public class BlockedBloomFilter<E> extends AbstractBloomFilter<E> implements Cloneable {
+
+	// statics
+
+	/**
+	 * The number of bits in each block of the filter.
+	 */
+
+	public static final int BLOCK_SIZE = 512;
+
+	private static final int BLOCK_BITS = 9;
+	private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+	// the largest number of blocks that a BitVector can accommodate
+	private static final int MAX_BLOCK_COUNT = (Integer.MAX_VALUE / 8) >> BLOCK_BITS;
+
+	// a 64 bit finalizer, as used by MurmurHash3
+	private static long spread(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	// the high bits of the hash select the block (multiply-shift avoids a division)
+	private static int block(long h, int blockCount) {
+		return (int) (((h >>> 32) * blockCount) >>> 32);
+	}
+
+	private static int blockCount(BitVector bits) {
+		if (bits == null) throw new IllegalArgumentException("null bits");
+		return bits.size() >> BLOCK_BITS;
+	}
+
+	// an odd stride ensures that the first BLOCK_SIZE positions are distinct
+	private static int stride(long h) {
+		return ((int) h >>> BLOCK_BITS) | 1;
+	}
+
+	// fields
+
+	private final BlockMultiHash<? super E> multiHash;
+	private final int hashCount;
+	private final int blockCount;
+	private final BitVector bits;
+	private final BitVector publicBits;
+
+	// constructors
+
+	/**
+	 * Constructs a {@link BlockedBloomFilter} with the specified number of
+	 * blocks. The capacity of the filter will be
+	 * <code>blockCount * BLOCK_SIZE</code>.
+	 *
+	 * @param hash
+	 *            generates hashes for elements added to the filter
+	 * @param blockCount
+	 *            the number of blocks in the filter
+	 * @param hashCount
+	 *            the number bits set for each element
+	 * @throws IllegalArgumentException
+	 *             if the hash is null, if the hashCount is less than 1 or
+	 *             exceeds the block size, or if the block count is not
+	 *             positive or is too large to be accommodated by a
+	 *             {@link BitVector}
+	 */
+
+	public BlockedBloomFilter(Hash<? super E> hash, int blockCount, int hashCount) {
+		this(null, hash, blockCount, hashCount);
+	}
+
+	/**
+	 * Constructs a {@link BlockedBloomFilter} over the supplied bits. The
+	 * size of the {@link BitVector} must be a multiple of {@link #BLOCK_SIZE}.
+	 *
+	 * @param bits
+	 *            a {@link BitVector} that will store the state of the filter
+	 * @param hash
+	 *            generates hashes for elements added to the filter
+	 * @param hashCount
+	 *            the number bits set for each element
+	 * @throws IllegalArgumentException
+	 *             if the bits or hash are null, if the hashCount is less than 1
+	 *             or exceeds the block size, if the supplied {@link BitVector}
+	 *             is immutable, or if its size is not a positive multiple of
+	 *             the block size
+	 */
+
+	public BlockedBloomFilter(BitVector bits, Hash<? super E> hash, int hashCount) {
+		this(bits, hash, blockCount(bits), hashCount);
+	}
+
+	private BlockedBloomFilter(BitVector bits, Hash<? super E> hash, int blockCount, int hashCount) {
+		if (hash == null) throw new IllegalArgumentException("null hash");
+		if (hashCount < 1) throw new IllegalArgumentException("hashCount not positive");
+		if (hashCount > BLOCK_SIZE) throw new IllegalArgumentException("hashCount exceeds block size");
+		if (bits != null) {
+			if (!bits.isMutable()) throw new IllegalArgumentException("bits not mutable");
+			if ((bits.size() & BLOCK_MASK) != 0) throw new IllegalArgumentException("bits size not a multiple of block size");
+		}
+		if (blockCount < 1) throw new IllegalArgumentException("blockCount not positive");
+		if (blockCount > MAX_BLOCK_COUNT) throw new IllegalArgumentException("blockCount too large");
+
+		this.multiHash = new BlockMultiHash<E>(hash, blockCount);
+		this.hashCount = hashCount;
+		this.blockCount = blockCount;
+		this.bits = bits == null ? new BitVector(blockCount << BLOCK_BITS) : bits.alignedCopy(true);
+		publicBits = this.bits.immutableView();
+	}
+
+	private BlockedBloomFilter(BlockedBloomFilter<E> that) {
+		this.multiHash = that.multiHash;
+		this.hashCount = that.hashCount;
+		this.blockCount = that.blockCount;
+		this.bits = that.bits.copy();
+		publicBits = this.bits.immutableView();
+	}
+
+	// accessors
+
+	/**
+	 * The number of blocks into which the filter's bits are divided.
+	 *
+	 * @return the number of blocks, always positive
+	 */
+
+	public int getBlockCount() {
+		return blockCount;
+	}
+
+	// bloom filter methods
+
+	@Override
+	public void clear() {
+		bits.set(false);
+	}
+
+	@Override
+	public boolean add(E element) {
+		final long h = multiHash.spreadHash(element);
+		final int base = block(h, blockCount) << BLOCK_BITS;
+		final int stride = stride(h);
+		int offset = (int) h;
+		boolean mutated = false;
+		for (int i = 0; i < hashCount; i++) {
+			if (!bits.getThenSetBit(base + (offset & BLOCK_MASK), true)) mutated = true;
+			offset += stride;
+		}
+		return mutated;
+	}
+
+	@Override
+	public boolean mightContain(E element) {
+		final long h = multiHash.spreadHash(element);
+		final int base = block(h, blockCount) << BLOCK_BITS;
+		final int stride = stride(h);
+		int offset = (int) h;
+		for (int i = 0; i < hashCount; i++) {
+			if (!bits.getBit(base + (offset & BLOCK_MASK))) return false;
+			offset += stride;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean addAll(BloomFilter<? extends E> filter) {
+		checkCompatible(filter);
+		boolean contains = bits.testContains(filter.getBitVector());
+		if (contains) return false;
+		bits.orVector(filter.getBitVector());
+		return true;
+	}
+
+	/**
+	 * An estimate of the false positive probability that accounts for the
+	 * uneven distribution of elements between blocks.
+	 */
+
+	@Override
+	public double getFalsePositiveProbability() {
+		double sum = 0.0;
+		for (int i = 0; i < blockCount; i++) {
+			final int from = i << BLOCK_BITS;
+			final int ones = bits.countOnes(from, from + BLOCK_SIZE);
+			if (ones > 0) sum += Math.pow((double) ones / BLOCK_SIZE, hashCount);
+		}
+		return sum / blockCount;
+	}
+
+	@Override
+	public BitVector getBitVector() {
+		return publicBits;
+	}
+
+	@Override
+	public int getHashCount() {
+		return hashCount;
+	}
+
+	@Override
+	public MultiHash<? super E> getMultiHash() {
+		return multiHash;
+	}
+
+	// object methods
+
+	@Override
+	public BlockedBloomFilter<E> clone() {
+		return new BlockedBloomFilter<E>(this);
+	}
+
+	// inner classes
+
+	// exposes the bit positions chosen by the filter as a multi-hash
+	private static final class BlockMultiHash<T> extends AbstractMultiHash<T> {
+
+		private final Hash<? super T> hash;
+		private final int blockCount;
+		private final HashRange range;
+
+		BlockMultiHash(Hash<? super T> hash, int blockCount) {
+			this.hash = hash;
+			this.blockCount = blockCount;
+			range = new HashRange(0, (blockCount << BLOCK_BITS) - 1);
+		}
+
+		long spreadHash(T value) {
+			return spread(hash.hashAsLong(value));
+		}
+
+		@Override
+		public HashRange getRange() {
+			return range;
+		}
+
+		@Override
+		public int getMaxMultiplicity() {
+			return BLOCK_SIZE;
+		}
+
+		@Override
+		public int[] hashAsInts(T value, int[] array) {
+			if (array == null) throw new IllegalArgumentException("null array");
+			if (array.length > BLOCK_SIZE) throw new IllegalArgumentException("multiplicity exceeds block size");
+			final long h = spreadHash(value);
+			final int base = block(h, blockCount) << BLOCK_BITS;
+			final int stride = stride(h);
+			int offset = (int) h;
+			for (int i = 0; i < array.length; i++) {
+				array[i] = base + (offset & BLOCK_MASK);
+				offset += stride;
+			}
+			return array;
+		}
+
+		@Override
+		public long[] hashAsLongs(T value, long[] array) {
+			if (array == null) throw new IllegalArgumentException("null array");
+			final int[] ints = hashAsInts(value, new int[array.length]);
+			for (int i = 0; i < array.length; i++) {
+				array[i] = ints[i];
+			}
+			return array;
+		}
+
+		@Override
+		public BigInteger[] hashAsBigInts(T value, BigInteger[] array) {
+			if (array == null) throw new IllegalArgumentException("null array");
+			final int[] ints = hashAsInts(value, new int[array.length]);
+			for (int i = 0; i < array.length; i++) {
+				array[i] = BigInteger.valueOf(ints[i]);
+			}
+			return array;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) return true;
+			if (!(obj instanceof BlockMultiHash<?>)) return false;
+			BlockMultiHash<?> that = (BlockMultiHash<?>) obj;
+			if (this.blockCount != that.blockCount) return false;
+			if (!this.hash.equals(that.hash)) return false;
+			return true;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash.hashCode() ^ blockCount;
+		}
+
+		@Override
+		public String toString() {
+			return "Blocked: " + hash + " over " + blockCount + " blocks";
+		}
+
+	}
+
+}
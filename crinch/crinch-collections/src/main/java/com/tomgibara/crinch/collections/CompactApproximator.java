@@ -33,6 +33,9 @@ public interface CompactApproximator<K, V> {
 	
 	boolean bounds(CompactApproximator<K, V> ca);
 	
+	//joins every value of a compatible approximator into this one, true if modified
+	boolean putAll(CompactApproximator<K, V> ca);
+	
 	CompactApproximator<K, V> boundedAbove(V upperBound);
 	
 	//bit true if corresponding value attains top
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2012 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.crinch.collections;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.tomgibara.crinch.bits.BitVector;
+import com.tomgibara.crinch.hashing.HashRange;
+import com.tomgibara.crinch.hashing.Hashes;
+import com.tomgibara.crinch.hashing.MultiHash;
+import com.tomgibara.crinch.lattice.Lattice;
+
+/**
+ * <p>
+ * A thread-safe counterpart to {@link BasicCompactApproximator}. Values are
+ * held in an {@link AtomicReferenceArray} so that they can be read without
+ * locking; joins into a cell are serialized by one of a fixed number of locks,
+ * each of which guards an interleaved stripe of cells. The supplied
+ * {@link Lattice} and {@link MultiHash} must themselves be safe for concurrent
+ * use and the values in the lattice should be immutable.
+ * </p>
+ *
+ * <p>
+ * For lattices with primitive representations,
+ * {@link ConcurrentIntCompactApproximator} and
+ * {@link ConcurrentLongCompactApproximator} avoid locking altogether.
+ * Operations that span every cell, such as {@link #clear()},
+ * {@link #putAll(CompactApproximator)} and {@link #bounds(CompactApproximator)},
+ * are not atomic with respect to concurrent puts.
+ * </p>
+ *
+ * @author Tom Gibara
+ *
+ * @param <K>
+ *            the type of key stored in the approximator
+ * @param <V>
+ *            the type of value stored in the approximator
+ */
+
+public class ConcurrentCompactApproximator<K, V> implements CompactApproximator<K, V> {
+
+	private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+	private final MultiHash<? super K> multiHash;
+	private final int hashCount;
+	private final Lattice<V> storeLattice;
+	private final Lattice<V> accessLattice;
+	private final AtomicReferenceArray<V> values;
+	private final Object[] locks;
+	private final int lockMask;
+	private final ValueList valueList;
+	private CompactBloomFilter bloomFilter = null;
+
+	/**
+	 * Constructs a new approximator with a default concurrency level.
+	 *
+	 * @param lattice
+	 *            the lattice of values, bounded below
+	 * @param multiHash
+	 *            a thread-safe source of hashes for keys
+	 * @param hashCount
+	 *            the number hashes generated for each key
+	 * @throws IllegalArgumentException
+	 *             if the lattice is not bounded below, or if the multiHash is
+	 *             not int bounded
+	 */
+
+	public ConcurrentCompactApproximator(Lattice<V> lattice, MultiHash<? super K> multiHash, int hashCount) {
+		this(lattice, multiHash, hashCount, DEFAULT_CONCURRENCY_LEVEL);
+	}
+
+	/**
+	 * Constructs a new approximator.
+	 *
+	 * @param lattice
+	 *            the lattice of values, bounded below
+	 * @param multiHash
+	 *            a thread-safe source of hashes for keys
+	 * @param hashCount
+	 *            the number hashes generated for each key
+	 * @param concurrencyLevel
+	 *            the anticipated number of concurrently updating threads,
+	 *            rounded up to a power of two to give the number of locks
+	 * @throws IllegalArgumentException
+	 *             if the lattice is not bounded below, if the multiHash is not
+	 *             int bounded, or if the concurrency level is not positive
+	 */
+
+	public ConcurrentCompactApproximator(Lattice<V> lattice, MultiHash<? super K> multiHash, int hashCount, int concurrencyLevel) {
+		if (lattice == null) throw new IllegalArgumentException("null lattice");
+		if (!lattice.isBoundedBelow()) throw new IllegalArgumentException("lattice not bounded below");
+		if (multiHash == null) throw new IllegalArgumentException("null multiHash");
+		if (hashCount < 1) throw new IllegalArgumentException("hashCount not positive");
+		if (concurrencyLevel < 1) throw new IllegalArgumentException("concurrencyLevel not positive");
+
+		final HashRange range = multiHash.getRange();
+		if (range == null) throw new IllegalArgumentException("null multiHash range");
+		if (!range.isIntBounded()) throw new IllegalArgumentException("multiHash not int bounded");
+		multiHash = Hashes.rangeAdjust(range.zeroBased(), multiHash);
+
+		this.storeLattice = lattice;
+		this.accessLattice = lattice;
+		this.multiHash = multiHash;
+		this.hashCount = hashCount;
+		values = new AtomicReferenceArray<V>( multiHash.getRange().getIntSize() );
+		int lockCount = Integer.highestOneBit(concurrencyLevel);
+		if (lockCount < concurrencyLevel) lockCount <<= 1;
+		locks = new Object[lockCount];
+		for (int i = 0; i < lockCount; i++) {
+			locks[i] = new Object();
+		}
+		lockMask = lockCount - 1;
+		clear();
+		valueList = new ValueList();
+	}
+
+	// creates a live view of the same values, bounded above
+	private ConcurrentCompactApproximator(ConcurrentCompactApproximator<K, V> that, Lattice<V> accessLattice) {
+		storeLattice = that.storeLattice;
+		this.accessLattice = accessLattice;
+		multiHash = that.multiHash;
+		hashCount = that.hashCount;
+		values = that.values;
+		locks = that.locks;
+		lockMask = that.lockMask;
+		valueList = new ValueList();
+	}
+
+	// approximator methods
+
+	@Override
+	public V put(K key, V value) {
+		if (!accessLattice.contains(value)) throw new IllegalArgumentException();
+		final int[] hashes = multiHash.hashAsInts(key, hashCount);
+		V previous = accessLattice.getTop();
+		for (int i = 0; i < hashCount; i++) {
+			final int hash = hashes[i];
+			final V v;
+			synchronized (locks[hash & lockMask]) {
+				v = values.get(hash);
+				values.set(hash, storeLattice.join(value, v));
+			}
+			previous = storeLattice.meet(previous, v);
+		}
+		return previous;
+	}
+
+	@Override
+	public V getSupremum(K key) {
+		final int[] hashes = multiHash.hashAsInts(key, hashCount);
+		V value = accessLattice.getTop();
+		for (int i = 0; i < hashCount; i++) {
+			value = storeLattice.meet(value, values.get(hashes[i]));
+		}
+		return value;
+	}
+
+	@Override
+	public boolean mightContain(K key) {
+		final int[] hashes = multiHash.hashAsInts(key, hashCount);
+		final V bottom = storeLattice.getBottom();
+		for (int i = 0; i < hashCount; i++) {
+			if (storeLattice.equalInLattice(values.get(hashes[i]), bottom)) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean mightContainAll(Iterable<? extends K> keys) {
+		for (K key : keys) if (!mightContain(key)) return false;
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		final V bottom = storeLattice.getBottom();
+		final int size = values.length();
+		for (int i = 0; i < size; i++) {
+			values.set(i, bottom);
+		}
+	}
+
+	@Override
+	public boolean isEmpty() {
+		final V bottom = storeLattice.getBottom();
+		final int size = values.length();
+		for (int i = 0; i < size; i++) {
+			if (!storeLattice.equalInLattice(values.get(i), bottom)) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean bounds(CompactApproximator<K, V> that) {
+		checkCompatibility(that);
+		final List<V> thisValues = this.valueList;
+		final Iterator<V> it = that.getValueList().iterator();
+		final int size = thisValues.size();
+		for (int i = 0; i < size; i++) {
+			if (!storeLattice.isOrdered(it.next(), thisValues.get(i))) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean putAll(CompactApproximator<K, V> that) {
+		checkCompatibility(that);
+		final Iterator<V> it = that.getValueList().iterator();
+		final int size = values.length();
+		boolean mutated = false;
+		for (int i = 0; i < size; i++) {
+			if (join(i, it.next())) mutated = true;
+		}
+		return mutated;
+	}
+
+	/**
+	 * Returns a live view of this approximator in which values are bounded
+	 * above. Unlike {@link BasicCompactApproximator}, values put into the view
+	 * are visible through this approximator.
+	 */
+
+	@Override
+	public CompactApproximator<K, V> boundedAbove(V upperBound) {
+		final Lattice<V> subLattice = accessLattice.boundedAbove(upperBound);
+		return subLattice.equals(accessLattice) ? this : new ConcurrentCompactApproximator<K, V>(this, subLattice);
+	}
+
+	@Override
+	public BloomFilter<K> asBloomFilter() {
+		return bloomFilter == null ? bloomFilter = new CompactBloomFilter() : bloomFilter;
+	}
+
+	@Override
+	public Lattice<V> getLattice() {
+		return accessLattice;
+	}
+
+	@Override
+	public int getCapacity() {
+		return values.length();
+	}
+
+	@Override
+	public int getHashCount() {
+		return hashCount;
+	}
+
+	@Override
+	public MultiHash<? super K> getMultiHash() {
+		return multiHash;
+	}
+
+	@Override
+	public List<V> getValueList() {
+		return valueList;
+	}
+
+	// object methods
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) return true;
+		if (!(obj instanceof ConcurrentCompactApproximator<?, ?>)) return false;
+		ConcurrentCompactApproximator<?, ?> that = (ConcurrentCompactApproximator<?, ?>) obj;
+		if (this.getHashCount() != that.getHashCount()) return false;
+		if (!this.getMultiHash().equals(that.getMultiHash())) return false;
+		if (!this.getLattice().equals(that.getLattice())) return false;
+		if (!this.getValueList().equals(that.getValueList())) return false;
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return getValueList().hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return getValueList().toString();
+	}
+
+	// private utility methods
+
+	private boolean join(int index, V value) {
+		synchronized (locks[index & lockMask]) {
+			final V v = values.get(index);
+			final V j = storeLattice.join(value, v);
+			if (storeLattice.equalInLattice(j, v)) return false;
+			values.set(index, j);
+			return true;
+		}
+	}
+
+	private void checkCompatibility(CompactApproximator<K, V> that) {
+		if (this.hashCount != that.getHashCount()) throw new IllegalArgumentException("Incompatible compact approximator, hashCount was " + that.getHashCount() +", expected " + hashCount);
+		if (!this.multiHash.equals(that.getMultiHash())) throw new IllegalArgumentException("Incompatible compact approximator, multiHashes were not equal.");
+		if (!this.accessLattice.equals(that.getLattice())) throw new IllegalArgumentException("Incompatible compact approximator, lattices were not equal.");
+	}
+
+	private class ValueList extends AbstractList<V> implements RandomAccess {
+
+		@Override
+		public V get(int index) {
+			if (index < 0 || index >= values.length()) throw new IndexOutOfBoundsException();
+			final V value = values.get(index);
+			return storeLattice == accessLattice ? value : storeLattice.meet(accessLattice.getTop(), value);
+		}
+
+		@Override
+		public int size() {
+			return values.length();
+		}
+
+	}
+
+	// a view over the cells that have attained the top of the lattice
+	private class CompactBloomFilter extends AbstractBloomFilter<K> {
+
+		//cached values
+		final V top = accessLattice.getTop();
+
+		@Override
+		public boolean add(K key) {
+			return !accessLattice.equalInLattice(top, put(key, top));
+		}
+
+		@Override
+		public boolean mightContain(K key) {
+			final int[] hashes = multiHash.hashAsInts(key, hashCount);
+			for (int i = 0; i < hashCount; i++) {
+				if (!storeLattice.isOrdered(top, values.get(hashes[i]))) return false;
+			}
+			return true;
+		}
+
+		@Override
+		public boolean addAll(BloomFilter<? extends K> filter) {
+			checkCompatible(filter);
+			final BitVector thatBits = filter.getBitVector();
+			boolean mutated = false;
+			for (int i = thatBits.firstOne(); i >= 0; i = thatBits.nextOne(i+1)) {
+				if (join(i, top)) mutated = true;
+			}
+			return mutated;
+		}
+
+		@Override
+		public void clear() {
+			ConcurrentCompactApproximator.this.clear();
+		}
+
+		// returns a snapshot, since the values may be modified concurrently
+		@Override
+		public BitVector getBitVector() {
+			final int size = values.length();
+			final BitVector bitVector = new BitVector(size);
+			for (int i = 0; i < size; i++) {
+				bitVector.setBit(i, storeLattice.isOrdered(top, values.get(i)));
+			}
+			return bitVector.immutableView();
+		}
+
+		@Override
+		public int getHashCount() {
+			return hashCount;
+		}
+
+		@Override
+		public MultiHash<? super K> getMultiHash() {
+			return multiHash;
+		}
+
+	}
+
+}
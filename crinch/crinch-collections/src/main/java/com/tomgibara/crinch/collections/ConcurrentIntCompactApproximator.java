@@ -0,0 +1,418 @@
+/*
+ * Copyright 2012 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.crinch.collections;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import com.tomgibara.crinch.bits.BitVector;
+import com.tomgibara.crinch.hashing.HashRange;
+import com.tomgibara.crinch.hashing.Hashes;
+import com.tomgibara.crinch.hashing.MultiHash;
+import com.tomgibara.crinch.lattice.Lattice;
+import com.tomgibara.crinch.lattice.OrderedLattice;
+
+/**
+ * <p>
+ * A thread-safe counterpart to {@link IntCompactApproximator}. Values are held
+ * in an {@link AtomicIntegerArray} and each cell is joined with a
+ * compare-and-set loop so that any number of threads may put values
+ * concurrently without locking. The supplied {@link MultiHash} must itself be
+ * safe for concurrent use.
+ * </p>
+ *
+ * <p>
+ * Operations that span every cell, such as {@link #clear()},
+ * {@link #putAll(CompactApproximator)} and {@link #bounds(CompactApproximator)},
+ * are not atomic with respect to concurrent puts. Approximators populated by
+ * separate threads can be combined cheaply with
+ * {@link #putAll(CompactApproximator)}.
+ * </p>
+ *
+ * @author Tom Gibara
+ *
+ * @param <K>
+ *            the type of key stored in the approximator
+ */
+
+public class ConcurrentIntCompactApproximator<K> implements CompactApproximator<K, Integer> {
+
+	private final MultiHash<? super K> multiHash;
+	private final int hashCount;
+	private final Lattice<Integer> accessLattice;
+	private final int bottom;
+	private final int top;
+	private final AtomicIntegerArray values;
+	private final ValueList valueList;
+	private CompactBloomFilter bloomFilter = null;
+
+	/**
+	 * Constructs a new approximator with values drawn from the supplied
+	 * lattice.
+	 *
+	 * @param lattice
+	 *            a naturally ordered lattice of integers that is bounded below
+	 * @param multiHash
+	 *            a thread-safe source of hashes for keys
+	 * @param hashCount
+	 *            the number hashes generated for each key
+	 * @throws IllegalArgumentException
+	 *             if the lattice is null, not bounded below or has a
+	 *             comparator, or if the multiHash is null or not int bounded
+	 */
+
+	public ConcurrentIntCompactApproximator(OrderedLattice<Integer> lattice, MultiHash<? super K> multiHash, int hashCount) {
+		if (lattice == null) throw new IllegalArgumentException("null lattice");
+		if (lattice.getComparator() != null) throw new IllegalArgumentException("lattice not naturally ordered");
+		if (!lattice.isBoundedBelow()) throw new IllegalArgumentException("lattice not bounded below");
+		if (multiHash == null) throw new IllegalArgumentException("null multiHash");
+		if (hashCount < 1) throw new IllegalArgumentException("hashCount not positive");
+
+		final HashRange range = multiHash.getRange();
+		if (range == null) throw new IllegalArgumentException("null multiHash range");
+		if (!range.isIntBounded()) throw new IllegalArgumentException("multiHash not int bounded");
+		multiHash = Hashes.rangeAdjust(range.zeroBased(), multiHash);
+
+		this.accessLattice = lattice;
+		this.multiHash = multiHash;
+		this.hashCount = hashCount;
+		bottom = lattice.getBottom();
+		top = lattice.isBoundedAbove() ? lattice.getTop() : Integer.MAX_VALUE;
+		values = new AtomicIntegerArray( multiHash.getRange().getIntSize() );
+		clear();
+		valueList = new ValueList();
+	}
+
+	// creates a live view of the same values, bounded above
+	private ConcurrentIntCompactApproximator(ConcurrentIntCompactApproximator<K> that, Lattice<Integer> accessLattice) {
+		this.accessLattice = accessLattice;
+		multiHash = that.multiHash;
+		hashCount = that.hashCount;
+		bottom = that.bottom;
+		top = accessLattice.getTop();
+		values = that.values;
+		valueList = new ValueList();
+	}
+
+	// primitive methods
+
+	/**
+	 * Joins a value with those already recorded against the key.
+	 *
+	 * @param key
+	 *            the key against which the value is recorded
+	 * @param value
+	 *            a value in the lattice
+	 * @return the supremum for the key prior to the value being recorded
+	 * @throws IllegalArgumentException
+	 *             if the value is not in the lattice
+	 */
+
+	public int putInt(K key, int value) {
+		if (value < bottom || value > top) throw new IllegalArgumentException("value not in lattice");
+		final int[] hashes = multiHash.hashAsInts(key, hashCount);
+		final AtomicIntegerArray values = this.values;
+		int previous = top;
+		for (int i = 0; i < hashCount; i++) {
+			final int hash = hashes[i];
+			int v;
+			do {
+				v = values.get(hash);
+			} while (value > v && !values.compareAndSet(hash, v, value));
+			if (v < previous) previous = v;
+		}
+		return previous;
+	}
+
+	/**
+	 * The least value that is known to bound all values recorded against the
+	 * key.
+	 *
+	 * @param key
+	 *            a key
+	 * @return the supremum of the values recorded for the key
+	 */
+
+	public int getSupremumInt(K key) {
+		final int[] hashes = multiHash.hashAsInts(key, hashCount);
+		final AtomicIntegerArray values = this.values;
+		int value = top;
+		for (int i = 0; i < hashCount; i++) {
+			final int v = values.get(hashes[i]);
+			if (v < value) value = v;
+		}
+		return value;
+	}
+
+	// approximator methods
+
+	@Override
+	public Integer put(K key, Integer value) {
+		if (value == null) throw new IllegalArgumentException("null value");
+		return putInt(key, value);
+	}
+
+	@Override
+	public Integer getSupremum(K key) {
+		return getSupremumInt(key);
+	}
+
+	@Override
+	public boolean mightContain(K key) {
+		final int[] hashes = multiHash.hashAsInts(key, hashCount);
+		for (int i = 0; i < hashCount; i++) {
+			if (values.get(hashes[i]) == bottom) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean mightContainAll(Iterable<? extends K> keys) {
+		for (K key : keys) if (!mightContain(key)) return false;
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		final int size = values.length();
+		for (int i = 0; i < size; i++) {
+			values.set(i, bottom);
+		}
+	}
+
+	@Override
+	public boolean isEmpty() {
+		final int size = values.length();
+		for (int i = 0; i < size; i++) {
+			if (values.get(i) != bottom) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean bounds(CompactApproximator<K, Integer> that) {
+		checkCompatibility(that);
+		final int size = values.length();
+		if (that instanceof IntCompactApproximator<?>) {
+			final IntCompactApproximator<?> ica = (IntCompactApproximator<?>) that;
+			for (int i = 0; i < size; i++) {
+				if (ica.cell(i) > cell(i)) return false;
+			}
+		} else if (that instanceof ConcurrentIntCompactApproximator<?>) {
+			final ConcurrentIntCompactApproximator<?> cica = (ConcurrentIntCompactApproximator<?>) that;
+			for (int i = 0; i < size; i++) {
+				if (cica.cell(i) > cell(i)) return false;
+			}
+		} else {
+			final Iterator<Integer> it = that.getValueList().iterator();
+			for (int i = 0; i < size; i++) {
+				if (it.next() > cell(i)) return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean putAll(CompactApproximator<K, Integer> that) {
+		checkCompatibility(that);
+		final int size = values.length();
+		boolean mutated = false;
+		if (that instanceof IntCompactApproximator<?>) {
+			final IntCompactApproximator<?> ica = (IntCompactApproximator<?>) that;
+			for (int i = 0; i < size; i++) {
+				if (join(i, ica.cell(i))) mutated = true;
+			}
+		} else if (that instanceof ConcurrentIntCompactApproximator<?>) {
+			final ConcurrentIntCompactApproximator<?> cica = (ConcurrentIntCompactApproximator<?>) that;
+			for (int i = 0; i < size; i++) {
+				if (join(i, cica.cell(i))) mutated = true;
+			}
+		} else {
+			final Iterator<Integer> it = that.getValueList().iterator();
+			for (int i = 0; i < size; i++) {
+				if (join(i, it.next())) mutated = true;
+			}
+		}
+		return mutated;
+	}
+
+	/**
+	 * Returns a live view of this approximator in which values are bounded
+	 * above. Unlike {@link IntCompactApproximator}, values put into the view
+	 * are visible through this approximator.
+	 */
+
+	@Override
+	public CompactApproximator<K, Integer> boundedAbove(Integer upperBound) {
+		final Lattice<Integer> subLattice = accessLattice.boundedAbove(upperBound);
+		return subLattice.equals(accessLattice) ? this : new ConcurrentIntCompactApproximator<K>(this, subLattice);
+	}
+
+	@Override
+	public BloomFilter<K> asBloomFilter() {
+		return bloomFilter == null ? bloomFilter = new CompactBloomFilter() : bloomFilter;
+	}
+
+	@Override
+	public Lattice<Integer> getLattice() {
+		return accessLattice;
+	}
+
+	@Override
+	public int getCapacity() {
+		return values.length();
+	}
+
+	@Override
+	public int getHashCount() {
+		return hashCount;
+	}
+
+	@Override
+	public MultiHash<? super K> getMultiHash() {
+		return multiHash;
+	}
+
+	@Override
+	public List<Integer> getValueList() {
+		return valueList;
+	}
+
+	// object methods
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) return true;
+		if (!(obj instanceof ConcurrentIntCompactApproximator<?>)) return false;
+		ConcurrentIntCompactApproximator<?> that = (ConcurrentIntCompactApproximator<?>) obj;
+		if (this.getHashCount() != that.getHashCount()) return false;
+		if (!this.getMultiHash().equals(that.getMultiHash())) return false;
+		if (!this.getLattice().equals(that.getLattice())) return false;
+		if (!this.getValueList().equals(that.getValueList())) return false;
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return getValueList().hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return getValueList().toString();
+	}
+
+	// package scoped methods
+
+	// the value at the index, as seen through the access lattice
+	int cell(int index) {
+		return Math.min(values.get(index), top);
+	}
+
+	// private utility methods
+
+	private boolean join(int index, int value) {
+		final AtomicIntegerArray values = this.values;
+		int v;
+		do {
+			v = values.get(index);
+			if (value <= v) return false;
+		} while (!values.compareAndSet(index, v, value));
+		return true;
+	}
+
+	private void checkCompatibility(CompactApproximator<K, Integer> that) {
+		if (this.hashCount != that.getHashCount()) throw new IllegalArgumentException("Incompatible compact approximator, hashCount was " + that.getHashCount() +", expected " + hashCount);
+		if (!this.multiHash.equals(that.getMultiHash())) throw new IllegalArgumentException("Incompatible compact approximator, multiHashes were not equal.");
+		if (!this.accessLattice.equals(that.getLattice())) throw new IllegalArgumentException("Incompatible compact approximator, lattices were not equal.");
+	}
+
+	private class ValueList extends AbstractList<Integer> implements RandomAccess {
+
+		@Override
+		public Integer get(int index) {
+			if (index < 0 || index >= values.length()) throw new IndexOutOfBoundsException();
+			return cell(index);
+		}
+
+		@Override
+		public int size() {
+			return values.length();
+		}
+
+	}
+
+	// a view over the cells that have attained the top of the lattice
+	private class CompactBloomFilter extends AbstractBloomFilter<K> {
+
+		@Override
+		public boolean add(K key) {
+			return putInt(key, top) != top;
+		}
+
+		@Override
+		public boolean mightContain(K key) {
+			final int[] hashes = multiHash.hashAsInts(key, hashCount);
+			for (int i = 0; i < hashCount; i++) {
+				if (values.get(hashes[i]) < top) return false;
+			}
+			return true;
+		}
+
+		@Override
+		public boolean addAll(BloomFilter<? extends K> filter) {
+			checkCompatible(filter);
+			final BitVector thatBits = filter.getBitVector();
+			boolean mutated = false;
+			for (int i = thatBits.firstOne(); i >= 0; i = thatBits.nextOne(i+1)) {
+				if (join(i, top)) mutated = true;
+			}
+			return mutated;
+		}
+
+		@Override
+		public void clear() {
+			ConcurrentIntCompactApproximator.this.clear();
+		}
+
+		// returns a snapshot, since the values may be modified concurrently
+		@Override
+		public BitVector getBitVector() {
+			final int size = values.length();
+			final BitVector bitVector = new BitVector(size);
+			for (int i = 0; i < size; i++) {
+				bitVector.setBit(i, values.get(i) >= top);
+			}
+			return bitVector.immutableView();
+		}
+
+		@Override
+		public int getHashCount() {
+			return hashCount;
+		}
+
+		@Override
+		public MultiHash<? super K> getMultiHash() {
+			return multiHash;
+		}
+
+	}
+
+}
@@ -0,0 +1,442 @@
+/*
+ * Copyright 2012 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.crinch.collections;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+import com.tomgibara.crinch.bits.BitVector;
+import com.tomgibara.crinch.hashing.HashRange;
+import com.tomgibara.crinch.hashing.Hashes;
+import com.tomgibara.crinch.hashing.MultiHash;
+import com.tomgibara.crinch.lattice.Lattice;
+import com.tomgibara.crinch.lattice.OrderedLattice;
+
+/**
+ * <p>
+ * A {@link CompactApproximator} over the naturally ordered integers that
+ * stores its values in an <code>int</code> array. Joins take the maximum of two
+ * values and meets the minimum, so that an approximator over non-negative
+ * integers behaves much like a count-min sketch that records maxima.
+ * </p>
+ *
+ * <p>
+ * The primitive methods {@link #putInt(Object, int)} and
+ * {@link #getSupremumInt(Object)} avoid boxing and calls through the
+ * {@link Lattice} interface; the methods defined by {@link CompactApproximator}
+ * are implemented in terms of them.
+ * </p>
+ *
+ * @author Tom Gibara
+ *
+ * @param <K>
+ *            the type of key stored in the approximator
+ */
+
+public class IntCompactApproximator<K> implements CompactApproximator<K, Integer>, Cloneable {
+
+	private final ModCount modCount;
+	private final MultiHash<? super K> multiHash;
+	private final int hashCount;
+	private final int[] hashes;
+	private final Lattice<Integer> accessLattice;
+	private final int bottom;
+	private final int top;
+	private final int[] values;
+	private final ValueList valueList;
+	private CompactBloomFilter bloomFilter = null;
+
+	/**
+	 * Constructs a new approximator with values drawn from the supplied
+	 * lattice.
+	 *
+	 * @param lattice
+	 *            a naturally ordered lattice of integers that is bounded below
+	 * @param multiHash
+	 *            generates hashes for keys added to the approximator
+	 * @param hashCount
+	 *            the number hashes generated for each key
+	 * @throws IllegalArgumentException
+	 *             if the lattice is null, not bounded below or has a
+	 *             comparator, or if the multiHash is null or not int bounded
+	 */
+
+	public IntCompactApproximator(OrderedLattice<Integer> lattice, MultiHash<? super K> multiHash, int hashCount) {
+		if (lattice == null) throw new IllegalArgumentException("null lattice");
+		if (lattice.getComparator() != null) throw new IllegalArgumentException("lattice not naturally ordered");
+		if (!lattice.isBoundedBelow()) throw new IllegalArgumentException("lattice not bounded below");
+		if (multiHash == null) throw new IllegalArgumentException("null multiHash");
+		if (hashCount < 1) throw new IllegalArgumentException("hashCount not positive");
+
+		final HashRange range = multiHash.getRange();
+		if (range == null) throw new IllegalArgumentException("null multiHash range");
+		if (!range.isIntBounded()) throw new IllegalArgumentException("multiHash not int bounded");
+		multiHash = Hashes.rangeAdjust(range.zeroBased(), multiHash);
+
+		this.modCount = new ModCount();
+		this.accessLattice = lattice;
+		this.multiHash = multiHash;
+		this.hashCount = hashCount;
+		hashes = new int[hashCount];
+		bottom = lattice.getBottom();
+		top = lattice.isBoundedAbove() ? lattice.getTop() : Integer.MAX_VALUE;
+		values = new int[ multiHash.getRange().getIntSize() ];
+		clear();
+		valueList = new ValueList();
+	}
+
+	private IntCompactApproximator(IntCompactApproximator<K> that) {
+		modCount = new ModCount();
+		accessLattice = that.accessLattice;
+		multiHash = that.multiHash;
+		hashCount = that.hashCount;
+		hashes = new int[hashCount];
+		bottom = that.bottom;
+		top = that.top;
+		values = that.values.clone();
+		valueList = new ValueList();
+	}
+
+	private IntCompactApproximator(IntCompactApproximator<K> that, Lattice<Integer> accessLattice) {
+		modCount = that.modCount;
+		this.accessLattice = accessLattice;
+		multiHash = that.multiHash;
+		hashCount = that.hashCount;
+		hashes = new int[hashCount];
+		bottom = that.bottom;
+		top = accessLattice.getTop();
+		values = that.values.clone();
+		valueList = new ValueList();
+	}
+
+	// primitive methods
+
+	/**
+	 * Joins a value with those already recorded against the key.
+	 *
+	 * @param key
+	 *            the key against which the value is recorded
+	 * @param value
+	 *            a value in the lattice
+	 * @return the supremum for the key prior to the value being recorded
+	 * @throws IllegalArgumentException
+	 *             if the value is not in the lattice
+	 */
+
+	public int putInt(K key, int value) {
+		if (value < bottom || value > top) throw new IllegalArgumentException("value not in lattice");
+		final int[] hashes = multiHash.hashAsInts(key, this.hashes);
+		final int[] values = this.values;
+		int previous = top;
+		for (int i = 0; i < hashCount; i++) {
+			final int hash = hashes[i];
+			final int v = values[hash];
+			if (v < previous) previous = v;
+			if (value > v) values[hash] = value;
+		}
+		//assumes putting has resulted in a change
+		modCount.count++;
+		return previous;
+	}
+
+	/**
+	 * The least value that is known to bound all values recorded against the
+	 * key.
+	 *
+	 * @param key
+	 *            a key
+	 * @return the supremum of the values recorded for the key
+	 */
+
+	public int getSupremumInt(K key) {
+		final int[] hashes = multiHash.hashAsInts(key, this.hashes);
+		final int[] values = this.values;
+		int value = top;
+		for (int i = 0; i < hashCount; i++) {
+			final int v = values[hashes[i]];
+			if (v < value) value = v;
+		}
+		return value;
+	}
+
+	// approximator methods
+
+	@Override
+	public Integer put(K key, Integer value) {
+		if (value == null) throw new IllegalArgumentException("null value");
+		return putInt(key, value);
+	}
+
+	@Override
+	public Integer getSupremum(K key) {
+		return getSupremumInt(key);
+	}
+
+	@Override
+	public boolean mightContain(K key) {
+		final int[] hashes = multiHash.hashAsInts(key, this.hashes);
+		for (int i = 0; i < hashCount; i++) {
+			if (values[hashes[i]] == bottom) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean mightContainAll(Iterable<? extends K> keys) {
+		for (K key : keys) if (!mightContain(key)) return false;
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(values, bottom);
+		modCount.count++;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		for (int value : values) {
+			if (value != bottom) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean bounds(CompactApproximator<K, Integer> that) {
+		checkCompatibility(that);
+		final int size = values.length;
+		if (that instanceof IntCompactApproximator<?>) {
+			final IntCompactApproximator<?> ica = (IntCompactApproximator<?>) that;
+			final int[] thatValues = ica.values;
+			final int thatTop = ica.top;
+			for (int i = 0; i < size; i++) {
+				if (Math.min(thatValues[i], thatTop) > Math.min(values[i], top)) return false;
+			}
+		} else {
+			final List<Integer> thatValues = that.getValueList();
+			if (thatValues instanceof RandomAccess) {
+				for (int i = 0; i < size; i++) {
+					if (thatValues.get(i) > Math.min(values[i], top)) return false;
+				}
+			} else {
+				final Iterator<Integer> it = thatValues.iterator();
+				for (int i = 0; i < size; i++) {
+					if (it.next() > Math.min(values[i], top)) return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean putAll(CompactApproximator<K, Integer> that) {
+		checkCompatibility(that);
+		final int[] values = this.values;
+		final int size = values.length;
+		boolean mutated = false;
+		if (that instanceof IntCompactApproximator<?>) {
+			final IntCompactApproximator<?> ica = (IntCompactApproximator<?>) that;
+			final int[] thatValues = ica.values;
+			final int thatTop = ica.top;
+			for (int i = 0; i < size; i++) {
+				final int v = Math.min(thatValues[i], thatTop);
+				if (v > values[i]) {
+					values[i] = v;
+					mutated = true;
+				}
+			}
+		} else {
+			final Iterator<Integer> it = that.getValueList().iterator();
+			for (int i = 0; i < size; i++) {
+				final int v = it.next();
+				if (v > values[i]) {
+					values[i] = v;
+					mutated = true;
+				}
+			}
+		}
+		if (mutated) modCount.count++;
+		return mutated;
+	}
+
+	@Override
+	public CompactApproximator<K, Integer> boundedAbove(Integer upperBound) {
+		final Lattice<Integer> subLattice = accessLattice.boundedAbove(upperBound);
+		return subLattice.equals(accessLattice) ? this : new IntCompactApproximator<K>(this, subLattice);
+	}
+
+	@Override
+	public BloomFilter<K> asBloomFilter() {
+		return bloomFilter == null ? bloomFilter = new CompactBloomFilter() : bloomFilter;
+	}
+
+	@Override
+	public Lattice<Integer> getLattice() {
+		return accessLattice;
+	}
+
+	@Override
+	public int getCapacity() {
+		return values.length;
+	}
+
+	@Override
+	public int getHashCount() {
+		return hashCount;
+	}
+
+	@Override
+	public MultiHash<? super K> getMultiHash() {
+		return multiHash;
+	}
+
+	@Override
+	public List<Integer> getValueList() {
+		return valueList;
+	}
+
+	// object methods
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) return true;
+		if (!(obj instanceof IntCompactApproximator<?>)) return false;
+		IntCompactApproximator<?> that = (IntCompactApproximator<?>) obj;
+		if (this.getHashCount() != that.getHashCount()) return false;
+		if (!this.getMultiHash().equals(that.getMultiHash())) return false;
+		if (!this.getLattice().equals(that.getLattice())) return false;
+		if (!this.getValueList().equals(that.getValueList())) return false;
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return getValueList().hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return getValueList().toString();
+	}
+
+	@Override
+	public IntCompactApproximator<K> clone() {
+		return new IntCompactApproximator<K>(this);
+	}
+
+	// package scoped methods
+
+	// the value at the index, as seen through the access lattice
+	int cell(int index) {
+		return Math.min(values[index], top);
+	}
+
+	// private utility methods
+
+	private void checkCompatibility(CompactApproximator<K, Integer> that) {
+		if (this.hashCount != that.getHashCount()) throw new IllegalArgumentException("Incompatible compact approximator, hashCount was " + that.getHashCount() +", expected " + hashCount);
+		if (!this.multiHash.equals(that.getMultiHash())) throw new IllegalArgumentException("Incompatible compact approximator, multiHashes were not equal.");
+		if (!this.accessLattice.equals(that.getLattice())) throw new IllegalArgumentException("Incompatible compact approximator, lattices were not equal.");
+	}
+
+	private static class ModCount {
+
+		volatile int count = 0;
+
+	}
+
+	private class ValueList extends AbstractList<Integer> implements RandomAccess {
+
+		@Override
+		public Integer get(int index) {
+			if (index < 0 || index >= values.length) throw new IndexOutOfBoundsException();
+			return Math.min(values[index], top);
+		}
+
+		@Override
+		public int size() {
+			return values.length;
+		}
+
+	}
+
+	private class CompactBloomFilter extends AbstractBloomFilter<K> {
+
+		int myModCount = modCount.count - 1;
+		final BitVector bitVector = new BitVector(values.length);
+		final BitVector publicBitVector = bitVector.immutableView();
+
+		@Override
+		public boolean add(K key) {
+			return putInt(key, top) != top;
+		}
+
+		@Override
+		public boolean addAll(BloomFilter<? extends K> filter) {
+			checkCompatible(filter);
+			updateBitVector();
+			final BitVector thisBits = bitVector;
+			final BitVector thatBits = filter.getBitVector();
+			if (thisBits.testContains(thatBits)) return false;
+			//we can trounce the bit set now because we know modifications will be made
+			thisBits.flip();
+			thisBits.andVector(thatBits);
+			for (int i = thisBits.firstOne(); i >= 0; i = thisBits.nextOne(i+1)) {
+				if (values[i] < top) values[i] = top;
+			}
+			modCount.count++;
+			return true;
+		}
+
+		@Override
+		public void clear() {
+			IntCompactApproximator.this.clear();
+		}
+
+		@Override
+		public BitVector getBitVector() {
+			updateBitVector();
+			return publicBitVector;
+		}
+
+		@Override
+		public int getHashCount() {
+			return hashCount;
+		}
+
+		@Override
+		public MultiHash<? super K> getMultiHash() {
+			return multiHash;
+		}
+
+		private void updateBitVector() {
+			final int count = modCount.count;
+			if (myModCount != count) {
+				myModCount = count;
+				final int size = values.length;
+				for (int i = 0; i < size; i++) {
+					bitVector.setBit(i, values[i] >= top);
+				}
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,453 @@
+/*
+ * Copyright 2012 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.crinch.collections;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+import com.tomgibara.crinch.bits.BitVector;
+import com.tomgibara.crinch.hashing.HashRange;
+import com.tomgibara.crinch.hashing.Hashes;
+import com.tomgibara.crinch.hashing.MultiHash;
+import com.tomgibara.crinch.lattice.BitVectorLattice;
+import com.tomgibara.crinch.lattice.Lattice;
+
+/**
+ * <p>
+ * A {@link CompactApproximator} over a {@link BitVectorLattice} of at most 64
+ * bits that stores its values in a <code>long</code> array. Joins are bitwise
+ * ORs and meets are bitwise ANDs, with bit <code>i</code> of a
+ * <code>long</code> corresponding to position <code>i</code> of a
+ * {@link BitVector}.
+ * </p>
+ *
+ * <p>
+ * The primitive methods {@link #putBits(Object, long)} and
+ * {@link #getSupremumBits(Object)} avoid allocating {@link BitVector}s and
+ * calls through the {@link Lattice} interface; the methods defined by
+ * {@link CompactApproximator} are implemented in terms of them.
+ * </p>
+ *
+ * @author Tom Gibara
+ *
+ * @param <K>
+ *            the type of key stored in the approximator
+ */
+
+public class LongCompactApproximator<K> implements CompactApproximator<K, BitVector>, Cloneable {
+
+	private final ModCount modCount;
+	private final MultiHash<? super K> multiHash;
+	private final int hashCount;
+	private final int[] hashes;
+	private final Lattice<BitVector> accessLattice;
+	private final int width;
+	private final long bottom;
+	private final long top;
+	private final long[] values;
+	private final ValueList valueList;
+	private CompactBloomFilter bloomFilter = null;
+
+	/**
+	 * Constructs a new approximator with values drawn from the supplied
+	 * lattice.
+	 *
+	 * @param lattice
+	 *            a lattice of bit vectors no larger than 64 bits
+	 * @param multiHash
+	 *            generates hashes for keys added to the approximator
+	 * @param hashCount
+	 *            the number hashes generated for each key
+	 * @throws IllegalArgumentException
+	 *             if the lattice is null or its vectors exceed 64 bits, or if
+	 *             the multiHash is null or not int bounded
+	 */
+
+	public LongCompactApproximator(BitVectorLattice lattice, MultiHash<? super K> multiHash, int hashCount) {
+		if (lattice == null) throw new IllegalArgumentException("null lattice");
+		if (lattice.getTop().size() > 64) throw new IllegalArgumentException("lattice vectors exceed 64 bits");
+		if (multiHash == null) throw new IllegalArgumentException("null multiHash");
+		if (hashCount < 1) throw new IllegalArgumentException("hashCount not positive");
+
+		final HashRange range = multiHash.getRange();
+		if (range == null) throw new IllegalArgumentException("null multiHash range");
+		if (!range.isIntBounded()) throw new IllegalArgumentException("multiHash not int bounded");
+		multiHash = Hashes.rangeAdjust(range.zeroBased(), multiHash);
+
+		this.modCount = new ModCount();
+		this.accessLattice = lattice;
+		this.multiHash = multiHash;
+		this.hashCount = hashCount;
+		hashes = new int[hashCount];
+		width = lattice.getTop().size();
+		bottom = lattice.getBottom().longValue();
+		top = lattice.getTop().longValue();
+		values = new long[ multiHash.getRange().getIntSize() ];
+		clear();
+		valueList = new ValueList();
+	}
+
+	private LongCompactApproximator(LongCompactApproximator<K> that) {
+		modCount = new ModCount();
+		accessLattice = that.accessLattice;
+		multiHash = that.multiHash;
+		hashCount = that.hashCount;
+		hashes = new int[hashCount];
+		width = that.width;
+		bottom = that.bottom;
+		top = that.top;
+		values = that.values.clone();
+		valueList = new ValueList();
+	}
+
+	private LongCompactApproximator(LongCompactApproximator<K> that, Lattice<BitVector> accessLattice) {
+		modCount = that.modCount;
+		this.accessLattice = accessLattice;
+		multiHash = that.multiHash;
+		hashCount = that.hashCount;
+		hashes = new int[hashCount];
+		width = that.width;
+		bottom = that.bottom;
+		top = accessLattice.getTop().longValue();
+		values = that.values.clone();
+		valueList = new ValueList();
+	}
+
+	// primitive methods
+
+	/**
+	 * Joins a value with those already recorded against the key.
+	 *
+	 * @param key
+	 *            the key against which the value is recorded
+	 * @param value
+	 *            the bits of a value in the lattice
+	 * @return the bits of the supremum for the key prior to the value being
+	 *         recorded
+	 * @throws IllegalArgumentException
+	 *             if the value is not in the lattice
+	 */
+
+	public long putBits(K key, long value) {
+		if ((value & ~top) != 0L || (value & bottom) != bottom) throw new IllegalArgumentException("value not in lattice");
+		final int[] hashes = multiHash.hashAsInts(key, this.hashes);
+		final long[] values = this.values;
+		long previous = top;
+		for (int i = 0; i < hashCount; i++) {
+			final int hash = hashes[i];
+			final long v = values[hash];
+			previous &= v;
+			values[hash] = v | value;
+		}
+		//assumes putting has resulted in a change
+		modCount.count++;
+		return previous;
+	}
+
+	/**
+	 * The least value that is known to bound all values recorded against the
+	 * key.
+	 *
+	 * @param key
+	 *            a key
+	 * @return the bits of the supremum of the values recorded for the key
+	 */
+
+	public long getSupremumBits(K key) {
+		final int[] hashes = multiHash.hashAsInts(key, this.hashes);
+		final long[] values = this.values;
+		long value = top;
+		for (int i = 0; i < hashCount; i++) {
+			value &= values[hashes[i]];
+		}
+		return value;
+	}
+
+	// approximator methods
+
+	@Override
+	public BitVector put(K key, BitVector value) {
+		if (value == null) throw new IllegalArgumentException("null value");
+		if (value.size() != width) throw new IllegalArgumentException("incorrect vector size");
+		return toVector(putBits(key, value.longValue()));
+	}
+
+	@Override
+	public BitVector getSupremum(K key) {
+		return toVector(getSupremumBits(key));
+	}
+
+	@Override
+	public boolean mightContain(K key) {
+		final int[] hashes = multiHash.hashAsInts(key, this.hashes);
+		for (int i = 0; i < hashCount; i++) {
+			if (values[hashes[i]] == bottom) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean mightContainAll(Iterable<? extends K> keys) {
+		for (K key : keys) if (!mightContain(key)) return false;
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(values, bottom);
+		modCount.count++;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		for (long value : values) {
+			if (value != bottom) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean bounds(CompactApproximator<K, BitVector> that) {
+		checkCompatibility(that);
+		final int size = values.length;
+		if (that instanceof LongCompactApproximator<?>) {
+			final LongCompactApproximator<?> lca = (LongCompactApproximator<?>) that;
+			final long[] thatValues = lca.values;
+			final long thatTop = lca.top;
+			for (int i = 0; i < size; i++) {
+				if ((thatValues[i] & thatTop & ~(values[i] & top)) != 0L) return false;
+			}
+		} else {
+			final List<BitVector> thatValues = that.getValueList();
+			if (thatValues instanceof RandomAccess) {
+				for (int i = 0; i < size; i++) {
+					if ((thatValues.get(i).longValue() & ~(values[i] & top)) != 0L) return false;
+				}
+			} else {
+				final Iterator<BitVector> it = thatValues.iterator();
+				for (int i = 0; i < size; i++) {
+					if ((it.next().longValue() & ~(values[i] & top)) != 0L) return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean putAll(CompactApproximator<K, BitVector> that) {
+		checkCompatibility(that);
+		final long[] values = this.values;
+		final int size = values.length;
+		boolean mutated = false;
+		if (that instanceof LongCompactApproximator<?>) {
+			final LongCompactApproximator<?> lca = (LongCompactApproximator<?>) that;
+			final long[] thatValues = lca.values;
+			final long thatTop = lca.top;
+			for (int i = 0; i < size; i++) {
+				final long v = thatValues[i] & thatTop;
+				if ((v & ~values[i]) != 0L) {
+					values[i] |= v;
+					mutated = true;
+				}
+			}
+		} else {
+			final Iterator<BitVector> it = that.getValueList().iterator();
+			for (int i = 0; i < size; i++) {
+				final long v = it.next().longValue();
+				if ((v & ~values[i]) != 0L) {
+					values[i] |= v;
+					mutated = true;
+				}
+			}
+		}
+		if (mutated) modCount.count++;
+		return mutated;
+	}
+
+	@Override
+	public CompactApproximator<K, BitVector> boundedAbove(BitVector upperBound) {
+		final Lattice<BitVector> subLattice = accessLattice.boundedAbove(upperBound);
+		return subLattice.equals(accessLattice) ? this : new LongCompactApproximator<K>(this, subLattice);
+	}
+
+	@Override
+	public BloomFilter<K> asBloomFilter() {
+		return bloomFilter == null ? bloomFilter = new CompactBloomFilter() : bloomFilter;
+	}
+
+	@Override
+	public Lattice<BitVector> getLattice() {
+		return accessLattice;
+	}
+
+	@Override
+	public int getCapacity() {
+		return values.length;
+	}
+
+	@Override
+	public int getHashCount() {
+		return hashCount;
+	}
+
+	@Override
+	public MultiHash<? super K> getMultiHash() {
+		return multiHash;
+	}
+
+	@Override
+	public List<BitVector> getValueList() {
+		return valueList;
+	}
+
+	// object methods
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj == this) return true;
+		if (!(obj instanceof LongCompactApproximator<?>)) return false;
+		LongCompactApproximator<?> that = (LongCompactApproximator<?>) obj;
+		if (this.getHashCount() != that.getHashCount()) return false;
+		if (!this.getMultiHash().equals(that.getMultiHash())) return false;
+		if (!this.getLattice().equals(that.getLattice())) return false;
+		if (!this.getValueList().equals(that.getValueList())) return false;
+		return true;
+	}
+
+	@Override
+	public int hashCode() {
+		return getValueList().hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return getValueList().toString();
+	}
+
+	@Override
+	public LongCompactApproximator<K> clone() {
+		return new LongCompactApproximator<K>(this);
+	}
+
+	// package scoped methods
+
+	// the value at the index, as seen through the access lattice
+	long cell(int index) {
+		return values[index] & top;
+	}
+
+	// private utility methods
+
+	private BitVector toVector(long bits) {
+		final BitVector vector = new BitVector(width);
+		vector.setBits(0, bits, width);
+		return vector;
+	}
+
+	private void checkCompatibility(CompactApproximator<K, BitVector> that) {
+		if (this.hashCount != that.getHashCount()) throw new IllegalArgumentException("Incompatible compact approximator, hashCount was " + that.getHashCount() +", expected " + hashCount);
+		if (!this.multiHash.equals(that.getMultiHash())) throw new IllegalArgumentException("Incompatible compact approximator, multiHashes were not equal.");
+		if (!this.accessLattice.equals(that.getLattice())) throw new IllegalArgumentException("Incompatible compact approximator, lattices were not equal.");
+	}
+
+	private static class ModCount {
+
+		volatile int count = 0;
+
+	}
+
+	private class ValueList extends AbstractList<BitVector> implements RandomAccess {
+
+		@Override
+		public BitVector get(int index) {
+			if (index < 0 || index >= values.length) throw new IndexOutOfBoundsException();
+			return toVector(values[index] & top);
+		}
+
+		@Override
+		public int size() {
+			return values.length;
+		}
+
+	}
+
+	private class CompactBloomFilter extends AbstractBloomFilter<K> {
+
+		int myModCount = modCount.count - 1;
+		final BitVector bitVector = new BitVector(values.length);
+		final BitVector publicBitVector = bitVector.immutableView();
+
+		@Override
+		public boolean add(K key) {
+			return putBits(key, top) != top;
+		}
+
+		@Override
+		public boolean addAll(BloomFilter<? extends K> filter) {
+			checkCompatible(filter);
+			updateBitVector();
+			final BitVector thisBits = bitVector;
+			final BitVector thatBits = filter.getBitVector();
+			if (thisBits.testContains(thatBits)) return false;
+			//we can trounce the bit set now because we know modifications will be made
+			thisBits.flip();
+			thisBits.andVector(thatBits);
+			for (int i = thisBits.firstOne(); i >= 0; i = thisBits.nextOne(i+1)) {
+				values[i] |= top;
+			}
+			modCount.count++;
+			return true;
+		}
+
+		@Override
+		public void clear() {
+			LongCompactApproximator.this.clear();
+		}
+
+		@Override
+		public BitVector getBitVector() {
+			updateBitVector();
+			return publicBitVector;
+		}
+
+		@Override
+		public int getHashCount() {
+			return hashCount;
+		}
+
+		@Override
+		public MultiHash<? super K> getMultiHash() {
+			return multiHash;
+		}
+
+		private void updateBitVector() {
+			final int count = modCount.count;
+			if (myModCount != count) {
+				myModCount = count;
+				final int size = values.length;
+				for (int i = 0; i < size; i++) {
+					bitVector.setBit(i, (values[i] & top) == top);
+				}
+			}
+		}
+
+	}
+
+}
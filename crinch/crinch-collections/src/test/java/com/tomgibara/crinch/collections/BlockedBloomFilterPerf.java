@@ -0,0 +1,87 @@
+/*
+ * Copyright 2012 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.crinch.collections;
+
+import com.tomgibara.crinch.hashing.Hash;
+import com.tomgibara.crinch.hashing.IntegerMultiHash;
+import com.tomgibara.crinch.hashing.Murmur3_32Hash;
+import com.tomgibara.crinch.hashing.ObjectHashSource;
+
+/**
+ * Simple app for comparing the query latency of a {@link BlockedBloomFilter}
+ * with that of a {@link BasicBloomFilter} once the filter is much larger than
+ * the processor caches. The default size is the largest that a
+ * {@link com.tomgibara.crinch.bits.BitVector} can accommodate (32MB), which
+ * exceeds the last level cache of most processors. Optional arguments are the
+ * number of blocks, the number of elements and the number of hashes.
+ *
+ * @author Tom Gibara
+ *
+ */
+
+public class BlockedBloomFilterPerf {
+
+	private static final int cycles = 4;
+
+	public static void main(String[] args) {
+		final int blocks = args.length > 0 ? Integer.parseInt(args[0]) : Integer.MAX_VALUE / 8 / BlockedBloomFilter.BLOCK_SIZE;
+		final int elements = args.length > 1 ? Integer.parseInt(args[1]) : 25000000;
+		final int k = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+		final Hash<Object> hash = new Murmur3_32Hash<Object>(new ObjectHashSource());
+		final int size = blocks * BlockedBloomFilter.BLOCK_SIZE;
+
+		BloomFilter<Object> blocked = new BlockedBloomFilter<Object>(hash, blocks, k);
+		populate(blocked, elements);
+		System.out.println(String.format("BLOCKED FPP: %1.6f", blocked.getFalsePositiveProbability()));
+		for (int i = 0; i < cycles; i++) {
+			System.out.println(String.format("BLOCKED  present: %5d ns  absent: %5d ns", query(blocked, 0, elements), query(blocked, elements, elements)));
+		}
+		blocked = null;
+
+		BloomFilter<Object> basic = new BasicBloomFilter<Object>(new IntegerMultiHash<Object>(hash, size - 1), k);
+		populate(basic, elements);
+		System.out.println(String.format("BASIC   FPP: %1.6f", basic.getFalsePositiveProbability()));
+		for (int i = 0; i < cycles; i++) {
+			System.out.println(String.format("BASIC    present: %5d ns  absent: %5d ns", query(basic, 0, elements), query(basic, elements, elements)));
+		}
+	}
+
+	private static void populate(BloomFilter<Object> filter, int elements) {
+		for (int i = 0; i < elements; i++) filter.add(i);
+	}
+
+	public static int dummy = 0;
+
+	// returns mean nanos per query
+	private static long query(BloomFilter<Object> filter, int from, int count) {
+		System.gc();
+		try {
+			Thread.sleep(50);
+		} catch (InterruptedException e) {
+		}
+		int hits = 0;
+		final long start = System.nanoTime();
+		for (int i = 0; i < count; i++) {
+			if (filter.mightContain(from + i)) hits++;
+		}
+		final long finish = System.nanoTime();
+		dummy += hits;
+		return (finish - start) / count;
+	}
+
+}
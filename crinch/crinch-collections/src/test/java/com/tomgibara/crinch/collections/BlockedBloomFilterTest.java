@@ -0,0 +1,160 @@
+/*
+ * Copyright 2012 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.crinch.collections;
+
+import java.util.HashSet;
+
+import junit.framework.TestCase;
+
+import com.tomgibara.crinch.bits.BitVector;
+import com.tomgibara.crinch.hashing.Hash;
+import com.tomgibara.crinch.hashing.Murmur3_32Hash;
+import com.tomgibara.crinch.hashing.ObjectHash;
+import com.tomgibara.crinch.hashing.ObjectHashSource;
+
+public class BlockedBloomFilterTest extends TestCase {
+
+	static final int BLOCK_COUNT = 16;
+
+	Hash<Object> murmurHash = new Murmur3_32Hash<Object>(new ObjectHashSource());
+	Hash<Object> objHash = new ObjectHash<Object>();
+
+	public void testConstructor() {
+		BlockedBloomFilter<Object> bloom = new BlockedBloomFilter<Object>(murmurHash, BLOCK_COUNT, 8);
+		assertEquals(0.0, bloom.getFalsePositiveProbability());
+		assertEquals(8, bloom.getHashCount());
+		assertEquals(BLOCK_COUNT, bloom.getBlockCount());
+		assertEquals(BLOCK_COUNT * BlockedBloomFilter.BLOCK_SIZE, bloom.getCapacity());
+		assertEquals(bloom.getCapacity(), bloom.getMultiHash().getRange().getSize().intValue());
+		assertTrue(bloom.isEmpty());
+	}
+
+	public void testConstructorWithBitVector() {
+		BlockedBloomFilter<Object> bloom = new BlockedBloomFilter<Object>(new BitVector(BlockedBloomFilter.BLOCK_SIZE * 3), murmurHash, 8);
+		assertEquals(3, bloom.getBlockCount());
+		try {
+			new BlockedBloomFilter<Object>(new BitVector(1000), murmurHash, 8);
+			fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+		try {
+			new BlockedBloomFilter<Object>(new BitVector(BlockedBloomFilter.BLOCK_SIZE).immutableCopy(), murmurHash, 8);
+			fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+		try {
+			new BlockedBloomFilter<Object>(murmurHash, 1, BlockedBloomFilter.BLOCK_SIZE + 1);
+			fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+	}
+
+	public void testAdd() {
+		BlockedBloomFilter<Object> bloom = new BlockedBloomFilter<Object>(murmurHash, BLOCK_COUNT, 8);
+		int bitCount = 0;
+		for (int i = 0; i < 100; i++) {
+			bloom.add(i);
+			BlockedBloomFilter<Object> b = bloom.clone();
+			assertFalse(b.add(i));
+			assertEquals(bloom, b);
+			final int newBitCount = bloom.getBitVector().countOnes();
+			assertTrue(newBitCount >= bitCount);
+			bitCount = newBitCount;
+		}
+		for (int i = 0; i < 100; i++) {
+			assertTrue(bloom.mightContain(i));
+		}
+	}
+
+	public void testSingleBlockPerElement() {
+		BlockedBloomFilter<Object> bloom = new BlockedBloomFilter<Object>(murmurHash, BLOCK_COUNT, 16);
+		bloom.add("element");
+		assertEquals(16, bloom.getBitVector().countOnes());
+		final int first = bloom.getBitVector().firstOneInRange(0, bloom.getCapacity());
+		final int last = bloom.getBitVector().lastOneInRange(0, bloom.getCapacity());
+		assertEquals(first / BlockedBloomFilter.BLOCK_SIZE, last / BlockedBloomFilter.BLOCK_SIZE);
+	}
+
+	public void testMultiHashMatchesBits() {
+		BlockedBloomFilter<Object> bloom = new BlockedBloomFilter<Object>(murmurHash, BLOCK_COUNT, 8);
+		BasicBloomFilter<Object> basic = new BasicBloomFilter<Object>(bloom.getMultiHash(), 8);
+		for (int i = 0; i < 50; i++) {
+			bloom.add(i);
+			basic.add(i);
+		}
+		assertEquals(basic.getBitVector(), bloom.getBitVector());
+	}
+
+	public void testMightContain() {
+		BlockedBloomFilter<Object> b = new BlockedBloomFilter<Object>(murmurHash, BLOCK_COUNT, 8);
+		assertFalse(b.mightContain(new Object()));
+		for (int i = 0; i < 10; i++) {
+			if (b.clone().add(i)) assertFalse(b.mightContain(i));
+			b.add(i);
+			assertTrue(b.mightContain(i));
+		}
+	}
+
+	public void testAddAll() {
+		BlockedBloomFilter<Object> b1 = new BlockedBloomFilter<Object>(murmurHash, BLOCK_COUNT, 8);
+		BlockedBloomFilter<Object> b2 = new BlockedBloomFilter<Object>(murmurHash, BLOCK_COUNT, 8);
+		HashSet<Object> values = new HashSet<Object>();
+		for (int i = 0; i < 10; i++) {
+			b1.add(i);
+			values.add(i);
+		}
+		b2.addAll(values);
+		assertTrue(b1.equals(b2));
+		assertFalse(b2.addAll(values));
+		b2.clear();
+		assertTrue(b2.addAll(b1));
+		assertTrue(b1.equals(b2));
+		assertTrue(b2.containsAll(b1));
+	}
+
+	public void testCompatibility() {
+		BlockedBloomFilter<Object> b1 = new BlockedBloomFilter<Object>(murmurHash, BLOCK_COUNT, 8);
+		BlockedBloomFilter<Object> b2 = new BlockedBloomFilter<Object>(objHash, BLOCK_COUNT, 8);
+		BlockedBloomFilter<Object> b3 = new BlockedBloomFilter<Object>(murmurHash, BLOCK_COUNT + 1, 8);
+		assertFalse(b1.equals(b2));
+		assertFalse(b1.equals(b3));
+		try {
+			b1.addAll(b2);
+			fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+	}
+
+	public void testGetFalsePositiveProbability() {
+		BlockedBloomFilter<Object> bloom = new BlockedBloomFilter<Object>(murmurHash, BLOCK_COUNT, 4);
+		double p = bloom.getFalsePositiveProbability();
+		assertEquals(0.0, p);
+		for (int i = 0; i < 1000; i++) {
+			bloom.add(i);
+			final double q = bloom.getFalsePositiveProbability();
+			assertTrue(p <= q);
+			p = q;
+		}
+		assertTrue(p > 0.0);
+		assertTrue(p <= 1.0);
+	}
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2012 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.crinch.collections;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import junit.framework.TestCase;
+
+import com.tomgibara.crinch.bits.BitVector;
+import com.tomgibara.crinch.hashing.IntegerMultiHash;
+import com.tomgibara.crinch.hashing.MultiHash;
+import com.tomgibara.crinch.hashing.Murmur3_32Hash;
+import com.tomgibara.crinch.hashing.ObjectHashSource;
+import com.tomgibara.crinch.lattice.BitVectorLattice;
+import com.tomgibara.crinch.lattice.Lattice;
+import com.tomgibara.crinch.lattice.OrderedLattice;
+import com.tomgibara.crinch.lattice.SetLattice;
+
+public class ConcurrentCompactApproximatorTest extends TestCase {
+
+	private static final int THREADS = 4;
+	private static final int PUTS = 20000;
+
+	private static Set<Integer> set(Integer... integers) {
+		return new HashSet<Integer>(Arrays.asList(integers));
+	}
+
+	final MultiHash<Object> hash = new IntegerMultiHash<Object>(new Murmur3_32Hash<Object>(new ObjectHashSource()), 9999);
+
+	public void testIntConcurrentPuts() throws InterruptedException {
+		final OrderedLattice<Integer> lattice = new OrderedLattice<Integer>(1000, 0);
+		final ConcurrentIntCompactApproximator<Object> concurrent = new ConcurrentIntCompactApproximator<Object>(lattice, hash, 4);
+		final IntCompactApproximator<Object> merged = new IntCompactApproximator<Object>(lattice, hash, 4);
+		final IntCompactApproximator<Object> sequential = new IntCompactApproximator<Object>(lattice, hash, 4);
+		for (int t = 0; t < THREADS; t++) {
+			Random r = new Random(t);
+			for (int i = 0; i < PUTS; i++) sequential.putInt(r.nextInt(5000), r.nextInt(1001));
+		}
+		run(new Task() {
+			@Override
+			public void run(int t) {
+				final IntCompactApproximator<Object> local = new IntCompactApproximator<Object>(lattice, hash, 4);
+				Random r = new Random(t);
+				for (int i = 0; i < PUTS; i++) {
+					final int key = r.nextInt(5000);
+					final int value = r.nextInt(1001);
+					concurrent.putInt(key, value);
+					local.putInt(key, value);
+				}
+				synchronized (merged) {
+					merged.putAll(local);
+				}
+			}
+		});
+		assertEquals(sequential.getValueList(), concurrent.getValueList());
+		assertEquals(sequential.getValueList(), merged.getValueList());
+		assertTrue(concurrent.bounds(sequential));
+		ConcurrentIntCompactApproximator<Object> other = new ConcurrentIntCompactApproximator<Object>(lattice, hash, 4);
+		assertTrue(other.putAll(concurrent));
+		assertFalse(other.putAll(merged));
+		assertEquals(concurrent, other);
+	}
+
+	public void testLongConcurrentPuts() throws InterruptedException {
+		final BitVectorLattice lattice = new BitVectorLattice(64);
+		final ConcurrentLongCompactApproximator<Object> concurrent = new ConcurrentLongCompactApproximator<Object>(lattice, hash, 4);
+		final LongCompactApproximator<Object> sequential = new LongCompactApproximator<Object>(lattice, hash, 4);
+		for (int t = 0; t < THREADS; t++) {
+			Random r = new Random(t);
+			for (int i = 0; i < PUTS; i++) sequential.putBits(r.nextInt(5000), 1L << r.nextInt(64));
+		}
+		run(new Task() {
+			@Override
+			public void run(int t) {
+				Random r = new Random(t);
+				for (int i = 0; i < PUTS; i++) concurrent.putBits(r.nextInt(5000), 1L << r.nextInt(64));
+			}
+		});
+		assertEquals(sequential.getValueList(), concurrent.getValueList());
+		LongCompactApproximator<Object> copy = new LongCompactApproximator<Object>(lattice, hash, 4);
+		assertTrue(copy.putAll(concurrent));
+		assertTrue(copy.bounds(sequential));
+		assertTrue(sequential.bounds(copy));
+		assertEquals(sequential.asBloomFilter().getBitVector(), concurrent.asBloomFilter().getBitVector());
+		BitVector top = lattice.getTop();
+		for (int i = 0; i < 100; i++) {
+			assertEquals(sequential.asBloomFilter().mightContain(i), concurrent.asBloomFilter().mightContain(i));
+			assertEquals(sequential.getSupremum(i), concurrent.getSupremum(i));
+			if (concurrent.asBloomFilter().mightContain(i)) assertEquals(top, concurrent.getSupremum(i));
+		}
+	}
+
+	public void testObjectConcurrentPuts() throws InterruptedException {
+		final Lattice<Set<Integer>> lattice = new SetLattice<Integer>(set(0,1,2,3,4,5,6,7));
+		final ConcurrentCompactApproximator<Object, Set<Integer>> concurrent = new ConcurrentCompactApproximator<Object, Set<Integer>>(lattice, hash, 4, THREADS);
+		final BasicCompactApproximator<Object, Set<Integer>> sequential = new BasicCompactApproximator<Object, Set<Integer>>(lattice, hash, 4);
+		for (int t = 0; t < THREADS; t++) {
+			Random r = new Random(t);
+			for (int i = 0; i < PUTS; i++) sequential.put(r.nextInt(5000), set(r.nextInt(8)));
+		}
+		run(new Task() {
+			@Override
+			public void run(int t) {
+				Random r = new Random(t);
+				for (int i = 0; i < PUTS; i++) concurrent.put(r.nextInt(5000), set(r.nextInt(8)));
+			}
+		});
+		assertEquals(sequential.getValueList(), concurrent.getValueList());
+		assertTrue(concurrent.bounds(sequential));
+		BasicCompactApproximator<Object, Set<Integer>> copy = new BasicCompactApproximator<Object, Set<Integer>>(lattice, hash, 4);
+		assertTrue(copy.putAll(concurrent));
+		assertFalse(copy.putAll(sequential));
+		assertEquals(sequential, copy);
+		concurrent.clear();
+		assertTrue(concurrent.isEmpty());
+	}
+
+	private interface Task {
+
+		void run(int thread);
+
+	}
+
+	private static void run(final Task task) throws InterruptedException {
+		final CountDownLatch latch = new CountDownLatch(THREADS);
+		for (int t = 0; t < THREADS; t++) {
+			final int thread = t;
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						task.run(thread);
+					} finally {
+						latch.countDown();
+					}
+				}
+			}).start();
+		}
+		latch.await();
+	}
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2012 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.crinch.collections;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.tomgibara.crinch.hashing.IntegerMultiHash;
+import com.tomgibara.crinch.hashing.MultiHash;
+import com.tomgibara.crinch.hashing.Murmur3_32Hash;
+import com.tomgibara.crinch.hashing.ObjectHashSource;
+import com.tomgibara.crinch.lattice.OrderedLattice;
+
+public class IntCompactApproximatorTest extends TestCase {
+
+	final MultiHash<Object> hash = new IntegerMultiHash<Object>(new Murmur3_32Hash<Object>(new ObjectHashSource()), 999);
+	final OrderedLattice<Integer> lattice = new OrderedLattice<Integer>(1000, 0);
+
+	public void testMatchesBasic() {
+		IntCompactApproximator<Object> ica = new IntCompactApproximator<Object>(lattice, hash, 5);
+		BasicCompactApproximator<Object, Integer> bca = new BasicCompactApproximator<Object, Integer>(lattice, hash, 5);
+		assertTrue(ica.isEmpty());
+		Random r = new Random(0L);
+		for (int i = 0; i < 500; i++) {
+			int key = r.nextInt(200);
+			int value = r.nextInt(1001);
+			assertEquals(bca.put(key, value).intValue(), ica.putInt(key, value));
+		}
+		assertFalse(ica.isEmpty());
+		for (int i = 0; i < 300; i++) {
+			assertEquals(bca.getSupremum(i), ica.getSupremum(i));
+			assertEquals(bca.mightContain(i), ica.mightContain(i));
+		}
+		assertEquals(bca.getValueList(), ica.getValueList());
+		assertEquals(bca.asBloomFilter().getBitVector(), ica.asBloomFilter().getBitVector());
+		assertTrue(ica.bounds(bca));
+		ica.clear();
+		assertTrue(ica.isEmpty());
+	}
+
+	public void testSupremum() {
+		IntCompactApproximator<Object> ica = new IntCompactApproximator<Object>(lattice, hash, 5);
+		ica.putInt("a", 3);
+		ica.putInt("a", 7);
+		ica.putInt("a", 5);
+		assertTrue(ica.getSupremumInt("a") >= 7);
+		assertTrue(ica.mightContain("a"));
+		try {
+			ica.putInt("a", 1001);
+			fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+	}
+
+	public void testBoundedAbove() {
+		IntCompactApproximator<Object> ica = new IntCompactApproximator<Object>(lattice, hash, 5);
+		for (int i = 0; i < 100; i++) ica.putInt(i, i * 10);
+		CompactApproximator<Object, Integer> bounded = ica.boundedAbove(50);
+		assertEquals(50, bounded.getLattice().getTop().intValue());
+		for (int i = 0; i < 100; i++) {
+			assertTrue(bounded.getSupremum(i) <= 50);
+			if (i >= 5) assertTrue(bounded.asBloomFilter().mightContain(i));
+		}
+		assertTrue(ica.bounds(ica.clone()));
+		IntCompactApproximator<Object> clone = ica.clone();
+		assertEquals(ica, clone);
+		clone.putInt("extra", 1000);
+		assertTrue(clone.bounds(ica));
+		assertFalse(ica.bounds(clone));
+	}
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.crinch.collections;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.tomgibara.crinch.bits.BitVector;
+import com.tomgibara.crinch.hashing.IntegerMultiHash;
+import com.tomgibara.crinch.hashing.MultiHash;
+import com.tomgibara.crinch.hashing.Murmur3_32Hash;
+import com.tomgibara.crinch.hashing.ObjectHashSource;
+import com.tomgibara.crinch.lattice.BitVectorLattice;
+
+public class LongCompactApproximatorTest extends TestCase {
+
+	final MultiHash<Object> hash = new IntegerMultiHash<Object>(new Murmur3_32Hash<Object>(new ObjectHashSource()), 999);
+	final BitVectorLattice lattice = new BitVectorLattice(40);
+
+	public void testMatchesBasic() {
+		LongCompactApproximator<Object> lca = new LongCompactApproximator<Object>(lattice, hash, 4);
+		BasicCompactApproximator<Object, BitVector> bca = new BasicCompactApproximator<Object, BitVector>(lattice, hash, 4);
+		assertTrue(lca.isEmpty());
+		Random r = new Random(0L);
+		for (int i = 0; i < 500; i++) {
+			int key = r.nextInt(200);
+			BitVector value = new BitVector(r, 0.1f, 40);
+			assertEquals(bca.put(key, value), lca.put(key, value));
+		}
+		assertFalse(lca.isEmpty());
+		for (int i = 0; i < 300; i++) {
+			assertEquals(bca.getSupremum(i), lca.getSupremum(i));
+			assertEquals(bca.mightContain(i), lca.mightContain(i));
+		}
+		assertEquals(bca.getValueList(), lca.getValueList());
+		assertEquals(bca.asBloomFilter().getBitVector(), lca.asBloomFilter().getBitVector());
+		assertTrue(lca.bounds(bca));
+		lca.clear();
+		assertTrue(lca.isEmpty());
+	}
+
+	public void testBits() {
+		LongCompactApproximator<Object> lca = new LongCompactApproximator<Object>(lattice, hash, 4);
+		lca.putBits("a", 0x1L);
+		lca.putBits("a", 0x4L);
+		assertEquals(0x5L, lca.getSupremumBits("a") & 0x5L);
+		try {
+			lca.putBits("a", 1L << 40);
+			fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+		LongCompactApproximator<Object> clone = lca.clone();
+		assertEquals(lca, clone);
+		clone.putBits("b", 0x2L);
+		assertTrue(clone.bounds(lca));
+		assertFalse(lca.bounds(clone));
+	}
+
+}
@@ -62,27 +62,27 @@ public class AdaptedMultiHash<T> implements MultiHash<T> {
 	}
 
 	public int[] hashAsInts(T value, int multiplicity) {
-		return multiHash.hashAsInts(value, multiplicity);
+		return adapt(multiHash.hashAsInts(value, multiplicity));
 	}
 	
 	public int[] hashAsInts(T value, int[] array) {
-		return multiHash.hashAsInts(value, array);
+		return adapt(multiHash.hashAsInts(value, array));
 	}
 	
 	public long[] hashAsLongs(T value, int multiplicity) {
-		return multiHash.hashAsLongs(value, multiplicity);
+		return adapt(multiHash.hashAsLongs(value, multiplicity));
 	}
 	
 	public long[] hashAsLongs(T value, long[] array) {
-		return multiHash.hashAsLongs(value, array);
+		return adapt(multiHash.hashAsLongs(value, array));
 	}
 	
 	public BigInteger[] hashAsBigInts(T value, int multiplicity) {
-		return multiHash.hashAsBigInts(value, multiplicity);
+		return adapt(multiHash.hashAsBigInts(value, multiplicity));
 	}
 	
 	public BigInteger[] hashAsBigInts(T value, BigInteger[] array) {
-		return multiHash.hashAsBigInts(value, array);
+		return adapt(multiHash.hashAsBigInts(value, array));
 	}
 
 	protected int adapt(int hash) {
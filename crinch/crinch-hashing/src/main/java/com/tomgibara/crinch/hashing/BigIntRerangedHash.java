@@ -31,14 +31,14 @@ class BigIntRerangedHash<T> extends RerangedHash<T> {
 	
 	@Override
 	public int[] hashAsInts(T value, int multiplicity) {
-		BigInteger[] bigInts = multiHash.hashAsBigInts(value, multiplicity);
+		BigInteger[] bigInts = hashAsBigInts(value, multiplicity);
 		int[] array = new int[bigInts.length];
 		return AbstractMultiHash.copy(bigInts, array);
 	}
 	
 	@Override
 	public int[] hashAsInts(T value, int[] array) {
-		BigInteger[] bigInts = multiHash.hashAsBigInts(value, new BigInteger[array.length]);
+		BigInteger[] bigInts = hashAsBigInts(value, new BigInteger[array.length]);
 		return AbstractMultiHash.copy(bigInts, array);
 	}
 	
@@ -49,14 +49,14 @@ class BigIntRerangedHash<T> extends RerangedHash<T> {
 	
 	@Override
 	public long[] hashAsLongs(T value, int multiplicity) {
-		BigInteger[] bigInts = multiHash.hashAsBigInts(value, multiplicity);
+		BigInteger[] bigInts = hashAsBigInts(value, multiplicity);
 		long[] array = new long[bigInts.length];
 		return AbstractMultiHash.copy(bigInts, array);
 	}
 	
 	@Override
 	public long[] hashAsLongs(T value, long[] array) {
-		BigInteger[] bigInts = multiHash.hashAsBigInts(value, new BigInteger[array.length]);
+		BigInteger[] bigInts = hashAsBigInts(value, new BigInteger[array.length]);
 		return AbstractMultiHash.copy(bigInts, array);
 	}
 	
@@ -72,9 +72,9 @@ class BigIntRerangedHash<T> extends RerangedHash<T> {
 
 	@Override
 	protected BigInteger adapt(BigInteger h) {
-		h = h.subtract(bigOldMin);
-		if (isSmaller) h = h.mod(bigNewSize);
-		return h.add(bigNewMin);
+		h = h.subtract(oldRange.getMinimum());
+		if (isSmaller) h = h.mod(newRange.getSize());
+		return h.add(newRange.getMinimum());
 	}
 
 }
\ No newline at end of file
@@ -19,8 +19,11 @@ package com.tomgibara.crinch.hashing;
 import java.math.BigInteger;
 
 /**
- * Records the range of values that a hash value may take. Both range values are inclusive.
- *  
+ * Records the range of values that a hash value may take. Both range values
+ * are inclusive. Ranges that lie within the range of a long also expose their
+ * bounds and size as primitive values; these are computed on construction so
+ * that hash implementations can avoid {@link BigInteger} arithmetic entirely.
+ * 
  * @author tomgibara
  *
  */
@@ -35,20 +38,24 @@ public class HashRange {
 	private final static BigInteger LONG_MINIMUM = BigInteger.valueOf(Long.MIN_VALUE);
 	private final static BigInteger LONG_MAXIMUM = BigInteger.valueOf(Long.MAX_VALUE);
 	
-	public static HashRange FULL_INT_RANGE = new HashRange(INT_MINIMUM, INT_MAXIMUM);
-	public static HashRange POSITIVE_INT_RANGE = new HashRange(BigInteger.ONE, INT_MAXIMUM);
-	public static HashRange FULL_LONG_RANGE = new HashRange(LONG_MINIMUM, LONG_MAXIMUM);
-	public static HashRange POSITIVE_LONG_RANGE = new HashRange(BigInteger.ONE, LONG_MAXIMUM);
+	public static HashRange FULL_INT_RANGE = new HashRange(Integer.MIN_VALUE, Integer.MAX_VALUE);
+	public static HashRange POSITIVE_INT_RANGE = new HashRange(1, Integer.MAX_VALUE);
+	public static HashRange FULL_LONG_RANGE = new HashRange(Long.MIN_VALUE, Long.MAX_VALUE);
+	public static HashRange POSITIVE_LONG_RANGE = new HashRange(1L, Long.MAX_VALUE);
 	
 	// fields
 	
-	private final BigInteger minimum;
-	private final BigInteger maximum;
 	private final boolean intBounded;
 	private final boolean longBounded;
+	private final boolean intSized;
+	private final boolean longSized;
+	// only meaningful if the range is long bounded
+	private final long longMinimum;
+	private final long longMaximum;
+	// only created on demand if the range is long bounded
+	private BigInteger minimum;
+	private BigInteger maximum;
 	private BigInteger size = null;
-	private Boolean intSized = null;
-	private Boolean longSized = null;
 	
 	// constructors
 	
@@ -58,23 +65,41 @@ public class HashRange {
 		if (minimum.compareTo(maximum) > 0) throw new IllegalArgumentException();
 		this.minimum = minimum;
 		this.maximum = maximum;
-		intBounded = minimum.compareTo(INT_MINIMUM) >= 0 && maximum.compareTo(INT_MAXIMUM) <= 0;
 		longBounded = minimum.compareTo(LONG_MINIMUM) >= 0 && maximum.compareTo(LONG_MAXIMUM) <= 0;
-		// defer size related work - don't want to mem alloc in constructor
+		if (longBounded) {
+			longMinimum = minimum.longValue();
+			longMaximum = maximum.longValue();
+			intBounded = isIntBounded(longMinimum, longMaximum);
+			longSized = isLongSized(longMinimum, longMaximum);
+			intSized = isIntSized(longMinimum, longMaximum);
+		} else {
+			longMinimum = 0L;
+			longMaximum = 0L;
+			intBounded = false;
+			longSized = getSize().compareTo(LONG_MAXIMUM) <= 0;
+			intSized = getSize().compareTo(INT_MAXIMUM) <= 0;
+		}
 	}
 
 	public HashRange(int minimum, int maximum) {
-		this(BigInteger.valueOf(minimum), BigInteger.valueOf(maximum));
+		this((long) minimum, (long) maximum);
 	}
 	
 	public HashRange(long minimum, long maximum) {
-		this(BigInteger.valueOf(minimum), BigInteger.valueOf(maximum));
+		if (minimum > maximum) throw new IllegalArgumentException();
+		longMinimum = minimum;
+		longMaximum = maximum;
+		longBounded = true;
+		intBounded = isIntBounded(minimum, maximum);
+		longSized = isLongSized(minimum, maximum);
+		intSized = isIntSized(minimum, maximum);
+		// defer big integer creation - don't want to mem alloc in constructor
 	}
 	
 	// accessors
 	
 	public boolean isZeroBased() {
-		return minimum.signum() == 0;
+		return longBounded ? longMinimum == 0L : minimum.signum() == 0;
 	}
 	
 	public boolean isIntBounded() {
@@ -86,31 +111,110 @@ public class HashRange {
 	}
 	
 	public BigInteger getMinimum() {
-		return minimum;
+		return minimum == null ? minimum = BigInteger.valueOf(longMinimum) : minimum;
 	}
 	
 	public BigInteger getMaximum() {
-		return maximum;
+		return maximum == null ? maximum = BigInteger.valueOf(longMaximum) : maximum;
 	}
 	
 	public BigInteger getSize() {
-		return size == null ? size = maximum.subtract(minimum).add(BigInteger.ONE) : size;
+		return size == null ? size = getMaximum().subtract(getMinimum()).add(BigInteger.ONE) : size;
 	}
 	
 	public boolean isIntSized() {
-		if (intSized == null) intSized = getSize().compareTo(INT_MAXIMUM) <= 0;
 		return intSized;
 	}
 	
 	public boolean isLongSized() {
-		if (longSized == null) longSized = getSize().compareTo(LONG_MAXIMUM) <= 0;
 		return longSized;
 	}
 	
+	/**
+	 * The minimum value in the range as an int.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the range is not int bounded
+	 */
+
+	public int getIntMinimum() {
+		if (!intBounded) throw new IllegalStateException("not int bounded");
+		return (int) longMinimum;
+	}
+	
+	/**
+	 * The maximum value in the range as an int.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the range is not int bounded
+	 */
+
+	public int getIntMaximum() {
+		if (!intBounded) throw new IllegalStateException("not int bounded");
+		return (int) longMaximum;
+	}
+	
+	/**
+	 * The number of values in the range as an int.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the range is not int sized
+	 */
+
+	public int getIntSize() {
+		if (!intSized) throw new IllegalStateException("not int sized");
+		return longBounded ? (int) (longMaximum - longMinimum + 1L) : getSize().intValue();
+	}
+	
+	/**
+	 * The minimum value in the range as a long.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the range is not long bounded
+	 */
+
+	public long getLongMinimum() {
+		if (!longBounded) throw new IllegalStateException("not long bounded");
+		return longMinimum;
+	}
+	
+	/**
+	 * The maximum value in the range as a long.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the range is not long bounded
+	 */
+
+	public long getLongMaximum() {
+		if (!longBounded) throw new IllegalStateException("not long bounded");
+		return longMaximum;
+	}
+	
+	/**
+	 * The number of values in the range as a long.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the range is not long sized
+	 */
+
+	public long getLongSize() {
+		if (!longSized) throw new IllegalStateException("not long sized");
+		return longBounded ? longMaximum - longMinimum + 1L : getSize().longValue();
+	}
+	
 	// methods
 	
 	public HashRange zeroBased() {
-		return isZeroBased() ? this : new HashRange(BigInteger.ZERO, maximum.subtract(minimum));
+		if (isZeroBased()) return this;
+		if (longSized && longBounded) return new HashRange(0L, longMaximum - longMinimum);
+		return new HashRange(BigInteger.ZERO, getMaximum().subtract(getMinimum()));
+	}
+	
+	// package scoped methods
+	
+	// the size of a long bounded range as an unsigned long, zero indicating 2^64
+	long unsignedSize() {
+		return longMaximum - longMinimum + 1L;
 	}
 	
 	// object methods
@@ -120,17 +224,40 @@ public class HashRange {
 		if (obj == this) return true;
 		if (!(obj instanceof HashRange)) return false;
 		HashRange that = (HashRange) obj;
+		if (this.longBounded != that.longBounded) return false;
+		if (longBounded) return this.longMinimum == that.longMinimum && this.longMaximum == that.longMaximum;
 		return this.minimum.equals(that.minimum) && this.maximum.equals(that.maximum);
 	}
 	
 	@Override
 	public int hashCode() {
+		if (longBounded) return Hashes.hashCode(longMinimum) ^ 7 * Hashes.hashCode(longMaximum);
 		return minimum.hashCode() ^ 7 * maximum.hashCode();
 	}
 	
 	@Override
 	public String toString() {
-		return "[" + minimum + ", " + maximum + "]";
+		return longBounded ?
+				"[" + longMinimum + ", " + longMaximum + "]" :
+				"[" + minimum + ", " + maximum + "]";
+	}
+	
+	// private static utility methods
+	
+	private static boolean isIntBounded(long minimum, long maximum) {
+		return minimum >= Integer.MIN_VALUE && maximum <= Integer.MAX_VALUE;
+	}
+	
+	// size is at most Long.MAX_VALUE
+	private static boolean isLongSized(long minimum, long maximum) {
+		final long diff = maximum - minimum;
+		return diff >= 0L && diff < Long.MAX_VALUE;
+	}
+	
+	// size is at most Integer.MAX_VALUE
+	private static boolean isIntSized(long minimum, long maximum) {
+		final long diff = maximum - minimum;
+		return diff >= 0L && diff < Integer.MAX_VALUE;
 	}
 	
 }
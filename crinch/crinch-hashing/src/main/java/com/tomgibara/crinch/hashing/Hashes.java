@@ -36,6 +36,10 @@ public class Hashes {
 	 * hash will be returned, unmodified. To use this method with a plain
 	 * {@link Hash}, first pass it to {@link #asMultiHash(Hash)}.
 	 * 
+	 * Where both ranges are long bounded, hash values are adjusted using
+	 * primitive arithmetic only; ranges are narrowed by taking a remainder,
+	 * which reduces to a mask if the new range has a power of two size.
+	 * 
 	 * @param <T>
 	 *            the type of objects for which hashes may be generated
 	 * @param newRange
@@ -53,8 +57,8 @@ public class Hashes {
 		if (multiHash == null) throw new IllegalArgumentException("null multiHash");
 		final HashRange oldRange = multiHash.getRange();
 		if (oldRange.equals(newRange)) return multiHash;
-		if (newRange.isIntBounded() && newRange.isIntSized() && oldRange.isIntBounded() && oldRange.isIntSized()) return new IntRerangedHash<T>(multiHash, newRange);
-		if (newRange.isLongBounded() && newRange.isLongSized() && oldRange.isLongBounded() && oldRange.isLongSized()) return new LongRerangedHash<T>(multiHash, newRange);
+		if (newRange.isIntBounded() && oldRange.isIntBounded()) return new IntRerangedHash<T>(multiHash, newRange);
+		if (newRange.isLongBounded() && oldRange.isLongBounded()) return new LongRerangedHash<T>(multiHash, newRange);
 		return new BigIntRerangedHash<T>(multiHash, newRange);
 	}
 	
@@ -18,38 +18,38 @@ package com.tomgibara.crinch.hashing;
 
 import java.math.BigInteger;
 
+// adjusts between int bounded ranges using long arithmetic
 class IntRerangedHash<T> extends RerangedHash<T> {
 
-	private final int intOldMin;
-	private final int intNewMin;
-	private final int intNewSize;
+	private final long oldMin;
+	private final long newMin;
+	private final long newSize;
+	// non-negative if the new range has a power of two size
+	private final long mask;
 	
 	public IntRerangedHash(MultiHash<T> hash, HashRange newRange) {
 		super(hash, newRange);
-		intOldMin = bigOldMin.intValue();
-		intNewMin = bigNewMin.intValue();
-		intNewSize = bigNewSize.intValue();
+		oldMin = oldRange.getLongMinimum();
+		newMin = newRange.getLongMinimum();
+		newSize = newRange.unsignedSize();
+		mask = (newSize & (newSize - 1L)) == 0L ? newSize - 1L : -1L;
 	}
 
 	@Override
 	protected int adapt(int h) {
-		h -= intOldMin;
-		if (isSmaller) h = h % intNewSize;
-		return h + intNewMin;
+		long offset = h - oldMin;
+		if (isSmaller) offset = mask < 0L ? offset % newSize : offset & mask;
+		return (int) (offset + newMin);
 	}
 
 	@Override
 	protected long adapt(long h) {
-		h -= intOldMin;
-		if (isSmaller) h = h % intNewSize;
-		return h + intNewMin;
+		return adapt((int) h);
 	}
 
 	@Override
 	protected BigInteger adapt(BigInteger h) {
-		h = h.subtract(bigOldMin);
-		if (isSmaller) h = h.mod(bigNewSize);
-		return h.add(bigNewMin);
+		return BigInteger.valueOf(adapt(h.intValue()));
 	}
 	
 }
@@ -44,7 +44,7 @@ public class IntegerMultiHash<T> extends AbstractMultiHash<T> {
 		if (max < 0) throw new IllegalArgumentException();
 		this.hash = hash;
 		range = new HashRange(0, max);
-		size = range.getSize().intValue();
+		size = range.getIntSize();
 	}
 	
 	@Override
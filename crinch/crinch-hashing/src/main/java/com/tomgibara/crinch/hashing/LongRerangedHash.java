@@ -18,17 +18,22 @@ package com.tomgibara.crinch.hashing;
 
 import java.math.BigInteger;
 
+// adjusts between long bounded ranges using unsigned long arithmetic
 class LongRerangedHash<T> extends RerangedHash<T> {
 
-	private final long lngOldMin;
-	private final long lngNewMin;
-	private final long lngNewSize;
+	private final long oldMin;
+	private final long newMin;
+	// unsigned, zero indicates 2^64
+	private final long newSize;
+	// non-negative if the new range has a power of two size
+	private final long mask;
 	
 	public LongRerangedHash(MultiHash<T> hash, HashRange newRange) {
 		super(hash, newRange);
-		lngOldMin = bigOldMin.longValue();
-		lngNewMin = bigNewMin.longValue();
-		lngNewSize = bigNewSize.longValue();
+		oldMin = oldRange.getLongMinimum();
+		newMin = newRange.getLongMinimum();
+		newSize = newRange.unsignedSize();
+		mask = (newSize & (newSize - 1L)) == 0L ? newSize - 1L : -1L;
 	}
 
 	@Override
@@ -38,14 +43,14 @@ class LongRerangedHash<T> extends RerangedHash<T> {
 	
 	@Override
 	public int[] hashAsInts(T value, int multiplicity) {
-		long[] longs = multiHash.hashAsLongs(value, multiplicity);
+		long[] longs = hashAsLongs(value, multiplicity);
 		int[] array = new int[longs.length];
 		return AbstractMultiHash.copy(longs, array);
 	}
 	
 	@Override
 	public int[] hashAsInts(T value, int[] array) {
-		long[] longs = multiHash.hashAsLongs(value, new long[array.length]);
+		long[] longs = hashAsLongs(value, new long[array.length]);
 		return AbstractMultiHash.copy(longs, array);
 	}
 	
@@ -56,16 +61,24 @@ class LongRerangedHash<T> extends RerangedHash<T> {
 
 	@Override
 	protected long adapt(long h) {
-		h -= lngOldMin;
-		if (isSmaller) h = h % lngNewSize;
-		return h + lngNewMin;
+		long offset = h - oldMin;
+		if (isSmaller) offset = mask < 0L ? remainder(offset, newSize) : offset & mask;
+		return offset + newMin;
 	}
 
 	@Override
 	protected BigInteger adapt(BigInteger h) {
-		h = h.subtract(bigOldMin);
-		if (isSmaller) h = h.mod(bigNewSize);
-		return h.add(bigNewMin);
+		return BigInteger.valueOf(adapt(h.longValue()));
 	}
 	
+	// the unsigned remainder, divisor is a non-zero unsigned value
+	private static long remainder(long dividend, long divisor) {
+		if (divisor < 0L) {
+			return dividend + Long.MIN_VALUE < divisor + Long.MIN_VALUE ? dividend : dividend - divisor;
+		}
+		if (dividend >= 0L) return dividend % divisor;
+		final long rem = dividend - (((dividend >>> 1) / divisor) << 1) * divisor;
+		return rem + Long.MIN_VALUE < divisor + Long.MIN_VALUE ? rem : rem - divisor;
+	}
+
 }
@@ -0,0 +1,571 @@
+/*
+ * Copyright 2012 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.crinch.hashing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.tomgibara.crinch.bits.BitReader;
+import com.tomgibara.crinch.bits.BitWriter;
+import com.tomgibara.crinch.util.AbstractWriteStream;
+
+/**
+ * <p>
+ * A "minimal perfect hash" over an arbitrary set of keys. After construction
+ * from <em>n</em> distinct keys, an instance of this class will return a
+ * unique hash value <em>h</em> (0 <= h < n) for every key. Unlike
+ * {@link PerfectStringHash}, instances are suitable for very large key sets:
+ * keys are reduced to 64 bit fingerprints using a {@link HashSource} and
+ * then assigned to a cascade of progressively smaller bit arrays, in the
+ * manner of the BBHash algorithm. Keys that collide within a level are
+ * deferred to the next; the hash value of a key is the rank of the bit that it
+ * alone occupies.
+ * </p>
+ *
+ * <p>
+ * With the default gamma of 1.0, an instance requires approximately 3 bits
+ * per key, both in memory and when serialized with {@link #write(BitWriter)}.
+ * Larger values of gamma produce faster lookups and builds at the expense of
+ * space. Building requires an additional 8 bytes per key for fingerprints
+ * and is performed in parallel; see {@link Builder}.
+ * </p>
+ *
+ * <p>
+ * The keys are <em>not</em> retained, so the hash cannot generally identify
+ * values that were not supplied as keys. A hash value of -1 is returned where
+ * this can be detected, otherwise a value in the range will be returned.
+ * </p>
+ *
+ * @author Tom Gibara
+ *
+ * @param <T>
+ *            the type of objects for which hashes may be generated
+ */
+
+public class MinimalPerfectHash<T> extends AbstractHash<T> {
+
+	// statics
+
+	private static final double DEFAULT_GAMMA = 1.0;
+	private static final int MAX_LEVELS = 64;
+	// the number of attempts made to find distinct fingerprints
+	private static final int MAX_ATTEMPTS = 3;
+	// below this number of fingerprints, work is not split across threads
+	private static final int PARALLEL_THRESHOLD = 1 << 16;
+	// ranks are recorded for every block of this many words
+	private static final int RANK_BLOCK_BITS = 3;
+
+	/**
+	 * Starts building a new minimal perfect hash.
+	 *
+	 * @param source
+	 *            the source of hash data for keys
+	 * @return a builder for a minimal perfect hash
+	 * @throws IllegalArgumentException
+	 *             if the source is null
+	 */
+
+	public static <T> Builder<T> from(HashSource<T> source) {
+		if (source == null) throw new IllegalArgumentException("null source");
+		return new Builder<T>(source);
+	}
+
+	/**
+	 * Reads a minimal perfect hash previously written using
+	 * {@link #write(BitWriter)}.
+	 *
+	 * @param source
+	 *            the source of hash data from which the hash was built
+	 * @param reader
+	 *            the reader from which the hash data is read
+	 * @return a minimal perfect hash
+	 * @throws IllegalArgumentException
+	 *             if either parameter is null
+	 */
+
+	public static <T> MinimalPerfectHash<T> read(HashSource<T> source, BitReader reader) {
+		if (source == null) throw new IllegalArgumentException("null source");
+		if (reader == null) throw new IllegalArgumentException("null reader");
+		final int size = reader.read(32);
+		final long seed = reader.readLong(64);
+		final int levelCount = reader.read(8);
+		final int[] offsets = new int[levelCount + 1];
+		for (int i = 0; i < levelCount; i++) {
+			offsets[i + 1] = offsets[i] + reader.read(32);
+		}
+		final long[] bits = new long[offsets[levelCount]];
+		for (int i = 0; i < bits.length; i++) {
+			bits[i] = reader.readLong(64);
+		}
+		final long[] overflow = new long[reader.read(32)];
+		for (int i = 0; i < overflow.length; i++) {
+			overflow[i] = reader.readLong(64);
+		}
+		return new MinimalPerfectHash<T>(source, size, seed, offsets, bits, overflow);
+	}
+
+	// mixes bits thoroughly, this is the Murmur3 finalizer
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	// the position of a fingerprint within a level of the given number of bits
+	private static int position(long fingerprint, int level, long bitCount) {
+		final long h = mix(fingerprint + (level + 1) * 0x9e3779b97f4a7c15L);
+		return (int) (((h >>> 32) * bitCount) >>> 32);
+	}
+
+	// fields
+
+	private final HashSource<T> source;
+	private final int size;
+	private final long seed;
+	// word offsets of each level within bits, with a final entry for the end
+	private final int[] offsets;
+	private final long[] bits;
+	// the number of ones preceding each block of words
+	private final int[] ranks;
+	// sorted fingerprints of keys that could not be placed in any level
+	private final long[] overflow;
+	private final int overflowIndex;
+	private final HashRange range;
+
+	// constructors
+
+	private MinimalPerfectHash(HashSource<T> source, int size, long seed, int[] offsets, long[] bits, long[] overflow) {
+		this.source = source;
+		this.size = size;
+		this.seed = seed;
+		this.offsets = offsets;
+		this.bits = bits;
+		this.overflow = overflow;
+
+		final int[] ranks = new int[(bits.length >> RANK_BLOCK_BITS) + 1];
+		int count = 0;
+		for (int i = 0; i < bits.length; i++) {
+			if ((i & ((1 << RANK_BLOCK_BITS) - 1)) == 0) ranks[i >> RANK_BLOCK_BITS] = count;
+			count += Long.bitCount(bits[i]);
+		}
+		if (count + overflow.length != size) throw new IllegalArgumentException("inconsistent hash data");
+		this.ranks = ranks;
+		overflowIndex = count;
+		range = new HashRange(0, size - 1);
+	}
+
+	// accessors
+
+	/**
+	 * The number of keys over which the hash was built.
+	 *
+	 * @return the number of keys, equal to the size of the hash range
+	 */
+
+	public int getKeyCount() {
+		return size;
+	}
+
+	// hash methods
+
+	@Override
+	public HashRange getRange() {
+		return range;
+	}
+
+	@Override
+	public int hashAsInt(T value) {
+		return hash(fingerprint(source, seed, value));
+	}
+
+	@Override
+	public long hashAsLong(T value) {
+		return hashAsInt(value);
+	}
+
+	// methods
+
+	/**
+	 * Writes the hash so that it can be recreated with
+	 * {@link #read(HashSource, BitReader)}.
+	 *
+	 * @param writer
+	 *            the writer to which the hash data is written
+	 * @return the number of bits written
+	 * @throws IllegalArgumentException
+	 *             if the writer is null
+	 */
+
+	public long write(BitWriter writer) {
+		if (writer == null) throw new IllegalArgumentException("null writer");
+		long count = 0L;
+		count += writer.write(size, 32);
+		count += writer.write(seed, 64);
+		final int levelCount = offsets.length - 1;
+		count += writer.write(levelCount, 8);
+		for (int i = 0; i < levelCount; i++) {
+			count += writer.write(offsets[i + 1] - offsets[i], 32);
+		}
+		for (int i = 0; i < bits.length; i++) {
+			count += writer.write(bits[i], 64);
+		}
+		count += writer.write(overflow.length, 32);
+		for (int i = 0; i < overflow.length; i++) {
+			count += writer.write(overflow[i], 64);
+		}
+		return count;
+	}
+
+	// object methods
+
+	@Override
+	public String toString() {
+		return "MinimalPerfectHash keys: " + size + " levels: " + (offsets.length - 1);
+	}
+
+	// private utility methods
+
+	private int hash(long fingerprint) {
+		final int levelCount = offsets.length - 1;
+		for (int level = 0; level < levelCount; level++) {
+			final int offset = offsets[level];
+			final long bitCount = (long) (offsets[level + 1] - offset) << 6;
+			final long position = ((long) offset << 6) + position(fingerprint, level, bitCount);
+			final int word = (int) (position >> 6);
+			final long mask = 1L << position;
+			if ((bits[word] & mask) != 0L) return rank(word, mask);
+		}
+		final int index = Arrays.binarySearch(overflow, fingerprint);
+		return index < 0 ? -1 : overflowIndex + index;
+	}
+
+	// the number of ones preceding the masked bit
+	private int rank(int word, long mask) {
+		int rank = ranks[word >> RANK_BLOCK_BITS];
+		for (int i = word & ~((1 << RANK_BLOCK_BITS) - 1); i < word; i++) {
+			rank += Long.bitCount(bits[i]);
+		}
+		return rank + Long.bitCount(bits[word] & (mask - 1L));
+	}
+
+	private static <T> long fingerprint(HashSource<T> source, long seed, T value) {
+		final FingerprintStream stream = new FingerprintStream();
+		stream.reset(seed);
+		source.sourceData(value, stream);
+		return stream.fingerprint();
+	}
+
+	// inner classes
+
+	/**
+	 * Builds {@link MinimalPerfectHash} instances. Fingerprinting (for keys
+	 * supplied in a random access list) and the assignment of keys to each
+	 * level are split across a number of threads.
+	 */
+
+	public static class Builder<T> {
+
+		private final HashSource<T> source;
+		private double gamma = DEFAULT_GAMMA;
+		private int parallelism = Runtime.getRuntime().availableProcessors();
+		private long seed = 0L;
+
+		Builder(HashSource<T> source) {
+			this.source = source;
+		}
+
+		/**
+		 * Controls the size of each level relative to the number of keys that
+		 * remain to be placed.
+		 *
+		 * @param gamma
+		 *            at least 1.0
+		 * @return the builder
+		 */
+
+		public Builder<T> setGamma(double gamma) {
+			if (!(gamma >= 1.0)) throw new IllegalArgumentException("gamma less than one");
+			this.gamma = gamma;
+			return this;
+		}
+
+		/**
+		 * The number of threads used to build the hash.
+		 *
+		 * @param parallelism
+		 *            a positive number of threads
+		 * @return the builder
+		 */
+
+		public Builder<T> setParallelism(int parallelism) {
+			if (parallelism < 1) throw new IllegalArgumentException("non-positive parallelism");
+			this.parallelism = parallelism;
+			return this;
+		}
+
+		/**
+		 * The seed from which fingerprints are generated. Different seeds
+		 * produce different hashes.
+		 *
+		 * @param seed
+		 *            any value
+		 * @return the builder
+		 */
+
+		public Builder<T> setSeed(long seed) {
+			this.seed = seed;
+			return this;
+		}
+
+		/**
+		 * Builds a minimal perfect hash over the supplied keys.
+		 *
+		 * @param keys
+		 *            distinct keys
+		 * @return a minimal perfect hash
+		 * @throws IllegalArgumentException
+		 *             if there are no keys, or if the keys are not distinct
+		 */
+
+		public MinimalPerfectHash<T> build(Iterable<? extends T> keys) {
+			if (keys == null) throw new IllegalArgumentException("null keys");
+			final ExecutorService executor = parallelism == 1 ? null : Executors.newFixedThreadPool(parallelism);
+			try {
+				long seed = this.seed;
+				for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++, seed++) {
+					final long[] fingerprints = fingerprints(executor, keys, seed);
+					if (fingerprints.length == 0) throw new IllegalArgumentException("no keys");
+					final MinimalPerfectHash<T> hash = build(executor, fingerprints, seed);
+					if (hash != null) return hash;
+				}
+				throw new IllegalArgumentException("duplicate keys");
+			} finally {
+				if (executor != null) executor.shutdown();
+			}
+		}
+
+		// returns null if duplicate fingerprints are encountered
+		private MinimalPerfectHash<T> build(ExecutorService executor, final long[] fingerprints, long seed) {
+			final int size = fingerprints.length;
+			final List<long[]> levels = new ArrayList<long[]>();
+			int remaining = size;
+			while (remaining > 0 && levels.size() < MAX_LEVELS) {
+				final long wordCount = ((long) Math.ceil(gamma * remaining) + 63L) >> 6;
+				if (wordCount > Integer.MAX_VALUE >> 6) throw new IllegalArgumentException("too many keys");
+				final long bitCount = wordCount << 6;
+				final int level = levels.size();
+				final AtomicLongArray seen = new AtomicLongArray((int) wordCount);
+				final AtomicLongArray collided = new AtomicLongArray((int) wordCount);
+				final int[] chunks = chunks(executor, remaining);
+
+				// record the positions occupied by every fingerprint
+				invokeAll(executor, chunks, new Task() {
+					@Override
+					int perform(int from, int to) {
+						for (int i = from; i < to; i++) {
+							final int position = position(fingerprints[i], level, bitCount);
+							if (set(seen, position)) set(collided, position);
+						}
+						return 0;
+					}
+				});
+
+				// move fingerprints that collided to the front of each chunk
+				final int[] counts = invokeAll(executor, chunks, new Task() {
+					@Override
+					int perform(int from, int to) {
+						int count = from;
+						for (int i = from; i < to; i++) {
+							final long fingerprint = fingerprints[i];
+							final int position = position(fingerprint, level, bitCount);
+							if ((collided.get(position >> 6) & (1L << position)) != 0L) fingerprints[count++] = fingerprint;
+						}
+						return count - from;
+					}
+				});
+
+				// gather the remaining fingerprints
+				remaining = 0;
+				for (int i = 0; i < counts.length; i++) {
+					System.arraycopy(fingerprints, chunks[i], fingerprints, remaining, counts[i]);
+					remaining += counts[i];
+				}
+
+				final long[] words = new long[(int) wordCount];
+				for (int i = 0; i < words.length; i++) {
+					words[i] = seen.get(i) & ~collided.get(i);
+				}
+				levels.add(words);
+			}
+
+			final long[] overflow = Arrays.copyOf(fingerprints, remaining);
+			Arrays.sort(overflow);
+			for (int i = 1; i < overflow.length; i++) {
+				if (overflow[i - 1] == overflow[i]) return null;
+			}
+
+			final int levelCount = levels.size();
+			final int[] offsets = new int[levelCount + 1];
+			for (int i = 0; i < levelCount; i++) {
+				offsets[i + 1] = offsets[i] + levels.get(i).length;
+			}
+			final long[] bits = new long[offsets[levelCount]];
+			for (int i = 0; i < levelCount; i++) {
+				final long[] words = levels.get(i);
+				System.arraycopy(words, 0, bits, offsets[i], words.length);
+			}
+			return new MinimalPerfectHash<T>(source, size, seed, offsets, bits, overflow);
+		}
+
+		private long[] fingerprints(ExecutorService executor, Iterable<? extends T> keys, final long seed) {
+			if (keys instanceof List<?> && keys instanceof RandomAccess) {
+				final List<? extends T> list = (List<? extends T>) keys;
+				final long[] fingerprints = new long[list.size()];
+				invokeAll(executor, chunks(executor, fingerprints.length), new Task() {
+					@Override
+					int perform(int from, int to) {
+						final FingerprintStream stream = new FingerprintStream();
+						for (int i = from; i < to; i++) {
+							stream.reset(seed);
+							source.sourceData(list.get(i), stream);
+							fingerprints[i] = stream.fingerprint();
+						}
+						return 0;
+					}
+				});
+				return fingerprints;
+			}
+
+			long[] fingerprints = new long[keys instanceof Collection<?> ? ((Collection<?>) keys).size() : 1024];
+			int count = 0;
+			final FingerprintStream stream = new FingerprintStream();
+			for (T key : keys) {
+				if (count == fingerprints.length) fingerprints = Arrays.copyOf(fingerprints, count * 2);
+				stream.reset(seed);
+				source.sourceData(key, stream);
+				fingerprints[count++] = stream.fingerprint();
+			}
+			return count == fingerprints.length ? fingerprints : Arrays.copyOf(fingerprints, count);
+		}
+
+		// the start of each chunk, with a final entry for the end
+		private int[] chunks(ExecutorService executor, int length) {
+			final int count = executor == null || length < PARALLEL_THRESHOLD ? 1 : parallelism;
+			final int[] chunks = new int[count + 1];
+			for (int i = 1; i <= count; i++) {
+				chunks[i] = (int) ((long) length * i / count);
+			}
+			return chunks;
+		}
+
+		private int[] invokeAll(ExecutorService executor, final int[] chunks, final Task task) {
+			final int count = chunks.length - 1;
+			final int[] results = new int[count];
+			if (count == 1) {
+				results[0] = task.perform(chunks[0], chunks[1]);
+				return results;
+			}
+			final List<Callable<Integer>> callables = new ArrayList<Callable<Integer>>(count);
+			for (int i = 0; i < count; i++) {
+				final int from = chunks[i];
+				final int to = chunks[i + 1];
+				callables.add(new Callable<Integer>() {
+					@Override
+					public Integer call() {
+						return task.perform(from, to);
+					}
+				});
+			}
+			try {
+				final List<Future<Integer>> futures = executor.invokeAll(callables);
+				for (int i = 0; i < count; i++) {
+					results[i] = futures.get(i).get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("interrupted while building hash", e);
+			} catch (ExecutionException e) {
+				final Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+				if (cause instanceof Error) throw (Error) cause;
+				throw new IllegalStateException(cause);
+			}
+			return results;
+		}
+
+		// sets the bit and returns whether it was already set
+		private static boolean set(AtomicLongArray words, int position) {
+			final int index = position >> 6;
+			final long mask = 1L << position;
+			while (true) {
+				final long word = words.get(index);
+				if ((word & mask) != 0L) return true;
+				if (words.compareAndSet(index, word, word | mask)) return false;
+			}
+		}
+
+	}
+
+	private static abstract class Task {
+
+		abstract int perform(int from, int to);
+
+	}
+
+	// a 64 bit hash of the source data, adapted from Murmur3
+	private static class FingerprintStream extends AbstractWriteStream {
+
+		private long k;
+		private long h;
+		private int len;
+
+		void reset(long seed) {
+			k = 0L;
+			h = seed;
+			len = 0;
+		}
+
+		@Override
+		public void writeByte(byte v) {
+			k = (k << 8) | (v & 0xff);
+			if (((++len) & 7) == 0) {
+				h ^= mix(k);
+				h = Long.rotateLeft(h, 27) * 5 + 0x52dce729;
+				k = 0L;
+			}
+		}
+
+		long fingerprint() {
+			if ((len & 7) != 0) h ^= mix(k);
+			return mix(h ^ len);
+		}
+
+	}
+
+}
@@ -86,7 +86,7 @@ public class PRNGMultiHash<T> extends AbstractMultiHash<T> {
 		if (isFullIntRange) {
 			return getRandom(value).nextInt() & 0x7fffffff;
 		} else {
-			return range.getMinimum().intValue() + getRandom(value).nextInt(range.getSize().intValue());
+			return range.getIntMinimum() + getRandom(value).nextInt(range.getIntSize());
 		}
 	}
 	
@@ -94,7 +94,7 @@ public class PRNGMultiHash<T> extends AbstractMultiHash<T> {
 	@Override
 	public long hashAsLong(T value) {
 		if (!range.isLongBounded()) throw new IllegalStateException("not long bounded");
-		return range.getMinimum().longValue() + getRandom(value).nextLong() % range.getSize().longValue();
+		return range.getLongMinimum() + getRandom(value).nextLong() % range.getLongSize();
 	}
 
 	//TODO biased
@@ -112,8 +112,8 @@ public class PRNGMultiHash<T> extends AbstractMultiHash<T> {
 				array[i] = random.nextInt() & 0x7fffffff;
 			}
 		} else {
-			final int a = range.getMinimum().intValue();
-			final int b = range.getSize().intValue();
+			final int a = range.getIntMinimum();
+			final int b = range.getIntSize();
 			for (int i = 0; i < array.length; i++) {
 				array[i] = a + random.nextInt(b);
 			}
@@ -125,8 +125,8 @@ public class PRNGMultiHash<T> extends AbstractMultiHash<T> {
 	public long[] hashAsLongs(T value, long[] array) {
 		if (!range.isLongBounded()) throw new IllegalStateException("not int bounded");
 		final Random random = getRandom(value);
-		final long a = range.getMinimum().longValue();
-		final long b = range.getSize().longValue();
+		final long a = range.getLongMinimum();
+		final long b = range.getLongSize();
 		for (int i = 0; i < array.length; i++) {
 			array[i] = a + random.nextLong() % b;
 		}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2012 Tom Gibara
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.tomgibara.crinch.hashing;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class HashRangeTest extends TestCase {
+
+	private static final BigInteger INT_MAX = BigInteger.valueOf(Integer.MAX_VALUE);
+	private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+	private static final HashRange[] RANGES = {
+		new HashRange(0, 0),
+		new HashRange(0, 99),
+		new HashRange(-5, 5),
+		new HashRange(0, Integer.MAX_VALUE - 1),
+		new HashRange(0, Integer.MAX_VALUE),
+		HashRange.FULL_INT_RANGE,
+		HashRange.POSITIVE_INT_RANGE,
+		new HashRange(0L, Long.MAX_VALUE - 1L),
+		new HashRange(-1L, Long.MAX_VALUE - 1L),
+		HashRange.FULL_LONG_RANGE,
+		HashRange.POSITIVE_LONG_RANGE,
+		new HashRange(BigInteger.ZERO, BigInteger.ONE.shiftLeft(64)),
+		new HashRange(BigInteger.ONE.shiftLeft(70), BigInteger.ONE.shiftLeft(70).add(BigInteger.TEN)),
+	};
+
+	public void testPrimitiveAccessors() {
+		for (HashRange range : RANGES) {
+			final BigInteger min = range.getMinimum();
+			final BigInteger max = range.getMaximum();
+			final BigInteger size = max.subtract(min).add(BigInteger.ONE);
+			HashRange big = new HashRange(min, max);
+			assertEquals(range, big);
+			assertEquals(range.hashCode(), big.hashCode());
+			assertEquals(range.toString(), big.toString());
+			assertEquals(size, range.getSize());
+			assertEquals(size.compareTo(INT_MAX) <= 0, range.isIntSized());
+			assertEquals(size.compareTo(LONG_MAX) <= 0, range.isLongSized());
+			assertEquals(range.isIntSized(), big.isIntSized());
+			assertEquals(range.isLongSized(), big.isLongSized());
+			assertEquals(range.isIntBounded(), big.isIntBounded());
+			assertEquals(range.isLongBounded(), big.isLongBounded());
+			if (range.isIntBounded()) {
+				assertEquals(min.intValue(), range.getIntMinimum());
+				assertEquals(max.intValue(), range.getIntMaximum());
+			}
+			if (range.isLongBounded()) {
+				assertEquals(min.longValue(), range.getLongMinimum());
+				assertEquals(max.longValue(), range.getLongMaximum());
+			}
+			if (range.isIntSized()) assertEquals(size.intValue(), range.getIntSize());
+			if (range.isLongSized()) assertEquals(size.longValue(), range.getLongSize());
+			HashRange zero = range.zeroBased();
+			assertTrue(zero.isZeroBased());
+			assertEquals(size, zero.getSize());
+		}
+	}
+
+	public void testInvalidAccess() {
+		try {
+			HashRange.FULL_INT_RANGE.getIntSize();
+			fail();
+		} catch (IllegalStateException e) {
+			/* expected */
+		}
+		try {
+			HashRange.FULL_LONG_RANGE.getIntMinimum();
+			fail();
+		} catch (IllegalStateException e) {
+			/* expected */
+		}
+		try {
+			HashRange.FULL_LONG_RANGE.getLongSize();
+			fail();
+		} catch (IllegalStateException e) {
+			/* expected */
+		}
+	}
+
+	public void testRangeAdjust() {
+		Random r = new Random(0L);
+		for (HashRange oldRange : RANGES) {
+			for (HashRange newRange : RANGES) {
+				FixedHash hash = new FixedHash(oldRange);
+				MultiHash<BigInteger> adjusted = Hashes.rangeAdjust(newRange, hash);
+				BigInteger oldMin = oldRange.getMinimum();
+				BigInteger oldSize = oldRange.getSize();
+				boolean smaller = newRange.getSize().compareTo(oldSize) < 0;
+				for (int i = 0; i < 100; i++) {
+					BigInteger value = new BigInteger(oldSize.bitLength() + 8, r).mod(oldSize).add(oldMin);
+					BigInteger offset = value.subtract(oldMin);
+					if (smaller) offset = offset.mod(newRange.getSize());
+					BigInteger expected = offset.add(newRange.getMinimum());
+					if (newRange.isLongBounded() && oldRange.isLongBounded()) {
+						assertEquals(expected.longValue(), adjusted.hashAsLong(value));
+						assertEquals(expected.longValue(), adjusted.hashAsLongs(value, 1)[0]);
+					}
+					if (newRange.isIntBounded() && oldRange.isIntBounded()) {
+						assertEquals(expected.intValue(), adjusted.hashAsInt(value));
+						assertEquals(expected.intValue(), adjusted.hashAsInts(value, 1)[0]);
+					}
+					BigInteger big = adjusted.hashAsBigInt(value);
+					assertTrue(big.compareTo(newRange.getMinimum()) >= 0);
+					assertTrue(big.compareTo(newRange.getMaximum()) <= 0);
+					assertEquals(big, adjusted.hashAsBigInts(value, 1)[0]);
+				}
+			}
+		}
+	}
+
+	// returns the value being hashed as its hash
+	private static class FixedHash extends AbstractMultiHash<BigInteger> {
+
+		private final HashRange range;
+
+		FixedHash(HashRange range) {
+			this.range = range;
+		}
+
+		@Override
+		public HashRange getRange() {
+			return range;
+		}
+
+		@Override
+		public BigInteger hashAsBigInt(BigInteger value) {
+			return value;
+		}
+
+		@Override
+		public long hashAsLong(BigInteger value) {
+			return value.longValue();
+		}
+
+		@Override
+		public int hashAsInt(BigInteger value) {
+			return value.intValue();
+		}
+
+		@Override
+		public int getMaxMultiplicity() {
+			return 1;
+		}
+
+		@Override
+		public int[] hashAsInts(BigInteger value, int[] array) {
+			for (int i = 0; i < array.length; i++) array[i] = value.intValue();
+			return array;
+		}
+
+		@Override
+		public long[] hashAsLongs(BigInteger value, long[] array) {
+			for (int i = 0; i < array.length; i++) array[i] = value.longValue();
+			return array;
+		}
+
+		@Override
+		public BigInteger[] hashAsBigInts(BigInteger value, BigInteger[] array) {
+			for (int i = 0; i < array.length; i++) array[i] = value;
+			return array;
+		}
+
+	}
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2012 Tom Gibara
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.tomgibara.crinch.hashing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import com.tomgibara.crinch.bits.ByteArrayBitReader;
+import com.tomgibara.crinch.bits.ByteArrayBitWriter;
+import com.tomgibara.crinch.util.WriteStream;
+
+public class MinimalPerfectHashTest extends TestCase {
+
+	private static final HashSource<String> source = new HashSource<String>() {
+		@Override
+		public void sourceData(String value, WriteStream out) {
+			out.writeChars(value.toCharArray());
+		}
+	};
+
+	private static List<String> keys(int count) {
+		List<String> keys = new ArrayList<String>(count);
+		for (int i = 0; i < count; i++) keys.add("key" + i);
+		return keys;
+	}
+
+	private static void checkMinimalPerfect(MinimalPerfectHash<String> hash, Iterable<String> keys, int count) {
+		assertEquals(count, hash.getKeyCount());
+		assertEquals(new HashRange(0, count - 1), hash.getRange());
+		boolean[] used = new boolean[count];
+		for (String key : keys) {
+			int h = hash.hashAsInt(key);
+			assertTrue(h >= 0 && h < count);
+			assertFalse(used[h]);
+			used[h] = true;
+			assertEquals(h, hash.hashAsLong(key));
+		}
+	}
+
+	public void testOne() {
+		MinimalPerfectHash<String> hash = MinimalPerfectHash.from(source).build(Arrays.asList("a"));
+		assertEquals(0, hash.hashAsInt("a"));
+	}
+
+	public void testSmall() {
+		for (int count = 1; count < 200; count++) {
+			List<String> keys = keys(count);
+			checkMinimalPerfect(MinimalPerfectHash.from(source).setParallelism(1).build(keys), keys, count);
+		}
+	}
+
+	public void testNonRandomAccess() {
+		Set<String> keys = new LinkedHashSet<String>(keys(10000));
+		checkMinimalPerfect(MinimalPerfectHash.from(source).build(keys), keys, keys.size());
+	}
+
+	public void testParallel() {
+		final int count = 200000;
+		List<String> keys = keys(count);
+		MinimalPerfectHash<String> serial = MinimalPerfectHash.from(source).setParallelism(1).build(keys);
+		MinimalPerfectHash<String> parallel = MinimalPerfectHash.from(source).setParallelism(4).build(keys);
+		checkMinimalPerfect(parallel, keys, count);
+		for (String key : keys) {
+			assertEquals(serial.hashAsInt(key), parallel.hashAsInt(key));
+		}
+	}
+
+	public void testSerialization() {
+		final int count = 100000;
+		List<String> keys = keys(count);
+		MinimalPerfectHash<String> hash = MinimalPerfectHash.from(source).build(keys);
+		ByteArrayBitWriter writer = new ByteArrayBitWriter(new byte[count]);
+		long bits = hash.write(writer);
+		writer.flush();
+		assertTrue("bits per key: " + (double) bits / count, bits < 3.5 * count);
+		MinimalPerfectHash<String> copy = MinimalPerfectHash.read(source, new ByteArrayBitReader(writer.getBytes()));
+		checkMinimalPerfect(copy, keys, count);
+		for (String key : keys) {
+			assertEquals(hash.hashAsInt(key), copy.hashAsInt(key));
+		}
+	}
+
+	public void testGamma() {
+		List<String> keys = keys(10000);
+		checkMinimalPerfect(MinimalPerfectHash.from(source).setGamma(2.0).setSeed(7L).build(keys), keys, keys.size());
+	}
+
+	public void testDuplicates() {
+		try {
+			MinimalPerfectHash.from(source).build(Arrays.asList("a", "b", "a"));
+			fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+	}
+
+	public void testEmpty() {
+		try {
+			MinimalPerfectHash.from(source).build(new ArrayList<String>());
+			fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+	}
+
+}
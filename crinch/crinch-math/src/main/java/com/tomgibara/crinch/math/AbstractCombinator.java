@@ -36,6 +36,54 @@ abstract class AbstractCombinator implements Combinator {
 		return getRandomCombination(random, new int[getTupleLength()]);
 	}
 	
+	@Override
+	public long getIndexAsLong(int[] combination) throws IllegalArgumentException {
+		final BigInteger index = getIndex(combination);
+		if (index.bitLength() > 63) throw new IllegalArgumentException("index exceeds long");
+		return index.longValue();
+	}
+	
+	@Override
+	public CombinationIterator iterator() {
+		final BigInteger size = size();
+		final long count = size.bitLength() > 63 ? Long.MAX_VALUE : size.longValue();
+		return new CombinationIterator(this, BigInteger.ZERO, count);
+	}
+	
+	@Override
+	public CombinationIterator iterator(long from, long to) throws IndexOutOfBoundsException, IllegalArgumentException {
+		if (from < 0L) throw new IndexOutOfBoundsException();
+		if (from > to) throw new IllegalArgumentException("from exceeds to");
+		if (BigInteger.valueOf(to).compareTo(size()) > 0) throw new IndexOutOfBoundsException();
+		return new CombinationIterator(this, BigInteger.valueOf(from), to - from);
+	}
+	
+	@Override
+	public CombinationIterator iterator(BigInteger from, BigInteger to) throws IndexOutOfBoundsException, IllegalArgumentException {
+		if (from == null) throw new IllegalArgumentException("null from");
+		if (to == null) throw new IllegalArgumentException("null to");
+		if (from.signum() < 0) throw new IndexOutOfBoundsException();
+		if (to.compareTo(size()) > 0) throw new IndexOutOfBoundsException();
+		final BigInteger count = to.subtract(from);
+		if (count.signum() < 0) throw new IllegalArgumentException("from exceeds to");
+		if (count.bitLength() > 63) throw new IllegalArgumentException("range too large");
+		return new CombinationIterator(this, from, count.longValue());
+	}
+	
+	// checks that the array contains a strictly increasing tuple of elements
+	void checkCombination(int[] as) throws IllegalArgumentException {
+		if (as == null) throw new IllegalArgumentException("null combination");
+		final int k = getTupleLength();
+		if (as.length < k) throw new IllegalArgumentException("combination too short");
+		int previous = -1;
+		for (int i = 0; i < k; i++) {
+			final int a = as[i];
+			if (a <= previous) throw new IllegalArgumentException("combination elements not increasing");
+			previous = a;
+		}
+		if (previous >= getElementCount()) throw new IllegalArgumentException("combination element too large");
+	}
+	
 	@Override
 	public boolean equals(Object obj) {
 		if (obj == this) return true;
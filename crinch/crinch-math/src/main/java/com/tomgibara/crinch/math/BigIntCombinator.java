@@ -87,6 +87,18 @@ class BigIntCombinator extends AbstractCombinator {
 		return as;
 	}
 	
+	@Override
+	public BigInteger getIndex(int[] as) throws IllegalArgumentException {
+		checkCombination(as);
+		final BigInteger[][] cs = this.cs;
+		// inverts getCombination
+		BigInteger x = BigInteger.ZERO;
+		for (int i = 0, b = k; i < k; i++, b--) {
+			x = x.add(cs[b][n - 1 - as[i]] /* choose(n - 1 - as[i], b) */);
+		}
+		return size.subtract(BigInteger.ONE).subtract(x);
+	}
+	
 	@Override
 	public int[] getRandomCombination(Random random, int[] as) throws IllegalArgumentException {
 		int bits = size.bitCount();
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2012 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.crinch.math;
+
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * Iterates over a contiguous range of the combinations generated by a
+ * {@link Combinator}, in index order. Only the first combination is obtained
+ * by index, each subsequent combination is derived from its predecessor in
+ * amortized constant time.
+ * </p>
+ *
+ * <p>
+ * To avoid allocations, {@link #next()} returns the same array on every call;
+ * the array must not be modified and its contents are only valid until the
+ * next call. A single iterator can visit at most {@link Long#MAX_VALUE}
+ * combinations.
+ * </p>
+ *
+ * <p>
+ * The range of an iterator may be divided with {@link #trySplit()} so that
+ * the combinations can be enumerated concurrently, see
+ * {@link Combinators#enumerate(Combinator, int, Combinators.Visitor)}.
+ * Iterators are not safe for use by multiple threads.
+ * </p>
+ *
+ * @author tomgibara
+ *
+ */
+
+public final class CombinationIterator implements Iterator<int[]> {
+
+	private final Combinator combinator;
+	private final int n;
+	private final int k;
+	private final int[] combination;
+	// index at which iteration started or resumed
+	private BigInteger origin;
+	// number of combinations returned since the origin
+	private long returned = 0L;
+	// number of combinations remaining
+	private long remaining;
+	// whether the array holds the next combination
+	private boolean primed = false;
+
+	// relies on the combinator to validate the range
+	CombinationIterator(Combinator combinator, BigInteger origin, long remaining) {
+		this.combinator = combinator;
+		n = combinator.getElementCount();
+		k = combinator.getTupleLength();
+		combination = new int[k];
+		this.origin = origin;
+		this.remaining = remaining;
+	}
+
+	/**
+	 * The combinator from which combinations are obtained.
+	 *
+	 * @return the combinator
+	 */
+
+	public Combinator getCombinator() {
+		return combinator;
+	}
+
+	/**
+	 * The number of combinations that have not yet been returned by this
+	 * iterator.
+	 *
+	 * @return the number of remaining combinations
+	 */
+
+	public long getRemaining() {
+		return remaining;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return remaining > 0L;
+	}
+
+	/**
+	 * The next combination. The returned array is reused by subsequent calls.
+	 *
+	 * @return an array containing the next combination
+	 * @throws NoSuchElementException
+	 *             if there are no combinations remaining
+	 */
+
+	@Override
+	public int[] next() {
+		if (remaining == 0L) throw new NoSuchElementException();
+		if (primed) {
+			successor();
+		} else {
+			combinator.getCombination(origin, combination);
+			primed = true;
+		}
+		returned++;
+		remaining--;
+		return combination;
+	}
+
+	/**
+	 * Not supported.
+	 *
+	 * @throws UnsupportedOperationException
+	 *             always
+	 */
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Divides the remaining combinations between this iterator and a new
+	 * iterator. The returned iterator covers the first half of the remaining
+	 * combinations and this iterator is left with the second half.
+	 *
+	 * @return an iterator over the first half of the remaining combinations,
+	 *         or null if fewer than two combinations remain
+	 */
+
+	public CombinationIterator trySplit() {
+		if (remaining < 2L) return null;
+		final long count = remaining >>> 1;
+		final BigInteger first = origin.add(BigInteger.valueOf(returned));
+		final CombinationIterator prefix = new CombinationIterator(combinator, first, count);
+		origin = first.add(BigInteger.valueOf(count));
+		returned = 0L;
+		remaining -= count;
+		primed = false;
+		return prefix;
+	}
+
+	// advances to the next combination in index order
+	private void successor() {
+		final int[] c = combination;
+		int i = k - 1;
+		while (c[i] == n - k + i) i--;
+		int e = ++c[i];
+		while (++i < k) c[i] = ++e;
+	}
+
+}
@@ -119,4 +119,76 @@ public interface Combinator {
 	
 	int[] getRandomCombination(Random random) throws IllegalArgumentException;
 	
+	/**
+	 * The index of the specified combination. This is the inverse of
+	 * {@link #getCombination(BigInteger, int[])}.
+	 * 
+	 * @param combination
+	 *            an array whose first {@link #getTupleLength()} elements are
+	 *            strictly increasing and less than the element count
+	 * @return the index of the combination
+	 * @throws IllegalArgumentException
+	 *             if the array is null or does not contain a valid
+	 *             combination
+	 */
+	
+	BigInteger getIndex(int[] combination) throws IllegalArgumentException;
+	
+	/**
+	 * The index of the specified combination as a long. This method is
+	 * equivalent to calling {@link #getIndex(int[])} but may yield better
+	 * performance.
+	 * 
+	 * @param combination
+	 *            an array containing a valid combination
+	 * @return the index of the combination
+	 * @throws IllegalArgumentException
+	 *             if the array does not contain a valid combination, or if its
+	 *             index cannot be represented by a long
+	 */
+	
+	long getIndexAsLong(int[] combination) throws IllegalArgumentException;
+	
+	/**
+	 * Convenience method, returns an iterator over all combinations, starting
+	 * at index zero.
+	 */
+	
+	CombinationIterator iterator();
+	
+	/**
+	 * An iterator over the combinations with indices from (inclusive) and to
+	 * (exclusive).
+	 * 
+	 * @param from
+	 *            the index of the first combination
+	 * @param to
+	 *            the index following the last combination
+	 * @return an iterator over the combinations in index order
+	 * @throws IndexOutOfBoundsException
+	 *             if the range is not contained within the combinations
+	 * @throws IllegalArgumentException
+	 *             if from exceeds to
+	 */
+	
+	CombinationIterator iterator(long from, long to) throws IndexOutOfBoundsException, IllegalArgumentException;
+	
+	/**
+	 * An iterator over the combinations with indices from (inclusive) and to
+	 * (exclusive).
+	 * 
+	 * @param from
+	 *            the index of the first combination
+	 * @param to
+	 *            the index following the last combination
+	 * @return an iterator over the combinations in index order
+	 * @throws IndexOutOfBoundsException
+	 *             if the range is not contained within the combinations
+	 * @throws IllegalArgumentException
+	 *             if from exceeds to, or if the range contains more than
+	 *             {@link Long#MAX_VALUE} combinations
+	 */
+	
+	CombinationIterator iterator(BigInteger from, BigInteger to) throws IndexOutOfBoundsException, IllegalArgumentException;
+	
 }
@@ -19,11 +19,41 @@ package com.tomgibara.crinch.math;
 import static java.math.BigInteger.valueOf;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class Combinators {
 
 	private static final BigInteger MAX_LONG_VALUE = BigInteger.valueOf(Long.MAX_VALUE);
 	
+	// the number of partitions enumerated by each thread, allows for imbalance
+	private static final int PARTITIONS_PER_THREAD = 4;
+	
+	/**
+	 * Receives combinations during an enumeration.
+	 * 
+	 * @see Combinators#enumerate(Combinator, int, Visitor)
+	 */
+	
+	public interface Visitor {
+		
+		/**
+		 * Called with each combination. When combinations are enumerated
+		 * concurrently, this method may be called by multiple threads.
+		 * 
+		 * @param combination
+		 *            the combination, which must not be modified or retained
+		 */
+		
+		void visit(int[] combination);
+		
+	}
+	
 	/**
 	 * Create a new combinator that returns combinations of k items selected
 	 * from n elements, without regard to order. The upfront costs of creating a
@@ -143,6 +173,82 @@ public class Combinators {
 	
 
 	
+	/**
+	 * Supplies every combination of a combinator to a visitor, dividing the
+	 * work across a number of threads. The combinations are partitioned into
+	 * contiguous ranges, each of which is enumerated using a
+	 * {@link CombinationIterator}. The order in which combinations are visited
+	 * is only defined when a single thread is used.
+	 * 
+	 * @param combinator
+	 *            the combinator to enumerate
+	 * @param parallelism
+	 *            the number of threads over which the enumeration is divided
+	 * @param visitor
+	 *            receives each combination
+	 * @throws IllegalArgumentException
+	 *             if the combinator or visitor is null, or if the parallelism
+	 *             is not positive
+	 */
+	
+	public static void enumerate(Combinator combinator, int parallelism, final Visitor visitor) {
+		if (combinator == null) throw new IllegalArgumentException("null combinator");
+		if (parallelism < 1) throw new IllegalArgumentException("non-positive parallelism");
+		if (visitor == null) throw new IllegalArgumentException("null visitor");
+		final CombinationIterator iterator = combinator.iterator();
+		if (parallelism == 1) {
+			visit(iterator, visitor);
+			return;
+		}
+		
+		final List<CombinationIterator> partitions = new ArrayList<CombinationIterator>();
+		partitions.add(iterator);
+		final int limit = parallelism * PARTITIONS_PER_THREAD;
+		for (boolean split = true; split && partitions.size() < limit; ) {
+			split = false;
+			for (int i = partitions.size() - 1; i >= 0 && partitions.size() < limit; i--) {
+				final CombinationIterator prefix = partitions.get(i).trySplit();
+				if (prefix != null) {
+					partitions.add(prefix);
+					split = true;
+				}
+			}
+		}
+		
+		final List<Callable<Void>> callables = new ArrayList<Callable<Void>>(partitions.size());
+		for (final CombinationIterator partition : partitions) {
+			callables.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					visit(partition, visitor);
+					return null;
+				}
+			});
+		}
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, partitions.size()));
+		try {
+			for (Future<Void> future : executor.invokeAll(callables)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while enumerating combinations", e);
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new IllegalStateException(cause);
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	private static void visit(CombinationIterator iterator, Visitor visitor) {
+		while (iterator.hasNext()) {
+			visitor.visit(iterator.next());
+		}
+	}
+	
 	private Combinators() {}
 	
 }
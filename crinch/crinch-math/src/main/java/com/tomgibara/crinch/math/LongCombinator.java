@@ -81,6 +81,23 @@ class LongCombinator extends AbstractCombinator implements PackedCombinator {
 		return getCombinationImpl(m.longValue(), as);
 	}
 	
+	@Override
+	public BigInteger getIndex(int[] as) throws IllegalArgumentException {
+		return BigInteger.valueOf(getIndexAsLong(as));
+	}
+	
+	@Override
+	public long getIndexAsLong(int[] as) throws IllegalArgumentException {
+		checkCombination(as);
+		final long[][] cs = this.cs;
+		// inverts getCombinationImpl
+		long x = 0L;
+		for (int i = 0, b = k; i < k; i++, b--) {
+			x += cs[b][n - 1 - as[i]] /* choose(n - 1 - as[i], b) */;
+		}
+		return longSize - 1 - x;
+	}
+	
 	@Override
 	public int[] getCombination(long m, int[] as) {
 		if (m < 0) throw new IndexOutOfBoundsException();
@@ -161,6 +161,76 @@ public class CombinatorTest extends TestCase {
 		assertTrue(var < v * 1.1f);
 	}
 	
+	public void testGetIndex() {
+		testGetIndex(new LongCombinator(5, 3));
+		testGetIndex(new LongCombinator(1, 1));
+		testGetIndex(new BigIntCombinator(20, 10));
+		Combinator big = new BigIntCombinator(100, 50);
+		Random r = new Random(0L);
+		for (int i = 0; i < 100; i++) {
+			BigInteger index = new BigInteger(90, r).mod(big.size());
+			assertEquals(index, big.getIndex(big.getCombination(index)));
+		}
+		try {
+			new LongCombinator(5, 3).getIndex(new int[] {0, 2, 2});
+			fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+		try {
+			new LongCombinator(5, 3).getIndex(new int[] {0, 2, 5});
+			fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+	}
+	
+	private void testGetIndex(Combinator c) {
+		long size = c.size().longValue();
+		for (long i = 0; i < size; i++) {
+			int[] arr = c.getCombination(i);
+			assertEquals(i, c.getIndexAsLong(arr));
+			assertEquals(BigInteger.valueOf(i), c.getIndex(arr));
+		}
+	}
+	
+	public void testIterator() {
+		testIterator(new LongCombinator(5, 3));
+		testIterator(new LongCombinator(1, 1));
+		testIterator(new LongCombinator(12, 6));
+		testIterator(new BigIntCombinator(12, 6));
+	}
+	
+	private void testIterator(Combinator c) {
+		long size = c.size().longValue();
+		CombinationIterator it = c.iterator();
+		for (long i = 0; i < size; i++) {
+			assertTrue(it.hasNext());
+			assertTrue(Arrays.equals(c.getCombination(i), it.next()));
+		}
+		assertFalse(it.hasNext());
+		it = c.iterator(size / 3, size / 2);
+		for (long i = size / 3; i < size / 2; i++) {
+			assertTrue(Arrays.equals(c.getCombination(i), it.next()));
+		}
+		assertFalse(it.hasNext());
+	}
+	
+	public void testTrySplit() {
+		Combinator c = new LongCombinator(10, 4);
+		long size = c.size().longValue();
+		CombinationIterator it = c.iterator();
+		it.next();
+		it.next();
+		CombinationIterator prefix = it.trySplit();
+		assertEquals(size - 2, prefix.getRemaining() + it.getRemaining());
+		long index = 2;
+		while (prefix.hasNext()) assertTrue(Arrays.equals(c.getCombination(index++), prefix.next()));
+		while (it.hasNext()) assertTrue(Arrays.equals(c.getCombination(index++), it.next()));
+		assertEquals(size, index);
+		assertNull(c.iterator(3, 4).trySplit());
+	}
+	
 	private static final class IntArray {
 		
 		private final int[] ints;
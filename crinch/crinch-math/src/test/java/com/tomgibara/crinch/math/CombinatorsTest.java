@@ -18,6 +18,9 @@ package com.tomgibara.crinch.math;
 
 import static com.tomgibara.crinch.math.Combinators.chooseAsLong;
 import static java.math.BigInteger.valueOf;
+
+import java.util.concurrent.atomic.AtomicLong;
+
 import junit.framework.TestCase;
 
 public class CombinatorsTest extends TestCase {
@@ -82,4 +85,22 @@ public class CombinatorsTest extends TestCase {
 		}
 	}
 
+	public void testEnumerate() {
+		final Combinator c = Combinators.newCombinator(16, 7);
+		for (int parallelism = 1; parallelism <= 4; parallelism++) {
+			final AtomicLong count = new AtomicLong();
+			final AtomicLong sum = new AtomicLong();
+			Combinators.enumerate(c, parallelism, new Combinators.Visitor() {
+				@Override
+				public void visit(int[] combination) {
+					count.incrementAndGet();
+					sum.addAndGet(c.getIndexAsLong(combination));
+				}
+			});
+			long size = c.size().longValue();
+			assertEquals(size, count.get());
+			assertEquals(size * (size - 1) / 2, sum.get());
+		}
+	}
+
 }
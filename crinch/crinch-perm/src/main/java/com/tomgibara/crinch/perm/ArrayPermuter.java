@@ -0,0 +1,533 @@
+/*
+ * Copyright 2012 Tom Gibara
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package com.tomgibara.crinch.perm;
+
+import com.tomgibara.crinch.perm.permutable.PermutableBooleans;
+import com.tomgibara.crinch.perm.permutable.PermutableBytes;
+import com.tomgibara.crinch.perm.permutable.PermutableChars;
+import com.tomgibara.crinch.perm.permutable.PermutableDoubles;
+import com.tomgibara.crinch.perm.permutable.PermutableFloats;
+import com.tomgibara.crinch.perm.permutable.PermutableInts;
+import com.tomgibara.crinch.perm.permutable.PermutableLongs;
+import com.tomgibara.crinch.perm.permutable.PermutableObjects;
+import com.tomgibara.crinch.perm.permutable.PermutableShorts;
+
+// applies permutations directly to the arrays underlying permutables
+abstract class ArrayPermuter {
+
+	// statics
+
+	// returns null if the permutable is not backed by an array, subclasses are
+	// excluded since they may override transpose
+	static ArrayPermuter of(Permutable permutable) {
+		if (permutable instanceof Permutation.Generator) return new IntPermuter(((Permutation.Generator) permutable).correspondence);
+		if (permutable.getClass() == PermutableBooleans.class) return new BooleanPermuter(((PermutableBooleans) permutable).getValues());
+		if (permutable.getClass() == PermutableBytes.class) return new BytePermuter(((PermutableBytes) permutable).getValues());
+		if (permutable.getClass() == PermutableChars.class) return new CharPermuter(((PermutableChars) permutable).getValues());
+		if (permutable.getClass() == PermutableShorts.class) return new ShortPermuter(((PermutableShorts) permutable).getValues());
+		if (permutable.getClass() == PermutableInts.class) return new IntPermuter(((PermutableInts) permutable).getValues());
+		if (permutable.getClass() == PermutableFloats.class) return new FloatPermuter(((PermutableFloats) permutable).getValues());
+		if (permutable.getClass() == PermutableLongs.class) return new LongPermuter(((PermutableLongs) permutable).getValues());
+		if (permutable.getClass() == PermutableDoubles.class) return new DoublePermuter(((PermutableDoubles) permutable).getValues());
+		if (permutable.getClass() == PermutableObjects.class) return new ObjectPermuter(((PermutableObjects) permutable).getValues());
+		return null;
+	}
+
+	// fields
+
+	final int length;
+
+	// constructors
+
+	ArrayPermuter(int length) {
+		this.length = length;
+	}
+
+	// methods
+
+	// whether a copy of the array can comfortably be accommodated in memory
+	boolean isCopyAvailable() {
+		final Runtime runtime = Runtime.getRuntime();
+		final long available = runtime.maxMemory() - runtime.totalMemory() + runtime.freeMemory();
+		return (long) length * elementSize() <= available / 2;
+	}
+
+	// the approximate number of bytes occupied by each element
+	abstract int elementSize();
+
+	// a copy of the array
+	abstract Object copy();
+
+	// sets values[i] to copy[correspondence[i]] for i in [from, to)
+	abstract void gather(Object copy, int[] correspondence, int from, int to);
+
+	// rotates the values along the cycles in [from, to) which must begin at a cycle boundary
+	abstract void cycle(int[] cycles, int from, int to);
+
+	// implementations
+
+	private static final class BooleanPermuter extends ArrayPermuter {
+
+		private final boolean[] values;
+
+		BooleanPermuter(boolean[] values) {
+			super(values.length);
+			this.values = values;
+		}
+
+		@Override
+		int elementSize() {
+			return 1;
+		}
+
+		@Override
+		Object copy() {
+			return values.clone();
+		}
+
+		@Override
+		void gather(Object copy, int[] correspondence, int from, int to) {
+			final boolean[] values = this.values;
+			final boolean[] source = (boolean[]) copy;
+			for (int i = from; i < to; i++) {
+				values[i] = source[correspondence[i]];
+			}
+		}
+
+		@Override
+		void cycle(int[] cycles, int from, int to) {
+			final boolean[] values = this.values;
+			for (int i = from; i < to; ) {
+				int previous = cycles[i++];
+				final boolean first = values[previous];
+				while (true) {
+					int next = cycles[i++];
+					if (next < 0) {
+						next = -1 - next;
+						values[previous] = values[next];
+						values[next] = first;
+						break;
+					}
+					values[previous] = values[next];
+					previous = next;
+				}
+			}
+		}
+
+	}
+
+	private static final class BytePermuter extends ArrayPermuter {
+
+		private final byte[] values;
+
+		BytePermuter(byte[] values) {
+			super(values.length);
+			this.values = values;
+		}
+
+		@Override
+		int elementSize() {
+			return 1;
+		}
+
+		@Override
+		Object copy() {
+			return values.clone();
+		}
+
+		@Override
+		void gather(Object copy, int[] correspondence, int from, int to) {
+			final byte[] values = this.values;
+			final byte[] source = (byte[]) copy;
+			for (int i = from; i < to; i++) {
+				values[i] = source[correspondence[i]];
+			}
+		}
+
+		@Override
+		void cycle(int[] cycles, int from, int to) {
+			final byte[] values = this.values;
+			for (int i = from; i < to; ) {
+				int previous = cycles[i++];
+				final byte first = values[previous];
+				while (true) {
+					int next = cycles[i++];
+					if (next < 0) {
+						next = -1 - next;
+						values[previous] = values[next];
+						values[next] = first;
+						break;
+					}
+					values[previous] = values[next];
+					previous = next;
+				}
+			}
+		}
+
+	}
+
+	private static final class CharPermuter extends ArrayPermuter {
+
+		private final char[] values;
+
+		CharPermuter(char[] values) {
+			super(values.length);
+			this.values = values;
+		}
+
+		@Override
+		int elementSize() {
+			return 2;
+		}
+
+		@Override
+		Object copy() {
+			return values.clone();
+		}
+
+		@Override
+		void gather(Object copy, int[] correspondence, int from, int to) {
+			final char[] values = this.values;
+			final char[] source = (char[]) copy;
+			for (int i = from; i < to; i++) {
+				values[i] = source[correspondence[i]];
+			}
+		}
+
+		@Override
+		void cycle(int[] cycles, int from, int to) {
+			final char[] values = this.values;
+			for (int i = from; i < to; ) {
+				int previous = cycles[i++];
+				final char first = values[previous];
+				while (true) {
+					int next = cycles[i++];
+					if (next < 0) {
+						next = -1 - next;
+						values[previous] = values[next];
+						values[next] = first;
+						break;
+					}
+					values[previous] = values[next];
+					previous = next;
+				}
+			}
+		}
+
+	}
+
+	private static final class ShortPermuter extends ArrayPermuter {
+
+		private final short[] values;
+
+		ShortPermuter(short[] values) {
+			super(values.length);
+			this.values = values;
+		}
+
+		@Override
+		int elementSize() {
+			return 2;
+		}
+
+		@Override
+		Object copy() {
+			return values.clone();
+		}
+
+		@Override
+		void gather(Object copy, int[] correspondence, int from, int to) {
+			final short[] values = this.values;
+			final short[] source = (short[]) copy;
+			for (int i = from; i < to; i++) {
+				values[i] = source[correspondence[i]];
+			}
+		}
+
+		@Override
+		void cycle(int[] cycles, int from, int to) {
+			final short[] values = this.values;
+			for (int i = from; i < to; ) {
+				int previous = cycles[i++];
+				final short first = values[previous];
+				while (true) {
+					int next = cycles[i++];
+					if (next < 0) {
+						next = -1 - next;
+						values[previous] = values[next];
+						values[next] = first;
+						break;
+					}
+					values[previous] = values[next];
+					previous = next;
+				}
+			}
+		}
+
+	}
+
+	private static final class IntPermuter extends ArrayPermuter {
+
+		private final int[] values;
+
+		IntPermuter(int[] values) {
+			super(values.length);
+			this.values = values;
+		}
+
+		@Override
+		int elementSize() {
+			return 4;
+		}
+
+		@Override
+		Object copy() {
+			return values.clone();
+		}
+
+		@Override
+		void gather(Object copy, int[] correspondence, int from, int to) {
+			final int[] values = this.values;
+			final int[] source = (int[]) copy;
+			for (int i = from; i < to; i++) {
+				values[i] = source[correspondence[i]];
+			}
+		}
+
+		@Override
+		void cycle(int[] cycles, int from, int to) {
+			final int[] values = this.values;
+			for (int i = from; i < to; ) {
+				int previous = cycles[i++];
+				final int first = values[previous];
+				while (true) {
+					int next = cycles[i++];
+					if (next < 0) {
+						next = -1 - next;
+						values[previous] = values[next];
+						values[next] = first;
+						break;
+					}
+					values[previous] = values[next];
+					previous = next;
+				}
+			}
+		}
+
+	}
+
+	private static final class FloatPermuter extends ArrayPermuter {
+
+		private final float[] values;
+
+		FloatPermuter(float[] values) {
+			super(values.length);
+			this.values = values;
+		}
+
+		@Override
+		int elementSize() {
+			return 4;
+		}
+
+		@Override
+		Object copy() {
+			return values.clone();
+		}
+
+		@Override
+		void gather(Object copy, int[] correspondence, int from, int to) {
+			final float[] values = this.values;
+			final float[] source = (float[]) copy;
+			for (int i = from; i < to; i++) {
+				values[i] = source[correspondence[i]];
+			}
+		}
+
+		@Override
+		void cycle(int[] cycles, int from, int to) {
+			final float[] values = this.values;
+			for (int i = from; i < to; ) {
+				int previous = cycles[i++];
+				final float first = values[previous];
+				while (true) {
+					int next = cycles[i++];
+					if (next < 0) {
+						next = -1 - next;
+						values[previous] = values[next];
+						values[next] = first;
+						break;
+					}
+					values[previous] = values[next];
+					previous = next;
+				}
+			}
+		}
+
+	}
+
+	private static final class LongPermuter extends ArrayPermuter {
+
+		private final long[] values;
+
+		LongPermuter(long[] values) {
+			super(values.length);
+			this.values = values;
+		}
+
+		@Override
+		int elementSize() {
+			return 8;
+		}
+
+		@Override
+		Object copy() {
+			return values.clone();
+		}
+
+		@Override
+		void gather(Object copy, int[] correspondence, int from, int to) {
+			final long[] values = this.values;
+			final long[] source = (long[]) copy;
+			for (int i = from; i < to; i++) {
+				values[i] = source[correspondence[i]];
+			}
+		}
+
+		@Override
+		void cycle(int[] cycles, int from, int to) {
+			final long[] values = this.values;
+			for (int i = from; i < to; ) {
+				int previous = cycles[i++];
+				final long first = values[previous];
+				while (true) {
+					int next = cycles[i++];
+					if (next < 0) {
+						next = -1 - next;
+						values[previous] = values[next];
+						values[next] = first;
+						break;
+					}
+					values[previous] = values[next];
+					previous = next;
+				}
+			}
+		}
+
+	}
+
+	private static final class DoublePermuter extends ArrayPermuter {
+
+		private final double[] values;
+
+		DoublePermuter(double[] values) {
+			super(values.length);
+			this.values = values;
+		}
+
+		@Override
+		int elementSize() {
+			return 8;
+		}
+
+		@Override
+		Object copy() {
+			return values.clone();
+		}
+
+		@Override
+		void gather(Object copy, int[] correspondence, int from, int to) {
+			final double[] values = this.values;
+			final double[] source = (double[]) copy;
+			for (int i = from; i < to; i++) {
+				values[i] = source[correspondence[i]];
+			}
+		}
+
+		@Override
+		void cycle(int[] cycles, int from, int to) {
+			final double[] values = this.values;
+			for (int i = from; i < to; ) {
+				int previous = cycles[i++];
+				final double first = values[previous];
+				while (true) {
+					int next = cycles[i++];
+					if (next < 0) {
+						next = -1 - next;
+						values[previous] = values[next];
+						values[next] = first;
+						break;
+					}
+					values[previous] = values[next];
+					previous = next;
+				}
+			}
+		}
+
+	}
+
+	private static final class ObjectPermuter extends ArrayPermuter {
+
+		private final Object[] values;
+
+		ObjectPermuter(Object[] values) {
+			super(values.length);
+			this.values = values;
+		}
+
+		@Override
+		int elementSize() {
+			return 8;
+		}
+
+		@Override
+		Object copy() {
+			return values.clone();
+		}
+
+		@Override
+		void gather(Object copy, int[] correspondence, int from, int to) {
+			final Object[] values = this.values;
+			final Object[] source = (Object[]) copy;
+			for (int i = from; i < to; i++) {
+				values[i] = source[correspondence[i]];
+			}
+		}
+
+		@Override
+		void cycle(int[] cycles, int from, int to) {
+			final Object[] values = this.values;
+			for (int i = from; i < to; ) {
+				int previous = cycles[i++];
+				final Object first = values[previous];
+				while (true) {
+					int next = cycles[i++];
+					if (next < 0) {
+						next = -1 - next;
+						values[previous] = values[next];
+						values[next] = first;
+						break;
+					}
+					values[previous] = values[next];
+					previous = next;
+				}
+			}
+		}
+
+	}
+
+}
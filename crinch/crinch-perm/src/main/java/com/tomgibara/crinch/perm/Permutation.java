@@ -19,11 +19,17 @@ package com.tomgibara.crinch.perm;
 import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import com.tomgibara.crinch.bits.BitVector;
 import com.tomgibara.crinch.math.CrinchMath;
@@ -36,6 +42,12 @@ public final class Permutation implements Comparable<Permutation>, Serializable
 	
 	private static final int[] NO_CYCLES = {};
 	
+	// below this size, permutations are not divided into concurrent tasks
+	private static final int PARALLEL_THRESHOLD = 1 << 16;
+	
+	// allows for some imbalance between tasks
+	private static final int PARTITIONS_PER_PROCESSOR = 4;
+	
 	public static Permutation identity(int size) {
 		if (size < 0) throw new IllegalArgumentException("negative size");
 		int[] correspondence = new int[size];
@@ -73,13 +85,8 @@ public final class Permutation implements Comparable<Permutation>, Serializable
 			correspondence[i] = (i + distance) % size;
 		}
 
-		int[] cycles = new int[size];
-		for (int i = 0, j = i, c = correspondence[j]; c != 0; i++, j = c, c = correspondence[j]) {
-			cycles[i] = c;
-		}
-		cycles[size - 1] = -1 - cycles[size - 1];
-
-		return new Permutation(correspondence, cycles);
+		// cycles computed lazily: the rotation may comprise several cycles
+		return new Permutation(correspondence, null);
 	}
 	
 	public static Permutation transpose(int size, int i, int j) {
@@ -145,6 +152,18 @@ public final class Permutation implements Comparable<Permutation>, Serializable
 		if (permutable == null) throw new IllegalArgumentException("null permutable");
 		if (permutable.getPermutableSize() != correspondence.length) throw new IllegalArgumentException("size mismatched");
 
+		ArrayPermuter permuter = ArrayPermuter.of(permutable);
+		if (permuter != null) {
+			if (permuter.isCopyAvailable()) {
+				permuter.gather(permuter.copy(), correspondence, 0, correspondence.length);
+			} else {
+				int[] cycles = getCycles();
+				permuter.cycle(cycles, 0, cycles.length);
+			}
+			permuted(permutable);
+			return permutable;
+		}
+
 		int[] cycles = getCycles();
 		for (int i = 0, initial = -1, previous = -1; i < cycles.length; i++) {
 			int next = cycles[i];
@@ -164,6 +183,90 @@ public final class Permutation implements Comparable<Permutation>, Serializable
 		return permutable;
 	}
 
+	/**
+	 * Applies the permutation using the supplied executor to divide the work.
+	 * Permutables which are backed by arrays (those in the
+	 * {@code permutable} package) are permuted concurrently, either by
+	 * gathering from a copy of the array in parallel ranges or, where memory
+	 * does not allow a copy, by rotating disjoint cycles in parallel. Other
+	 * permutables are permuted on the calling thread.
+	 * 
+	 * @param permutable
+	 *            the permutable to which the permutation is applied
+	 * @param executor
+	 *            runs the tasks into which the work is divided
+	 * @return the supplied permutable
+	 */
+
+	public <P extends Permutable> P permute(P permutable, ExecutorService executor) {
+		return permute(permutable, executor, null);
+	}
+
+	// copying is null if the strategy should be chosen according to the memory available
+	<P extends Permutable> P permute(P permutable, ExecutorService executor, Boolean copying) {
+		if (executor == null) throw new IllegalArgumentException("null executor");
+		if (permutable == null) throw new IllegalArgumentException("null permutable");
+		if (permutable.getPermutableSize() != correspondence.length) throw new IllegalArgumentException("size mismatched");
+
+		final ArrayPermuter permuter = ArrayPermuter.of(permutable);
+		final int length = correspondence.length;
+		if (permuter == null || length < PARALLEL_THRESHOLD) return permute(permutable);
+
+		final int count = Runtime.getRuntime().availableProcessors() * PARTITIONS_PER_PROCESSOR;
+		final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(count);
+		if (copying == null ? permuter.isCopyAvailable() : copying) {
+			final Object copy = permuter.copy();
+			for (int i = 0; i < count; i++) {
+				final int from = (int) ((long) length * i / count);
+				final int to = (int) ((long) length * (i + 1) / count);
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() {
+						permuter.gather(copy, correspondence, from, to);
+						return null;
+					}
+				});
+			}
+		} else {
+			final int[] cycles = getCycles();
+			for (int i = 0, from = 0; i < count && from < cycles.length; i++) {
+				// extend each range to the end of a cycle
+				int to = Math.max(from, (int) ((long) cycles.length * (i + 1) / count) - 1);
+				while (cycles[to] >= 0) to++;
+				final int start = from;
+				final int finish = to + 1;
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() {
+						permuter.cycle(cycles, start, finish);
+						return null;
+					}
+				});
+				from = finish;
+			}
+		}
+		try {
+			for (Future<Void> future : executor.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while permuting", e);
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error) throw (Error) cause;
+			throw new IllegalStateException(cause);
+		}
+		permuted(permutable);
+		return permutable;
+	}
+
+	// generators must learn of changes made directly to their correspondence
+	private static void permuted(Permutable permutable) {
+		if (permutable instanceof Generator) ((Generator) permutable).desync();
+	}
+
 	// comparable methods
 	
 	public int compareTo(Permutation that) {
@@ -216,6 +319,15 @@ public final class Permutation implements Comparable<Permutation>, Serializable
 	
 	// private utility methods
 	
+	private static long gcd(long a, long b) {
+		while (b != 0L) {
+			long t = a % b;
+			a = b;
+			b = t;
+		}
+		return a;
+	}
+	
 	private int[] getCycles() {
 		if (cycles == null) {
 			cycles = computeCycles(false);
@@ -243,10 +355,6 @@ public final class Permutation implements Comparable<Permutation>, Serializable
 					array[i] = -1;
 					continue;
 				}
-				int[] correspondence = new int[array.length];
-				for (int k = 0; k < array.length; k++) {
-					correspondence[k] = k;
-				}
 				for (int j = i;;) {
 					int b = array[j];
 					if (verify && b == -1) throw new IllegalArgumentException("invalid correspondence");
@@ -381,19 +489,33 @@ public final class Permutation implements Comparable<Permutation>, Serializable
 				if (numberOfCycles == 0) {
 					lengthOfOrbit = BigInteger.ONE;
 				} else {
-					BigInteger[] lengths = new BigInteger[numberOfCycles];
+					// only distinct cycle lengths contribute, of which there are few
+					BitVector lengths = new BitVector(correspondence.length + 1);
 					int[] cycles = getCycles();
-					int count = 0;
 					int length = 0;
 					for (int i = 0; i < cycles.length; i++) {
 						if (cycles[i] < 0) {
-							lengths[count++] = BigInteger.valueOf(length + 1);
+							lengths.setBit(length + 1, true);
 							length = 0;
 						} else {
 							length++;
 						}
 					}
-					lengthOfOrbit = CrinchMath.lcm(lengths);
+					// accumulate with longs until they might overflow
+					long lcm = 1L;
+					BigInteger big = null;
+					for (int i = lengths.firstOne(); i < lengths.size(); i = lengths.nextOne(i + 1)) {
+						if (big == null) {
+							long factor = i / gcd(lcm, i);
+							if (lcm <= Long.MAX_VALUE / factor) {
+								lcm *= factor;
+								continue;
+							}
+							big = BigInteger.valueOf(lcm);
+						}
+						big = CrinchMath.lcm(big, BigInteger.valueOf(i));
+					}
+					lengthOfOrbit = big == null ? BigInteger.valueOf(lcm) : big;
 				}
 			}
 			return lengthOfOrbit;
@@ -529,24 +651,39 @@ public final class Permutation implements Comparable<Permutation>, Serializable
 			return this;
 		}
 		
+		// equivalent to: permutation.permute(generator, executor);
+		public Generator apply(Permutation permutation, ExecutorService executor) {
+			permutation.permute(this, executor);
+			desync();
+			return this;
+		}
+		
+		// raises each cycle to the power independently, in linear time
 		public Generator power(int power) {
 			if (power == 0) return identity();
+			if (power == 1) return this;
 
-			if (power < 0) {
-				invert();
-				power = -power;
-			}
-			
-			if (power > 1) {
-				//TODO could be made more efficient
-				Permutation p = permutation();
-				identity();
-				while (power > 0) {
-					if ((power & 1) == 1) p.permute(this);
-					p = p.generator().apply(p).permutation();
-					power >>= 1;
+			int length = correspondence.length;
+			// result elements are -1 until their cycle has been visited
+			int[] result = new int[length];
+			Arrays.fill(result, -1);
+			int[] cycle = new int[length];
+			for (int i = 0; i < length; i++) {
+				if (result[i] != -1) continue;
+				int size = 0;
+				int j = i;
+				do {
+					cycle[size++] = j;
+					j = correspondence[j];
+				} while (j != i);
+				int shift = power % size;
+				if (shift < 0) shift += size;
+				for (int k = 0, m = shift; k < size; k++) {
+					result[cycle[k]] = cycle[m];
+					if (++m == size) m = 0;
 				}
 			}
+			System.arraycopy(result, 0, correspondence, 0, length);
 			desync();
 			return this;
 		}
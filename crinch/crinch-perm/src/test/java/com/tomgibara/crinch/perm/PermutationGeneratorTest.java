@@ -17,6 +17,8 @@
 package com.tomgibara.crinch.perm;
 
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class PermutationGeneratorTest extends PermutationTestCase {
 
@@ -63,6 +65,33 @@ public class PermutationGeneratorTest extends PermutationTestCase {
 			Permutation p = Permutation.rotate(10, 1);
 			assertEquals(Permutation.rotate(10, i), p.generator().power(i).permutation());
 		}
+		Random random = new Random(0L);
+		for (int n = 0; n < 1000; n++) {
+			int size = random.nextInt(20);
+			Permutation p = Permutation.identity(size).generator().shuffle(random).permutation();
+			int power = random.nextInt(41) - 20;
+			// compare against repeated application
+			Permutation.Generator g = Permutation.identity(size).generator();
+			Permutation q = power < 0 ? p.generator().invert().permutation() : p;
+			for (int i = Math.abs(power); i > 0; i--) g.apply(q);
+			assertEquals(g.permutation(), p.generator().power(power).permutation());
+		}
+		Permutation p = Permutation.identity(50).generator().shuffle(random).permutation();
+		int orbit = p.getInfo().getLengthOfOrbit().intValue();
+		assertTrue(p.generator().power(orbit).permutation().getInfo().isIdentity());
+		assertEquals(p, p.generator().power(Integer.MAX_VALUE - Integer.MAX_VALUE % orbit + 1).permutation());
+	}
+	
+	public void testApplyParallel() {
+		Random random = new Random(0L);
+		Permutation p = Permutation.identity(1 << 17).generator().shuffle(random).permutation();
+		Permutation q = Permutation.identity(1 << 17).generator().shuffle(random).permutation();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			assertEquals(p.generator().apply(q).permutation(), p.generator().apply(q, executor).permutation());
+		} finally {
+			executor.shutdown();
+		}
 	}
 	
 	public void testCycle() {
@@ -16,6 +16,7 @@
  */
 package com.tomgibara.crinch.perm;
 
+import java.math.BigInteger;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
@@ -93,6 +94,20 @@ public class PermutationInfoTest extends PermutationTestCase {
 			}
 			assertEquals(identity, p);
 		}
+		
+		// cycles of prime length whose product exceeds a long
+		int[] primes = {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43, 47, 53};
+		int size = 0;
+		for (int prime : primes) size += prime;
+		Permutation.Generator g = Permutation.identity(size).generator();
+		BigInteger expected = BigInteger.ONE;
+		for (int i = 0, start = 0; i < primes.length; start += primes[i++]) {
+			int[] cycle = new int[primes[i]];
+			for (int j = 0; j < cycle.length; j++) cycle[j] = start + j;
+			g.cycle(cycle);
+			expected = expected.multiply(BigInteger.valueOf(primes[i]));
+		}
+		assertEquals(expected, g.permutation().getInfo().getLengthOfOrbit());
 	}
 	
 }
@@ -20,9 +20,16 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.tomgibara.crinch.perm.permutable.PermutableInts;
+import com.tomgibara.crinch.perm.permutable.PermutableLongs;
 
 public class PermutationTest extends PermutationTestCase {
 
@@ -78,7 +85,9 @@ public class PermutationTest extends PermutationTestCase {
 						assertEquals(0, r.getInfo().getDisjointCycles().size());
 						assertTrue(r.getInfo().getFixedPoints().isAllOnes());
 					} else {
-						assertEquals(1, r.getInfo().getDisjointCycles().size());
+						// a rotation comprises gcd(size, dist) cycles
+						int cycles = BigInteger.valueOf(size).gcd(BigInteger.valueOf(dist)).intValue();
+						assertEquals(cycles, r.getInfo().getDisjointCycles().size());
 						assertTrue(r.getInfo().getFixedPoints().isAllZeros());
 					}
 				} else {
@@ -143,6 +152,100 @@ public class PermutationTest extends PermutationTestCase {
 		
 	}
 	
+	public void testPermuteArrays() {
+		Random random = new Random(0L);
+		for (int i = 0; i < 100; i++) {
+			int size = random.nextInt(200);
+			Permutation p = Permutation.identity(size).generator().shuffle(random).permutation();
+			List<Integer> list = new ArrayList<Integer>();
+			for (int j = 0; j < size; j++) list.add(j);
+			p.permute(permutable(list));
+			int[] expected = new int[size];
+			for (int j = 0; j < size; j++) expected[j] = list.get(j);
+			
+			int[] ints = new int[size];
+			for (int j = 0; j < size; j++) ints[j] = j;
+			assertTrue(Arrays.equals(expected, p.permute(new PermutableInts(ints)).getValues()));
+			
+			// cycle-leader path used when memory is short
+			for (int j = 0; j < size; j++) ints[j] = j;
+			ArrayPermuter permuter = ArrayPermuter.of(new PermutableInts(ints));
+			int[] cycles = p.getCorrespondence().length == 0 ? new int[0] : cycles(p);
+			permuter.cycle(cycles, 0, cycles.length);
+			assertTrue(Arrays.equals(expected, ints));
+		}
+		// rotations comprising multiple cycles
+		assertEquals("CDAB", Permutation.rotate(4, 2).permute(new PermutableString("ABCD")).toString());
+		assertTrue(Arrays.equals(new int[] {4, 5, 0, 1, 2, 3}, Permutation.rotate(6, 2).permute(new PermutableInts(0, 1, 2, 3, 4, 5)).getValues()));
+	}
+	
+	public void testPermuteParallel() {
+		Random random = new Random(0L);
+		int size = 1 << 18;
+		Permutation p = Permutation.identity(size).generator().shuffle(random).permutation();
+		long[] longs = new long[size];
+		for (int i = 0; i < size; i++) longs[i] = i;
+		long[] expected = p.permute(new PermutableLongs(longs.clone())).getValues();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			assertTrue(Arrays.equals(expected, p.permute(new PermutableLongs(longs.clone()), executor).getValues()));
+			// the cycle rotating strategy used when memory is short
+			assertTrue(Arrays.equals(expected, p.permute(new PermutableLongs(longs.clone()), executor, false).getValues()));
+			assertTrue(Arrays.equals(expected, p.permute(new PermutableLongs(longs.clone()), executor, true).getValues()));
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	public void testPermuteGenerator() {
+		Random random = new Random(0L);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			for (int size : new int[] {8, 1 << 17}) {
+				Permutation p = Permutation.identity(size).generator().shuffle(random).permutation();
+				int[] swaps = new int[size];
+				for (int i = 0; i < size; i += 2) {
+					swaps[i] = i + 1;
+					swaps[i + 1] = i;
+				}
+				int[] expected = p.permute(new PermutableInts(swaps)).getValues();
+				for (int parallel = 0; parallel < 2; parallel++) {
+					Permutation.Generator generator = Permutation.identity(size).generator();
+					// the sequence's pending change must be abandoned when the generator is permuted
+					generator.getFixFreeInvolutionSequence().first().next();
+					if (parallel == 0) {
+						p.permute(generator);
+					} else {
+						p.permute(generator, executor);
+					}
+					assertTrue(Arrays.equals(expected, generator.permutation().getCorrespondence()));
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	// cycles in the form maintained by a permutation
+	private static int[] cycles(Permutation p) {
+		int[] corr = p.getCorrespondence();
+		int[] cycles = new int[corr.length];
+		boolean[] seen = new boolean[corr.length];
+		int index = 0;
+		for (int i = 0; i < corr.length; i++) {
+			if (seen[i] || corr[i] == i) continue;
+			for (int j = corr[i]; ; j = corr[j]) {
+				seen[j] = true;
+				if (j == i) {
+					cycles[index++] = -1 - j;
+					break;
+				}
+				cycles[index++] = j;
+			}
+		}
+		return Arrays.copyOf(cycles, index);
+	}
+	
 	public void testSerialization() throws Exception {
 		
 		Random random = new Random(0L);
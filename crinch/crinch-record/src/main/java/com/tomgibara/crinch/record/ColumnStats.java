@@ -17,6 +17,7 @@
 package com.tomgibara.crinch.record;
 
 import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.Arrays;
 
 import com.tomgibara.crinch.coding.CodedReader;
@@ -59,6 +60,24 @@ public class ColumnStats {
 		return sb.toString();
 	}
 	
+	// front codes a string against its predecessor in a sorted enumeration
+	private static int writeString(CodedWriter writer, String previous, String str) {
+		int prefix = 0;
+		if (previous != null) {
+			int limit = Math.min(previous.length(), str.length());
+			while (prefix < limit && previous.charAt(prefix) == str.charAt(prefix)) prefix++;
+		}
+		int c = writer.writePositiveInt(prefix);
+		c += writeString(writer, str.substring(prefix));
+		return c;
+	}
+	
+	private static String readString(CodedReader reader, String previous) {
+		int prefix = reader.readPositiveInt();
+		String suffix = readString(reader);
+		return prefix == 0 ? suffix : previous.substring(0, prefix) + suffix;
+	}
+	
 	//TODO not entirely correct: huffman implementation may vary and produce different codes
 	public static int write(CodedWriter writer, ColumnStats stats) {
 		int c = writer.writePositiveInt(stats.classification.ordinal());
@@ -77,13 +96,26 @@ public class ColumnStats {
 		int enumCount = enums == null ? 0 : enums.length;
 		c += writer.writePositiveInt(enumCount);
 		for (int i = 0; i < enumCount; i++) {
-			c += writeString(writer, enums[i]);
+			c += writeString(writer, i == 0 ? null : enums[i - 1], enums[i]);
 		}
 		c += writer.getWriter().writeBoolean(stats.unique);
+		// the sample is sorted, so its values are coded as differences, which may exceed a long
+		final long[] sample = stats.sample;
+		int sampleCount = sample == null ? 0 : sample.length;
+		c += writer.writePositiveInt(sampleCount);
+		for (int i = 0; i < sampleCount; i++) {
+			BigInteger value = BigInteger.valueOf(sample[i]);
+			c += i == 0 ? writer.writeBigInt(value) : writer.writePositiveBigInt(value.subtract(BigInteger.valueOf(sample[i - 1])));
+		}
 		return c;
 	}
 	
 	public static ColumnStats read(CodedReader reader) {
+		return read(reader, RecordStats.FORMAT_VERSION);
+	}
+	
+	// reads stats written in the specified version of the stats format
+	static ColumnStats read(CodedReader reader, int version) {
 		ColumnStats stats = new ColumnStats();
 		stats.setClassification(ColumnStats.Classification.values()[reader.readPositiveInt()]);
 		stats.setNullable(reader.getReader().readBoolean());
@@ -111,11 +143,28 @@ public class ColumnStats {
 		} else {
 			enums = new String[enumCount];
 			for (int i = 0; i < enumCount; i++) {
-				enums[i] = readString(reader);
+				enums[i] = version < 2 ? readString(reader) : readString(reader, i == 0 ? null : enums[i - 1]);
 			}
 		}
 		stats.setEnumeration(enums);
 		stats.setUnique(reader.getReader().readBoolean());
+		
+		if (version >= 3) {
+			int sampleCount = reader.readPositiveInt();
+			long[] sample;
+			if (sampleCount == 0) {
+				sample = null;
+			} else {
+				sample = new long[sampleCount];
+				BigInteger value = reader.readBigInt();
+				sample[0] = value.longValue();
+				for (int i = 1; i < sampleCount; i++) {
+					value = value.add(reader.readPositiveBigInt());
+					sample[i] = value.longValue();
+				}
+			}
+			stats.setSample(sample);
+		}
 		return stats;
 	}
 	
@@ -129,6 +178,7 @@ public class ColumnStats {
 	private long[] frequencies;
 	private String[] enumeration;
 	private boolean unique;
+	private long[] sample;
 
 	public void setClassification(Classification classification) {
 		this.classification = classification;
@@ -204,9 +254,19 @@ public class ColumnStats {
 		return unique;
 	}
 	
+	// a sorted sample of the column's values used to estimate coded sizes, null if none
+	public void setSample(long[] sample) {
+		if (sample != null && sample.length == 0) sample = null;
+		this.sample = sample;
+	}
+	
+	public long[] getSample() {
+		return sample;
+	}
+	
 	@Override
 	public String toString() {
-		return "classification: " + classification + ", nullable? " + nullable + ", minimum: " + minimum + ", maximum: " + maximum + " sum: " + sum + ", count: " + count + ", frequencies: " + Arrays.toString(frequencies) + ", enumeration: " + Arrays.toString(enumeration) + ", unique: " + unique;
+		return "classification: " + classification + ", nullable? " + nullable + ", minimum: " + minimum + ", maximum: " + maximum + " sum: " + sum + ", count: " + count + ", frequencies: " + Arrays.toString(frequencies) + ", enumeration: " + Arrays.toString(enumeration) + ", unique: " + unique + ", sample: " + Arrays.toString(sample);
 	}
 	
 }
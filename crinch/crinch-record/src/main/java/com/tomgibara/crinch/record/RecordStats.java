@@ -25,8 +25,19 @@ import com.tomgibara.crinch.record.def.RecordDef;
 
 public class RecordStats {
 
+	// the version of the stats format, incremented whenever it changes:
+	// 1 - the original format, which recorded no version
+	// 2 - enumerations are front coded
+	// 3 - integral columns record a sample of their values
+	static final int FORMAT_VERSION = 3;
+	
+	// precedes the version; the original format began with a record count, which never reaches this value
+	private static final long VERSIONED = Long.MAX_VALUE;
+	
 	public static int write(CodedWriter writer, RecordStats stats) {
-		int c = writer.writePositiveLong(stats.recordCount);
+		int c = writer.writePositiveLong(VERSIONED);
+		c += writer.writePositiveInt(FORMAT_VERSION);
+		c += writer.writePositiveLong(stats.recordCount);
 		c += writer.writePositiveInt(stats.columnStats.size());
 		for (ColumnStats cs : stats.columnStats) {
 			c += ColumnStats.write(writer, cs);
@@ -36,10 +47,19 @@ public class RecordStats {
 
 	public static RecordStats read(CodedReader reader) {
 		RecordStats stats = new RecordStats();
-		stats.recordCount = reader.readPositiveLong();
+		long first = reader.readPositiveLong();
+		int version;
+		if (first == VERSIONED) {
+			version = reader.readPositiveInt();
+			if (version < 2 || version > FORMAT_VERSION) throw new IllegalStateException("unsupported stats format version: " + version);
+			stats.recordCount = reader.readPositiveLong();
+		} else {
+			version = 1;
+			stats.recordCount = first;
+		}
 		int size = reader.readPositiveInt();
 		for (; size > 0; size--) {
-			stats.columnStats.add(ColumnStats.read(reader));
+			stats.columnStats.add(ColumnStats.read(reader, version));
 		}
 		return stats;
 	}
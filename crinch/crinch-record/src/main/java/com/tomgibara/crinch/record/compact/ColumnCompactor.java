@@ -20,14 +20,49 @@ import java.math.BigDecimal;
 import java.util.Arrays;
 
 import com.tomgibara.crinch.bits.BitWriter;
+import com.tomgibara.crinch.bits.NullBitWriter;
+import com.tomgibara.crinch.coding.AnsCoding;
+import com.tomgibara.crinch.coding.BlockCoding;
 import com.tomgibara.crinch.coding.CodedReader;
 import com.tomgibara.crinch.coding.CodedWriter;
+import com.tomgibara.crinch.coding.EliasOmegaCoding;
 import com.tomgibara.crinch.coding.HuffmanCoding;
+import com.tomgibara.crinch.coding.PackedBlockCoding;
+import com.tomgibara.crinch.coding.StreamVByteCoding;
 import com.tomgibara.crinch.record.ColumnStats;
 import com.tomgibara.crinch.record.ColumnStats.Classification;
 
 class ColumnCompactor {
 
+	// the block codings that may be used in place of the writer's coding for integral values
+	private static final BlockCoding[] BLOCK_CODINGS = { PackedBlockCoding.instance, StreamVByteCoding.instance };
+	// block codings are limited to values that differ from the minimum by less than this
+	private static final BigDecimal MAX_BLOCK_SPAN = BigDecimal.valueOf(1L << 32);
+	
+	// the block coding estimated to code a sample of values more compactly than the writer, null if none
+	private static BlockCoding blockCoding(long[] sample, long offset, long minimum) {
+		// the writer's coding is not known here, so its sizes are estimated with the default coding
+		BitWriter w = new NullBitWriter();
+		long best = 0L;
+		for (long value : sample) {
+			best += EliasOmegaCoding.extended.encodeLong(w, value - offset);
+		}
+		BlockCoding chosen = null;
+		int[] block = new int[1];
+		for (BlockCoding coding : BLOCK_CODINGS) {
+			long size = 0L;
+			for (long value : sample) {
+				block[0] = (int) (value - minimum);
+				size += coding.encodeInts(w, block, 0, 1);
+			}
+			if (size < best) {
+				best = size;
+				chosen = coding;
+			}
+		}
+		return chosen;
+	}
+
 	private final ColumnStats stats;
 	private final CompactCharStore store;
 	private final int columnIndex;
@@ -36,14 +71,35 @@ class ColumnCompactor {
 	private final long offset;
 	private final boolean enumerated;
 	private final String[] enumeration;
+	// integral values are coded as offsets from the minimum with the block coding, if there is one
+	private final long minimum;
+	private final BlockCoding blockCoding;
 	
 	private final HuffmanCoding huffman;
+	// used in preference to huffman coding for the characters of strings when it is smaller
+	private final AnsCoding ans;
+	// textual values are coded as a suffix to a prefix of the previous value
+	private final boolean frontCoded;
+	
+	private int[] chars = new int[0];
+	// working storage for ans, which is shared with copies of this compactor
+	private long[] ansBuffer = new long[0];
+	// holds a single value for the block coding
+	private final int[] block = new int[1];
+	// the previous value of a front coded column, a negative length if there is none
+	private char[] previous = new char[0];
+	private int previousLength = -1;
+	
+	ColumnCompactor(ColumnStats stats, CompactCharStore store, int columnIndex) {
+		this(stats, store, columnIndex, false);
+	}
 	
 	//TODO nasty constructor
-	ColumnCompactor(ColumnStats stats, CompactCharStore store, int columnIndex) {
+	ColumnCompactor(ColumnStats stats, CompactCharStore store, int columnIndex, boolean frontCoded) {
 		this.stats = stats;
 		this.store = store;
 		this.columnIndex = columnIndex;
+		this.frontCoded = frontCoded && stats.getClassification() == Classification.TEXTUAL;
 		
 		nullable = stats.isNullable();
 		enumerated = stats.getClassification() == Classification.ENUMERATED;
@@ -57,18 +113,58 @@ class ColumnCompactor {
 			default:
 				this.offset = 0L;
 		}
+		long[] sample = stats.getSample();
+		if (stats.getClassification() == Classification.INTEGRAL && sample != null && stats.getMinimum() != null && stats.getMaximum() != null && stats.getMaximum().subtract(stats.getMinimum()).compareTo(MAX_BLOCK_SPAN) < 0) {
+			// stats without a sample (as recorded by earlier versions) always leave the writer's coding in use
+			minimum = stats.getMinimum().longValue();
+			blockCoding = blockCoding(sample, offset, minimum);
+		} else {
+			minimum = 0L;
+			blockCoding = null;
+		}
 		long[] freqs = stats.getFrequencies();
 		if (freqs == null) {
 			huffman = null;
+			ans = null;
 		} else {
-			huffman = new HuffmanCoding(new HuffmanCoding.UnorderedFrequencies(freqs));
+			HuffmanCoding.UnorderedFrequencies frequencies = new HuffmanCoding.UnorderedFrequencies(freqs);
+			huffman = new HuffmanCoding(frequencies);
+			if (stats.getClassification() == Classification.TEXTUAL && !enumerated && frequencies.getCount() > 0) {
+				// ans must flush its state for every string, so only use it if that's outweighed by the saving
+				AnsCoding coding = new AnsCoding(frequencies);
+				long length = coding.getEncodedLength(frequencies) + stats.getCount() * coding.getStateLength();
+				ans = length < huffman.getEncodedLength(frequencies) ? coding : null;
+			} else {
+				ans = null;
+			}
 		}
+	}
+	
+	// shares the codings of another compactor, but not its state
+	ColumnCompactor(ColumnCompactor that, CompactCharStore store) {
+		this.stats = that.stats;
+		this.store = store;
+		this.columnIndex = that.columnIndex;
+		this.nullable = that.nullable;
+		this.offset = that.offset;
+		this.enumerated = that.enumerated;
+		this.enumeration = that.enumeration;
+		this.minimum = that.minimum;
+		this.blockCoding = that.blockCoding;
+		this.huffman = that.huffman;
+		this.ans = that.ans;
+		this.frontCoded = that.frontCoded;
 	}
 	
 	ColumnStats getStats() {
 		return stats;
 	}
 	
+	// the next value will not be front coded
+	void restart() {
+		previousLength = -1;
+	}
+	
 	int encodeNull(CodedWriter writer, boolean isNull) {
 		if (!nullable) return 0;
 		return writer.getWriter().writeBoolean(isNull);
@@ -92,8 +188,25 @@ class ColumnCompactor {
 			return huffman.encodePositiveInt(w, i);
 		} else {
 			int length = value.length();
-			int n = writer.writeInt(length - (int) offset);
-			for (int i = 0; i < length; i++) {
+			int start = 0;
+			int n;
+			if (frontCoded) {
+				int limit = Math.min(length, previousLength);
+				while (start < limit && previous[start] == value.charAt(start)) start++;
+				n = writer.writePositiveInt(start);
+				n += writer.writePositiveInt(length - start);
+				remember(value);
+			} else {
+				n = writer.writeInt(length - (int) offset);
+			}
+			if (ans != null) {
+				int[] chars = chars(length - start);
+				for (int i = start; i < length; i++) {
+					chars[i - start] = value.charAt(i);
+				}
+				return n + ans.encodeInts(w, chars, 0, length - start, ansBuffer(length - start));
+			}
+			for (int i = start; i < length; i++) {
 				char c = value.charAt(i);
 				n += huffman.encodePositiveInt(w, c);
 			}
@@ -110,12 +223,31 @@ class ColumnCompactor {
 				return enumeration[value];
 			}
 		} else {
-			int length = ((int) offset) + reader.readInt();
+			int start;
+			int length;
+			if (frontCoded) {
+				start = reader.readPositiveInt();
+				if (start > 0 && start > previousLength) throw new IllegalStateException("front coded value has no preceding value");
+				length = start + reader.readPositiveInt();
+			} else {
+				start = 0;
+				length = ((int) offset) + reader.readInt();
+			}
 			CompactCharSequence chars = store.getChars(columnIndex, length);
-			for (; length > 0; length--) {
-				char c = (char) (huffman.decodePositiveInt(reader.getReader()));
-				chars.append(c);
+			chars.append(previous, 0, start);
+			int count = length - start;
+			if (ans != null) {
+				int[] cs = ans.decodeInts(reader.getReader(), chars(count), 0, count);
+				for (int i = 0; i < count; i++) {
+					chars.append((char) cs[i]);
+				}
+			} else {
+				for (; count > 0; count--) {
+					char c = (char) (huffman.decodePositiveInt(reader.getReader()));
+					chars.append(c);
+				}
 			}
+			if (frontCoded) remember(chars);
 			return chars;
 		}
 	}
@@ -129,18 +261,22 @@ class ColumnCompactor {
 	}
 	
 	int encodeInt(CodedWriter writer, int value) {
+		if (blockCoding != null) return encodeBlock(writer, value);
 		return writer.writeInt(value - (int) offset);
 	}
 	
 	int decodeInt(CodedReader reader) {
+		if (blockCoding != null) return (int) decodeBlock(reader);
 		return ((int) offset) + reader.readInt();
 	}
 	
 	int encodeLong(CodedWriter writer, long value) {
+		if (blockCoding != null) return encodeBlock(writer, value);
 		return writer.writeLong(value - offset);
 	}
 	
 	long decodeLong(CodedReader reader) {
+		if (blockCoding != null) return decodeBlock(reader);
 		return offset + reader.readLong();
 	}
 	
@@ -170,6 +306,38 @@ class ColumnCompactor {
 		return reader.readDouble();
 	}
 
+	private void remember(CharSequence value) {
+		int length = value.length();
+		if (previous.length < length) previous = new char[Math.max(length, previous.length * 2)];
+		for (int i = 0; i < length; i++) {
+			previous[i] = value.charAt(i);
+		}
+		previousLength = length;
+	}
+	
+	private int[] chars(int length) {
+		if (chars.length < length) chars = new int[Math.max(length, chars.length * 2)];
+		return chars;
+	}
+	
+	private long[] ansBuffer(int length) {
+		int required = ans.getBufferLength(length);
+		if (ansBuffer.length < required) ansBuffer = new long[Math.max(required, ansBuffer.length * 2)];
+		return ansBuffer;
+	}
+	
+	private int encodeBlock(CodedWriter writer, long value) {
+		long difference = value - minimum;
+		if (difference < 0L || difference > 0xffffffffL) throw new IllegalArgumentException("value outside range of column: " + value);
+		block[0] = (int) difference;
+		return blockCoding.encodeInts(writer.getWriter(), block, 0, 1);
+	}
+	
+	private long decodeBlock(CodedReader reader) {
+		blockCoding.decodeInts(reader.getReader(), block, 0, 1);
+		return minimum + (block[0] & 0xffffffffL);
+	}
+	
 	@Override
 	public String toString() {
 		return stats.toString();
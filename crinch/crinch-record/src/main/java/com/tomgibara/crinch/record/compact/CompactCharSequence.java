@@ -28,6 +28,12 @@ class CompactCharSequence implements CharSequence, Comparable<CharSequence>, Pro
 		string = null;
 	}
 
+	void append(char[] cs, int offset, int count) {
+		System.arraycopy(cs, offset, chars, length, count);
+		length += count;
+		string = null;
+	}
+
 	void recycle() {
 		length = 0;
 		string = null;
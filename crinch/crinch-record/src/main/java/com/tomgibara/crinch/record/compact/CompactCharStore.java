@@ -8,6 +8,10 @@ class CompactCharStore {
 		store = new CompactCharSequence[columns];
 	}
 	
+	int getCharColumns() {
+		return store.length;
+	}
+	
 	void storeChars(CompactCharSequence cs) {
 		int columnIndex = cs.columnIndex;
 		CompactCharSequence stored = store[columnIndex];
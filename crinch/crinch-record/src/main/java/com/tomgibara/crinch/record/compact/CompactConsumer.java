@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 
 import com.tomgibara.crinch.bits.BitBoundary;
+import com.tomgibara.crinch.bits.ChecksummedOutputStream;
 import com.tomgibara.crinch.bits.OutputStreamBitWriter;
 import com.tomgibara.crinch.coding.CodedWriter;
 import com.tomgibara.crinch.record.LinearRecord;
@@ -90,7 +91,7 @@ public class CompactConsumer implements RecordConsumer<LinearRecord> {
 	
 	private void open() {
 		try {
-			out = new BufferedOutputStream(new FileOutputStream(file()), 1024);
+			out = new BufferedOutputStream(new ChecksummedOutputStream(new FileOutputStream(file())), 1024);
 		} catch (FileNotFoundException e) {
 			throw new RuntimeException(e);
 		}
@@ -57,9 +57,9 @@ public class CompactProducer implements RecordProducer<LinearRecord> {
 		stats = stats.adaptFor(compactStats.definition);
 		
 		coding = context.getCoding();
-		decompactor = new RecordDecompactor(stats, 0);
+		decompactor = new RecordDecompactor(stats, 0, compactStats.frontCodingInterval > 0);
 		File file = context.file(compactStats.type, false, compactStats.definition);
-		fbrf = new FileBitReaderFactory(file, context.isInMemory() ? Mode.MEMORY : Mode.CHANNEL);
+		fbrf = new FileBitReaderFactory(file, context.isInMemory() ? Mode.MEMORY : Mode.CHANNEL, FileBitReaderFactory.DEFAULT_BUFFER_SIZE, context.isVerifying());
 	}
 	
 	@Override
@@ -71,6 +71,7 @@ public class CompactProducer implements RecordProducer<LinearRecord> {
 		
 		// local copy for possible performance gain
 		final long bitsWritten = compactStats.bitsWritten;
+		final long[] restarts = compactStats.restarts;
 		final RecordDecompactor decompactor = CompactProducer.this.decompactor.copy();
 		
 		final BitReader reader;
@@ -82,11 +83,17 @@ public class CompactProducer implements RecordProducer<LinearRecord> {
 			coded = new CodedReader(reader, coding);
 		}
 		
+		// front coded records are reached by decoding from the nearest preceding restart
 		public Accessor setPosition(long position, long ordinal) {
 			if (position < 0L) throw new IllegalArgumentException("negative position");
 			if (position > bitsWritten) throw new IllegalArgumentException("position exceeds data length");
 			if (ordinal < 0L) ordinal = -1L;
-			reader.setPosition(position);
+			if (restarts == null || position == bitsWritten) {
+				reader.setPosition(position);
+				decompactor.restart();
+			} else {
+				decompactor.seek(coded, position, restarts);
+			}
 			this.ordinal = ordinal;
 			return this;
 		}
@@ -24,8 +24,20 @@ class CompactStats implements CodedStreams.WriteTask, CodedStreams.ReadTask {
 	final RecordDef definition;
 	final ExtendedCoding coding;
 	final File file;
+	final boolean verifying;
+	
+	// the version of the compact record format, incremented whenever it changes incompatibly:
+	// 1 - the original format, which recorded no version
+	// 2 - strings may be front coded, integral columns may be block coded if their stats favour it
+	static final int FORMAT_VERSION = 2;
+	// precedes the version; the original format began with a bit count, which never reaches this value
+	private static final long VERSIONED = Long.MAX_VALUE;
 	
 	long bitsWritten;
+	// non-zero if textual columns are front coded
+	int frontCodingInterval;
+	// ascending positions of the records that are not front coded, null if none are
+	long[] restarts;
 
 	CompactStats(String type, ProcessContext context) {
 		this(type, context, (SubRecordDef) null);
@@ -42,6 +54,7 @@ class CompactStats implements CodedStreams.WriteTask, CodedStreams.ReadTask {
 		this.type = type;
 		this.definition = definition;
 		coding = context.getCoding();
+		verifying = context.isVerifying();
 		file = context.file("compact", true, definition);
 		if (context.isClean()) file.delete();
 	}
@@ -51,17 +64,50 @@ class CompactStats implements CodedStreams.WriteTask, CodedStreams.ReadTask {
 	}
 	
 	void read() {
-		CodedStreams.readFromFile(this, coding, file);
+		CodedStreams.readFromFile(this, coding, file, verifying);
 	}
 
 	@Override
 	public void writeTo(CodedWriter writer) {
+		writer.writePositiveLong(VERSIONED);
+		writer.writePositiveInt(FORMAT_VERSION);
 		writer.writePositiveLong(bitsWritten);
+		writer.writePositiveInt(frontCodingInterval);
+		if (frontCodingInterval > 0) {
+			writer.writePositiveInt(restarts.length);
+			long previous = 0L;
+			for (long restart : restarts) {
+				writer.writePositiveLong(restart - previous);
+				previous = restart;
+			}
+		}
 	}
 	
 	@Override
 	public void readFrom(CodedReader reader) {
+		long first = reader.readPositiveLong();
+		if (first != VERSIONED) {
+			// the original format: no strings are front coded
+			bitsWritten = first;
+			frontCodingInterval = 0;
+			restarts = null;
+			return;
+		}
+		// files written in later formats cannot be read and must be regenerated
+		int version = reader.readPositiveInt();
+		if (version != FORMAT_VERSION) throw new IllegalStateException("unsupported compact format version: " + version);
 		bitsWritten = reader.readPositiveLong();
+		frontCodingInterval = reader.readPositiveInt();
+		if (frontCodingInterval > 0) {
+			restarts = new long[reader.readPositiveInt()];
+			long previous = 0L;
+			for (int i = 0; i < restarts.length; i++) {
+				previous += reader.readPositiveLong();
+				restarts[i] = previous;
+			}
+		} else {
+			restarts = null;
+		}
 	}
 	
 }
@@ -18,8 +18,11 @@ package com.tomgibara.crinch.record.compact;
 
 import java.math.BigDecimal;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import com.tomgibara.crinch.coding.CharFrequencyRecorder;
@@ -148,6 +151,34 @@ class RecordAnalyzer {
 
 	// inner classes
 	
+	// a uniform sample of integral values, from which the sizes of their codings are estimated
+	private static class Sampler {
+		
+		private static final int SIZE = 256;
+		
+		// seeded so that repeated analyses of the same records produce the same stats
+		private final Random random = new Random(0L);
+		private final long[] values = new long[SIZE];
+		private long count = 0L;
+		
+		void add(long value) {
+			if (count < SIZE) {
+				values[(int) count] = value;
+			} else {
+				long i = (long) (random.nextDouble() * (count + 1));
+				if (i < SIZE) values[(int) i] = value;
+			}
+			count++;
+		}
+		
+		long[] sample() {
+			long[] sample = Arrays.copyOf(values, (int) Math.min(count, SIZE));
+			Arrays.sort(sample);
+			return sample;
+		}
+		
+	}
+	
 	private abstract class ColumnAnalyzer {
 
 		final ColumnType type;
@@ -309,6 +340,7 @@ class RecordAnalyzer {
 
 		private final int offset;
 		private final long[] freqs;
+		private final Sampler sampler = new Sampler();
 
 		private int minValue = Integer.MAX_VALUE;
 		private int maxValue = Integer.MIN_VALUE;
@@ -349,6 +381,7 @@ class RecordAnalyzer {
 				freqs[value - offset]++;
 				minValue = Math.min(value, minValue);
 				maxValue = Math.max(value, maxValue);
+				sampler.add(value);
 			}
 		}
 
@@ -370,12 +403,14 @@ class RecordAnalyzer {
 			stats.setCount(count);
 			stats.setFrequencies(freqs);
 			stats.setUnique(isFreqsUnique(freqs));
+			stats.setSample(sampler.sample());
 			return stats;
 		}
 	}
 
 	private class LargeIntAnalyzer extends FilteredAnalyzer<Long> {
 
+		private final Sampler sampler = new Sampler();
 		private long sum = 0L;
 		private long count = 0L;
 		private long minValue = Long.MAX_VALUE;
@@ -396,6 +431,7 @@ class RecordAnalyzer {
 				minValue = Math.min(value, minValue);
 				maxValue = Math.max(value, maxValue);
 				checkUniqueness(value);
+				sampler.add(value);
 			}
 		}
 		
@@ -415,6 +451,7 @@ class RecordAnalyzer {
 			stats.setCount(count);
 			stats.setFrequencies(null);
 			stats.setUnique(isUnique());
+			stats.setSample(sampler.sample());
 			return stats;
 		}
 
@@ -465,12 +502,15 @@ class RecordAnalyzer {
 		
 		//TODO make configurable
 		private final static int MAX_ENUM = 1024;
+		// columns with more values than this are never coded with a dictionary
+		private final static int MAX_DICTIONARY = 1 << 16;
+		// beyond MAX_ENUM, values must occur this many times on average to be coded with a dictionary
+		private final static int MIN_DICTIONARY_REPEATS = 4;
 		
 		private final CharFrequencyRecorder cfr = new CharFrequencyRecorder();
 		
-		private int enumCount = 0;
-		private String[] enumValues = new String[MAX_ENUM];
-		private long[] enumFreqs = new long[MAX_ENUM];
+		// frequencies of distinct values, null once there are too many for a dictionary
+		private Map<String, long[]> enumFreqs = new HashMap<String, long[]>();
 		
 		private long lengthSum = 0L;
 		private long count = 0L;
@@ -493,24 +533,14 @@ class RecordAnalyzer {
 				count++;
 				minValue = Math.min(value, minValue);
 				maxValue = Math.max(value, maxValue);
-				if (enumValues != null) {
-					//TODO make something more efficient
-					int i = Arrays.binarySearch(enumValues, 0, enumCount, str);
-					if (i < 0) {
-						if (enumCount == MAX_ENUM) {
-							enumValues = null;
-							enumFreqs = null;
-							enumCount = -1;
-						} else {
-							i =  -i - 1;
-							System.arraycopy(enumValues, i, enumValues, i+1, enumCount - i);
-							System.arraycopy(enumFreqs, i, enumFreqs, i+1, enumCount - i);
-							enumValues[i] = str;
-							enumFreqs[i] = 1L;
-							enumCount++;
-						}
+				if (enumFreqs != null) {
+					long[] freq = enumFreqs.get(str);
+					if (freq != null) {
+						freq[0]++;
+					} else if (enumFreqs.size() == MAX_DICTIONARY) {
+						enumFreqs = null;
 					} else {
-						enumFreqs[i]++;
+						enumFreqs.put(str, new long[] {1L});
 					}
 				}
 			}
@@ -529,18 +559,32 @@ class RecordAnalyzer {
 			stats.setMaximum(BigDecimal.valueOf(maxValue));
 			stats.setSum(BigDecimal.valueOf(lengthSum));
 			stats.setCount(count);
-			if (enumFreqs == null) {
+			if (isDictionary()) {
+				// the values are sorted to support front coding of the dictionary
+				final int enumCount = enumFreqs.size();
+				String[] enumValues = enumFreqs.keySet().toArray(new String[enumCount]);
+				Arrays.sort(enumValues);
+				long[] freqs = new long[enumCount];
+				for (int i = 0; i < enumCount; i++) {
+					freqs[i] = enumFreqs.get(enumValues[i])[0];
+				}
+				stats.setClassification(Classification.ENUMERATED);
+				stats.setEnumeration(enumValues);
+				stats.setFrequencies(freqs);
+			} else {
 				stats.setClassification(Classification.TEXTUAL);
 				stats.setFrequencies(cfr.getFrequencies());
-			} else {
-				stats.setClassification(Classification.ENUMERATED);
-				stats.setEnumeration(Arrays.copyOfRange(enumValues, 0, enumCount));
-				stats.setFrequencies(Arrays.copyOfRange(enumFreqs, 0, enumCount));
 			}
 			stats.setUnique(isUnique());
 			return stats;
 		}
 
+		private boolean isDictionary() {
+			if (enumFreqs == null) return false;
+			int size = enumFreqs.size();
+			return size <= MAX_ENUM || size * (long) MIN_DICTIONARY_REPEATS <= count;
+		}
+
 	}
 
 	
@@ -32,8 +32,15 @@ public class RecordCompactor extends CompactCharStore {
 	private final ColumnType[] types;
 	private final ColumnCompactor[] compactors;
 	private final int startIndex;
+	// every this many records, strings are not front coded; zero if front coding is not used
+	private final int frontCodingInterval;
+	private long recordCount = 0L;
 	
 	public RecordCompactor(ProcessContext context, RecordDef recordDef, int startIndex) {
+		this(context, recordDef, startIndex, 0);
+	}
+	
+	public RecordCompactor(ProcessContext context, RecordDef recordDef, int startIndex, int frontCodingInterval) {
 		if (recordDef == null) recordDef = context.getRecordDef();
 		if (recordDef == null) throw new IllegalArgumentException("context has no record definition");
 		RecordStats stats = context.getRecordStats();
@@ -41,17 +48,19 @@ public class RecordCompactor extends CompactCharStore {
 		stats = stats.adaptFor(recordDef);
 		if (startIndex < 0) throw new IllegalArgumentException("negative startIndex");
 		if (startIndex > stats.getColumnStats().size()) throw new IllegalArgumentException("invalid startIndex");
+		if (frontCodingInterval < 0) throw new IllegalArgumentException("negative frontCodingInterval");
 		
 		List<ColumnType> types = recordDef.getTypes();
 		ColumnCompactor[] compactors = new ColumnCompactor[types.size()];
 		List<ColumnStats> list = stats.getColumnStats();
 		for (int i = 0; i < compactors.length; i++) {
-			compactors[i] = new ColumnCompactor(list.get(i), this, i);
+			compactors[i] = new ColumnCompactor(list.get(i), this, i, frontCodingInterval > 0);
 		}
 		
 		this.types = (ColumnType[]) types.toArray(new ColumnType[types.size()]);
 		this.compactors = compactors;
 		this.startIndex = startIndex;
+		this.frontCodingInterval = frontCodingInterval;
 		setCharColumns(startIndex + compactors.length);
 	}
 
@@ -61,7 +70,17 @@ public class RecordCompactor extends CompactCharStore {
 		return compactors[index].getStats();
 	}
 	
+	// true if the next record compacted will not be front coded
+	public boolean isRestarting() {
+		return frontCodingInterval > 0 && recordCount % frontCodingInterval == 0;
+	}
+	
 	public int compact(CodedWriter writer, LinearRecord record) {
+		if (frontCodingInterval > 0 && recordCount++ % frontCodingInterval == 0) {
+			for (int i = startIndex; i < compactors.length; i++) {
+				compactors[i].restart();
+			}
+		}
 		int c = 0;
 		for (int i = startIndex; i < compactors.length; i++) {
 			ColumnCompactor compactor = compactors[i];
@@ -16,8 +16,10 @@
  */
 package com.tomgibara.crinch.record.compact;
 
+import java.util.Arrays;
 import java.util.List;
 
+import com.tomgibara.crinch.bits.BitReader;
 import com.tomgibara.crinch.coding.CodedReader;
 import com.tomgibara.crinch.record.ColumnStats;
 import com.tomgibara.crinch.record.RecordStats;
@@ -31,17 +33,26 @@ public class RecordDecompactor extends CompactCharStore {
 	private CompactRecord spare = null;
 
 	private RecordDecompactor(RecordDecompactor that) {
-		this.compactors = that.compactors;
+		ColumnCompactor[] compactors = new ColumnCompactor[that.compactors.length];
+		for (int i = 0; i < compactors.length; i++) {
+			compactors[i] = new ColumnCompactor(that.compactors[i], this);
+		}
+		this.compactors = compactors;
+		setCharColumns(that.getCharColumns());
 	}
 
 	public RecordDecompactor(RecordStats stats, int startIndex) {
+		this(stats, startIndex, false);
+	}
+
+	public RecordDecompactor(RecordStats stats, int startIndex, boolean frontCoded) {
 		List<ColumnStats> list = stats.getColumnStats();
 		int length = list.size();
 		if (startIndex < 0) throw new IllegalArgumentException("negative startIndex");
 		if (startIndex > length) throw new IllegalArgumentException("invalid startIndex");
 		ColumnCompactor[] compactors = new ColumnCompactor[length - startIndex];
 		for (int i = startIndex, j = 0; i < length; i++, j++) {
-			compactors[j] = new ColumnCompactor(list.get(i), this, i);
+			compactors[j] = new ColumnCompactor(list.get(i), this, i, frontCoded);
 		}
 		this.compactors = compactors;
 		setCharColumns(compactors.length + startIndex);
@@ -55,8 +66,31 @@ public class RecordDecompactor extends CompactCharStore {
 		return record().populate(reader, ordinal, position);
 	}
 
+	// positions the reader at a front coded record by decoding forward from the nearest preceding restart
+	public void seek(CodedReader reader, long position, long[] restarts) {
+		if (position < 0L) throw new IllegalArgumentException("negative position");
+		if (restarts == null) throw new IllegalArgumentException("null restarts");
+		int i = Arrays.binarySearch(restarts, position);
+		if (i < 0) i = -2 - i;
+		if (i < 0) throw new IllegalArgumentException("position precedes first record");
+		BitReader bits = reader.getReader();
+		bits.setPosition(restarts[i]);
+		restart();
+		while (bits.getPosition() < position) {
+			decompact(reader, -1L).release();
+		}
+		if (bits.getPosition() != position) throw new IllegalArgumentException("position is not that of a record");
+	}
+
 	public RecordDecompactor copy() {
 		return new RecordDecompactor(this);
+	}
+	
+	// must be called when records are no longer decompacted consecutively
+	public void restart() {
+		for (ColumnCompactor compactor : compactors) {
+			compactor.restart();
+		}
 	}
 	
 	ColumnCompactor[] getCompactors() {
@@ -22,10 +22,12 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.PriorityQueue;
 
 import com.tomgibara.crinch.bits.BitBoundary;
+import com.tomgibara.crinch.bits.ChecksummedOutputStream;
 import com.tomgibara.crinch.bits.BitWriter;
 import com.tomgibara.crinch.bits.OutputStreamBitWriter;
 import com.tomgibara.crinch.coding.CodedWriter;
@@ -60,6 +62,7 @@ public class SortConsumer implements RecordConsumer<LinearRecord> {
 	private DynamicRecordFactory factory;
 	private ClassConfig config;
 	private Comparator<LinearRecord> comparator;
+	private int frontCodingInterval;
 	private Hash<LinearRecord> hash;
 	private PriorityQueue<LinearRecord> queue; 
 	private File file;
@@ -67,6 +70,8 @@ public class SortConsumer implements RecordConsumer<LinearRecord> {
 	private BitWriter writer;
 	private CodedWriter coded;
 	private long bitsWritten;
+	private long[] restarts;
+	private int restartCount;
 	
 	public SortConsumer(SubRecordDef subRecDef) {
 		this.subRecDef = subRecDef;
@@ -88,6 +93,10 @@ public class SortConsumer implements RecordConsumer<LinearRecord> {
 			config = new ClassConfig(false, false, false);
 			hash = null;
 		}
+		// sorted strings share prefixes with their predecessors, so may be front coded
+		Long interval = stats.definition.getLongProperty("sort.frontCodingInterval");
+		if (interval != null && interval < 0L) throw new IllegalArgumentException("negative front coding interval");
+		frontCodingInterval = interval == null || hash != null ? 0 : (int) Math.min(interval, Integer.MAX_VALUE);
 		file = file();
 		if (context.isClean()) file.delete();
 		
@@ -125,8 +134,9 @@ public class SortConsumer implements RecordConsumer<LinearRecord> {
 	public void endPass() {
 		open();
 		try {
-			RecordCompactor compactor = new RecordCompactor(context, stats.definition, 0);
+			RecordCompactor compactor = new RecordCompactor(context, stats.definition, 0, frontCodingInterval);
 			while (!queue.isEmpty()) {
+				if (compactor.isRestarting()) restart();
 				bitsWritten += compactor.compact(coded, queue.poll());
 			}
 		} finally {
@@ -152,13 +162,21 @@ public class SortConsumer implements RecordConsumer<LinearRecord> {
 
 	private void open() {
 		try {
-			out = new BufferedOutputStream(new FileOutputStream(file), 1024);
+			out = new BufferedOutputStream(new ChecksummedOutputStream(new FileOutputStream(file)), 1024);
 		} catch (FileNotFoundException e) {
 			throw new RuntimeException(e);
 		}
 		writer = new OutputStreamBitWriter(out);
 		coded = new CodedWriter(writer, context.getCoding());
 		bitsWritten = 0L;
+		restarts = new long[16];
+		restartCount = 0;
+	}
+	
+	// records the position of a record that can be decoded without its predecessors
+	private void restart() {
+		if (restartCount == restarts.length) restarts = Arrays.copyOf(restarts, restartCount * 2);
+		restarts[restartCount++] = bitsWritten;
 	}
 	
 	private void close() {
@@ -182,6 +200,9 @@ public class SortConsumer implements RecordConsumer<LinearRecord> {
 			}
 		}
 		stats.bitsWritten = bitsWritten;
+		stats.frontCodingInterval = frontCodingInterval;
+		stats.restarts = frontCodingInterval > 0 ? Arrays.copyOf(restarts, restartCount) : null;
+		restarts = null;
 		stats.write();
 	}
 
@@ -54,7 +54,7 @@ public class HashProducer implements RecordProducer<LinearRecord> {
 		}
 		
 		File file = context.file(hashStats.type, false, hashStats.definition);
-		fbrf = new FileBitReaderFactory(file, context.isInMemory() ? Mode.MEMORY : Mode.CHANNEL);
+		fbrf = new FileBitReaderFactory(file, context.isInMemory() ? Mode.MEMORY : Mode.CHANNEL, FileBitReaderFactory.DEFAULT_BUFFER_SIZE, context.isVerifying());
 	}
 
 	@Override
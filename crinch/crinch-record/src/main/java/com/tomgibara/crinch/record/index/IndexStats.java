@@ -25,6 +25,7 @@ abstract class IndexStats implements CodedStreams.WriteTask, CodedStreams.ReadTa
 	final RecordDef definition;
 	final ExtendedCoding coding;
 	final File file;
+	final boolean verifying;
 	
 	IndexStats(String type, ProcessContext context) {
 		this(type, context, (SubRecordDef) null);
@@ -40,6 +41,7 @@ abstract class IndexStats implements CodedStreams.WriteTask, CodedStreams.ReadTa
 		this.type = type;
 		this.definition = definition;
 		coding = context.getCoding();
+		verifying = context.isVerifying();
 		file = context.file(type, true, definition);
 		if (context.isClean()) file.delete();
 	}
@@ -49,7 +51,7 @@ abstract class IndexStats implements CodedStreams.WriteTask, CodedStreams.ReadTa
 	}
 	
 	void read() {
-		CodedStreams.readFromFile(this, coding, file);
+		CodedStreams.readFromFile(this, coding, file, verifying);
 	}
 
 }
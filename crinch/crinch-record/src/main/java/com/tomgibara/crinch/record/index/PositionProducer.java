@@ -46,7 +46,7 @@ public class PositionProducer implements RecordProducer<EmptyRecord> {
 		posStats.read();
 
 		File file = context.file(posStats.type, false, posStats.definition);
-		fbrf = new FileBitReaderFactory(file, Mode.CHANNEL);
+		fbrf = new FileBitReaderFactory(file, Mode.CHANNEL, FileBitReaderFactory.DEFAULT_BUFFER_SIZE, context.isVerifying());
 
 		oversizedStart = posStats.fixedBitSize * recStats.getRecordCount();
 		oversizedFinish = posStats.bitsWritten;
@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 
 import com.tomgibara.crinch.bits.BitBoundary;
+import com.tomgibara.crinch.bits.ChecksummedOutputStream;
 import com.tomgibara.crinch.bits.BitWriter;
 import com.tomgibara.crinch.bits.NullBitWriter;
 import com.tomgibara.crinch.bits.OutputStreamBitWriter;
@@ -298,7 +299,7 @@ public class TrieConsumer implements RecordConsumer<LinearRecord> {
 		public Writer() {
 			this.huffmanCoding = TrieConsumer.this.huffmanCoding;
 			try {
-				out = new BufferedOutputStream(new FileOutputStream(file()), 1024);
+				out = new BufferedOutputStream(new ChecksummedOutputStream(new FileOutputStream(file())), 1024);
 			} catch (FileNotFoundException e) {
 				throw new RuntimeException(e);
 			}
@@ -84,7 +84,7 @@ public class TrieProducer implements RecordProducer<LinearRecord> {
 				//TODO should switch to non-neg method when it becomes available
 				arr[0] = CodedStreams.readLongArray(reader);
 			}
-		}, context.getCoding(), statsFile);
+		}, context.getCoding(), statsFile, context.isVerifying());
 		long[] frequencies = arr[0];
 
 		RecordStats stats = context.getRecordStats();
@@ -99,7 +99,7 @@ public class TrieProducer implements RecordProducer<LinearRecord> {
 		coding = context.getCoding();
 		
 		File file = context.file("trie", false, recordDef);
-		fbrf = new FileBitReaderFactory(file, context.isInMemory() ? Mode.MEMORY : Mode.CHANNEL);
+		fbrf = new FileBitReaderFactory(file, context.isInMemory() ? Mode.MEMORY : Mode.CHANNEL, FileBitReaderFactory.DEFAULT_BUFFER_SIZE, context.isVerifying());
 	}
 	
 	@Override
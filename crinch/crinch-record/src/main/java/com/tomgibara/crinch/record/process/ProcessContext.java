@@ -43,6 +43,11 @@ public interface ProcessContext {
 	
 	boolean isInMemory();
 	
+	// whether block checksums are verified when files are read
+	void setVerifying(boolean verifying);
+	
+	boolean isVerifying();
+	
 	void setClean(boolean clean);
 	
 	boolean isClean();
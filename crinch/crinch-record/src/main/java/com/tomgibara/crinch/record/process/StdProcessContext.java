@@ -33,6 +33,9 @@ import com.tomgibara.crinch.bits.BitBoundary;
 import com.tomgibara.crinch.bits.BitReader;
 import com.tomgibara.crinch.bits.BitStreamException;
 import com.tomgibara.crinch.bits.BitWriter;
+import com.tomgibara.crinch.bits.BlockChecksums;
+import com.tomgibara.crinch.bits.ChecksummedInputStream;
+import com.tomgibara.crinch.bits.ChecksummedOutputStream;
 import com.tomgibara.crinch.bits.FileBitReaderFactory;
 import com.tomgibara.crinch.bits.InputStreamBitReader;
 import com.tomgibara.crinch.bits.OutputStreamBitWriter;
@@ -64,6 +67,8 @@ public class StdProcessContext implements ProcessContext {
 	private float progressStep = 1.0f;
 	private ExtendedCoding coding = EliasOmegaCoding.extended;
 	private boolean inMemory;
+	// opt-in, since files written before checksums were introduced have none
+	private boolean verifying = false;
 	private boolean clean = false;
 	private ColumnParser columnParser = new StdColumnParser();
 	private File dataDir = new File("");
@@ -120,6 +125,16 @@ public class StdProcessContext implements ProcessContext {
 		return inMemory;
 	}
 	
+	@Override
+	public void setVerifying(boolean verifying) {
+		this.verifying = verifying;
+	}
+	
+	@Override
+	public boolean isVerifying() {
+		return verifying;
+	}
+	
 	@Override
 	public void setClean(boolean clean) {
 		this.clean = clean;
@@ -436,7 +451,10 @@ public class StdProcessContext implements ProcessContext {
 		} else {
 			InputStream in = null;
 			try {
-				in = new BufferedInputStream(new FileInputStream(file), 1024);
+				BlockChecksums checksums = verifying ? BlockChecksums.read(file) : null;
+				in = new FileInputStream(file);
+				if (checksums != null) in = new ChecksummedInputStream(in, checksums);
+				in = new BufferedInputStream(in, 1024);
 				BitReader reader = new InputStreamBitReader(in);
 				CodedReader coded = new CodedReader(reader, coding);
 				return op.read(coded);
@@ -460,7 +478,7 @@ public class StdProcessContext implements ProcessContext {
 		} else {
 			OutputStream out = null;
 			try {
-				out = new BufferedOutputStream(new FileOutputStream(file), 1024);
+				out = new BufferedOutputStream(new ChecksummedOutputStream(new FileOutputStream(file)), 1024);
 				BitWriter writer = new OutputStreamBitWriter(out);
 				CodedWriter coded = new CodedWriter(writer, coding);
 				op.write(coded);
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2012 Tom Gibara
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.tomgibara.crinch.record;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.tomgibara.crinch.bits.ByteArrayBitReader;
+import com.tomgibara.crinch.bits.ByteArrayBitWriter;
+import com.tomgibara.crinch.coding.CodedReader;
+import com.tomgibara.crinch.coding.CodedWriter;
+import com.tomgibara.crinch.coding.EliasOmegaCoding;
+import com.tomgibara.crinch.record.ColumnStats.Classification;
+
+public class ColumnStatsTest extends TestCase {
+
+	private static ColumnStats roundTrip(ColumnStats stats) {
+		ByteArrayBitWriter bits = new ByteArrayBitWriter(new byte[1 << 20]);
+		CodedWriter writer = new CodedWriter(bits, EliasOmegaCoding.extended);
+		ColumnStats.write(writer, stats);
+		bits.flush();
+		CodedReader reader = new CodedReader(new ByteArrayBitReader(bits.getBytes()), EliasOmegaCoding.extended);
+		return ColumnStats.read(reader);
+	}
+
+	public void testEnumerationRoundTrip() {
+		// a sorted enumeration is front coded, so include shared, empty and unshared prefixes
+		String[] enumeration = new String[65536];
+		enumeration[0] = "";
+		for (int i = 1; i < enumeration.length; i++) {
+			enumeration[i] = i < 100 ? Integer.toString(i).substring(0, 1) + "-" + i : String.format("value-%05d", i);
+		}
+		Arrays.sort(enumeration);
+		long[] freqs = new long[enumeration.length];
+		for (int i = 0; i < freqs.length; i++) freqs[i] = i % 5;
+
+		ColumnStats stats = new ColumnStats();
+		stats.setClassification(Classification.ENUMERATED);
+		stats.setNullable(true);
+		stats.setCount(enumeration.length);
+		stats.setFrequencies(freqs);
+		stats.setEnumeration(enumeration);
+
+		ColumnStats read = roundTrip(stats);
+		assertEquals(Classification.ENUMERATED, read.getClassification());
+		assertTrue(read.isNullable());
+		assertEquals(enumeration.length, read.getCount());
+		assertTrue(Arrays.equals(freqs, read.getFrequencies()));
+		assertTrue(Arrays.equals(enumeration, read.getEnumeration()));
+	}
+
+	public void testRecordStatsRoundTrip() {
+		RecordStats stats = new RecordStats(3);
+		ColumnStats column = new ColumnStats();
+		column.setClassification(Classification.ENUMERATED);
+		column.setCount(3);
+		column.setFrequencies(new long[] {1, 2});
+		column.setEnumeration(new String[] {"alpha", "alphabet"});
+		stats.getColumnStats().add(column);
+
+		ByteArrayBitWriter bits = new ByteArrayBitWriter(new byte[1024]);
+		CodedWriter writer = new CodedWriter(bits, EliasOmegaCoding.extended);
+		RecordStats.write(writer, stats);
+		bits.flush();
+		CodedReader reader = new CodedReader(new ByteArrayBitReader(bits.getBytes()), EliasOmegaCoding.extended);
+		RecordStats read = RecordStats.read(reader);
+		assertEquals(3, read.getRecordCount());
+		assertTrue(Arrays.equals(column.getEnumeration(), read.getColumnStats().get(0).getEnumeration()));
+	}
+
+	public void testLegacyRecordStats() {
+		// the unversioned layout, in which enumerations were not front coded
+		ByteArrayBitWriter bits = new ByteArrayBitWriter(new byte[1024]);
+		CodedWriter writer = new CodedWriter(bits, EliasOmegaCoding.extended);
+		writer.writePositiveLong(3);
+		writer.writePositiveInt(1);
+		writer.writePositiveInt(Classification.ENUMERATED.ordinal());
+		bits.writeBoolean(false);
+		bits.writeBoolean(true);
+		bits.writeBoolean(true);
+		bits.writeBoolean(true);
+		writer.writePositiveLong(3);
+		writer.writePositiveInt(2);
+		writer.writePositiveLong(1);
+		writer.writePositiveLong(2);
+		writer.writePositiveInt(2);
+		for (String value : new String[] {"alpha", "alphabet"}) {
+			writer.writePositiveInt(value.length());
+			for (int i = 0; i < value.length(); i++) writer.writePositiveInt(value.charAt(i));
+		}
+		bits.writeBoolean(false);
+		bits.flush();
+
+		CodedReader reader = new CodedReader(new ByteArrayBitReader(bits.getBytes()), EliasOmegaCoding.extended);
+		RecordStats stats = RecordStats.read(reader);
+		assertEquals(3, stats.getRecordCount());
+		assertEquals(1, stats.getColumnStats().size());
+		ColumnStats column = stats.getColumnStats().get(0);
+		assertEquals(Classification.ENUMERATED, column.getClassification());
+		assertEquals(3, column.getCount());
+		assertTrue(Arrays.equals(new long[] {1, 2}, column.getFrequencies()));
+		assertTrue(Arrays.equals(new String[] {"alpha", "alphabet"}, column.getEnumeration()));
+		assertFalse(column.isUnique());
+		assertNull(column.getSample());
+	}
+
+	public void testSampleRoundTrip() {
+		// the differences between extreme values overflow
+		long[] sample = { Long.MIN_VALUE, -1L, 0L, 0L, 7L, Long.MAX_VALUE };
+		ColumnStats stats = new ColumnStats();
+		stats.setClassification(Classification.INTEGRAL);
+		stats.setCount(sample.length);
+		stats.setSample(sample);
+		assertTrue(Arrays.equals(sample, roundTrip(stats).getSample()));
+		stats.setSample(new long[0]);
+		assertNull(roundTrip(stats).getSample());
+	}
+
+	public void testNoEnumerationRoundTrip() {
+		ColumnStats stats = new ColumnStats();
+		stats.setClassification(Classification.TEXTUAL);
+		stats.setCount(3);
+		ColumnStats read = roundTrip(stats);
+		assertEquals(Classification.TEXTUAL, read.getClassification());
+		assertNull(read.getEnumeration());
+		assertNull(read.getFrequencies());
+	}
+
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2012 Tom Gibara
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package com.tomgibara.crinch.record.compact;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.tomgibara.crinch.bits.ByteArrayBitReader;
+import com.tomgibara.crinch.bits.ByteArrayBitWriter;
+import com.tomgibara.crinch.coding.CodedReader;
+import com.tomgibara.crinch.coding.CodedWriter;
+import com.tomgibara.crinch.coding.EliasOmegaCoding;
+import com.tomgibara.crinch.record.ColumnStats;
+import com.tomgibara.crinch.record.ColumnStats.Classification;
+import com.tomgibara.crinch.record.RecordStats;
+
+public class ColumnCompactorTest extends TestCase {
+
+	private static ColumnStats integralStats(long[] values) {
+		long min = Long.MAX_VALUE;
+		long max = Long.MIN_VALUE;
+		BigDecimal sum = BigDecimal.ZERO;
+		for (long value : values) {
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+			sum = sum.add(BigDecimal.valueOf(value));
+		}
+		ColumnStats stats = new ColumnStats();
+		stats.setClassification(Classification.INTEGRAL);
+		stats.setMinimum(BigDecimal.valueOf(min));
+		stats.setMaximum(BigDecimal.valueOf(max));
+		stats.setSum(sum);
+		stats.setCount(values.length);
+		long[] sample = values.clone();
+		Arrays.sort(sample);
+		stats.setSample(sample);
+		return stats;
+	}
+
+	// the number of bits used to code the values, which are then checked
+	private static int integralBits(ColumnCompactor compactor, long[] values) {
+		CodedWriter writer = writer(values.length);
+		int bits = 0;
+		for (long value : values) bits += compactor.encodeLong(writer, value);
+		CodedReader reader = reader(writer);
+		for (long value : values) assertEquals(value, compactor.decodeLong(reader));
+		return bits;
+	}
+
+	private static ColumnStats enumeratedStats(String[] enumeration) {
+		long[] freqs = new long[enumeration.length];
+		for (int i = 0; i < freqs.length; i++) freqs[i] = 1 + i % 7;
+		ColumnStats stats = new ColumnStats();
+		stats.setClassification(Classification.ENUMERATED);
+		stats.setCount(enumeration.length);
+		stats.setFrequencies(freqs);
+		stats.setEnumeration(enumeration);
+		return stats;
+	}
+
+	private static ColumnStats textualStats(String[] values) {
+		long[] freqs = new long[128];
+		long sum = 0L;
+		for (String value : values) {
+			sum += value.length();
+			for (int i = 0; i < value.length(); i++) freqs[value.charAt(i)]++;
+		}
+		ColumnStats stats = new ColumnStats();
+		stats.setClassification(Classification.TEXTUAL);
+		stats.setSum(BigDecimal.valueOf(sum));
+		stats.setCount(values.length);
+		stats.setFrequencies(freqs);
+		return stats;
+	}
+
+	// sorted values that share long prefixes with their predecessors
+	private static String[] sortedValues(int count) {
+		String[] values = new String[count];
+		for (int i = 0; i < count; i++) {
+			values[i] = String.format("row-%06d-%s", i / 3, i % 3 == 0 ? "" : "x" + i % 3);
+		}
+		Arrays.sort(values);
+		return values;
+	}
+
+	private static ColumnCompactor compactor(ColumnStats stats) {
+		CompactCharStore store = new CompactCharStore();
+		store.setCharColumns(1);
+		return new ColumnCompactor(stats, store, 0);
+	}
+
+	private static ColumnCompactor frontCoder(ColumnStats stats) {
+		CompactCharStore store = new CompactCharStore();
+		store.setCharColumns(1);
+		return new ColumnCompactor(stats, store, 0, true);
+	}
+
+	private static CodedWriter writer(int values) {
+		return new CodedWriter(new ByteArrayBitWriter(new byte[values * 16 + 16]), EliasOmegaCoding.extended);
+	}
+
+	private static CodedReader reader(CodedWriter writer) {
+		writer.getWriter().flush();
+		return new CodedReader(new ByteArrayBitReader(((ByteArrayBitWriter) writer.getWriter()).getBytes()), EliasOmegaCoding.extended);
+	}
+
+	public void testIntegralRoundTrip() {
+		Random random = new Random(0L);
+		long[] values = new long[5000];
+		for (int i = 0; i < values.length; i++) {
+			// mostly small values with occasional outliers
+			values[i] = random.nextInt(20) == 0 ? random.nextInt(1000000) : random.nextInt(100) - 50;
+		}
+		values[0] = -50;
+		values[1] = 1000000;
+		ColumnCompactor compactor = compactor(integralStats(values));
+
+		CodedWriter writer = writer(values.length * 2);
+		for (long value : values) compactor.encodeLong(writer, value);
+		for (long value : values) compactor.encodeInt(writer, (int) value);
+		CodedReader reader = reader(writer);
+		for (long value : values) assertEquals(value, compactor.decodeLong(reader));
+		for (long value : values) assertEquals((int) value, compactor.decodeInt(reader));
+	}
+
+	public void testIntegralExtremes() {
+		long[] values = { Long.MIN_VALUE / 4, 0L, Long.MAX_VALUE / 4 };
+		// the span is too wide to block code, so values are coded relative to the mean
+		ColumnCompactor compactor = compactor(integralStats(values));
+		CodedWriter writer = writer(values.length);
+		for (long value : values) compactor.encodeLong(writer, value);
+		CodedReader reader = reader(writer);
+		for (long value : values) assertEquals(value, compactor.decodeLong(reader));
+	}
+
+	public void testIntegralCodingChoice() {
+		Random random = new Random(0L);
+		long[] wide = new long[1000];
+		long[] narrow = new long[1000];
+		for (int i = 0; i < wide.length; i++) {
+			wide[i] = random.nextInt(1 << 30);
+			narrow[i] = 1000 + random.nextInt(3);
+		}
+
+		// widely spread values are smaller when block coded
+		ColumnStats stats = integralStats(wide);
+		int blockBits = integralBits(compactor(stats), wide);
+		stats.setSample(null);
+		assertTrue(blockBits < integralBits(compactor(stats), wide));
+
+		// values close to the mean are left to the writer's coding
+		stats = integralStats(narrow);
+		int sampledBits = integralBits(compactor(stats), narrow);
+		stats.setSample(null);
+		assertEquals(integralBits(compactor(stats), narrow), sampledBits);
+	}
+
+	public void testEnumeratedRoundTrip() {
+		// the largest dictionary permitted
+		String[] enumeration = new String[65536];
+		for (int i = 0; i < enumeration.length; i++) enumeration[i] = String.format("e%05d", i);
+		ColumnCompactor compactor = compactor(enumeratedStats(enumeration));
+		Random random = new Random(0L);
+		int[] indices = new int[10000];
+		for (int i = 0; i < indices.length; i++) indices[i] = random.nextInt(enumeration.length);
+		indices[0] = 0;
+		indices[1] = enumeration.length - 1;
+
+		CodedWriter writer = writer(indices.length);
+		for (int index : indices) compactor.encodeString(writer, enumeration[index]);
+		CodedReader reader = reader(writer);
+		for (int index : indices) assertEquals(enumeration[index], compactor.decodeString(reader).toString());
+	}
+
+	public void testFrontCodedRoundTrip() {
+		String[] values = sortedValues(1000);
+		ColumnStats stats = textualStats(values);
+		ColumnCompactor compactor = frontCoder(stats);
+		int interval = 16;
+
+		CodedWriter writer = writer(values.length * 4);
+		int frontCodedBits = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (i % interval == 0) compactor.restart();
+			frontCodedBits += compactor.encodeString(writer, values[i]);
+		}
+		CodedReader reader = reader(writer);
+		ColumnCompactor decompactor = frontCoder(stats);
+		for (int i = 0; i < values.length; i++) {
+			if (i % interval == 0) decompactor.restart();
+			assertEquals(values[i], decompactor.decodeString(reader).toString());
+		}
+
+		// shared prefixes should be much cheaper than the values in full
+		ColumnCompactor plain = compactor(stats);
+		CodedWriter plainWriter = writer(values.length * 4);
+		int plainBits = 0;
+		for (String value : values) plainBits += plain.encodeString(plainWriter, value);
+		assertTrue(frontCodedBits < plainBits / 2);
+	}
+
+	public void testFrontCodedSeek() {
+		String[] values = sortedValues(500);
+		RecordStats stats = new RecordStats(values.length);
+		stats.getColumnStats().add(textualStats(values));
+		RecordDecompactor decompactor = new RecordDecompactor(stats, 0, true);
+		ColumnCompactor compactor = decompactor.getCompactors()[0];
+		int interval = 10;
+
+		CodedWriter writer = writer(values.length * 4);
+		long[] positions = new long[values.length];
+		long[] restarts = new long[(values.length + interval - 1) / interval];
+		long position = 0L;
+		for (int i = 0; i < values.length; i++) {
+			if (i % interval == 0) {
+				compactor.restart();
+				restarts[i / interval] = position;
+			}
+			positions[i] = position;
+			position += compactor.encodeString(writer, values[i]);
+		}
+		CodedReader reader = reader(writer);
+
+		Random random = new Random(0L);
+		for (int j = 0; j < 200; j++) {
+			int i = random.nextInt(values.length);
+			decompactor.seek(reader, positions[i], restarts);
+			assertEquals(positions[i], reader.getReader().getPosition());
+			CompactRecord record = decompactor.decompact(reader, i, positions[i]);
+			assertEquals(values[i], record.nextString().toString());
+			record.release();
+		}
+
+		try {
+			decompactor.seek(reader, positions[1] + 1, restarts);
+			fail();
+		} catch (IllegalArgumentException e) {
+			/* expected */
+		}
+	}
+
+}